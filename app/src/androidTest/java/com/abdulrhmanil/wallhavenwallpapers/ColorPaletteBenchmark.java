@@ -0,0 +1,68 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ColorPalette;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Instrumented benchmark, compare the mapping of the pixels to the search colors with the lookup
+ * table of {@link ColorPalette ColorPalette} ({@link ColorPalette#histogram histogram}) against
+ * the exact nearest color in the Lab space ({@link ColorPalette#nearestIndexExact
+ * nearestIndexExact}), over the pixels of a 2560 x 1600 photo, and report the time per pixel
+ * of both to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ColorPaletteBenchmark {
+
+    private static final String TAG = "ColorPaletteBenchmark";
+
+    private static final int PIXELS = 2560 * 1600;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /** The exact mapping is slow, we measure it over a part of the pixels */
+    private static final int EXACT_PIXELS = PIXELS / 64;
+
+
+    /** Sink to prevent the JIT from dropping the work */
+    private static int sink;
+
+
+    @Test
+    public void tableAgainstExactMapping() {
+        final Random random = new Random(2560);
+        final int[] pixels = new int[PIXELS];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        final int[] counts = new int[ColorPalette.size()];
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            ColorPalette.histogram(pixels, 0, pixels.length, counts);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            ColorPalette.histogram(pixels, 0, pixels.length, counts);
+        }
+        final double tableNanos =
+                (double) (System.nanoTime() - start) / (MEASURED_ROUNDS * PIXELS);
+
+        int hash = 0;
+        for (int i = 0; i < EXACT_PIXELS; i++) {
+            hash += ColorPalette.nearestIndexExact(pixels[i]);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < EXACT_PIXELS; i++) {
+            hash += ColorPalette.nearestIndexExact(pixels[i]);
+        }
+        final double exactNanos = (double) (System.nanoTime() - start) / EXACT_PIXELS;
+        sink += hash + counts[0];
+
+        Log.i(TAG, "table: " + tableNanos + " ns/pixel, exact: " + exactNanos + " ns/pixel");
+    }
+}
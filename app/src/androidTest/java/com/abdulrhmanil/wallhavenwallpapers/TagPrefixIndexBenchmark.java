@@ -0,0 +1,86 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.TagPrefixIndex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Instrumented benchmark, measure the lookups of the top-k tags of short prefixes (like the user
+ * type them) in a {@link TagPrefixIndex TagPrefixIndex} of {@link #MANY_TAGS} tags, and report
+ * the average time of one lookup to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TagPrefixIndexBenchmark {
+
+    private static final String TAG = "TagPrefixIndexBenchmark";
+
+    private static final int MANY_TAGS = 300_000;
+    private static final int PREFIXES = 1_000;
+    private static final int TOP_K = 8;
+    private static final int MEASURED_ROUNDS = 10;
+
+
+    /** Sink to prevent the JIT from dropping the work */
+    private static int sink;
+
+
+    @Test
+    public void topOfShortPrefixes() {
+        final Random random = new Random(300);
+        final TagPrefixIndex index = new TagPrefixIndex().plus(randomTags(random, MANY_TAGS));
+        final String[] prefixes = new String[PREFIXES];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = randomWord(random, 1 + random.nextInt(3));
+        }
+
+        int found = 0;
+        /* Warm up */
+        for (String prefix : prefixes) {
+            found += index.topPositions(prefix, TOP_K).length;
+        }
+        final long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (String prefix : prefixes) {
+                found += index.topPositions(prefix, TOP_K).length;
+            }
+        }
+        final long perLookup = (System.nanoTime() - start) / (MEASURED_ROUNDS * PREFIXES);
+        sink += found;
+
+        Log.i(TAG, MANY_TAGS + " tags, " + index.memoryBytes() + " bytes, lookup: "
+                + perLookup + " ns");
+    }
+
+
+    /** Return random tags, one to three words, with random weights */
+    private static Map<String, Integer> randomTags(Random random, int count) {
+        final Map<String, Integer> counts = new HashMap<>();
+        while (counts.size() < count) {
+            final StringBuilder tag = new StringBuilder(randomWord(random, 3 + random.nextInt(6)));
+            final int words = random.nextInt(3);
+            for (int i = 0; i < words; i++) {
+                tag.append(' ').append(randomWord(random, 3 + random.nextInt(6)));
+            }
+            counts.put(tag.toString(), 1 + random.nextInt(1_000));
+        }
+        return counts;
+    }
+
+
+    /** Return a random word of lower case letters */
+    private static String randomWord(Random random, int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,183 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.support.constraint.ConstraintLayout;
+import android.support.constraint.ConstraintSet;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.CardView;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageButton;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbCellView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented benchmark, compare the frame time of one thumb cell: the flat
+ * {@link ThumbCellView ThumbCellView} against the old nested hierarchy
+ * (CardView - ConstraintLayout - ImageView, TextView, ImageButton).
+ * Every frame bind new data (image, resolution and download icon), then measure, layout and
+ * draw the cell into a bitmap, on the main thread, like the recycler view do on scroll.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbCellBenchmark {
+
+    private static final String TAG = "ThumbCellBenchmark";
+
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 2000;
+
+    private static final String[] RESOLUTIONS = {"1920 x 1080", "2560 x 1440", "3840 x 2160"};
+    private static final int[] ICONS = {
+            R.drawable.ic_circle_download, R.drawable.ic_circle_check
+    };
+
+
+    /** One cell that we bind, measure, layout and draw in every frame */
+    private interface Cell {
+        View view();
+        void bind(int frame);
+    }
+
+
+    @Test
+    public void flatCellIsNotSlowerThanNestedHierarchy() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final long[] nanos = new long[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            nanos[0] = framesNanos(nestedCell(context));
+            nanos[1] = framesNanos(flatCell(context));
+        });
+        final long nestedAvg = nanos[0] / MEASURED_FRAMES;
+        final long flatAvg = nanos[1] / MEASURED_FRAMES;
+        Log.i(TAG, "nested: " + nestedAvg + " ns/frame, flat: " + flatAvg + " ns/frame");
+        assertTrue("flat " + flatAvg + " ns > nested " + nestedAvg + " ns", flatAvg <= nestedAvg);
+    }
+
+
+    /**
+     * Run the frames of the cell, and return the time of the measured frames.
+     */
+    private static long framesNanos(Cell cell) {
+        final View view = cell.view();
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(widthSpec, heightSpec);
+        final Bitmap bitmap = Bitmap.createBitmap(Math.max(1, view.getMeasuredWidth()),
+                Math.max(1, view.getMeasuredHeight()), Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        long start = 0;
+        for (int frame = 0; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+            if (frame == WARMUP_FRAMES) {
+                start = System.nanoTime();
+            }
+            cell.bind(frame);
+            view.measure(widthSpec, heightSpec);
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+            view.draw(canvas);
+        }
+        final long elapsed = System.nanoTime() - start;
+        bitmap.recycle();
+        return elapsed;
+    }
+
+
+    private static Cell flatCell(Context context) {
+        final DisplayUtil.ThumbRes thumbRes = DisplayUtil.getThumbRes(context);
+        final ThumbCellView cell = new ThumbCellView(context);
+        cell.setBackgroundColor(Color.WHITE);
+        cell.setImageSize(thumbRes.widthPx, thumbRes.heightPx);
+        final ColorDrawable[] images = {
+                new ColorDrawable(Color.GRAY), new ColorDrawable(Color.DKGRAY)
+        };
+        return new Cell() {
+            @Override
+            public View view() {
+                return cell;
+            }
+
+            @Override
+            public void bind(int frame) {
+                cell.setImageDrawable(images[frame % images.length]);
+                cell.setLabel(RESOLUTIONS[frame % RESOLUTIONS.length]);
+                cell.setBadge(frame % 2 == 0
+                        ? ThumbCellView.BADGE_DOWNLOAD : ThumbCellView.BADGE_DOWNLOADED);
+            }
+        };
+    }
+
+
+    /**
+     * The old layout of the thumb item, built from the code (the test NOT include the old XML).
+     */
+    private static Cell nestedCell(Context context) {
+        final DisplayUtil.ThumbRes thumbRes = DisplayUtil.getThumbRes(context);
+        final float density = context.getResources().getDisplayMetrics().density;
+
+        final CardView card = new CardView(context);
+        card.setCardElevation(2 * density);
+        final ConstraintLayout layout = new ConstraintLayout(context);
+        card.addView(layout, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        final ImageView image = new ImageView(context);
+        image.setId(View.generateViewId());
+        final TextView txtRes = new TextView(context);
+        txtRes.setId(View.generateViewId());
+        txtRes.setTextSize(18);
+        final ImageButton button = new ImageButton(context);
+        button.setId(View.generateViewId());
+        button.setBackground(null);
+        layout.addView(image, new ConstraintLayout.LayoutParams(thumbRes.widthPx, thumbRes.heightPx));
+        layout.addView(txtRes, new ConstraintLayout.LayoutParams(0,
+                ConstraintLayout.LayoutParams.WRAP_CONTENT));
+        layout.addView(button, new ConstraintLayout.LayoutParams((int) (48 * density),
+                (int) (48 * density)));
+
+        final int margin = (int) (8 * density);
+        final ConstraintSet set = new ConstraintSet();
+        set.clone(layout);
+        set.connect(image.getId(), ConstraintSet.TOP, ConstraintSet.PARENT_ID, ConstraintSet.TOP);
+        set.connect(image.getId(), ConstraintSet.START, ConstraintSet.PARENT_ID, ConstraintSet.START);
+        set.connect(image.getId(), ConstraintSet.END, ConstraintSet.PARENT_ID, ConstraintSet.END);
+        set.connect(button.getId(), ConstraintSet.TOP, image.getId(), ConstraintSet.BOTTOM);
+        set.connect(button.getId(), ConstraintSet.END, ConstraintSet.PARENT_ID, ConstraintSet.END);
+        set.connect(button.getId(), ConstraintSet.BOTTOM, ConstraintSet.PARENT_ID,
+                ConstraintSet.BOTTOM);
+        set.connect(txtRes.getId(), ConstraintSet.START, ConstraintSet.PARENT_ID,
+                ConstraintSet.START, margin);
+        set.connect(txtRes.getId(), ConstraintSet.END, button.getId(), ConstraintSet.START, margin);
+        set.connect(txtRes.getId(), ConstraintSet.TOP, button.getId(), ConstraintSet.TOP);
+        set.connect(txtRes.getId(), ConstraintSet.BOTTOM, button.getId(), ConstraintSet.BOTTOM);
+        set.applyTo(layout);
+
+        final ColorDrawable[] images = {
+                new ColorDrawable(Color.GRAY), new ColorDrawable(Color.DKGRAY)
+        };
+        return new Cell() {
+            @Override
+            public View view() {
+                return card;
+            }
+
+            @Override
+            public void bind(int frame) {
+                image.setImageDrawable(images[frame % images.length]);
+                txtRes.setText(RESOLUTIONS[frame % RESOLUTIONS.length]);
+                button.setImageResource(ICONS[frame % ICONS.length]);
+            }
+        };
+    }
+}
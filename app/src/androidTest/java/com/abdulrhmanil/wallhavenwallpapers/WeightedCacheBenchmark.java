@@ -0,0 +1,169 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.ConcurrentWeightedCache;
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.OptimizedMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumented benchmark, compare the {@link ConcurrentWeightedCache ConcurrentWeightedCache}
+ * against the synchronized {@link OptimizedMap OptimizedMap} that the full photos cache used:
+ * {@link #THREADS} threads read and write skewed (Zipf) keys, 90% reads, and we report the
+ * throughput and the hit rate of both to the log.
+ * The throughput depends on the cores of the device, so we only report it, NOT assert it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightedCacheBenchmark {
+
+    private static final String TAG = "WeightedCacheBenchmark";
+
+    private static final int KEYS = 10_000;
+    private static final int CACHE_SIZE = 200;
+    private static final double ZIPF_SKEW = 0.9;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 1_000_000;
+    private static final int READ_PERCENT = 90;
+
+
+    /** The reads and the writes of a cache in the benchmark */
+    private interface CacheOps {
+
+        /** Read the key, return true if a hit */
+        boolean get(Integer key);
+
+        /** Write the key */
+        void put(Integer key);
+    }
+
+
+    @Test
+    public void weightedCacheAgainstSynchronizedOptimizedMap() throws InterruptedException {
+        final int[] trace = zipfTrace(new Random(8), 1 << 20);
+
+        final ConcurrentWeightedCache<Integer, Integer> cache =
+                new ConcurrentWeightedCache<>(CACHE_SIZE);
+        final Map<Integer, Integer> map =
+                Collections.synchronizedMap(new OptimizedMap<Integer, Integer>(CACHE_SIZE));
+        final CacheOps cacheOps = new CacheOps() {
+            @Override
+            public boolean get(Integer key) {
+                return cache.get(key) != null;
+            }
+
+            @Override
+            public void put(Integer key) {
+                cache.put(key, key);
+            }
+        };
+        final CacheOps mapOps = new CacheOps() {
+            @Override
+            public boolean get(Integer key) {
+                return map.get(key) != null;
+            }
+
+            @Override
+            public void put(Integer key) {
+                map.put(key, key);
+            }
+        };
+
+        /* Warm up both, then measure */
+        run(cacheOps, trace);
+        run(mapOps, trace);
+        final double[] cacheResult = run(cacheOps, trace);
+        final double[] mapResult = run(mapOps, trace);
+
+        Log.i(TAG, Runtime.getRuntime().availableProcessors() + " cores, "
+                + "ConcurrentWeightedCache: " + cacheResult[0] + " Mops/s, hit rate "
+                + cacheResult[1] + ", synchronized OptimizedMap: " + mapResult[0]
+                + " Mops/s, hit rate " + mapResult[1]);
+    }
+
+
+    /**
+     * Run the benchmark on the cache, fill the cache first, and then every thread start in other
+     * place of the trace, read 90% of the keys and write the others.
+     * @return the throughput in millions of operations per second, and the hit rate.
+     */
+    private static double[] run(final CacheOps ops, final int[] trace)
+            throws InterruptedException {
+        for (int i = 0; i < trace.length / 4; i++) {
+            ops.put(trace[i]);
+        }
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                int position = thread * (trace.length / THREADS);
+                long threadHits = 0;
+                long threadReads = 0;
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    final Integer key = trace[position];
+                    position = (position + 1) & (trace.length - 1);
+                    if (i % 100 < READ_PERCENT) {
+                        threadReads++;
+                        if (ops.get(key)) {
+                            threadHits++;
+                        }
+                    }
+                    else {
+                        ops.put(key);
+                    }
+                }
+                hits.addAndGet(threadHits);
+                reads.addAndGet(threadReads);
+            });
+            threads[t].start();
+        }
+        final long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return new double[] {
+                THREADS * (double) OPERATIONS_PER_THREAD / seconds / 1e6,
+                (double) hits.get() / reads.get()};
+    }
+
+
+    /** Return keys from 0 to {@link #KEYS} with Zipf distribution, the small keys are popular */
+    private static int[] zipfTrace(Random random, int length) {
+        final double[] cumulative = new double[KEYS];
+        double sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_SKEW);
+            cumulative[i] = sum;
+        }
+        final int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            /* Shuffle the popular keys over the hash codes */
+            trace[i] = (int) ((Math.min(index, KEYS - 1) * 0x9e3779b1L) & 0x7fffffff);
+        }
+        return trace;
+    }
+}
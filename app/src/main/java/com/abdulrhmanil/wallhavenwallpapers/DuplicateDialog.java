@@ -0,0 +1,62 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.content.Context;
+import android.support.v7.app.AlertDialog;
+import android.view.WindowManager;
+
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex.Duplicate;
+
+
+/**
+ * Dialog utility class that tell the user that we already have a local photo that look the same
+ * as the photo he want to save, and let him choose to skip the saving or save anyway.
+ * We show it from the photo screen and from the inline downloads of the thumbs, so both show
+ * the same (localized) message.
+ */
+public class DuplicateDialog {
+
+
+    /** Should NOT make instances, this class used only as utility methods */
+    private DuplicateDialog() {}
+
+
+    /**
+     * Return the message of the dialog, from the string resources.
+     * @param context a context.
+     * @param duplicate is the most similar local photo.
+     * @return the message that tell the user which local photo look the same.
+     */
+    public static String messageOf(Context context, Duplicate duplicate) {
+        return context.getString(duplicate.identical
+                ? R.string.duplicate_identical
+                : R.string.duplicate_similar, duplicate.photoId);
+    }
+
+
+    /**
+     * Show the dialog of the duplicate.
+     * @param context the context of the screen that show the dialog.
+     * @param duplicate is the most similar local photo.
+     * @param onSaveAnyway is called when the user choose to save anyway.
+     * @param onSkip is called when the user choose to skip the saving (or cancel the dialog).
+     * @return true if the dialog shown, false if the screen is gone (then we call NOT onSkip).
+     */
+    public static boolean show(Context context, Duplicate duplicate,
+                               final Runnable onSaveAnyway, final Runnable onSkip) {
+        try {
+            new AlertDialog.Builder(context)
+                    .setTitle(R.string.duplicate_found)
+                    .setMessage(messageOf(context, duplicate))
+                    .setPositiveButton(R.string.save_anyway, (dialog, which) ->
+                            onSaveAnyway.run())
+                    .setNegativeButton(R.string.skip_saving, (dialog, which) -> dialog.cancel())
+                    .setOnCancelListener(dialog -> onSkip.run())
+                    .create()
+                    .show();
+            return true;
+        }
+        catch (WindowManager.BadTokenException e) {
+            return false;
+        }
+    }
+}
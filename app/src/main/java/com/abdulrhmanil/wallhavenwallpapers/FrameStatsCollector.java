@@ -0,0 +1,489 @@
+package com.abdulrhmanil.wallhavenwallpapers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.WindowManager;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that measure the frame times of the screens, so we know where the scrolling drop
+ * frames (Toplist, Downloaded, the zoom pager...) and catch regressions.
+ * It's opt-in, disabled by default, enable it by start the main activity with the extra
+ * {@link GlobalConstant#KEY_EXTRA_RECORD_FRAME_STATS}, like:
+ * {@code adb shell am start -n com.abdulrhmanil.wallhavenwallpapers/.activities.MainActivity
+ * --ez recordFrameStats true}, the choice persisted until it's changed the same way.
+ *
+ * While a screen is resumed we post a {@link Choreographer.FrameCallback frame callback} in
+ * every frame, the time between two frames is the duration of the frame, and a frame is janky if
+ * it's longer than one and a half refresh periods (we missed at least one vsync).
+ * Every frame tagged by the current screen and by what was happening:
+ * {@link #CONTEXT_FLING fling}, {@link #CONTEXT_DECODE image decode} and
+ * {@link #CONTEXT_PAGE_ARRIVAL page arrival} (or none of them, idle).
+ * The durations counted in histograms of one millisecond buckets, so the callback NOT allocate,
+ * and when the screen paused we {@link #flush() flush} the percentiles and the janky counts to
+ * {@link #FILE_NAME a CSV file} in the external files folder of the application, pull it with
+ * {@code adb pull /sdcard/Android/data/com.abdulrhmanil.wallhavenwallpapers/files/frame_stats.csv}.
+ *
+ * All the methods must be called on the main thread.
+ */
+final public class FrameStatsCollector implements Choreographer.FrameCallback {
+
+
+    /** The frames while a list fling (settle after the finger lifted) */
+    public static final int CONTEXT_FLING = 1;
+
+    /** The frames shortly after an image decoded (NOT from the memory cache) and shown */
+    public static final int CONTEXT_DECODE = 1 << 1;
+
+    /** The frames shortly after a page of photos arrived and submitted to a list */
+    public static final int CONTEXT_PAGE_ARRIVAL = 1 << 2;
+
+    /** The number of the contexts combinations, every combination has his own stats */
+    private static final int CONTEXTS = 1 << 3;
+
+    /** The names of the contexts, by their bit */
+    private static final String[] CONTEXT_NAMES = {"fling", "decode", "page"};
+
+
+    /** The time that a frame tagged by an event (decode, page arrival) after it happened */
+    private static final long EVENT_WINDOW_NANOS = 250_000_000L;
+
+    /** A longer duration is a pause (like the screen was hidden), NOT a frame */
+    private static final long MAX_FRAME_NANOS = 1_000_000_000L;
+
+    /** The number of the one millisecond buckets, the last bucket count the longer frames */
+    private static final int BUCKETS = 128;
+
+    /** The name of the stats file in the external files folder */
+    public static final String FILE_NAME = "frame_stats.csv";
+
+    /** The header of the stats file */
+    private static final String FILE_HEADER =
+            "time,screen,context,frames,janky,p50_ms,p90_ms,p95_ms,p99_ms,max_ms\n";
+
+    /** The name of the preferences file */
+    private static final String PREFS_NAME = "frame_stats";
+
+    /** The key of the enabled flag in the preferences */
+    private static final String KEY_ENABLED = "enabled";
+
+    /** The screen of the frames before any screen set */
+    private static final String UNKNOWN_SCREEN = "Unknown";
+
+    /** Tag for the log */
+    private static final String TAG = "FrameStatsCollector";
+
+
+    /** Write the stats file on one background thread, in the order of the flushes */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the files folder */
+    private static FrameStatsCollector ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static FrameStatsCollector getInstance(@NonNull Context context) {
+        if (ourInstance == null) {
+            ourInstance = new FrameStatsCollector(context.getApplicationContext());
+        }
+        return ourInstance;
+    }
+
+
+
+    /**
+     * The stats of the frames of one screen in one context.
+     */
+    private static final class Stats {
+
+        /** The count of the frames by their duration in milliseconds */
+        final int[] histogram = new int[BUCKETS];
+
+        /** The number of the frames */
+        int frames;
+
+        /** The number of the janky frames */
+        int janky;
+
+        /** The longest frame in nanoseconds */
+        long maxNanos;
+
+
+        /**
+         * Return the duration that the gaven fraction of the frames are NOT longer than it.
+         * @param fraction is the percentile as fraction, like 0.9 for p90.
+         * @return the duration in milliseconds, the last bucket mean this or longer.
+         */
+        int percentile(double fraction) {
+            final int rank = (int) Math.ceil(fraction * frames);
+            int count = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                count += histogram[bucket];
+                if (count >= rank) {
+                    return bucket;
+                }
+            }
+            return BUCKETS - 1;
+        }
+    }
+
+
+
+    /** The preferences that hold the enabled flag */
+    private final SharedPreferences preferences;
+
+    /** The folder of the stats file */
+    private final File folder;
+
+    /** Janky frame is longer than this, one and a half refresh periods */
+    private final long jankNanos;
+
+    /** The stats of the screens since the last flush, by the screen and then by the context */
+    private final Map<String, Stats[]> stats = new LinkedHashMap<>();
+
+    /** The time of the last event of every context, by the bit of the context */
+    private final long[] eventTimes = new long[CONTEXT_NAMES.length];
+
+    /** The listener that mark the images decodes, set it on the Glide requests */
+    private final RequestListener<Drawable> decodeListener = new RequestListener<Drawable>() {
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                    Target<Drawable> target, boolean isFirstResource) {
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            if (dataSource != DataSource.MEMORY_CACHE) {
+                markEvent(CONTEXT_DECODE);
+            }
+            return false;
+        }
+    };
+
+    /** The listener that follow the flings of the lists */
+    private final RecyclerView.OnScrollListener flingListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            flinging = newState == RecyclerView.SCROLL_STATE_SETTLING;
+        }
+    };
+
+    /** True if we measure the frames */
+    private boolean enabled;
+
+    /** True if the frame callback is posted */
+    private boolean running;
+
+    /** The current screen */
+    private String screen = UNKNOWN_SCREEN;
+
+    /** The stats of the current screen, by the context */
+    private Stats[] screenStats;
+
+    /** The time of the last frame, 0 if NO frame yet since we started */
+    private long lastFrameNanos;
+
+    /** True if a list fling now */
+    private boolean flinging;
+
+
+
+    /**
+     * private constructor to init the singleton instance, read the enabled flag and the refresh
+     * rate of the display.
+     * @param context the application context.
+     */
+    private FrameStatsCollector(Context context) {
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.enabled = preferences.getBoolean(KEY_ENABLED, false);
+        final File externalFolder = context.getExternalFilesDir(null);
+        this.folder = externalFolder != null ? externalFolder : context.getFilesDir();
+        float refreshRate = 60f;
+        final WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager != null) {
+            final Display display = windowManager.getDefaultDisplay();
+            if (display.getRefreshRate() > 0) {
+                refreshRate = display.getRefreshRate();
+            }
+        }
+        this.jankNanos = (long) (1_500_000_000L / refreshRate);
+        this.screenStats = statsOf(screen);
+    }
+
+
+
+    /**
+     * Enable or disable the measuring, the choice persisted.
+     * @param enabled true to measure the frames of the resumed screens.
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        preferences.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        if (!enabled) {
+            stop();
+            stats.clear();
+            screenStats = statsOf(screen);
+        }
+    }
+
+
+    /**
+     * Check if we measure the frames.
+     * @return true if the measuring enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+
+    /**
+     * Set the screen that the next frames belong to it.
+     * @param newScreen is the name of the screen.
+     * @return the previous screen, so a screen that shown over other screen can restore it.
+     */
+    @NonNull
+    public String setScreen(@NonNull String newScreen) {
+        final String previous = screen;
+        if (!newScreen.equals(screen)) {
+            screen = newScreen;
+            screenStats = statsOf(newScreen);
+            /* The frame of the switch belong to no screen */
+            lastFrameNanos = 0;
+        }
+        return previous;
+    }
+
+
+    /**
+     * Return the stats of the gaven screen, create them in the first time.
+     * @param forScreen is the name of the screen.
+     * @return the stats of the screen by the context.
+     */
+    private Stats[] statsOf(String forScreen) {
+        Stats[] result = stats.get(forScreen);
+        if (result == null) {
+            result = new Stats[CONTEXTS];
+            stats.put(forScreen, result);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Start to measure the frames (if enabled), call it when the screen resumed.
+     */
+    public void start() {
+        if (enabled && !running) {
+            running = true;
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+
+    /**
+     * Stop to measure the frames, call it when the screen paused, and then {@link #flush()}.
+     */
+    public void stop() {
+        if (running) {
+            running = false;
+            flinging = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+
+
+    /**
+     * Mark that an event happened now, the frames in the next {@link #EVENT_WINDOW_NANOS}
+     * tagged by it.
+     * @param context is {@link #CONTEXT_DECODE} or {@link #CONTEXT_PAGE_ARRIVAL}.
+     */
+    public void markEvent(int context) {
+        eventTimes[Integer.numberOfTrailingZeros(context)] = System.nanoTime();
+    }
+
+
+    /**
+     * Follow the flings of the list, the frames while it fling tagged by {@link #CONTEXT_FLING}.
+     * @param recyclerView is the list.
+     */
+    public void trackFlings(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(flingListener);
+        recyclerView.addOnScrollListener(flingListener);
+    }
+
+
+    /**
+     * Return the listener that mark the images decodes, set it on the Glide requests of the
+     * images, it's one object, so set it allocate nothing.
+     * @return the listener.
+     */
+    @NonNull
+    public RequestListener<Drawable> getDecodeListener() {
+        return decodeListener;
+    }
+
+
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+        final long last = lastFrameNanos;
+        lastFrameNanos = frameTimeNanos;
+        if (last == 0) {
+            return;
+        }
+        final long duration = frameTimeNanos - last;
+        if (duration <= 0 || duration > MAX_FRAME_NANOS) {
+            return;
+        }
+        final int context = currentContext(frameTimeNanos);
+        Stats frameStats = screenStats[context];
+        if (frameStats == null) {
+            frameStats = new Stats();
+            screenStats[context] = frameStats;
+        }
+        frameStats.frames++;
+        frameStats.histogram[(int) Math.min(BUCKETS - 1, duration / 1_000_000L)]++;
+        if (duration > jankNanos) {
+            frameStats.janky++;
+        }
+        if (duration > frameStats.maxNanos) {
+            frameStats.maxNanos = duration;
+        }
+    }
+
+
+    /**
+     * Return the context of the frame, what was happening while it drawn.
+     * The frame time and the events times are in the same clock ({@link System#nanoTime()}).
+     * @param frameTimeNanos is the time of the frame.
+     * @return the bits of the contexts.
+     */
+    private int currentContext(long frameTimeNanos) {
+        int context = flinging ? CONTEXT_FLING : 0;
+        for (int bit = 1; bit < CONTEXT_NAMES.length; bit++) {
+            final long eventTime = eventTimes[bit];
+            if (eventTime != 0 && frameTimeNanos - eventTime < EVENT_WINDOW_NANOS) {
+                context |= 1 << bit;
+            }
+        }
+        return context;
+    }
+
+
+
+    /**
+     * Append the stats since the last flush to the stats file (in the background), and reset
+     * them, call it when the screen paused.
+     */
+    public void flush() {
+        if (stats.isEmpty()) {
+            return;
+        }
+        final String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US)
+                .format(new Date());
+        final StringBuilder rows = new StringBuilder();
+        for (Map.Entry<String, Stats[]> entry : stats.entrySet()) {
+            final Stats[] byContext = entry.getValue();
+            for (int context = 0; context < CONTEXTS; context++) {
+                final Stats s = byContext[context];
+                if (s == null || s.frames == 0) {
+                    continue;
+                }
+                rows.append(time).append(',')
+                        .append(entry.getKey()).append(',')
+                        .append(contextName(context)).append(',')
+                        .append(s.frames).append(',')
+                        .append(s.janky).append(',')
+                        .append(s.percentile(0.50)).append(',')
+                        .append(s.percentile(0.90)).append(',')
+                        .append(s.percentile(0.95)).append(',')
+                        .append(s.percentile(0.99)).append(',')
+                        .append(s.maxNanos / 1_000_000L).append('\n');
+            }
+        }
+        stats.clear();
+        screenStats = statsOf(screen);
+        if (rows.length() == 0) {
+            return;
+        }
+        final File file = new File(folder, FILE_NAME);
+        service.submit(() -> {
+            final boolean newFile = !file.exists();
+            try (Writer writer = new FileWriter(file, true)) {
+                if (newFile) {
+                    writer.write(FILE_HEADER);
+                }
+                writer.write(rows.toString());
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Can't write the frame stats", e);
+            }
+        });
+    }
+
+
+    /**
+     * Return the name of the context, the names of his bits joined by '+', or "idle".
+     * @param context is the bits of the context.
+     * @return the name of the context.
+     */
+    static String contextName(int context) {
+        if (context == 0) {
+            return "idle";
+        }
+        final StringBuilder name = new StringBuilder();
+        for (int bit = 0; bit < CONTEXT_NAMES.length; bit++) {
+            if ((context & (1 << bit)) != 0) {
+                if (name.length() > 0) {
+                    name.append('+');
+                }
+                name.append(CONTEXT_NAMES[bit]);
+            }
+        }
+        return name.toString();
+    }
+}
@@ -22,6 +22,14 @@ public final class GlobalConstant {
     /** EXTRA key, we use it when create intent or Bundle*/
     public static final String KEY_EXTRA_CURRENT_POSITION = "currentPosition";
 
+    /** EXTRA key of the main activity, true to record the frame stats, false to stop recording,
+     * see {@link FrameStatsCollector FrameStatsCollector}*/
+    public static final String KEY_EXTRA_RECORD_FRAME_STATS = "recordFrameStats";
+
+    /** EXTRA key of the main activity, the key of a query to search in the search tab,
+     * see {@link com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery#getKey()}*/
+    public static final String KEY_EXTRA_SEARCH_QUERY = "searchQuery";
+
     /** The default quality for saving images, 100 is the max quality, NO compressing*/
     public static final int MAX_QUALITY = 100;
 
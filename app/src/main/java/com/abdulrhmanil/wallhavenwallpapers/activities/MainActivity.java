@@ -2,9 +2,8 @@ package com.abdulrhmanil.wallhavenwallpapers.activities;
 
 import android.Manifest;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.ActivityCompat;
@@ -14,18 +13,34 @@ import android.support.v4.view.ViewPager.OnPageChangeListener;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.ConnectivityMonitor;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.FullPhotoDiskCache;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalMetadataIndex;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalThumbnailStore;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.SearchResultCache;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.StorageQuotaManager;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.TagSuggestions;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.DownloadedFragment;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.ScrollZoomedPhotosFragment;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.SearchFragment;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.ScrollZoomedPhotosFragment.OnScrollZoomedPhotosListener;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ListFragmentPagerAdapter;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.LocalThumbnailLoader;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.SharedThumbViews;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnPressSelectedTap;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSelectPage;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
 import com.aurelhubert.ahbottomnavigation.AHBottomNavigation;
 import com.aurelhubert.ahbottomnavigation.AHBottomNavigation.OnTabSelectedListener;
 import com.aurelhubert.ahbottomnavigation.AHBottomNavigationAdapter;
 import com.aurelhubert.ahbottomnavigation.AHBottomNavigationViewPager;
 
+import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.KEY_EXTRA_RECORD_FRAME_STATS;
+import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.KEY_EXTRA_SEARCH_QUERY;
+
 /**
  * {@link MainActivity} is the start point of the app, here we build our fragments (4 fragments),
  * and {@link ListFragmentPagerAdapter fragment pager adapter} with
@@ -62,23 +77,123 @@ public class MainActivity extends AppCompatActivity
     private AHBottomNavigationViewPager viewPager;
 
 
+    /** A singleton that follow the connectivity state, so we don't ask the system on every page */
+    private ConnectivityMonitor connectivityMonitor;
+
+
+    /** A singleton that measure the frame times of the tabs, if the recording enabled */
+    private FrameStatsCollector frameStats;
+
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        connectivityMonitor = ConnectivityMonitor.getInstance(this);
+        frameStats = FrameStatsCollector.getInstance(this);
+        if (getIntent().hasExtra(KEY_EXTRA_RECORD_FRAME_STATS)) {
+            frameStats.setEnabled(getIntent().getBooleanExtra(KEY_EXTRA_RECORD_FRAME_STATS, false));
+        }
+        /* Inflate a screenful of thumbs in the background, before the tabs need them */
+        SharedThumbViews.of(this).preInflate(R.layout.thumb_photo_item);
         setContentView(R.layout.activity_main);
         setUI();
+        /* Open the thumbnails store (and let Glide load the thumbnails from it), the duplicates
+         * index and the metadata index early, so the saved photos get their thumbnails, hashes
+         * and tags at save time, and start the storage quota maintenance */
+        LocalThumbnailStore.getInstance(this);
+        LocalThumbnailLoader.register(this);
+        DuplicatesIndex.getInstance(this);
+        LocalMetadataIndex.getInstance(this);
+        StorageQuotaManager.getInstance(this);
+        /* Open the search cache, the search tab take the recent pages from it,
+         * the tags index, that harvest the tags of the full photos for the autocomplete,
+         * and the disk tier of the full photos, that keep the photos evicted from the memory */
+        SearchResultCache.getInstance(this);
+        TagSuggestions.getInstance(this);
+        FullPhotoDiskCache.getInstance(this);
+        handleSearchIntent(getIntent());
+    }
+
+
+    /**
+     * Create an intent that bring the main activity to the front (the activities above it are
+     * closed) and search the query in the search tab, like a search by the color of a photo.
+     * @param context the context that start the activity.
+     * @param query is the query to search.
+     * @return a new intent, start it with {@code startActivity}.
+     */
+    public static Intent newSearchIntent(Context context, SearchQuery query) {
+        final Intent intent = new Intent(context, MainActivity.class);
+        intent.putExtra(KEY_EXTRA_SEARCH_QUERY, query.getKey());
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        return intent;
+    }
+
+
+    /** The main activity already exist, handle the search of the new intent */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        handleSearchIntent(intent);
+    }
+
+
+    /**
+     * If the intent has a query, move to the search tab and search it, and remove the query from
+     * the intent, so we don't search it again after the activity recreated.
+     * @param intent is the intent of the activity.
+     */
+    private void handleSearchIntent(Intent intent) {
+        final String queryKey = intent.getStringExtra(KEY_EXTRA_SEARCH_QUERY);
+        if (queryKey == null) {
+            return;
+        }
+        intent.removeExtra(KEY_EXTRA_SEARCH_QUERY);
+        viewPager.setCurrentItem(ListFragmentPagerAdapter.SEARCH_POSITION, true);
+        ((SearchFragment) pagerAdapter.getItem(ListFragmentPagerAdapter.SEARCH_POSITION))
+                .search(SearchQuery.fromQueryString(queryKey));
+    }
+
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SharedThumbViews.release(this);
     }
 
 
     @Override
     protected void onResume() {
         super.onResume();
+        frameStats.setScreen(screenName(viewPager.getCurrentItem()));
+        frameStats.start();
         if (viewPager.getCurrentItem() == DEFAULT_PAGE) {
             pageChangeListener.onPageSelected(DEFAULT_PAGE);
         }
     }
 
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        frameStats.stop();
+        frameStats.flush();
+        TagSuggestions.getInstance(this).flush();
+        StorageQuotaManager.getInstance(this).flush();
+    }
+
+
+    /**
+     * Return the name of the page, that we tag the frame stats by it.
+     * @param position is the position of the page.
+     * @return the name of the page.
+     */
+    private String screenName(int position) {
+        return pagerAdapter.getItem(position).getClass().getSimpleName();
+    }
+
+
     /**
      * Here we set everything, find views set navigation, pages, listeners, and
      * request storage Permission. we call this method in {@link #onCreate(Bundle) onCreate method}.
@@ -155,10 +270,7 @@ public class MainActivity extends AppCompatActivity
      * @return true if we are connected or connecting to internet right now, false otherwise.
      */
     private boolean isOnline() {
-        final ConnectivityManager cm =
-                (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        final NetworkInfo netInfo = cm != null ? cm.getActiveNetworkInfo() : null;
-        return netInfo != null && netInfo.isConnectedOrConnecting();
+        return connectivityMonitor.isConnected();
     }
 
 
@@ -218,6 +330,7 @@ public class MainActivity extends AppCompatActivity
         @Override
         public void onPageSelected(int position) {
             bottomNavigation.setCurrentItem(position,false);
+            frameStats.setScreen(screenName(position));
             ((OnSelectPage)pagerAdapter.getItem(position)).notifyStatusChanges();
             alterIfNotConnected();
         }
@@ -16,20 +16,25 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.abdulrhmanil.wallhavenwallpapers.DuplicateDialog;
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex.Duplicate;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.FullPhotoDiskCache;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.PhotoCacheDataSource.OnImageFileSavedListener;
-import com.abdulrhmanil.wallhavenwallpapers.datastructures.OptimizedMap;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.StorageQuotaManager;
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.ConcurrentWeightedCache;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.Tag;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static android.support.v4.content.FileProvider.getUriForFile;
 import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.AUTHORITY;
@@ -58,27 +63,37 @@ public class ShowPhotoActivity extends AppCompatActivity
 
 
     /**
-     * The max size num of the photos that we keep cached in the memory.
+     * The max bytes of the photos that we keep cached in the memory, a quarter of the heap.
+     * to get good experience and NOT to fill the ram.
      */
-    private static final int maxSize = 10;
+    private static final long maxBytes = Runtime.getRuntime().maxMemory() / 4;
 
 
     /**
-     * Map that hold the ids of the photos as a keys, and the cached photos as a values.
-     * we define the max size of this map to be 32. to get good experience and NOT to fill the ram.
-     * Notice: that this map is synchronized map and her type is {@link OptimizedMap OptimizedMap},
-     * our customized map.
+     * Cache that hold the ids of the photos as a keys, and the cached photos as a values,
+     * every photo weigh the bytes of his pixels, so a few big photos or many small photos.
+     * The evicted photos demoted to the disk tier ({@link FullPhotoDiskCache FullPhotoDiskCache}),
+     * so we view them again without the internet.
+     * Notice: that this cache is safe to use from many threads, without synchronization, and
+     * his type is {@link ConcurrentWeightedCache ConcurrentWeightedCache}, our customized cache.
      */
-    private static final Map<String,PhotoCache> fullPhotosCaching =
-            Collections.synchronizedMap(new OptimizedMap<String,PhotoCache>(maxSize));
+    private static final ConcurrentWeightedCache<String,PhotoCache> fullPhotosCaching =
+            new ConcurrentWeightedCache<>(maxBytes,
+                    (photoId, photoCache) -> photoCache.getByteCount(),
+                    (photoId, photoCache) -> {
+                        final FullPhotoDiskCache diskCache = FullPhotoDiskCache.peekInstance();
+                        if (diskCache != null) {
+                            diskCache.demote(photoCache);
+                        }
+                    });
 
 
     /**
      * Static method to get {@link #fullPhotosCaching fullPhotosCaching} in other classes.
-     * @return the cached photos, a map that hold the ids of the photos as a keys, and the
+     * @return the cached photos, a cache that hold the ids of the photos as a keys, and the
      * cached photos as a values.
      */
-    public static Map<String, PhotoCache> getFullPhotosCaching() {
+    public static ConcurrentWeightedCache<String, PhotoCache> getFullPhotosCaching() {
         return fullPhotosCaching;
     }
 
@@ -155,8 +170,8 @@ public class ShowPhotoActivity extends AppCompatActivity
      *                       while loading and cache the full photo.
      */
     private void loadPhotoCache(final String photoId, final String thumbPhotoLink) {
-        if (fullPhotosCaching.containsKey(photoId)) {
-            final PhotoCache photoCache = fullPhotosCaching.get(photoId);
+        final PhotoCache photoCache = fullPhotosCaching.get(photoId);
+        if (photoCache != null) {
             setUI(photoCache);
         }
         else {
@@ -200,6 +215,7 @@ public class ShowPhotoActivity extends AppCompatActivity
         progressBar.setVisibility(View.GONE);
         Glide.with(this)
                 .load(photoCache.getDrawableCache())
+                .listener(FrameStatsCollector.getInstance(this).getDecodeListener())
                 .transition(DrawableTransitionOptions.withCrossFade())
                 .into(imageFull);
     }
@@ -301,16 +317,29 @@ public class ShowPhotoActivity extends AppCompatActivity
 
     /**
      * Add the color buttons (5 buttons), thus colors is the dominants color in the photo.
+     * Pressing a color search the photos of the website with the nearest search color.
      * @param photoCache is an instance that hold all the info of the cached photo so we can
      *                   display it to the user.
      */
     private void setUI_ColorButtons(final PhotoCache photoCache) {
         List<PhotoColor> colors = photoCache.getColors();
-        btnColor_0.setBackgroundColor(Color.parseColor(colors.get(0).getColor()));
-        btnColor_1.setBackgroundColor(Color.parseColor(colors.get(1).getColor()));
-        btnColor_2.setBackgroundColor(Color.parseColor(colors.get(2).getColor()));
-        btnColor_3.setBackgroundColor(Color.parseColor(colors.get(3).getColor()));
-        btnColor_4.setBackgroundColor(Color.parseColor(colors.get(4).getColor()));
+        final Button[] colorButtons = {btnColor_0, btnColor_1, btnColor_2, btnColor_3, btnColor_4};
+        for (int i = 0; i < colorButtons.length && i < colors.size(); i++) {
+            final PhotoColor color = colors.get(i);
+            colorButtons[i].setBackgroundColor(color.getArgb());
+            colorButtons[i].setOnClickListener(v -> searchColor(color));
+        }
+    }
+
+
+    /**
+     * Search the photos of the website with the nearest search color to the gaven color,
+     * in the search tab of the main activity.
+     * @param color is the color, any color.
+     */
+    private void searchColor(final PhotoColor color) {
+        startActivity(MainActivity.newSearchIntent(this,
+                SearchQuery.search(null).withColor(color.toPalette())));
     }
 
 
@@ -352,10 +381,35 @@ public class ShowPhotoActivity extends AppCompatActivity
      *                   display it to the user.
      */
     private void savePhoto(final PhotoCache photoCache) {
-        if (!photoCache.fileExists()) {
-            setUI_ShowSavingBar();
+        if (photoCache.fileExists()) {
+            saveImageFile(photoCache,DEFAULT_PATH, MAX_QUALITY,savePhotoListener);
+            return;
+        }
+        setUI_ShowSavingBar();
+        DuplicatesIndex.getInstance(this).findDuplicates(photoCache, this, duplicates -> {
+            if (duplicates.isEmpty()) {
+                saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, savePhotoListener);
+            }
+            else {
+                showDuplicateDialog(photoCache, duplicates.get(0));
+            }
+        });
+    }
+
+
+    /**
+     * Show a dialog that tell the user that we already have a local photo that look the same as
+     * this photo, and let him choose to skip the saving or save anyway.
+     * @param photoCache photoCache is an instance that hold all the info of the cached photo.
+     * @param duplicate is the most similar local photo.
+     */
+    private void showDuplicateDialog(final PhotoCache photoCache, final Duplicate duplicate) {
+        if (this.isDestroyed()) {
+            return;
         }
-        saveImageFile(photoCache,DEFAULT_PATH, MAX_QUALITY,savePhotoListener);
+        DuplicateDialog.show(this, duplicate,
+                () -> saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, savePhotoListener),
+                this::setUI_ResetSaveButton);
     }
 
 
@@ -415,6 +469,7 @@ public class ShowPhotoActivity extends AppCompatActivity
             Uri uri = getUriForFile(this, AUTHORITY, photoCache.getFile());
             WallpaperManager wallpaperMgr = WallpaperManager.getInstance(this);
             startActivity(wallpaperMgr.getCropAndSetWallpaperIntent(uri));
+            StorageQuotaManager.getInstance(this).markSetAsWallpaper(photoCache.getPhotoId());
         }
         catch (IllegalArgumentException e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -441,6 +496,9 @@ public class ShowPhotoActivity extends AppCompatActivity
         super.onResume();
         isInFront=true;
         imageFull.setEnabled(true);
+        final FrameStatsCollector frameStats = FrameStatsCollector.getInstance(this);
+        frameStats.setScreen(ShowPhotoActivity.class.getSimpleName());
+        frameStats.start();
     }
 
 
@@ -448,6 +506,10 @@ public class ShowPhotoActivity extends AppCompatActivity
     protected void onPause() {
         super.onPause();
         isInFront=false;
+        final FrameStatsCollector frameStats = FrameStatsCollector.getInstance(this);
+        frameStats.stop();
+        frameStats.flush();
+        StorageQuotaManager.getInstance(this).flush();
     }
 
 
@@ -0,0 +1,352 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.ConnectivityManager.NetworkCallback;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * A Singleton that follow the connectivity state of the device, fed by the network callbacks of
+ * the {@link ConnectivityManager ConnectivityManager}, so nobody need to ask the system service
+ * (an IPC call) on the UI thread, like on every bind of a thumb photo or every page change.
+ *
+ * The state (connected, metered and the estimated bandwidth) published as one immutable
+ * {@link State State} object in a volatile field, so any thread read it with one volatile load.
+ * We read the state from the system service only in the network callbacks, that run on a
+ * background thread of the system, and then notify the listeners on the main thread, only when
+ * the state changed.
+ *
+ * The fetch policy react to the changes, the work that need the internet (like loading the next
+ * page of thumb photos) queued with {@link #runWhenOnline(Runnable) runWhenOnline} while we are
+ * offline, and run once we are back online.
+ */
+final public class ConnectivityMonitor {
+
+
+    /**
+     * To follow the connectivity changes, you must implement this interface and add the listener
+     * with {@link #addOnConnectivityChangedListener(OnConnectivityChangedListener)
+     * addOnConnectivityChangedListener}.
+     */
+    public interface OnConnectivityChangedListener {
+
+        /**
+         * Called on the main thread after every change in the connectivity state.
+         * @param state is the new state.
+         */
+        void onConnectivityChanged(@NonNull State state);
+    }
+
+
+    /**
+     * Immutable object that hold the connectivity state in one moment.
+     */
+    public static final class State {
+
+        /** The state when we don't have any network */
+        static final State OFFLINE = new State(false, false, UNKNOWN_BANDWIDTH);
+
+        /** True if we are connected or connecting to the internet */
+        public final boolean connected;
+
+        /** True if the network is metered (like mobile data), we should save the traffic */
+        public final boolean metered;
+
+        /** The estimated downstream bandwidth in Kbps, or {@link #UNKNOWN_BANDWIDTH} */
+        public final int bandwidthKbps;
+
+
+        /**
+         * Constructor to create and init the state.
+         * @param connected true if we are connected or connecting to the internet.
+         * @param metered true if the network is metered.
+         * @param bandwidthKbps the estimated downstream bandwidth in Kbps.
+         */
+        State(boolean connected, boolean metered, int bandwidthKbps) {
+            this.connected = connected;
+            this.metered = metered;
+            this.bandwidthKbps = bandwidthKbps;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof State)) {
+                return false;
+            }
+            final State state = (State) o;
+            return connected == state.connected
+                    && metered == state.metered
+                    && bandwidthKbps == state.bandwidthKbps;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return ((connected ? 1 : 0) * 31 + (metered ? 1 : 0)) * 31 + bandwidthKbps;
+        }
+
+
+        @Override
+        public String toString() {
+            return "State{connected=" + connected + ", metered=" + metered
+                    + ", bandwidthKbps=" + bandwidthKbps + '}';
+        }
+    }
+
+
+    /** The bandwidth when the system NOT estimate it (old devices) */
+    public static final int UNKNOWN_BANDWIDTH = -1;
+
+
+    /** Lazy initialization for the Singleton, we need a context to get the system service */
+    private static volatile ConnectivityMonitor ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static ConnectivityMonitor getInstance(@NonNull Context context) {
+        ConnectivityMonitor instance = ourInstance;
+        if (instance == null) {
+            synchronized (ConnectivityMonitor.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new ConnectivityMonitor(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, the data sources that don't have
+     * a context use it.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static ConnectivityMonitor peekInstance() {
+        return ourInstance;
+    }
+
+
+    /** Handler of the main thread, we notify the listeners and run the queued work on it */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** The system service, we call it only on the callbacks threads (and once in constructor) */
+    private final ConnectivityManager connectivityManager;
+
+    /** The listeners that we notify after every change */
+    private final List<OnConnectivityChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** The work that wait to be back online, guarded by this monitor, without repeats */
+    private final Set<Runnable> pendingWork = new LinkedHashSet<>();
+
+    /** The current state, read it with one volatile load */
+    private volatile State state;
+
+
+
+    /**
+     * private constructor to init the singleton instance, read the first state and register the
+     * network callback, we never unregister it, the monitor live as long as the process.
+     * @param context the application context.
+     */
+    private ConnectivityMonitor(Context context) {
+        this.connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.state = readState();
+        if (connectivityManager != null) {
+            final NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            connectivityManager.registerNetworkCallback(request, new NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    updateState();
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    updateState();
+                }
+
+                @Override
+                public void onCapabilitiesChanged(Network network,
+                                                  NetworkCapabilities networkCapabilities) {
+                    updateState();
+                }
+            });
+        }
+    }
+
+
+
+    /**
+     * Return the current connectivity state.
+     * @return the current state, never {@code null}.
+     */
+    @NonNull
+    public State getState() {
+        return state;
+    }
+
+
+    /**
+     * Check if we are connected or connecting to the internet.
+     * @return true if we are connected or connecting, false otherwise.
+     */
+    public boolean isConnected() {
+        return state.connected;
+    }
+
+
+    /**
+     * Check if the network is metered (like mobile data).
+     * @return true if the network is metered, false otherwise (or offline).
+     */
+    public boolean isMetered() {
+        return state.metered;
+    }
+
+
+    /**
+     * Return the estimated downstream bandwidth of the network.
+     * @return the bandwidth in Kbps, or {@link #UNKNOWN_BANDWIDTH} if unknown.
+     */
+    public int getBandwidthKbps() {
+        return state.bandwidthKbps;
+    }
+
+
+
+    /**
+     * Add a listener that notified on the main thread after every change in the state.
+     * @param listener is the listener.
+     */
+    public void addOnConnectivityChangedListener(@NonNull OnConnectivityChangedListener listener) {
+        listeners.add(listener);
+    }
+
+
+    /**
+     * Remove a listener that added before.
+     * @param listener is the listener.
+     */
+    public void removeOnConnectivityChangedListener(
+            @NonNull OnConnectivityChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+
+
+    /**
+     * Run the work on the main thread now if we are online, otherwise queue it and run it once
+     * we are back online. The same work (the same object) queued only once.
+     * @param work is the work that need the internet.
+     * @return true if we run the work now, false if we queued it.
+     */
+    public boolean runWhenOnline(@NonNull Runnable work) {
+        if (state.connected) {
+            work.run();
+            return true;
+        }
+        synchronized (this) {
+            pendingWork.add(work);
+        }
+        return false;
+    }
+
+
+    /**
+     * Remove the work from the queue, if it's still waiting.
+     * @param work is the work that queued before.
+     */
+    public synchronized void cancelPending(@NonNull Runnable work) {
+        pendingWork.remove(work);
+    }
+
+
+
+    /**
+     * Read the state again from the system service, and if it changed publish it and notify the
+     * listeners on the main thread, and when we are back online run the queued work.
+     * Called on the callbacks thread.
+     */
+    private void updateState() {
+        final State newState = readState();
+        if (newState.equals(state)) {
+            return;
+        }
+        state = newState;
+        mainHandler.post(() -> {
+            if (state != newState) {
+                /* A newer state published, his notification will come */
+                return;
+            }
+            for (OnConnectivityChangedListener listener : listeners) {
+                listener.onConnectivityChanged(newState);
+            }
+            if (newState.connected) {
+                final List<Runnable> work;
+                synchronized (ConnectivityMonitor.this) {
+                    work = new ArrayList<>(pendingWork);
+                    pendingWork.clear();
+                }
+                for (Runnable runnable : work) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+
+
+    /**
+     * Read the connectivity state from the system service, it's an IPC call, so NEVER call this
+     * method on the main thread, except once in the constructor.
+     * @return the current state.
+     */
+    private State readState() {
+        if (connectivityManager == null) {
+            return State.OFFLINE;
+        }
+        final NetworkInfo netInfo = connectivityManager.getActiveNetworkInfo();
+        if (netInfo == null || !netInfo.isConnectedOrConnecting()) {
+            return State.OFFLINE;
+        }
+        final boolean metered = connectivityManager.isActiveNetworkMetered();
+        int bandwidthKbps = UNKNOWN_BANDWIDTH;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            final Network network = connectivityManager.getActiveNetwork();
+            final NetworkCapabilities capabilities = network != null
+                    ? connectivityManager.getNetworkCapabilities(network) : null;
+            if (capabilities != null) {
+                bandwidthKbps = capabilities.getLinkDownstreamBandwidthKbps();
+            }
+        }
+        return new State(true, metered, bandwidthKbps);
+    }
+}
@@ -0,0 +1,617 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.Snapshot;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.SortOrder;
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.BKTree;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that hold two hashes for every local (downloaded) photo, so we can find the
+ * duplicates of a photo before we download it again under another wallhaven id :
+ * 1 - content hash, a digest of the bytes we downloaded (the original file of wallhaven, NOT the
+ * file we save, we compress it again), we compute it lazily when we check the photo before we
+ * save it, see {@link PhotoCacheDataSource#getContentHashSync getContentHashSync}. Equal content hashes mean byte identical
+ * files. The photos that downloaded before we had the hash have NO content hash ({@code 0}).
+ * 2 - perceptual hash (difference hash, 64 bits) of the pixels, similar photos (resized,
+ * re-compressed) have hashes with a small hamming distance.
+ *
+ * The perceptual hashes are indexed in a {@link BKTree BK-tree}, so finding the near duplicates
+ * never scan all the photos. The hashes persisted in a small file in the private folder of the
+ * application, and the photos that downloaded before we had the index, get their perceptual
+ * hashes lazily in the background. The searches have their own thread, so they never wait for
+ * that backfill.
+ */
+final public class DuplicatesIndex {
+
+
+    /**
+     * To use {@link #findDuplicates(PhotoCache, Context, OnDuplicatesFoundListener)
+     * findDuplicates}
+     * you must send a listener, we call him on the main thread with the results.
+     */
+    public interface OnDuplicatesFoundListener {
+
+        /**
+         * Called on the main thread after we search the duplicates.
+         * @param duplicates the local photos that look the same as the photo, empty list if NOT
+         *                   found any duplicate, sorted by the distance (the most similar first).
+         */
+        void onDuplicatesFound(@NonNull List<Duplicate> duplicates);
+    }
+
+
+    /** Hold the hashes of one local photo */
+    public static final class Entry {
+
+        /** The name (unique id) of the local photo */
+        public final String photoId;
+
+        /** The content hash of the file of the local photo */
+        public final long contentHash;
+
+        /** The perceptual hash of the pixels of the local photo */
+        public final long perceptualHash;
+
+        Entry(String photoId, long contentHash, long perceptualHash) {
+            this.photoId = photoId;
+            this.contentHash = contentHash;
+            this.perceptualHash = perceptualHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            return photoId.equals(((Entry) o).photoId);
+        }
+
+        @Override
+        public int hashCode() {
+            return photoId.hashCode();
+        }
+    }
+
+
+    /** A local photo that found as a duplicate, with his distance from the searched photo */
+    public static final class Duplicate {
+
+        /** The name (unique id) of the local photo */
+        public final String photoId;
+
+        /** The hamming distance between the perceptual hashes, {@code 0} look identical */
+        public final int distance;
+
+        /** True if the downloaded bytes are identical (equal content hashes) */
+        public final boolean identical;
+
+        Duplicate(String photoId, int distance, boolean identical) {
+            this.photoId = photoId;
+            this.distance = distance;
+            this.identical = identical;
+        }
+    }
+
+
+    /** Photos with perceptual hashes distance (out of 64 bits) at most this value are duplicates */
+    public static final int MAX_DUPLICATE_DISTANCE = 6;
+
+    /** The name of the index file in the private folder of the application */
+    private static final String INDEX_FILE_NAME = "photo_hashes.dat";
+
+    /** The magic number in the head of the index file */
+    private static final int MAGIC = 0x57484458;
+
+    /** The version of the index file format */
+    private static final int FORMAT_VERSION = 2;
+
+    /** The digest algorithm of the content hash */
+    private static final String CONTENT_DIGEST = "MD5";
+
+    /** The width of the difference hash grid, one more than the height for the differences */
+    private static final int HASH_WIDTH = 9;
+
+    /** The height of the difference hash grid */
+    private static final int HASH_HEIGHT = 8;
+
+    /**
+     * The size that we decode the old photos to (and scale the photos in memory to), to compute
+     * their perceptual hashes
+     */
+    private static final int SAMPLE_SIZE_PX = 64;
+
+
+    /** Single thread that compute the hashes of the old photos and write the index file */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+    /** Single thread that load the index file and then search the duplicates */
+    private static final ExecutorService lookupService = Executors.newSingleThreadExecutor();
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the private folder */
+    private static volatile DuplicatesIndex ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static DuplicatesIndex getInstance(@NonNull Context context) {
+        DuplicatesIndex instance = ourInstance;
+        if (instance == null) {
+            synchronized (DuplicatesIndex.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new DuplicatesIndex(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, we use it where we have NO context,
+     * like saving a photo in {@link PhotoCacheDataSource PhotoCacheDataSource}.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static DuplicatesIndex peekInstance() {
+        return ourInstance;
+    }
+
+
+    /** The index file */
+    private final File indexFile;
+
+    /** The hashes of the local photos by their names (ids), guarded by this instance monitor */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** The local photos names (ids) by their content hash, guarded by this instance monitor */
+    private final Map<Long, String> byContent = new HashMap<>();
+
+    /** BK-tree of the entries by the perceptual hash, guarded by this instance monitor */
+    private final BKTree<Entry> tree = new BKTree<>((e1, e2) ->
+            Long.bitCount(e1.perceptualHash ^ e2.perceptualHash));
+
+    /** Handler of the main thread, we notify the listeners on the main thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** True if we have changes that NOT written to the index file yet */
+    private boolean dirty;
+
+
+
+    /**
+     * private constructor to init the singleton instance, load the index file in the background,
+     * then compute the hashes of the local photos that NOT in the index.
+     * We load on the searches thread, so every search run after the load, and the backfill
+     * (decode every old photo) run on the other thread, so the searches never wait for it.
+     * @param context the application context.
+     */
+    private DuplicatesIndex(Context context) {
+        this.indexFile = new File(context.getFilesDir(), INDEX_FILE_NAME);
+        LocalPhotosDataSource.getInstance().addOnLocalPhotosChangedListener(changeSet -> {
+            for (LocalPhoto localPhoto : changeSet.removed) {
+                remove(localPhoto.getPhotoId());
+            }
+        });
+        lookupService.submit(() -> {
+            load();
+            service.submit(this::indexMissingPhotos);
+        });
+    }
+
+
+
+    /** Read the index file, if it's broken we start from the scratch */
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final int count = in.readInt();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    addEntry(new Entry(in.readUTF(), in.readLong(), in.readLong()));
+                }
+            }
+        }
+        catch (IOException e) {
+            /* Broken file, we keep what we read, the missing photos will be indexed again */
+        }
+    }
+
+
+
+    /** Write all the index to the index file, if we have changes */
+    private void save() {
+        final List<Entry> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            snapshot = new ArrayList<>(entries.values());
+        }
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.photoId);
+                out.writeLong(entry.contentHash);
+                out.writeLong(entry.perceptualHash);
+            }
+        }
+        catch (IOException e) {
+            return;
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+
+
+    /**
+     * Compute the perceptual hashes of all the local photos that NOT in the index, then save the
+     * index. We have NOT the downloaded bytes of these photos anymore, so NO content hash.
+     */
+    private void indexMissingPhotos() {
+        final Snapshot snapshot = LocalPhotosDataSource.getInstance().getSnapshot();
+        for (LocalPhoto localPhoto : snapshot.asList(SortOrder.DateAdded)) {
+            synchronized (this) {
+                if (entries.containsKey(localPhoto.getPhotoId())) {
+                    continue;
+                }
+            }
+            final Bitmap bitmap = decodeSmall(localPhoto);
+            if (bitmap != null) {
+                final long perceptualHash = perceptualHashOfSampled(bitmap);
+                bitmap.recycle();
+                synchronized (this) {
+                    addEntry(new Entry(localPhoto.getPhotoId(), 0L, perceptualHash));
+                    dirty = true;
+                }
+            }
+        }
+        save();
+    }
+
+
+
+    /**
+     * Add the entry to the map and the BK-tree, must be called while holding the monitor.
+     * @param entry is the entry you want to add.
+     */
+    private void addEntry(Entry entry) {
+        final Entry old = entries.put(entry.photoId, entry);
+        if (old != null) {
+            tree.remove(old);
+            if (entry.photoId.equals(byContent.get(old.contentHash))) {
+                byContent.remove(old.contentHash);
+            }
+        }
+        tree.add(entry);
+        if (entry.contentHash != 0 && !byContent.containsKey(entry.contentHash)) {
+            byContent.put(entry.contentHash, entry.photoId);
+        }
+    }
+
+
+
+    /**
+     * Add the hashes of a new saved photo to the index, and save the index in the background.
+     * @param photoId is the name (unique id) of the photo.
+     * @param contentHash is the content hash of the downloaded bytes, {@code 0} if NOT known.
+     * @param perceptualHash is the perceptual hash of the photo.
+     */
+    public void add(String photoId, long contentHash, long perceptualHash) {
+        synchronized (this) {
+            addEntry(new Entry(photoId, contentHash, perceptualHash));
+            dirty = true;
+        }
+        service.submit(this::save);
+    }
+
+
+
+    /**
+     * Remove the hashes of the photo from the index, we call it for every photo that removed
+     * from {@link LocalPhotosDataSource LocalPhotosDataSource}.
+     * @param photoId is the name (unique id) of the photo.
+     */
+    public void remove(String photoId) {
+        synchronized (this) {
+            final Entry old = entries.remove(photoId);
+            if (old == null) {
+                return;
+            }
+            tree.remove(old);
+            if (photoId.equals(byContent.get(old.contentHash))) {
+                byContent.remove(old.contentHash);
+            }
+            dirty = true;
+        }
+        service.submit(this::save);
+    }
+
+
+
+    /**
+     * Return the name (id) of the local photo that downloaded from bytes identical to the bytes
+     * with the gaven content hash.
+     * @param contentHash is the content hash.
+     * @return the name (id) of the local photo, or {@code null} if NOT found (or the hash is
+     * {@code 0}, NOT known).
+     */
+    @Nullable
+    public synchronized String findIdentical(long contentHash) {
+        return contentHash != 0 ? byContent.get(contentHash) : null;
+    }
+
+
+
+    /**
+     * Find in the background all the local photos that look like the gaven photo (except the
+     * photo itself), and notify the listener on the main thread.
+     * If a local photo downloaded from identical bytes, it's the only result, and we skip the
+     * perceptual hash. We compute the content hash of the photo here (once), NOT when we open it.
+     * @param photoCache is the photo, we exclude it from the results.
+     * @param context any context, will not be retained, we use only the application context.
+     * @param listener is the listener that we notify with the results.
+     */
+    public void findDuplicates(final PhotoCache photoCache, final Context context,
+                               final OnDuplicatesFoundListener listener) {
+        final Context appContext = context.getApplicationContext();
+        final String photoId = photoCache.getPhotoId();
+        lookupService.submit(() -> {
+            long contentHash;
+            try {
+                contentHash = PhotoCacheDataSource.getContentHashSync(photoCache, appContext);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                contentHash = 0;
+            }
+            final String identical = findIdentical(contentHash);
+            if (identical != null && !identical.equals(photoId)) {
+                final List<Duplicate> duplicates =
+                        Collections.singletonList(new Duplicate(identical, 0, true));
+                mainHandler.post(() -> listener.onDuplicatesFound(duplicates));
+                return;
+            }
+            final Entry query = new Entry(photoId, 0, perceptualHash(photoCache.getBitmapCache()));
+            final List<Duplicate> duplicates = new ArrayList<>();
+            synchronized (DuplicatesIndex.this) {
+                for (Entry entry : tree.search(query, MAX_DUPLICATE_DISTANCE)) {
+                    if (!entry.photoId.equals(photoId)) {
+                        duplicates.add(new Duplicate(entry.photoId,
+                                Long.bitCount(entry.perceptualHash ^ query.perceptualHash),
+                                false));
+                    }
+                }
+            }
+            Collections.sort(duplicates,
+                    (d1, d2) -> Integer.compare(d1.distance, d2.distance));
+            mainHandler.post(() -> listener.onDuplicatesFound(duplicates));
+        });
+    }
+
+
+
+    /* Hashing : */
+
+
+    /**
+     * Create a new digest for the content hash.
+     * @return a new digest, or {@code null} if the platform NOT support the algorithm.
+     */
+    @Nullable
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_DIGEST);
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+
+
+    /**
+     * Fold the digest bytes to a 64 bits content hash.
+     * @param digest is the digest bytes, at least 8 bytes.
+     * @return the content hash.
+     */
+    public static long toContentHash(byte[] digest) {
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+
+
+    /**
+     * Compute the content hash of a file, like the file of the downloaded photo in the data cache
+     * of Glide.
+     * @param file is the file.
+     * @return the content hash of the file, or {@code 0} if the platform NOT support the digest.
+     * @throws IOException If an I/O error occurred.
+     */
+    public static long contentHashOf(File file) throws IOException {
+        final MessageDigest digest = newContentDigest();
+        if (digest == null) {
+            return 0;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toContentHash(digest.digest());
+    }
+
+
+
+    /**
+     * Compute the content hash of bytes, like the downloaded photo in the disk tier of the full
+     * photos.
+     * @param bytes is the bytes.
+     * @return the content hash of the bytes, or {@code 0} if the platform NOT support the digest.
+     */
+    public static long contentHashOf(byte[] bytes) {
+        final MessageDigest digest = newContentDigest();
+        if (digest == null) {
+            return 0;
+        }
+        return toContentHash(digest.digest(bytes));
+    }
+
+
+
+    /**
+     * Compute the perceptual hash (difference hash) of the bitmap. We first scale it down to the
+     * size that {@link #decodeSmall(LocalPhoto) decodeSmall} decode the old photos to, so the
+     * photos in memory and the old photos get the same hash for the same pixels.
+     * @param bitmap is the bitmap (in full resolution).
+     * @return the 64 bits perceptual hash.
+     */
+    public static long perceptualHash(Bitmap bitmap) {
+        final int sampleSize = sampleSizeOf(bitmap.getWidth(), bitmap.getHeight());
+        final Bitmap sampled = sampleSize == 1 ? bitmap : Bitmap.createScaledBitmap(bitmap,
+                bitmap.getWidth() / sampleSize, bitmap.getHeight() / sampleSize, true);
+        final long hash = perceptualHashOfSampled(sampled);
+        if (sampled != bitmap) {
+            sampled.recycle();
+        }
+        return hash;
+    }
+
+
+
+    /**
+     * Compute the perceptual hash (difference hash) of a bitmap that already in the small size
+     * of {@link #decodeSmall(LocalPhoto) decodeSmall}.
+     * @param bitmap is the small bitmap.
+     * @return the 64 bits perceptual hash.
+     */
+    private static long perceptualHashOfSampled(Bitmap bitmap) {
+        final Bitmap small = Bitmap.createScaledBitmap(bitmap, HASH_WIDTH, HASH_HEIGHT, true);
+        final int[] pixels = new int[HASH_WIDTH * HASH_HEIGHT];
+        small.getPixels(pixels, 0, HASH_WIDTH, 0, 0, HASH_WIDTH, HASH_HEIGHT);
+        if (small != bitmap) {
+            small.recycle();
+        }
+        return differenceHash(pixels);
+    }
+
+
+
+    /**
+     * Compute the difference hash of 9x8 pixels: for every row we compare the brightness of every
+     * pixel with his right neighbour, so we get 8 bits per row, 64 bits for all the rows.
+     * @param pixels is the ARGB pixels of 9x8 grid, row after row.
+     * @return the 64 bits difference hash.
+     */
+    static long differenceHash(int[] pixels) {
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                final int left = luminance(pixels[y * HASH_WIDTH + x]);
+                final int right = luminance(pixels[y * HASH_WIDTH + x + 1]);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+
+
+    /**
+     * Return the brightness of the pixel (integer approximation of the BT.601 luma).
+     * @param argb is the pixel color.
+     * @return the brightness, 0 - 255.
+     */
+    private static int luminance(int argb) {
+        final int r = (argb >> 16) & 0xff;
+        final int g = (argb >> 8) & 0xff;
+        final int b = argb & 0xff;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+
+
+
+    /**
+     * Decode the local photo in a small size, just enough to compute his perceptual hash.
+     * @param localPhoto is the local photo.
+     * @return the decoded bitmap, or {@code null} if we failed to decode the file.
+     */
+    @Nullable
+    private static Bitmap decodeSmall(LocalPhoto localPhoto) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeOf(localPhoto.getWidth(), localPhoto.getHeight());
+        return BitmapFactory.decodeFile(localPhoto.getImageFile().getPath(), options);
+    }
+
+
+
+    /**
+     * Return the largest power of two sample size that keep both sides of the photo at least
+     * {@link #SAMPLE_SIZE_PX} pixels.
+     * @param width is the width of the photo.
+     * @param height is the height of the photo.
+     * @return the sample size, {@code 1} for a small photo.
+     */
+    static int sampleSizeOf(int width, int height) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= SAMPLE_SIZE_PX
+                && height / (sampleSize * 2) >= SAMPLE_SIZE_PX) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,457 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.FullPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.Tag;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that is the second tier (under the memory cache of
+ * {@link com.abdulrhmanil.wallhavenwallpapers.activities.ShowPhotoActivity ShowPhotoActivity})
+ * of the full photos, so a photo that fall out of the memory cache NOT scraped and downloaded
+ * again when the user view it again, we read it from the disk, without the internet.
+ *
+ * The photos that evicted from the memory are demoted here, see {@link #demote(PhotoCache)}, one
+ * file for every photo in the cache folder of the application, the file hold the details of the
+ * photo and the encoded image, the original bytes from the website that we copy from the data
+ * cache of Glide. We never hold the bitmap of a demoted photo, and never encode it again (a
+ * photo that NOT in the cache of Glide anymore is NOT demoted), the file format:
+ * [int magic][int version][UTF id][UTF resolution][int favorites][UTF url][int height]
+ * [int width][UTF uploader][UTF category][UTF size][UTF views][int count] and then count times
+ * [UTF tag id][UTF tag text], [int count] and then count times [int rgb], and then
+ * [int length][the image bytes].
+ *
+ * The tier has his own quota of bytes ({@link #MAX_DISK_BYTES}), when a new photo push it above
+ * the quota we delete the least recently used photos, the order survive restarts, a read touch
+ * the time of the file, and we rebuild the order from the times when we open the tier.
+ */
+final public class FullPhotoDiskCache {
+
+
+    /** The maximum bytes of all the photos files */
+    private static final long MAX_DISK_BYTES = 100L * 1024 * 1024;
+
+    /** The name of the folder of the photos in the cache folder of the application */
+    private static final String FOLDER_NAME = "full_photos";
+
+    /** The extension of the photo files */
+    private static final String FILE_EXTENSION = ".photo";
+
+    /** The magic number in the head of the photo file */
+    private static final int MAGIC = 0x57484650;
+
+    /** The version of the photo file format */
+    private static final int FORMAT_VERSION = 1;
+
+
+    /** One background thread that write and trim the files, the reads run on the caller thread */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the cache folder */
+    private static volatile FullPhotoDiskCache ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static FullPhotoDiskCache getInstance(@NonNull Context context) {
+        FullPhotoDiskCache instance = ourInstance;
+        if (instance == null) {
+            synchronized (FullPhotoDiskCache.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new FullPhotoDiskCache(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, the data sources and the caches
+     * that don't have a context use it.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static FullPhotoDiskCache peekInstance() {
+        return ourInstance;
+    }
+
+
+
+    /** A photo that read from the disk tier, his details and the encoded image */
+    public static final class Entry {
+
+        /** The details of the photo */
+        public final FullPhoto fullPhoto;
+
+        /** The encoded image (JPEG, PNG or WEBP), decode it to show the photo */
+        public final byte[] image;
+
+
+        Entry(FullPhoto fullPhoto, byte[] image) {
+            this.fullPhoto = fullPhoto;
+            this.image = image;
+        }
+    }
+
+
+
+    /** The application context, we need it for Glide */
+    private final Context context;
+
+    /** The folder of the photos files */
+    private final File folder;
+
+    /**
+     * The sizes of the photos files by the photos ids, LRU by the access order, the least
+     * recently used first, guarded by this monitor.
+     */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** The total bytes of the photos files, guarded by this monitor */
+    private long totalBytes;
+
+
+
+    /**
+     * private constructor to init the singleton instance, and rebuild the order of the photos
+     * in the background.
+     * @param context the application context.
+     */
+    private FullPhotoDiskCache(Context context) {
+        this.context = context;
+        this.folder = new File(context.getCacheDir(), FOLDER_NAME);
+        service.submit(this::loadIndex);
+    }
+
+
+
+    /** Return the file of the photo, the ids of the website are safe file names */
+    private File fileOf(String photoId) {
+        return new File(folder, photoId + FILE_EXTENSION);
+    }
+
+
+    /**
+     * Read the photo from the disk tier, and mark it as the most recently used, call it in the
+     * background.
+     * @param photoId is the id (name) of the photo.
+     * @return the photo, or {@code null} if NOT in the disk tier, or broken (then we delete it).
+     */
+    @Nullable
+    public Entry get(@NonNull String photoId) {
+        final File file = fileOf(photoId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            final Entry entry = readEntry(in, photoId);
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                /* Access order, so it's the most recently used now */
+                index.get(photoId);
+            }
+            return entry;
+        }
+        catch (IOException | RuntimeException e) {
+            /* Broken file, delete it */
+            remove(photoId);
+            return null;
+        }
+    }
+
+
+    /**
+     * Demote the photo that evicted from the memory tier to the disk tier in the background,
+     * if it's NOT already there (then we only mark it as the most recently used).
+     * Safe to call on any thread, like the thread that evicted the photo.
+     * We keep only the details of the photo (NOT the bitmap) until the background write, so the
+     * queued photos never hold the memory that the eviction freed.
+     * @param photoCache is the photo that evicted from the memory.
+     */
+    public void demote(@NonNull PhotoCache photoCache) {
+        final FullPhoto fullPhoto = new FullPhoto(photoCache.getFullPhoto());
+        service.submit(() -> {
+            final String photoId = fullPhoto.getPhotoId();
+            final File file = fileOf(photoId);
+            if (file.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(System.currentTimeMillis());
+                synchronized (this) {
+                    index.get(photoId);
+                }
+                return;
+            }
+            final long size = writeEntry(fullPhoto, file);
+            if (size < 0) {
+                return;
+            }
+            synchronized (this) {
+                final Long old = index.put(photoId, size);
+                totalBytes += size - (old == null ? 0 : old);
+            }
+            trim();
+        });
+    }
+
+
+    /**
+     * Delete the photo from the disk tier.
+     * @param photoId is the id (name) of the photo.
+     */
+    public void remove(@NonNull String photoId) {
+        synchronized (this) {
+            final Long size = index.remove(photoId);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        fileOf(photoId).delete();
+    }
+
+
+
+    /**
+     * Read the photo (the details and the image) from the file.
+     * @param in is the stream of the file.
+     * @param photoId is the id (name) of the photo, must be the id in the file.
+     * @return the photo.
+     * @throws IOException if the file is broken or NOT of this format.
+     */
+    private static Entry readEntry(DataInputStream in, String photoId) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown photo file " + photoId);
+        }
+        if (!photoId.equals(in.readUTF())) {
+            throw new IOException("Other photo in the file of " + photoId);
+        }
+        final String wallRes = in.readUTF();
+        final int numOfFav = in.readInt();
+        final String photoUrl = in.readUTF();
+        final int height = in.readInt();
+        final int width = in.readInt();
+        final String uploader = in.readUTF();
+        final String category = in.readUTF();
+        final String size = in.readUTF();
+        final String views = in.readUTF();
+        final int tagsCount = in.readInt();
+        final List<Tag> tags = new ArrayList<>(Math.max(0, tagsCount));
+        for (int i = 0; i < tagsCount; i++) {
+            tags.add(new Tag(in.readUTF(), in.readUTF()));
+        }
+        final int colorsCount = in.readInt();
+        final List<PhotoColor> colors = new ArrayList<>(Math.max(0, colorsCount));
+        for (int i = 0; i < colorsCount; i++) {
+            colors.add(new PhotoColor(in.readInt()));
+        }
+        final int length = in.readInt();
+        if (length <= 0) {
+            throw new IOException("NO image in the file of " + photoId);
+        }
+        final byte[] image = new byte[length];
+        in.readFully(image);
+        return new Entry(new FullPhoto(photoId, wallRes, numOfFav, photoUrl, height, width,
+                uploader, category, size, views, tags, colors), image);
+    }
+
+
+    /**
+     * Write the photo to the file, into a temporary file that we rename, so a crash never leave
+     * a half written photo. We copy the image from the data cache of Glide to the file as is.
+     * @param fullPhoto is the details of the photo.
+     * @param file is the file of the photo.
+     * @return the size of the file, or -1 if we failed to write it, or the image NOT in the
+     * cache of Glide anymore.
+     */
+    private long writeEntry(FullPhoto fullPhoto, File file) {
+        if (!folder.exists() && !folder.mkdirs()) {
+            return -1;
+        }
+        final FutureTarget<File> target = Glide
+                .with(context)
+                .downloadOnly()
+                .load(fullPhoto.getPhotoUrl())
+                .apply(new RequestOptions().onlyRetrieveFromCache(true))
+                .submit();
+        final File tmp = new File(folder, file.getName() + ".tmp");
+        try {
+            final File source = target.get();
+            final long length = source.length();
+            if (length <= 0 || length > Integer.MAX_VALUE) {
+                return -1;
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+                 InputStream in = new FileInputStream(source)) {
+                writeDetails(out, fullPhoto);
+                out.writeInt((int) length);
+                final byte[] buffer = new byte[64 * 1024];
+                long copied = 0;
+                int read;
+                while (copied < length && (read = in.read(buffer, 0,
+                        (int) Math.min(buffer.length, length - copied))) != -1) {
+                    out.write(buffer, 0, read);
+                    copied += read;
+                }
+                if (copied != length) {
+                    throw new IOException("The file " + source + " changed while we copied it");
+                }
+            }
+        }
+        catch (ExecutionException | IOException | RuntimeException e) {
+            /* NOT in the cache of Glide anymore, or failed to write, drop the photo */
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return -1;
+        }
+        catch (InterruptedException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        finally {
+            Glide.with(context).clear(target);
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return -1;
+        }
+        return file.length();
+    }
+
+
+    /**
+     * Write the header and the details of the photo, everything before the image.
+     * @param out is the stream of the file.
+     * @param fullPhoto is the details of the photo.
+     * @throws IOException If an I/O error occurred.
+     */
+    private static void writeDetails(DataOutputStream out, FullPhoto fullPhoto)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(fullPhoto.getPhotoId());
+        out.writeUTF(fullPhoto.getWallRes());
+        out.writeInt(fullPhoto.getNumOfFav());
+        out.writeUTF(fullPhoto.getPhotoUrl());
+        out.writeInt(fullPhoto.getHeight());
+        out.writeInt(fullPhoto.getWidth());
+        out.writeUTF(fullPhoto.getUploader());
+        out.writeUTF(fullPhoto.getCategory());
+        out.writeUTF(fullPhoto.getSize());
+        out.writeUTF(fullPhoto.getViews());
+        final List<Tag> tags = fullPhoto.getTags();
+        out.writeInt(tags.size());
+        for (Tag tag : tags) {
+            out.writeUTF(tag.getTagId());
+            out.writeUTF(tag.getTagText());
+        }
+        final List<PhotoColor> colors = fullPhoto.getColors();
+        out.writeInt(colors.size());
+        for (PhotoColor color : colors) {
+            out.writeInt(color.getRgb());
+        }
+    }
+
+
+
+    /**
+     * Rebuild the order of the photos from the times of the files (the oldest is the least
+     * recently used), delete the temporary files that a crash left, and trim to the quota.
+     */
+    private void loadIndex() {
+        final File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] modified = new long[files.length];
+        final Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        final Map<String, Long> loaded = new LinkedHashMap<>();
+        long loadedBytes = 0;
+        for (Integer i : order) {
+            final String name = files[i].getName();
+            if (!name.endsWith(FILE_EXTENSION)) {
+                //noinspection ResultOfMethodCallIgnored
+                files[i].delete();
+                continue;
+            }
+            final long size = files[i].length();
+            loaded.put(name.substring(0, name.length() - FILE_EXTENSION.length()), size);
+            loadedBytes += size;
+        }
+        synchronized (this) {
+            /* The photos that demoted while we loaded are newer, keep them after the loaded */
+            final Map<String, Long> newer = new LinkedHashMap<>(index);
+            index.clear();
+            index.putAll(loaded);
+            totalBytes = loadedBytes;
+            for (Map.Entry<String, Long> entry : newer.entrySet()) {
+                final Long old = index.put(entry.getKey(), entry.getValue());
+                totalBytes += entry.getValue() - (old == null ? 0 : old);
+            }
+        }
+        trim();
+    }
+
+
+    /** Delete the least recently used photos until the disk tier is in the quota */
+    private void trim() {
+        final List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+            while (totalBytes > MAX_DISK_BYTES && iterator.hasNext()) {
+                final Map.Entry<String, Long> entry = iterator.next();
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        for (String photoId : evicted) {
+            //noinspection ResultOfMethodCallIgnored
+            fileOf(photoId).delete();
+        }
+    }
+}
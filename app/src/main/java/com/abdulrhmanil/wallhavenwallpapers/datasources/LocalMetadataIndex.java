@@ -0,0 +1,551 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.PostingList;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.Tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that keep the metadata (tags, colors, category and uploader) of the local
+ * (downloaded) photos, so we can filter the downloads with NO network.
+ * We take the metadata from the {@link PhotoCache photo cache} at the time we save the photo,
+ * the photos that downloaded before we had the index have NO metadata, and never match a filter.
+ *
+ * Every photo get a document id (increasing int), and we keep an inverted index, for every tag,
+ * color and category a {@link PostingList posting list} of the document ids of the photos that
+ * have it, so a filter is just an intersection of a few sorted int arrays, see
+ * {@link #query(Collection) query}, and we never scan the metadata of all the photos.
+ * The colors indexed as the {@link PhotoColor#toPalette() search colors} (the palette) that
+ * nearest to the colors of the photo, so the near colors of the photos share one filter value.
+ * The metadata persisted in a small file in the private folder of the application.
+ */
+final public class LocalMetadataIndex {
+
+
+    /** The fields of the metadata that we index */
+    public enum Field {
+        Tag, Color, Category
+    }
+
+
+    /** The metadata of one local photo */
+    public static final class Metadata {
+
+        /** The name (unique id) of the local photo */
+        public final String photoId;
+
+        /** The category of the photo */
+        public final String category;
+
+        /** The uploader name */
+        public final String uploader;
+
+        /** The tags of the photo */
+        public final List<Tag> tags;
+
+        /** The dominant colors of the photo, mapped to the search colors, without duplicates */
+        public final List<PhotoColor> colors;
+
+        Metadata(String photoId, String category, String uploader,
+                 List<Tag> tags, List<PhotoColor> colors) {
+            this.photoId = photoId;
+            this.category = category;
+            this.uploader = uploader;
+            this.tags = Collections.unmodifiableList(tags);
+            this.colors = Collections.unmodifiableList(colors);
+        }
+    }
+
+
+    /**
+     * To use {@link #query(Collection, OnQueryResultListener) query} in the background
+     * you must send a listener, we call him on the main thread with the result.
+     */
+    public interface OnQueryResultListener {
+
+        /**
+         * Called on the main thread after we query the index.
+         * @param photoIds the names (ids) of the local photos that have all the values.
+         */
+        void onQueryResult(@NonNull Set<String> photoIds);
+    }
+
+
+    /** A value of one of the indexed fields (a tag, a color or a category), with his photo count */
+    public static final class Facet {
+
+        /** The field of the value */
+        public final Field field;
+
+        /** The value, tag id, search color in hex or category name */
+        public final String key;
+
+        /** The text we show to the user */
+        public final String title;
+
+        /** The number of the local photos that have this value */
+        public final int count;
+
+        Facet(Field field, String key, String title, int count) {
+            this.field = field;
+            this.key = key;
+            this.title = title;
+            this.count = count;
+        }
+    }
+
+
+    /** The name of the index file in the private folder of the application */
+    private static final String INDEX_FILE_NAME = "photo_metadata.dat";
+
+    /** The magic number in the head of the index file */
+    private static final int MAGIC = 0x57484d44;
+
+    /**
+     * The version of the index file format, version 1 kept the colors in hex, version 2 keep the
+     * search colors packed (0xRRGGBB), we still read version 1 and write it again as version 2
+     */
+    private static final int FORMAT_VERSION = 2;
+
+
+    /** Single thread that load and write the index file */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+    /** Single thread that query the index, so the UI thread never intersect the posting lists */
+    private static final ExecutorService queryService = Executors.newSingleThreadExecutor();
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the private folder */
+    private static volatile LocalMetadataIndex ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static LocalMetadataIndex getInstance(@NonNull Context context) {
+        LocalMetadataIndex instance = ourInstance;
+        if (instance == null) {
+            synchronized (LocalMetadataIndex.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new LocalMetadataIndex(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, we use it where we have NO context,
+     * like saving a photo in {@link PhotoCacheDataSource PhotoCacheDataSource}.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static LocalMetadataIndex peekInstance() {
+        return ourInstance;
+    }
+
+
+    /** The index file */
+    private final File indexFile;
+
+    /** The metadata by the document id, {@code null} for removed photos, guarded by this monitor */
+    private final List<Metadata> documents = new ArrayList<>();
+
+    /** The document ids by the names (ids) of the photos, guarded by this monitor */
+    private final Map<String, Integer> documentIds = new HashMap<>();
+
+    /** The posting lists of every field by the value, guarded by this monitor */
+    private final Map<Field, Map<String, PostingList>> postings = new HashMap<>();
+
+    /** The texts of the tags by the tag ids, guarded by this monitor */
+    private final Map<String, String> tagTexts = new HashMap<>();
+
+    /** True if we have changes that NOT written to the index file yet, guarded by this monitor */
+    private boolean dirty;
+
+    /** Handler to post the results of the queries on the main thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+
+
+    /**
+     * private constructor to init the singleton instance, and load the index file in the
+     * background.
+     * @param context the application context.
+     */
+    private LocalMetadataIndex(Context context) {
+        this.indexFile = new File(context.getFilesDir(), INDEX_FILE_NAME);
+        for (Field field : Field.values()) {
+            postings.put(field, new HashMap<>());
+        }
+        LocalPhotosDataSource.getInstance().addOnLocalPhotosChangedListener(changeSet -> {
+            for (LocalPhoto localPhoto : changeSet.removed) {
+                remove(localPhoto.getPhotoId());
+            }
+        });
+        service.submit(this::load);
+    }
+
+
+
+    /**
+     * Read the index file, we skip the photos that NOT exist anymore (deleted outside the
+     * application), if the file is broken we keep what we read.
+     */
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        final LocalPhotosDataSource localPhotosUtil = LocalPhotosDataSource.getInstance();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            final int version = in.readInt();
+            if (version < 1 || version > FORMAT_VERSION) {
+                return;
+            }
+            if (version != FORMAT_VERSION) {
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String photoId = in.readUTF();
+                final String category = in.readUTF();
+                final String uploader = in.readUTF();
+                final int tagsCount = in.readInt();
+                final List<Tag> tags = new ArrayList<>(tagsCount);
+                for (int j = 0; j < tagsCount; j++) {
+                    tags.add(new Tag(in.readUTF(), in.readUTF()));
+                }
+                final int colorsCount = in.readInt();
+                final List<PhotoColor> colors = new ArrayList<>(colorsCount);
+                for (int j = 0; j < colorsCount; j++) {
+                    if (version == 1) {
+                        addSearchColor(colors, in.readUTF());
+                    }
+                    else {
+                        colors.add(new PhotoColor(in.readInt()));
+                    }
+                }
+                synchronized (this) {
+                    if (!localPhotosUtil.contains(photoId)) {
+                        dirty = true;
+                    }
+                    else if (!documentIds.containsKey(photoId)) {
+                        addDocument(new Metadata(photoId, category, uploader, tags, colors));
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            /* Broken file, we keep what we read */
+        }
+        save();
+    }
+
+
+
+    /** Write all the metadata to the index file, if we have changes */
+    private void save() {
+        final List<Metadata> snapshot = new ArrayList<>();
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            for (Metadata metadata : documents) {
+                if (metadata != null) {
+                    snapshot.add(metadata);
+                }
+            }
+        }
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Metadata metadata : snapshot) {
+                out.writeUTF(metadata.photoId);
+                out.writeUTF(metadata.category);
+                out.writeUTF(metadata.uploader);
+                out.writeInt(metadata.tags.size());
+                for (Tag tag : metadata.tags) {
+                    out.writeUTF(tag.getTagId());
+                    out.writeUTF(tag.getTagText());
+                }
+                out.writeInt(metadata.colors.size());
+                for (PhotoColor color : metadata.colors) {
+                    out.writeInt(color.getRgb());
+                }
+            }
+        }
+        catch (IOException e) {
+            return;
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+
+
+    /**
+     * Add the search color that nearest to the color, if NOT already in the colors.
+     * @param colors are the search colors of the photo.
+     * @param color is a color of the photo.
+     */
+    private static void addSearchColor(List<PhotoColor> colors, PhotoColor color) {
+        final PhotoColor searchColor = color.toPalette();
+        if (!colors.contains(searchColor)) {
+            colors.add(searchColor);
+        }
+    }
+
+
+
+    /**
+     * Add the search color that nearest to the color in hex, skip it if it's broken.
+     * @param colors are the search colors of the photo.
+     * @param color is a color of the photo, in hex, like #660000.
+     */
+    private static void addSearchColor(List<PhotoColor> colors, String color) {
+        try {
+            addSearchColor(colors, new PhotoColor(color));
+        }
+        catch (IllegalArgumentException e) {
+            /* Broken color, skip it */
+        }
+    }
+
+
+
+    /**
+     * Give the metadata a new document id, and add the id to the posting lists of all the
+     * values of the metadata, must be called while holding the monitor.
+     * @param metadata is the metadata of the photo.
+     */
+    private void addDocument(Metadata metadata) {
+        final int documentId = documents.size();
+        documents.add(metadata);
+        documentIds.put(metadata.photoId, documentId);
+        for (Tag tag : metadata.tags) {
+            postingOf(Field.Tag, tag.getTagId()).add(documentId);
+            tagTexts.put(tag.getTagId(), tag.getTagText());
+        }
+        for (PhotoColor color : metadata.colors) {
+            postingOf(Field.Color, color.getColor()).add(documentId);
+        }
+        if (!metadata.category.isEmpty()) {
+            postingOf(Field.Category, metadata.category).add(documentId);
+        }
+    }
+
+
+
+    /**
+     * Return the posting list of the value, create it if NOT exist,
+     * must be called while holding the monitor.
+     * @param field is the field of the value.
+     * @param key is the value.
+     * @return the posting list of the value.
+     */
+    private PostingList postingOf(Field field, String key) {
+        final Map<String, PostingList> fieldPostings = postings.get(field);
+        PostingList postingList = fieldPostings.get(key);
+        if (postingList == null) {
+            postingList = new PostingList();
+            fieldPostings.put(key, postingList);
+        }
+        return postingList;
+    }
+
+
+
+    /**
+     * Remove the document id from the posting list of the value, and remove the list if it's
+     * empty, must be called while holding the monitor.
+     * @param field is the field of the value.
+     * @param key is the value.
+     * @param documentId is the document id.
+     */
+    private void removePosting(Field field, String key, int documentId) {
+        final Map<String, PostingList> fieldPostings = postings.get(field);
+        final PostingList postingList = fieldPostings.get(key);
+        if (postingList != null && postingList.remove(documentId) && postingList.size() == 0) {
+            fieldPostings.remove(key);
+            if (field == Field.Tag) {
+                tagTexts.remove(key);
+            }
+        }
+    }
+
+
+
+    /**
+     * Add the metadata of a new saved photo to the index, and save the index in the background.
+     * We call it on the saving thread, while we still have the full photo info.
+     * @param photoCache is the photo cache of the saved photo.
+     */
+    public void add(@NonNull PhotoCache photoCache) {
+        final List<PhotoColor> colors = new ArrayList<>(photoCache.getColors().size());
+        for (PhotoColor color : photoCache.getColors()) {
+            addSearchColor(colors, color);
+        }
+        final Metadata metadata = new Metadata(photoCache.getPhotoId(),
+                photoCache.getCategory() == null ? "" : photoCache.getCategory(),
+                photoCache.getUploader() == null ? "" : photoCache.getUploader(),
+                new ArrayList<>(photoCache.getTags()), colors);
+        synchronized (this) {
+            if (documentIds.containsKey(metadata.photoId)) {
+                return;
+            }
+            addDocument(metadata);
+            dirty = true;
+        }
+        service.submit(this::save);
+    }
+
+
+
+    /**
+     * Remove the metadata of the photo from the index, we call it for every photo that removed
+     * from {@link LocalPhotosDataSource LocalPhotosDataSource}.
+     * @param photoId is the name (unique id) of the photo.
+     */
+    public void remove(String photoId) {
+        synchronized (this) {
+            final Integer documentId = documentIds.remove(photoId);
+            if (documentId == null) {
+                return;
+            }
+            final Metadata metadata = documents.set(documentId, null);
+            for (Tag tag : metadata.tags) {
+                removePosting(Field.Tag, tag.getTagId(), documentId);
+            }
+            for (PhotoColor color : metadata.colors) {
+                removePosting(Field.Color, color.getColor(), documentId);
+            }
+            removePosting(Field.Category, metadata.category, documentId);
+            dirty = true;
+        }
+        service.submit(this::save);
+    }
+
+
+
+    /**
+     * Return the metadata of the local photo.
+     * @param photoId is the name (unique id) of the local photo.
+     * @return the metadata, or {@code null} if we don't have metadata for the photo.
+     */
+    @Nullable
+    public synchronized Metadata get(String photoId) {
+        final Integer documentId = documentIds.get(photoId);
+        return documentId == null ? null : documents.get(documentId);
+    }
+
+
+
+    /**
+     * Return all the values of the field that at least one local photo have, sorted by the
+     * number of the photos (the most common first).
+     * @param field is the field.
+     * @param max is the max number of the values we return.
+     * @return list of the values with their counts.
+     */
+    public synchronized List<Facet> getFacets(Field field, int max) {
+        final List<Facet> facets = new ArrayList<>(postings.get(field).size());
+        for (Map.Entry<String, PostingList> entry : postings.get(field).entrySet()) {
+            final String key = entry.getKey();
+            final String title = field == Field.Tag ? tagTexts.get(key) : key;
+            facets.add(new Facet(field, key, title, entry.getValue().size()));
+        }
+        Collections.sort(facets, (f1, f2) -> f1.count != f2.count
+                ? Integer.compare(f2.count, f1.count) : f1.title.compareTo(f2.title));
+        return facets.size() > max ? new ArrayList<>(facets.subList(0, max)) : facets;
+    }
+
+
+
+    /**
+     * Find the local photos that have ALL the gaven values, by intersection of their
+     * posting lists, the cost depends on the shortest list.
+     * @param facets are the values that the photos must have.
+     * @return the names (ids) of the local photos that have all the values, empty set if NOT
+     * found, or if the facets are empty.
+     */
+    public Set<String> query(@NonNull Collection<Facet> facets) {
+        final List<PostingList> lists = new ArrayList<>(facets.size());
+        synchronized (this) {
+            for (Facet facet : facets) {
+                final PostingList postingList = postings.get(facet.field).get(facet.key);
+                if (postingList == null) {
+                    return Collections.emptySet();
+                }
+                lists.add(postingList);
+            }
+            final int[] documentIdsFound = PostingList.intersect(lists);
+            final Set<String> photoIds = new HashSet<>(documentIdsFound.length * 2);
+            for (int documentId : documentIdsFound) {
+                photoIds.add(documents.get(documentId).photoId);
+            }
+            return photoIds;
+        }
+    }
+
+
+
+    /**
+     * Find the local photos that have ALL the gaven values in the background, like
+     * {@link #query(Collection) query}, and give the result to the listener on the main thread.
+     * @param facets are the values that the photos must have, we copy them.
+     * @param listener is the listener that we notify with the result.
+     */
+    public void query(@NonNull Collection<Facet> facets,
+                      @NonNull final OnQueryResultListener listener) {
+        final List<Facet> copy = new ArrayList<>(facets);
+        queryService.submit(() -> {
+            final Set<String> photoIds = query(copy);
+            mainHandler.post(() -> listener.onQueryResult(photoIds));
+        });
+    }
+}
@@ -1,14 +1,23 @@
 package com.abdulrhmanil.wallhavenwallpapers.datasources;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.SortedIndex;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
 
 import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -22,9 +31,15 @@ import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.DEFAULT_PATH;
  * the default downloads folder, in very efficient time O(1), we concerned to update this map,
  * in whole application lifetime.
  *
- * 2 - a list that hold the same {@link LocalPhoto local Photos objects}, we use this list to
- * sort and show them to the user in the download tab.
+ * 2 - a list that hold the same {@link LocalPhoto local Photos objects}, and an index of
+ * primitive ints for every {@link SortOrder sort order}, we use the indexes to show the
+ * photos to the user in the download tab, sorted in any order without sorting again.
  * {@link LocalPhoto localPhoto} object hold a basis info for the local downloaded photo.
+ *
+ * All of that is kept in an immutable {@link Snapshot Snapshot}, the readers (the adapters on
+ * the UI thread) just read the current snapshot with a volatile read and never block.
+ * The writers (add, remove, reload) copy the current snapshot, apply their changes on the copy,
+ * publish it as a new version, and then notify the listeners with a {@link ChangeSet ChangeSet}.
  */
 final public class LocalPhotosDataSource {
 
@@ -44,6 +59,314 @@ final public class LocalPhotosDataSource {
     }
 
 
+    /**
+     * To use {@link #deleteAll(Collection, OnDeleteLocalPhotosListener) deleteAll} you must send
+     * a listener, we call him on the caller thread after we delete the files and remove the photos.
+     */
+    public interface OnDeleteLocalPhotosListener {
+
+        /**
+         * Called on the caller thread after deleting the batch.
+         * @param deletedCount is the number of the photos that deleted and removed.
+         * @param failedCount is the number of the photos that we failed to delete their files.
+         */
+        void afterDeleting(int deletedCount, int failedCount);
+    }
+
+
+    /**
+     * Listener that notified (on the main thread) after every new published version of the local
+     * photos, so he can swap to the new {@link Snapshot snapshot} and refresh the UI.
+     */
+    public interface OnLocalPhotosChangedListener {
+
+        /**
+         * Called on the main thread after we publish a new version of the local photos.
+         * @param changeSet hold the old and new snapshots, and the added and removed photos.
+         */
+        void onLocalPhotosChanged(ChangeSet changeSet);
+    }
+
+
+    /**
+     * The sort orders we support for the local photos, every order hold his comparator,
+     * all the comparators are in desc order, and break the ties with the photo name (id),
+     * so every comparator is a total order, and we can keep an index for every order.
+     */
+    public enum SortOrder {
+
+        /** Sort according to the added date (the last modified time of the file). */
+        DateAdded((o1, o2) -> Long.compare(o2.getLastModified(), o1.getLastModified())),
+
+        /** Sort according to width value. */
+        Width((o1, o2) -> Integer.compare(o2.getWidth(), o1.getWidth())),
+
+        /** Sort according to height value. */
+        Height((o1, o2) -> Integer.compare(o2.getHeight(), o1.getHeight())),
+
+        /** Sort according to the size of the file. */
+        Size((o1, o2) -> Long.compare(o2.getFileSize(), o1.getFileSize())),
+
+        /** Sort according to aspect ratio (width / height). */
+        AspectRatio((o1, o2) -> Float.compare(o2.getAspectRatio(), o1.getAspectRatio()));
+
+
+        /** The comparator of the sort order, a total order */
+        private final Comparator<LocalPhoto> comparator;
+
+        SortOrder(final Comparator<LocalPhoto> keyComparator) {
+            this.comparator = (o1, o2) -> {
+                final int cmp = keyComparator.compare(o1, o2);
+                return cmp != 0 ? cmp : o1.compareTo(o2);
+            };
+        }
+    }
+
+
+    /**
+     * Immutable version of the local photos, once we published a snapshot we never change it,
+     * so any thread can read it without locking. The writers create a modified copy of
+     * the current snapshot and publish the copy as a new version.
+     */
+    public static final class Snapshot {
+
+        /** The version of the snapshot, every published snapshot has a greater version */
+        private final int version;
+
+        /**
+         * Map that hold the names (unique) of the local photos as keys,
+         * and the LocalPhoto objects as values
+         */
+        private final Map<String, LocalPhoto> localPhotosMap;
+
+        /**
+         * List that hold {@link LocalPhoto LocalPhoto} objects that hold a basis info of
+         * the local photos, with NO order, the indexes hold the order of the photos.
+         * When we remove a photo we move the last photo to his slot, so the list stay compact.
+         */
+        private final List<LocalPhoto> localPhotos;
+
+        /**
+         * Index for every {@link SortOrder sort order}, every index hold the slots of the photos
+         * in {@link #localPhotos localPhotos} list sorted according to his order.
+         */
+        private final SortedIndex[] sortIndexes;
+
+        /** The total size in bytes of all the local photos files, we maintain it incrementally */
+        private long totalBytes;
+
+
+        /**
+         * Create a snapshot from all the loaded photos, and build all the indexes from the scratch.
+         * @param version is the version of the new snapshot.
+         * @param localPhotosMap is the loaded photos, the snapshot take the ownership of the map.
+         */
+        private Snapshot(int version, Map<String, LocalPhoto> localPhotosMap) {
+            this.version = version;
+            this.localPhotosMap = localPhotosMap;
+            this.localPhotos = new ArrayList<>(localPhotosMap.values());
+            for (LocalPhoto localPhoto : localPhotos) {
+                totalBytes += localPhoto.getFileSize();
+            }
+            this.sortIndexes = new SortedIndex[SortOrder.values().length];
+            for (SortOrder order : SortOrder.values()) {
+                SortedIndex<LocalPhoto> index = new SortedIndex<>(order.comparator);
+                index.rebuild(localPhotos);
+                sortIndexes[order.ordinal()] = index;
+            }
+        }
+
+
+        /**
+         * Copy constructor, create a private copy of other snapshot with the next version,
+         * so the writer can modify it before publishing it.
+         * @param other is the snapshot you want to copy.
+         */
+        @SuppressWarnings("unchecked")
+        private Snapshot(Snapshot other) {
+            this.version = other.version + 1;
+            this.localPhotosMap = new HashMap<>(other.localPhotosMap);
+            this.localPhotos = new ArrayList<>(other.localPhotos);
+            this.totalBytes = other.totalBytes;
+            this.sortIndexes = new SortedIndex[other.sortIndexes.length];
+            for (int i = 0; i < sortIndexes.length; i++) {
+                sortIndexes[i] = new SortedIndex<LocalPhoto>(other.sortIndexes[i]);
+            }
+        }
+
+
+        /**
+         * Return the index of the gaven sort order.
+         * @param order is the sort order.
+         * @return the index that hold the slots of the photos sorted according to the order.
+         */
+        @SuppressWarnings("unchecked")
+        private SortedIndex<LocalPhoto> indexOf(SortOrder order) {
+            return (SortedIndex<LocalPhoto>) sortIndexes[order.ordinal()];
+        }
+
+
+        /**
+         * Add the local photo to the map, list and all the indexes,
+         * call it only on a private copy before publishing it.
+         * @param localPhoto is the local photo you want to add.
+         */
+        private void add(LocalPhoto localPhoto) {
+            localPhotosMap.put(localPhoto.getPhotoId(), localPhoto);
+            localPhotos.add(localPhoto);
+            totalBytes += localPhoto.getFileSize();
+            final int slot = localPhotos.size() - 1;
+            for (SortOrder order : SortOrder.values()) {
+                indexOf(order).insert(slot, localPhotos);
+            }
+        }
+
+
+        /**
+         * Remove the local photo from the map, list and from all the sort indexes, then move
+         * the last photo in the list to the free slot, so the list stay compact.
+         * Call it only on a private copy before publishing it.
+         * @param photoId is the name (unique Id) of the photo you want to remove.
+         * @return the removed photo, or {@code null} if NOT found.
+         */
+        private LocalPhoto remove(String photoId) {
+            final LocalPhoto localPhoto = localPhotosMap.remove(photoId);
+            if (localPhoto == null) {
+                return null;
+            }
+            final SortedIndex<LocalPhoto> dateIndex = indexOf(SortOrder.DateAdded);
+            final int slot = dateIndex.get(dateIndex.positionOf(localPhoto, localPhotos));
+            for (SortOrder order : SortOrder.values()) {
+                indexOf(order).remove(localPhoto, localPhotos);
+            }
+            final int lastSlot = localPhotos.size() - 1;
+            if (slot != lastSlot) {
+                final LocalPhoto lastPhoto = localPhotos.get(lastSlot);
+                for (SortOrder order : SortOrder.values()) {
+                    indexOf(order).relocate(lastPhoto, localPhotos, slot);
+                }
+                localPhotos.set(slot, lastPhoto);
+            }
+            localPhotos.remove(lastSlot);
+            totalBytes -= localPhoto.getFileSize();
+            return localPhoto;
+        }
+
+
+        /**
+         * Return the version of the snapshot.
+         * @return the version of the snapshot.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+
+        /**
+         * Return the number of the local photos in the snapshot.
+         * @return the number of the local photos.
+         */
+        public int size() {
+            return localPhotos.size();
+        }
+
+
+        /**
+         * Return the total size of all the local photos files, from the index, without
+         * walking the downloads folder.
+         * @return the total size in bytes.
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+
+        /**
+         * Check if a photo with the gaven photoId is in the snapshot.
+         * @param photoId is the id of the local photo.
+         * @return true if the snapshot contain the photo, false otherwise.
+         */
+        public boolean contains(String photoId) {
+            return localPhotosMap.containsKey(photoId);
+        }
+
+
+        /**
+         * Return the local photo with the gaven photoId.
+         * @param photoId is the id of the local photo.
+         * @return the local photo, or {@code null} if NOT in the snapshot.
+         */
+        public LocalPhoto get(String photoId) {
+            return localPhotosMap.get(photoId);
+        }
+
+
+        /**
+         * Return the position of the local photo in the list sorted with the gaven order.
+         * @param localPhoto is the local photo.
+         * @param order is the sort order.
+         * @return the position of the photo, or a negative value if NOT in the snapshot.
+         */
+        public int positionOf(LocalPhoto localPhoto, SortOrder order) {
+            return indexOf(order).positionOf(localPhoto, localPhotos);
+        }
+
+
+        /**
+         * Return a read only view of the photos, sorted with the gaven order.
+         * The view never change, because the snapshot never change.
+         * @param order is the sort order.
+         * @return a read only list of the local photos.
+         */
+        public List<LocalPhoto> asList(final SortOrder order) {
+            final SortedIndex<LocalPhoto> index = indexOf(order);
+            return new AbstractList<LocalPhoto>() {
+                @Override
+                public LocalPhoto get(int position) {
+                    return localPhotos.get(index.get(position));
+                }
+
+                @Override
+                public int size() {
+                    return localPhotos.size();
+                }
+            };
+        }
+    }
+
+
+    /**
+     * The changes between two versions of the local photos, we send it to the listeners
+     * after publishing a new version.
+     */
+    public static final class ChangeSet {
+
+        /** The snapshot before the change */
+        public final Snapshot oldSnapshot;
+
+        /** The new published snapshot */
+        public final Snapshot newSnapshot;
+
+        /** The photos that added in the new version */
+        public final List<LocalPhoto> added;
+
+        /** The photos that removed in the new version */
+        public final List<LocalPhoto> removed;
+
+        private ChangeSet(Snapshot oldSnapshot, Snapshot newSnapshot,
+                          List<LocalPhoto> added, List<LocalPhoto> removed) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+            this.added = Collections.unmodifiableList(added);
+            this.removed = Collections.unmodifiableList(removed);
+        }
+    }
+
+
+    /** The max number of times we scan the storage, if the photos changed while we scan */
+    private static final int MAX_RELOAD_ATTEMPTS = 3;
+
+
     /** We use this thread to load the photos names from the storage */
     private static final ExecutorService service = Executors.newSingleThreadExecutor();
 
@@ -58,41 +381,36 @@ final public class LocalPhotosDataSource {
     }
 
 
-    /**
-     * Map that hold the names (unique) of the local photos as keys,
-     * and the LocalPhoto objects as values
-     */
-    private final Map<String,LocalPhoto> localPhotosMap;
+    /** Handler of the main thread, we notify the listeners on the main thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
 
-    /**
-     * List that hold {@link LocalPhoto LocalPhoto} objects that hold a basis info of
-     * the local photos, we use this list to sort the local (downloaded) photos.
-     */
-    private final List<LocalPhoto> localPhotosList;
+    /** The listeners that we notify after publishing a new version */
+    private final List<OnLocalPhotosChangedListener> listeners = new CopyOnWriteArrayList<>();
 
 
-    /** Comparator to sort the list according to added date, in desc order. */
-    private final Comparator<LocalPhoto> addedComparator = (o1, o2) ->
-            Long.compare(o2.getImageFile().lastModified(), o1.getImageFile().lastModified());
+    /**
+     * The current published version of the local photos, the readers just read it and never lock,
+     * the writers replace it while holding the instance monitor, so they never lose an update.
+     */
+    private volatile Snapshot snapshot;
 
 
-    /** Comparator to sort the list according to width value, in desc order. */
-    private final Comparator<LocalPhoto> widthComparator = (o1, o2) ->
-            Integer.compare(o2.getWidth(), o1.getWidth());
+    /** The current sort order of {@link #getLocalPhotosList() the list} we show to the user */
+    private volatile SortOrder sortOrder = SortOrder.DateAdded;
 
 
-    /** Comparator to sort the list according to height value, in desc order. */
-    private final Comparator<LocalPhoto> heightComparator = (o1, o2) ->
-            Integer.compare(o2.getHeight(), o1.getHeight());
+    /**
+     * The names (ids) of the photos we show in {@link #getLocalPhotosList() the list}, or
+     * {@code null} to show all the photos, see {@link LocalMetadataIndex LocalMetadataIndex}.
+     */
+    private volatile Set<String> filter;
 
 
 
     /** private constructor to init the singleton instance*/
     private LocalPhotosDataSource() {
-        localPhotosMap = Collections.synchronizedMap(loadLocalPhotosMap());
-        localPhotosList = Collections.synchronizedList(new ArrayList<>(localPhotosMap.values()));
-        sortLocalPhotosList();
+        snapshot = new Snapshot(0, loadLocalPhotosMap());
     }
 
 
@@ -101,9 +419,10 @@ final public class LocalPhotosDataSource {
      * Method that read all the photos names (unique Id's) in the default folder of the downloaded
      * photos, and add them as keys in the map, and for each key create a {@link LocalPhoto LocalPhoto}
      * object, that hold basis info for the local photo.
+     * This method doesn't lock anything, so the readers and the writers can work while we scan.
      * @return map that hold Id's photos as a keys and  {@link LocalPhoto LocalPhotos} as a values.
      */
-    private synchronized Map<String, LocalPhoto> loadLocalPhotosMap() {
+    private static Map<String, LocalPhoto> loadLocalPhotosMap() {
         Map<String,LocalPhoto> downloadedMap = new HashMap<>(0);
         File defaultFolder= new File(DEFAULT_PATH);
         String[] imageNames = defaultFolder.list();
@@ -121,20 +440,56 @@ final public class LocalPhotosDataSource {
 
 
 
-    /** Sort the list of the local photos according to the added time */
-    private synchronized void sortLocalPhotosList() {
-        Collections.sort(localPhotosList, addedComparator);
+    /**
+     * Publish a new version of the local photos and notify the listeners on the main thread.
+     * Must be called while holding the instance monitor (the writers lock).
+     * @param newSnapshot is the new version.
+     * @param added is the photos that added in the new version.
+     * @param removed is the photos that removed in the new version.
+     */
+    private void publish(Snapshot newSnapshot, List<LocalPhoto> added, List<LocalPhoto> removed) {
+        final ChangeSet changeSet = new ChangeSet(snapshot, newSnapshot, added, removed);
+        snapshot = newSnapshot;
+        if (!listeners.isEmpty()) {
+            mainHandler.post(() -> {
+                for (OnLocalPhotosChangedListener listener : listeners) {
+                    listener.onLocalPhotosChanged(changeSet);
+                }
+            });
+        }
     }
 
 
 
-    /** Reload all the local photos from the storage into the map as into the list*/
-    private synchronized void reLoad() {
-       localPhotosMap.clear();
-       localPhotosMap.putAll(loadLocalPhotosMap());
-       localPhotosList.clear();
-       localPhotosList.addAll(localPhotosMap.values());
-       sortLocalPhotosList();
+    /**
+     * Reload all the local photos from the storage, we scan the storage without holding any lock,
+     * and then publish the new version. If other writer published a version while we scan, we
+     * scan again, so we don't override his changes with an old scan.
+     */
+    private void reLoad() {
+        for (int attempt = 1; attempt <= MAX_RELOAD_ATTEMPTS; attempt++) {
+            final Snapshot before = snapshot;
+            final Map<String, LocalPhoto> loaded = loadLocalPhotosMap();
+            synchronized (this) {
+                final Snapshot current = snapshot;
+                if (current == before || attempt == MAX_RELOAD_ATTEMPTS) {
+                    final List<LocalPhoto> added = new ArrayList<>();
+                    final List<LocalPhoto> removed = new ArrayList<>();
+                    for (LocalPhoto localPhoto : loaded.values()) {
+                        if (!current.contains(localPhoto.getPhotoId())) {
+                            added.add(localPhoto);
+                        }
+                    }
+                    for (LocalPhoto localPhoto : current.localPhotos) {
+                        if (!loaded.containsKey(localPhoto.getPhotoId())) {
+                            removed.add(localPhoto);
+                        }
+                    }
+                    publish(new Snapshot(current.version + 1, loaded), added, removed);
+                    return;
+                }
+            }
+        }
     }
 
 
@@ -145,7 +500,7 @@ final public class LocalPhotosDataSource {
      * {@link OnReloadLocalPhotosListener#afterLoading() afterLoading} method, so can update UI.
      * @param listener is a listener to notify him that we reload all the local photos from storage.
      */
-    final public synchronized void reLoad(OnReloadLocalPhotosListener listener) {
+    final public void reLoad(OnReloadLocalPhotosListener listener) {
         final android.os.Handler main = new android.os.Handler();
         service.submit(()->{
            reLoad();
@@ -155,25 +510,132 @@ final public class LocalPhotosDataSource {
 
 
 
+    /**
+     * Register a listener to notify him (on the main thread) after every new published version.
+     * @param listener is the listener you want to register.
+     */
+    final public void addOnLocalPhotosChangedListener(OnLocalPhotosChangedListener listener) {
+        listeners.add(listener);
+    }
+
+
+
+    /**
+     * Unregister a listener, after that we will NOT notify him.
+     * @param listener is the listener you want to unregister.
+     */
+    final public void removeOnLocalPhotosChangedListener(OnLocalPhotosChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+
+
+    /**
+     * Return the current published version of the local photos, never block.
+     * @return the current snapshot.
+     */
+    final public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+
+
     /**
      * Check if a photo with the gaven photoId is already downloaded (considered to be local photo).
+     * This method never block, it's just read the current snapshot.
      * @param photoId is the id of the local photo that you want to check if have been downloaded.
      * @return true if have been download the photo with the gaven id,
      * (the map contain the photoId), false otherwise.
      */
-    final public synchronized boolean contains(String photoId) {
-        return localPhotosMap.containsKey(photoId);
+    final public boolean contains(String photoId) {
+        return snapshot.contains(photoId);
     }
 
 
 
     /**
      * Get the list of the local (downloaded) photos, so you cn show them to the user.
+     * The list is a read only view of the current snapshot, sorted according to the current
+     * {@link #getSortOrder() sort order}, and contain only the photos that pass the current
+     * {@link #getFilter() filter}. The list never change, so after any change you must
+     * get the list again, see {@link OnLocalPhotosChangedListener OnLocalPhotosChangedListener}.
      * @return a list of {@link LocalPhoto local Photos} objects,
      * that contain basis info of the local photo.
      */
-    final public synchronized List<LocalPhoto> getLocalPhotosList() {
-        return localPhotosList;
+    final public List<LocalPhoto> getLocalPhotosList() {
+        return getLocalPhotosList(snapshot, sortOrder);
+    }
+
+
+
+    /**
+     * Get the list of the local photos of the gaven snapshot, sorted in the gaven order, that
+     * pass the current {@link #getFilter() filter}. Without filter it's just a view of the
+     * snapshot, with filter we copy the photos that pass it in one pass over the sorted index.
+     * @param snapshot is the snapshot of the local photos.
+     * @param sortOrder is the sort order of the list.
+     * @return a read only list of the local photos.
+     */
+    final public List<LocalPhoto> getLocalPhotosList(Snapshot snapshot, SortOrder sortOrder) {
+        final List<LocalPhoto> localPhotosList = snapshot.asList(sortOrder);
+        final Set<String> filter = this.filter;
+        if (filter == null) {
+            return localPhotosList;
+        }
+        final List<LocalPhoto> filtered =
+                new ArrayList<>(Math.min(filter.size(), localPhotosList.size()));
+        for (LocalPhoto localPhoto : localPhotosList) {
+            if (filter.contains(localPhoto.getPhotoId())) {
+                filtered.add(localPhoto);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+
+
+    /**
+     * Return the names (ids) of the photos we show in the
+     * {@link #getLocalPhotosList() local photos list}.
+     * @return the names (ids) of the photos we show, or {@code null} if we show all the photos.
+     */
+    @Nullable
+    final public Set<String> getFilter() {
+        return filter;
+    }
+
+
+
+    /**
+     * Show only the gaven photos in the {@link #getLocalPhotosList() local photos list}, we use it
+     * to show the results of {@link LocalMetadataIndex#query(Collection) the metadata index}.
+     * Notice: you must get the list again and refresh the UI after changing the filter.
+     * @param filter is the names (ids) of the photos we show, or {@code null} to show all of them.
+     */
+    final public void setFilter(@Nullable Set<String> filter) {
+        this.filter = filter == null ? null : Collections.unmodifiableSet(filter);
+    }
+
+
+
+    /**
+     * Return the current sort order of the {@link #getLocalPhotosList() local photos list}.
+     * @return the current sort order.
+     */
+    final public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+
+
+    /**
+     * Change the sort order of the {@link #getLocalPhotosList() local photos list}, we keep an
+     * index for every order, so the change is instant and we don't sort the photos again.
+     * Notice: you must get the list again and refresh the UI after changing the order.
+     * @param sortOrder is the new sort order.
+     */
+    final public void setSortOrder(SortOrder sortOrder) {
+        this.sortOrder = sortOrder;
     }
 
 
@@ -186,15 +648,74 @@ final public class LocalPhotosDataSource {
      * @param formatExtension is the format of the photo, could be PNG, JPG.
      * @return true if we succeed to add the photo to the list and map, false otherwise.
      */
-    final public synchronized boolean add(String photoId, String formatExtension) {
-        if (!localPhotosMap.containsKey(photoId)) {
-            File imageFile = new File(DEFAULT_PATH, (photoId + formatExtension));
-            LocalPhoto addImage = new LocalPhoto(photoId, imageFile);
-            localPhotosMap.put(photoId, addImage);
-            localPhotosList.add(0 , addImage);
+    final public boolean add(String photoId, String formatExtension) {
+        if (snapshot.contains(photoId)) {
+            return false;
+        }
+        /* Read the file attributes before taking the lock, so we don't block the other writers */
+        final File imageFile = new File(DEFAULT_PATH, (photoId + formatExtension));
+        final LocalPhoto addImage = new LocalPhoto(photoId, imageFile);
+        synchronized (this) {
+            if (snapshot.contains(photoId)) {
+                return false;
+            }
+            final Snapshot newSnapshot = new Snapshot(snapshot);
+            newSnapshot.add(addImage);
+            publish(newSnapshot, Collections.singletonList(addImage),
+                    Collections.<LocalPhoto>emptyList());
             return true;
         }
-        return false;
+    }
+
+
+
+    /**
+     * Remove all the local photos with the gaven ids from the map and from the list, and publish
+     * one new version for the whole batch.
+     * @param photoIds is the names (unique Ids) of the photos you want to remove.
+     * @return the photos that removed, the photos that NOT found are ignored.
+     */
+    final public synchronized List<LocalPhoto> removeAll(Collection<String> photoIds) {
+        final Snapshot newSnapshot = new Snapshot(snapshot);
+        final List<LocalPhoto> removed = new ArrayList<>(photoIds.size());
+        for (String photoId : photoIds) {
+            final LocalPhoto localPhoto = newSnapshot.remove(photoId);
+            if (localPhoto != null) {
+                removed.add(localPhoto);
+            }
+        }
+        if (!removed.isEmpty()) {
+            publish(newSnapshot, Collections.<LocalPhoto>emptyList(), removed);
+        }
+        return removed;
+    }
+
+
+
+    /**
+     * Delete the files of all the gaven local photos in separate thread, and then remove all the
+     * deleted photos in one batch, see {@link #removeAll(Collection) removeAll}, so we publish one
+     * version and the UI refresh once for the whole batch, and then notify the caller (listener)
+     * on the caller thread. The photos that their files already NOT exist are removed as well.
+     * @param localPhotos is the local photos you want to delete.
+     * @param listener is a listener to notify him after deleting the batch.
+     */
+    final public void deleteAll(final Collection<LocalPhoto> localPhotos,
+                                final OnDeleteLocalPhotosListener listener) {
+        final android.os.Handler main = new android.os.Handler();
+        final List<LocalPhoto> batch = new ArrayList<>(localPhotos);
+        service.submit(() -> {
+            final List<String> photoIds = new ArrayList<>(batch.size());
+            for (LocalPhoto localPhoto : batch) {
+                final File imageFile = localPhoto.getImageFile();
+                if (imageFile.delete() || !imageFile.exists()) {
+                    photoIds.add(localPhoto.getPhotoId());
+                }
+            }
+            final int deletedCount = photoIds.isEmpty() ? 0 : removeAll(photoIds).size();
+            final int failedCount = batch.size() - photoIds.size();
+            main.post(() -> listener.afterDeleting(deletedCount, failedCount));
+        });
     }
 
 
@@ -205,12 +726,8 @@ final public class LocalPhotosDataSource {
      * @param photoId is the name (unique Id) of the photo you want to remove.
      * @return true if we succeed to remove the local photo.
      */
-    final public synchronized boolean remove(String photoId) {
-        if (localPhotosMap.containsKey(photoId)) {
-            LocalPhoto removeImage = localPhotosMap.remove(photoId);
-            return localPhotosList.remove(removeImage);
-        }
-        return false;
+    final public boolean remove(String photoId) {
+        return !removeAll(Collections.singletonList(photoId)).isEmpty();
     }
 
 
@@ -221,7 +738,7 @@ final public class LocalPhotosDataSource {
      * @param localPhoto is the {@link LocalPhoto local photo}  you want to remove.
      * @return true if we succeed to remove the local photo.
      */
-    final public synchronized boolean remove(LocalPhoto localPhoto) {
+    final public boolean remove(LocalPhoto localPhoto) {
         return remove(localPhoto.getPhotoId());
     }
 
@@ -230,18 +747,19 @@ final public class LocalPhotosDataSource {
     /**
      * Remove the local photo with id equal to photoId from the map as will from the list, so the
      * application can be synchronized. we use it when you want to delete a photo from the app.
-     * Notice: this app is more efficient from other method if you know the index of the photo in
-     * the list, try to use it cost O(1).
+     * Notice: the index is the position of the photo in the list with the current sort order,
+     * we use it to verify that we remove the same photo the user see.
      * @param photoId is the name (unique Id) of the photo you want to remove to the map and list.
-     * @param index is the index of the photo you want to remove in the {@link #localPhotosList list}.
+     * @param index is the index of the photo you want to remove in the
+     * {@link #getLocalPhotosList() list}.
      * @return true if we succeed to remove the photo, false otherwise.
      */
     final public synchronized boolean remove(String photoId, int index) {
-        if (localPhotosMap.containsKey(photoId) && index < localPhotosList.size() &&
-                localPhotosMap.get(photoId) == localPhotosList.get(index)) {
-            localPhotosMap.remove(photoId);
-            localPhotosList.remove(index);
-            return true;
+        final List<LocalPhoto> localPhotosList = getLocalPhotosList();
+        final LocalPhoto localPhoto = snapshot.get(photoId);
+        if (localPhoto != null && index >= 0 && index < localPhotosList.size() &&
+                localPhoto == localPhotosList.get(index)) {
+            return remove(photoId);
         }
         return false;
     }
@@ -251,13 +769,14 @@ final public class LocalPhotosDataSource {
     /**
      * Remove the {@link LocalPhoto local photo} from the map as will from the list, so the
      * application can be synchronized. we use it when you want to delete a photo from the app.
-     * Notice: this app is more efficient from other method if you know the index of the photo in
-     * the list, try to use it cost O(1).
+     * Notice: the index is the position of the photo in the list with the current sort order,
+     * we use it to verify that we remove the same photo the user see.
      * @param localPhoto is the photo you want to remove to the map and list.
-     * @param index is the index of the photo you want to remove in the {@link #localPhotosList list}.
+     * @param index is the index of the photo you want to remove in the
+     * {@link #getLocalPhotosList() list}.
      * @return true if we succeed to remove the photo, false otherwise.
      */
-    final public synchronized boolean remove(LocalPhoto localPhoto, int index) {
+    final public boolean remove(LocalPhoto localPhoto, int index) {
         return remove(localPhoto.getPhotoId(),index);
     }
 }
@@ -0,0 +1,652 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that hold small pre-scaled thumbnails of the local (downloaded) photos, so the
+ * downloads tab never decode the full resolution files just to show them in a small grid cell.
+ *
+ * All the thumbnails are packed (as JPEG bytes) in one append only file in the private folder of
+ * the application (NOT in the downloads folder, because every file there considered as a photo),
+ * and we read them through a read only memory mapping of that file, with an index in memory
+ * that map the photo name (id) to the place of his thumbnail in the file. The mapping grow
+ * geometrically, the newest records (after the end of the mapping) read with positional reads
+ * of the file until the next remap, so a backfill of many thumbnails NOT map the file again for
+ * every thumbnail.
+ *
+ * The pack file format: a header (magic, version), then records one after one:
+ * [int id length][id bytes (UTF-8)][int data length][data bytes], when we remove a thumbnail we
+ * append a record with data length {@code -1} (tombstone), and we compact the file when we open
+ * it if most of it is dead records.
+ *
+ * We generate the thumbnails at save time from the bitmap we already have in memory
+ * (see {@link #put(String, Bitmap)}), or lazily in the background for the photos that have NO
+ * thumbnail yet, see {@link #generate(LocalPhoto, OnThumbnailReadyListener) generate}.
+ */
+final public class LocalThumbnailStore {
+
+
+    /**
+     * To use {@link #generate(LocalPhoto, OnThumbnailReadyListener) generate} you must send a
+     * listener, we call him on the main thread after we generate the thumbnail.
+     */
+    public interface OnThumbnailReadyListener {
+
+        /**
+         * Called on the main thread after we generate the thumbnail.
+         * @param photoId is the name (unique Id) of the photo.
+         * @param thumbnail is the thumbnail (JPEG bytes), or {@code null} if we failed to
+         *                  generate it.
+         */
+        void onThumbnailReady(@NonNull String photoId, @Nullable byte[] thumbnail);
+    }
+
+
+    /** The name of the pack file in the private folder of the application */
+    private static final String PACK_FILE_NAME = "local_thumbnails.pack";
+
+    /** The magic number in the head of the pack file */
+    private static final int MAGIC = 0x57485450;
+
+    /** The version of the pack file format */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The size of the header in bytes (magic + version) */
+    private static final int HEADER_SIZE = 8;
+
+    /** The data length of a tombstone record */
+    private static final int TOMBSTONE = -1;
+
+    /** The max length of the photo name (id) in bytes, longer one mean a broken record */
+    private static final int MAX_ID_LENGTH = 256;
+
+    /** The quality of the thumbnails JPEG compressing */
+    private static final int THUMB_QUALITY = 85;
+
+    /**
+     * We map the pack file again only when the records after the end of the mapping are more than
+     * the mapping (and more than this size), so the mapping grow geometrically
+     */
+    private static final long MIN_REMAP_BYTES = 256 * 1024;
+
+    /** We compact the pack file when open it, only if the dead bytes more than this size */
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    /** The charset of the photos names (ids) in the pack file */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+
+    /** Thread Pool with size 2, that generate the thumbnails and write them to the pack file */
+    private static final ExecutorService service = Executors.newFixedThreadPool(2);
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the private folder */
+    private static volatile LocalThumbnailStore ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static LocalThumbnailStore getInstance(@NonNull Context context) {
+        LocalThumbnailStore instance = ourInstance;
+        if (instance == null) {
+            synchronized (LocalThumbnailStore.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new LocalThumbnailStore(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, we use it where we have NO context,
+     * like saving a photo in {@link PhotoCacheDataSource PhotoCacheDataSource}.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static LocalThumbnailStore peekInstance() {
+        return ourInstance;
+    }
+
+
+    /** The pack file */
+    private final File packFile;
+
+    /** The width (in pixels) that the thumbnails should cover, the width of the grid cell */
+    private final int thumbWidthPx;
+
+    /** The height (in pixels) that the thumbnails should cover, the height of the grid cell */
+    private final int thumbHeightPx;
+
+    /**
+     * Index that map the name (unique Id) of the photo to the place of his thumbnail in the pack
+     * file, the offset of the data in the high 32 bits and the length in the low 32 bits.
+     * Guarded by this instance monitor.
+     */
+    private final Map<String, Long> index = new HashMap<>();
+
+    /** The listeners that wait for a thumbnail generation, guarded by this instance monitor */
+    private final Map<String, List<OnThumbnailReadyListener>> pending = new HashMap<>();
+
+    /** Handler of the main thread, we notify the listeners on the main thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** The file we append the thumbnails to, or {@code null} if we failed to open the pack file */
+    private RandomAccessFile writer;
+
+    /**
+     * Read only memory mapping of the pack file, the records after his end read with positional
+     * reads. Only the writer remap it (when it grow enough), so the readers never map. Guarded by
+     * this instance monitor (with the index).
+     */
+    private MappedByteBuffer mapped;
+
+    /** The number of dead bytes (removed or replaced records) in the pack file */
+    private long deadBytes;
+
+
+
+    /**
+     * private constructor to init the singleton instance, open the pack file and build the index.
+     * @param context the application context.
+     */
+    private LocalThumbnailStore(Context context) {
+        final DisplayUtil.ThumbRes thumbRes = DisplayUtil.getThumbRes(context);
+        this.thumbWidthPx = thumbRes.widthPx;
+        this.thumbHeightPx = thumbRes.heightPx;
+        this.packFile = new File(context.getFilesDir(), PACK_FILE_NAME);
+        LocalPhotosDataSource.getInstance().addOnLocalPhotosChangedListener(changeSet -> {
+            for (LocalPhoto localPhoto : changeSet.removed) {
+                remove(localPhoto.getPhotoId());
+            }
+        });
+        try {
+            open();
+            if (deadBytes > MIN_COMPACT_BYTES && deadBytes > packFile.length() / 2) {
+                compact();
+            }
+        }
+        catch (IOException e) {
+            /* Work without the store, the grid will generate the thumbnails in memory */
+            closeQuietly();
+            index.clear();
+        }
+    }
+
+
+
+    /**
+     * Open the pack file (create it if NOT exist), read all the records and build the index.
+     * If the last record is broken (the app killed while writing), we cut it.
+     * @throws IOException If an I/O error occurred.
+     */
+    private synchronized void open() throws IOException {
+        writer = new RandomAccessFile(packFile, "rw");
+        if (writer.length() < HEADER_SIZE) {
+            writer.setLength(0);
+            writer.writeInt(MAGIC);
+            writer.writeInt(FORMAT_VERSION);
+        }
+        else if (readHeaderIsInvalid()) {
+            writer.setLength(0);
+            writer.writeInt(MAGIC);
+            writer.writeInt(FORMAT_VERSION);
+        }
+        remap();
+        final ByteBuffer buffer = mapped.duplicate();
+        buffer.position(HEADER_SIZE);
+        int validEnd = HEADER_SIZE;
+        try {
+            while (buffer.hasRemaining()) {
+                final int idLength = buffer.getInt();
+                if (idLength <= 0 || idLength > MAX_ID_LENGTH) {
+                    break;
+                }
+                final byte[] idBytes = new byte[idLength];
+                buffer.get(idBytes);
+                final String photoId = new String(idBytes, UTF_8);
+                final int length = buffer.getInt();
+                if (length < TOMBSTONE) {
+                    break;
+                }
+                final Long old;
+                if (length == TOMBSTONE) {
+                    old = index.remove(photoId);
+                    deadBytes += 8 + idBytes.length;
+                }
+                else {
+                    final int offset = buffer.position();
+                    buffer.position(offset + length);
+                    old = index.put(photoId, pack(offset, length));
+                }
+                if (old != null) {
+                    deadBytes += 8 + idBytes.length + lengthOf(old);
+                }
+                validEnd = buffer.position();
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            /* Broken tail, cut it and keep all the valid records */
+        }
+        if (validEnd < writer.length()) {
+            writer.setLength(validEnd);
+            remap();
+        }
+        writer.seek(validEnd);
+    }
+
+
+
+    /**
+     * Check the header of the pack file.
+     * @return true if the header NOT match our format.
+     * @throws IOException If an I/O error occurred.
+     */
+    private boolean readHeaderIsInvalid() throws IOException {
+        writer.seek(0);
+        return writer.readInt() != MAGIC || writer.readInt() != FORMAT_VERSION;
+    }
+
+
+
+    /**
+     * Map again all the pack file, call it after the file shrink or grow enough, see
+     * {@link #remapIfGrown() remapIfGrown}, we call it on the writer thread, so the readers
+     * (the binding on the main thread) never map.
+     * @throws IOException If an I/O error occurred.
+     */
+    private synchronized void remap() throws IOException {
+        if (writer == null) {
+            throw new IOException("The pack file is closed");
+        }
+        mapped = writer.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, writer.length());
+    }
+
+
+
+    /**
+     * Map again all the pack file, only if the records after the end of the mapping are more than
+     * the mapping (and more than {@link #MIN_REMAP_BYTES}), so N appends map the file
+     * O(log N) times, and NOT N times.
+     * @throws IOException If an I/O error occurred.
+     */
+    private synchronized void remapIfGrown() throws IOException {
+        final long unmapped = writer.length() - (mapped == null ? 0 : mapped.limit());
+        if (unmapped >= Math.max(MIN_REMAP_BYTES, mapped == null ? 0 : mapped.limit())) {
+            remap();
+        }
+    }
+
+
+
+    /**
+     * Read the data of the record, from the mapping if the mapping cover it, otherwise with a
+     * positional read of the file (that NOT move the file pointer of the writer).
+     * @param place is the place of the data in the file (offset and length packed in a long).
+     * @param buffer is the mapping of the file.
+     * @param channel is the channel of the file.
+     * @return the data of the record.
+     * @throws IOException If an I/O error occurred, or the file is shorter than the record.
+     */
+    private static byte[] read(long place, MappedByteBuffer buffer, FileChannel channel)
+            throws IOException {
+        final byte[] data = new byte[lengthOf(place)];
+        final int offset = offsetOf(place);
+        if (offset + data.length <= buffer.limit()) {
+            final ByteBuffer reader = buffer.duplicate();
+            reader.position(offset);
+            reader.get(data);
+            return data;
+        }
+        final ByteBuffer target = ByteBuffer.wrap(data);
+        while (target.hasRemaining()) {
+            if (channel.read(target, offset + target.position()) < 0) {
+                throw new EOFException("The record is after the end of the pack file");
+            }
+        }
+        return data;
+    }
+
+
+
+    /**
+     * Rewrite the pack file with only the live records, so we free the dead bytes.
+     * @throws IOException If an I/O error occurred.
+     */
+    private synchronized void compact() throws IOException {
+        final File tmpFile = new File(packFile.getPath() + ".tmp");
+        final Map<String, Long> compacted = new HashMap<>(index.size() * 2);
+        try (RandomAccessFile out = new RandomAccessFile(tmpFile, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                final byte[] data = read(entry.getValue(), mapped, writer.getChannel());
+                compacted.put(entry.getKey(), writeRecord(out, entry.getKey(), data));
+            }
+        }
+        closeQuietly();
+        if (!tmpFile.renameTo(packFile)) {
+            throw new IOException("Failed to replace " + packFile);
+        }
+        index.clear();
+        index.putAll(compacted);
+        deadBytes = 0;
+        writer = new RandomAccessFile(packFile, "rw");
+        writer.seek(writer.length());
+        remap();
+    }
+
+
+
+    /**
+     * Write one record in the current position of the file.
+     * @param out is the file we write to.
+     * @param photoId is the name (unique Id) of the photo.
+     * @param data is the thumbnail bytes, or {@code null} to write a tombstone.
+     * @return the place of the data in the file (offset and length packed in a long).
+     * @throws IOException If an I/O error occurred.
+     */
+    private static long writeRecord(RandomAccessFile out, String photoId, byte[] data)
+            throws IOException {
+        final byte[] idBytes = photoId.getBytes(UTF_8);
+        final ByteBuffer record = ByteBuffer.allocate(
+                8 + idBytes.length + (data == null ? 0 : data.length));
+        record.putInt(idBytes.length).put(idBytes);
+        record.putInt(data == null ? TOMBSTONE : data.length);
+        if (data != null) {
+            record.put(data);
+        }
+        final int offset = (int) out.getFilePointer() + 8 + idBytes.length;
+        out.write(record.array());
+        return pack(offset, data == null ? 0 : data.length);
+    }
+
+
+
+    /** Close the pack file and ignore the errors */
+    private synchronized void closeQuietly() {
+        mapped = null;
+        if (writer != null) {
+            try {
+                writer.close();
+            }
+            catch (IOException ignored) {
+                /* Nothing to do */
+            }
+            writer = null;
+        }
+    }
+
+
+    /** Pack offset and length in one long */
+    private static long pack(int offset, int length) {
+        return ((long) offset << 32) | (length & 0xffffffffL);
+    }
+
+    /** Return the offset from packed place */
+    private static int offsetOf(long place) {
+        return (int) (place >>> 32);
+    }
+
+    /** Return the length from packed place */
+    private static int lengthOf(long place) {
+        return (int) place;
+    }
+
+
+
+    /**
+     * Check if we have a thumbnail for the photo.
+     * @param photoId is the name (unique Id) of the photo.
+     * @return true if we have a thumbnail for the photo.
+     */
+    public synchronized boolean contains(String photoId) {
+        return index.containsKey(photoId);
+    }
+
+
+
+    /**
+     * Return the thumbnail of the photo, we copy it from the memory mapping of the pack file, or
+     * read it from the file if it's newer than the mapping, we never map here.
+     * @param photoId is the name (unique Id) of the photo.
+     * @return the thumbnail JPEG bytes, or {@code null} if we have NO thumbnail for the photo.
+     */
+    @Nullable
+    public byte[] get(String photoId) {
+        final Long place;
+        final MappedByteBuffer buffer;
+        final FileChannel channel;
+        synchronized (this) {
+            place = index.get(photoId);
+            buffer = mapped;
+            channel = writer == null ? null : writer.getChannel();
+        }
+        if (place == null || buffer == null || channel == null) {
+            return null;
+        }
+        try {
+            return read(place, buffer, channel);
+        }
+        catch (IOException e) {
+            /* The store closed while we read */
+            return null;
+        }
+    }
+
+
+
+    /**
+     * Scale the bitmap to a thumbnail and append it to the pack file. We call it in the background
+     * when we save a new photo, because we already have his bitmap in memory.
+     * @param photoId is the name (unique Id) of the photo.
+     * @param bitmap is the full bitmap of the photo.
+     * @return the thumbnail JPEG bytes, or {@code null} if we failed to write it.
+     */
+    @Nullable
+    public byte[] put(String photoId, Bitmap bitmap) {
+        final Bitmap thumb = scale(bitmap);
+        final byte[] thumbnail = compress(thumb);
+        if (thumb != bitmap) {
+            thumb.recycle();
+        }
+        return append(photoId, thumbnail) ? thumbnail : null;
+    }
+
+
+
+    /**
+     * Remove the thumbnail of the photo, in the background, we call it for every photo that
+     * removed from {@link LocalPhotosDataSource LocalPhotosDataSource}.
+     * We remove only the record that we have now, if the photo saved again (a new record
+     * appended) before the background remove run, we keep the new thumbnail.
+     * @param photoId is the name (unique Id) of the photo.
+     */
+    public void remove(final String photoId) {
+        final Long place;
+        synchronized (this) {
+            place = index.get(photoId);
+        }
+        if (place == null) {
+            return;
+        }
+        service.submit(() -> {
+            synchronized (LocalThumbnailStore.this) {
+                final Long old = index.get(photoId);
+                if (!place.equals(old) || writer == null) {
+                    return;
+                }
+                index.remove(photoId);
+                try {
+                    writeRecord(writer, photoId, null);
+                    deadBytes += lengthOf(old);
+                }
+                catch (IOException e) {
+                    closeQuietly();
+                }
+            }
+        });
+    }
+
+
+
+    /**
+     * Generate the thumbnail of the local photo in the background, without decoding the full
+     * resolution of the file, and then notify the listener on the main thread.
+     * If the photo already in generation, we just add the listener.
+     * @param localPhoto is the local photo.
+     * @param listener is the listener that we notify after generating the thumbnail.
+     */
+    public void generate(final LocalPhoto localPhoto, final OnThumbnailReadyListener listener) {
+        final String photoId = localPhoto.getPhotoId();
+        synchronized (this) {
+            List<OnThumbnailReadyListener> listeners = pending.get(photoId);
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+            listeners = new ArrayList<>(1);
+            listeners.add(listener);
+            pending.put(photoId, listeners);
+        }
+        service.submit(() -> {
+            byte[] thumbnail = get(photoId);
+            if (thumbnail == null) {
+                final Bitmap bitmap = decodeSampled(localPhoto);
+                if (bitmap != null) {
+                    final Bitmap thumb = scale(bitmap);
+                    thumbnail = compress(thumb);
+                    if (thumb != bitmap) {
+                        thumb.recycle();
+                    }
+                    bitmap.recycle();
+                    append(photoId, thumbnail);
+                }
+            }
+            final List<OnThumbnailReadyListener> listeners;
+            synchronized (LocalThumbnailStore.this) {
+                listeners = pending.remove(photoId);
+            }
+            final byte[] result = thumbnail;
+            mainHandler.post(() -> {
+                for (OnThumbnailReadyListener readyListener : listeners) {
+                    readyListener.onThumbnailReady(photoId, result);
+                }
+            });
+        });
+    }
+
+
+
+    /**
+     * Append the thumbnail to the pack file and update the index.
+     * @param photoId is the name (unique Id) of the photo.
+     * @param thumbnail is the thumbnail JPEG bytes.
+     * @return true if we succeed to write the thumbnail, false otherwise.
+     */
+    private synchronized boolean append(String photoId, byte[] thumbnail) {
+        if (writer == null) {
+            return false;
+        }
+        try {
+            final long place = writeRecord(writer, photoId, thumbnail);
+            /* The readers read the new record from the file until the mapping grow over it */
+            remapIfGrown();
+            final Long old = index.put(photoId, place);
+            if (old != null) {
+                deadBytes += lengthOf(old);
+            }
+            return true;
+        }
+        catch (IOException e) {
+            closeQuietly();
+            return false;
+        }
+    }
+
+
+
+    /**
+     * Decode the local photo file with the biggest sample size (power of 2) that still cover
+     * the thumbnail size, so we never decode the full resolution.
+     * @param localPhoto is the local photo.
+     * @return the decoded bitmap, or {@code null} if we failed to decode the file.
+     */
+    @Nullable
+    private Bitmap decodeSampled(LocalPhoto localPhoto) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        final int width = localPhoto.getWidth();
+        final int height = localPhoto.getHeight();
+        while (width / (options.inSampleSize * 2) >= thumbWidthPx &&
+                height / (options.inSampleSize * 2) >= thumbHeightPx) {
+            options.inSampleSize *= 2;
+        }
+        return BitmapFactory.decodeFile(localPhoto.getImageFile().getPath(), options);
+    }
+
+
+
+    /**
+     * Scale the bitmap so it cover the thumbnail size and keep his aspect ratio.
+     * @param bitmap is the bitmap you want to scale.
+     * @return the scaled bitmap, or the same bitmap if it's already small.
+     */
+    private Bitmap scale(Bitmap bitmap) {
+        final float scale = Math.max((float) thumbWidthPx / bitmap.getWidth(),
+                (float) thumbHeightPx / bitmap.getHeight());
+        if (scale >= 1f) {
+            return bitmap;
+        }
+        final int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        final int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+
+
+
+    /**
+     * Compress the thumbnail bitmap to JPEG bytes.
+     * @param thumb is the thumbnail bitmap.
+     * @return the JPEG bytes.
+     */
+    private static byte[] compress(Bitmap thumb) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        thumb.compress(Bitmap.CompressFormat.JPEG, THUMB_QUALITY, out);
+        return out.toByteArray();
+    }
+}
@@ -10,15 +10,19 @@ import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.Tag;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -29,7 +33,8 @@ import java.util.concurrent.Executors;
 /**
  * API that provide asynchronous methods:
  * 1 - {@link #getPhotoCache(String, String, Context, OnPhotoCacheArrivedListener) getPhotoCache}
- * that receive listener as a parameter and then get the image with her details from the internet
+ * that receive listener as a parameter and then get the image with her details from the disk
+ * tier of the full photos ({@link FullPhotoDiskCache FullPhotoDiskCache}), or from the internet
  * and cache it, and then call one of the listener methods (onResult, onError, depends the situation)
  * and run it on the caller thread - main thread.
  * 2 - {@link #saveImageFile(PhotoCache, String, int, OnImageFileSavedListener) saveImageFile}
@@ -71,6 +76,13 @@ public class PhotoCacheDataSource {
     /** Thread Pool with size 4, that do all the missions in the API */
     private static final ExecutorService service = Executors.newFixedThreadPool(4);
 
+    /**
+     * One thread for the maintenance tasks, they run one after the other in the order we queued
+     * them, so two maintenance tasks never work on the same photos in the same time.
+     */
+    private static final ExecutorService maintenanceService =
+            Executors.newSingleThreadExecutor();
+
 
     /** Template for the website we connect to him to get the full photo info's */
     private static final String ADDRESS_TEMPLATE = "https://wallhaven.cc/w/%s";
@@ -123,6 +135,11 @@ public class PhotoCacheDataSource {
             final String tagText = eTag.select("a[class=tagname]").first().text();
             tags.add(new Tag(tagId, tagText));
         }
+        /* Keep the tags for the offline autocomplete of the search */
+        final TagSuggestions tagSuggestions = TagSuggestions.peekInstance();
+        if (tagSuggestions != null) {
+            tagSuggestions.harvest(tags);
+        }
 
         Elements eColors = doc.select("[class=color]");
         /* FullPhoto member*/
@@ -164,7 +181,7 @@ public class PhotoCacheDataSource {
         final File imageFile = new File(mkFolders,imageNameWithExtension);
         boolean createStatus = imageFile.createNewFile();
         if (createStatus) {
-            FileOutputStream outputStream = new FileOutputStream(imageFile);
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(imageFile));
             bitmap.compress(format, quality, outputStream);
             outputStream.flush();
             outputStream.close();
@@ -173,12 +190,113 @@ public class PhotoCacheDataSource {
     }
 
 
+    /**
+     * Run a background maintenance task (like the storage quota eviction) on one maintenance
+     * thread, the tasks run one by one in the order we submit them, so the maintenance never
+     * add more storage work than one more saving task, and never race with itself.
+     * @param task is the maintenance task.
+     */
+    public static void submitMaintenance(final Runnable task) {
+        maintenanceService.submit(task);
+    }
+
+
+    /**
+     * Read the photo from the disk tier of the full photos, and decode the image, we call it in a
+     * background thread before we go to the internet.
+     * @param photoId is photo id that you want to get.
+     * @param defaultPath is the default path of the saving images.
+     * @param context  Any context, will not be retained.
+     * @return the photo cache, or {@code null} if the photo NOT in the disk tier, or we failed
+     * to decode it (then we delete it from the disk tier).
+     * @throws InterruptedException if the thread interrupted while we decode the image.
+     */
+    private static PhotoCache getPhotoCacheFromDisk(final String photoId,
+                                                    final String defaultPath,
+                                                    final Context context)
+            throws InterruptedException {
+        final FullPhotoDiskCache diskCache = FullPhotoDiskCache.peekInstance();
+        final FullPhotoDiskCache.Entry entry = diskCache != null ? diskCache.get(photoId) : null;
+        if (entry == null) {
+            return null;
+        }
+        try {
+            final Drawable drawableCache = Glide
+                    .with(context)
+                    .load(entry.image)
+                    .submit()
+                    .get();
+            return new PhotoCache(entry.fullPhoto, drawableCache, defaultPath);
+        }
+        catch (ExecutionException e) {
+            diskCache.remove(photoId);
+            return null;
+        }
+    }
+
+
+    /**
+     * Return the content hash of the bytes that we downloaded for the photo, we compute it only
+     * once (lazily, when we check the photo before we save it, NOT when we open it), from the
+     * disk tier of the full photos, or from the data cache of Glide.
+     * Call it on a background thread, it read and digest the whole original file.
+     * @param photoCache is the photo, we keep the hash in it.
+     * @param context  Any context, will not be retained.
+     * @return the content hash, or {@code 0} if the bytes NOT found.
+     * @throws InterruptedException if the thread interrupted while we wait for Glide.
+     */
+    public static long getContentHashSync(final PhotoCache photoCache, final Context context)
+            throws InterruptedException {
+        long contentHash = photoCache.getContentHash();
+        if (contentHash != 0) {
+            return contentHash;
+        }
+        final FullPhotoDiskCache diskCache = FullPhotoDiskCache.peekInstance();
+        final FullPhotoDiskCache.Entry entry =
+                diskCache != null ? diskCache.get(photoCache.getPhotoId()) : null;
+        contentHash = entry != null
+                ? DuplicatesIndex.contentHashOf(entry.image)
+                : getSourceContentHash(photoCache.getFullPhoto().getPhotoUrl(), context);
+        photoCache.setContentHash(contentHash);
+        return contentHash;
+    }
+
+
+    /**
+     * Compute the content hash of the bytes that Glide downloaded for the photo, we read them from
+     * the data cache of Glide, it hold the original file, so the same photo under another id have
+     * the same hash.
+     * @param photoUrl is the url of the full resolution photo, that Glide already loaded.
+     * @param context  Any context, will not be retained.
+     * @return the content hash, or {@code 0} if the bytes NOT in the data cache of Glide.
+     * @throws InterruptedException if the thread interrupted while we wait for Glide.
+     */
+    private static long getSourceContentHash(final String photoUrl, final Context context)
+            throws InterruptedException {
+        final FutureTarget<File> target = Glide
+                .with(context)
+                .downloadOnly()
+                .load(photoUrl)
+                .apply(new RequestOptions().onlyRetrieveFromCache(true))
+                .submit();
+        try {
+            return DuplicatesIndex.contentHashOf(target.get());
+        }
+        catch (ExecutionException | IOException e) {
+            return 0L;
+        }
+        finally {
+            Glide.with(context).clear(target);
+        }
+    }
+
+
     /* Async methods that getting image from internet and saving image to storage : */
 
     /**
      * Async method that receive listener as a parameter and then get the image with her details
-     * from the internet and cache it, and then call one of the listener methods
-     * (onResult(PhotoCache), onError(Exception), depends the situation)
+     * from the disk tier of the full photos, or from the internet and cache it, and then call one
+     * of the listener methods (onResult(PhotoCache), onError(Exception), depends the situation)
      * and run it on the caller thread - main thread.
      * @param photoId a String that represent the photo id that you want to get.
      * @param defaultPath is the default path of the saving images, it's necessary to check at runtime
@@ -200,13 +318,20 @@ public class PhotoCacheDataSource {
         final android.os.Handler main = new android.os.Handler();
         service.submit(() -> {
             try {
-                final FullPhoto fullPhoto = getFullPhotoSync(photoId);
-                final Drawable drawableCache = Glide
-                        .with(context)
-                        .load(fullPhoto.getPhotoUrl())
-                        .submit()
-                        .get();
-                final PhotoCache photoCache = new PhotoCache(fullPhoto,drawableCache,defaultPath);
+                final PhotoCache fromDisk = getPhotoCacheFromDisk(photoId, defaultPath, context);
+                final PhotoCache photoCache;
+                if (fromDisk != null) {
+                    photoCache = fromDisk;
+                }
+                else {
+                    final FullPhoto fullPhoto = getFullPhotoSync(photoId);
+                    final Drawable drawableCache = Glide
+                            .with(context)
+                            .load(fullPhoto.getPhotoUrl())
+                            .submit()
+                            .get();
+                    photoCache = new PhotoCache(fullPhoto, drawableCache, defaultPath);
+                }
 
                 main.post(() -> {
                     listener.onResult(photoCache);
@@ -253,6 +378,22 @@ public class PhotoCacheDataSource {
                 String imageName = photoCache.getPhotoId() + photoCache.getFormatExtension();
                 final boolean creationSucceed = saveImageFileSync(foldersPath, imageName,
                         photoCache.getFormat(), photoCache.getBitmapCache(), quality);
+                final DuplicatesIndex duplicatesIndex = DuplicatesIndex.peekInstance();
+                if (creationSucceed && duplicatesIndex != null) {
+                    duplicatesIndex.add(photoCache.getPhotoId(), photoCache.getContentHash(),
+                            DuplicatesIndex.perceptualHash(photoCache.getBitmapCache()));
+                }
+                /* We already have the bitmap in memory, so it's the cheapest time to make the
+                 * thumbnail, otherwise the downloads tab will generate it lazily */
+                final LocalThumbnailStore thumbnailStore = LocalThumbnailStore.peekInstance();
+                if (creationSucceed && thumbnailStore != null) {
+                    thumbnailStore.put(photoCache.getPhotoId(), photoCache.getBitmapCache());
+                }
+                /* The tags and colors are dropped with the photo cache, so index them now */
+                final LocalMetadataIndex metadataIndex = LocalMetadataIndex.peekInstance();
+                if (creationSucceed && metadataIndex != null) {
+                    metadataIndex.add(photoCache);
+                }
 
                     main.post(() -> {
                         if (creationSucceed) {
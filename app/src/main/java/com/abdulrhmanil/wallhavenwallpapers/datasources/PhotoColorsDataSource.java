@@ -0,0 +1,164 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ColorPalette;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * API that provide the dominant search colors of a local (downloaded) photo, so we can search
+ * the photos of the website with the colors of a local photo.
+ * If the metadata of the photo has colors (from the website, at the time we saved the photo),
+ * we map them to the nearest search colors. Otherwise we decode a small version of the photo
+ * (the stored thumbnail if we have it), and map every pixel to the nearest search color with the
+ * lookup table of {@link ColorPalette ColorPalette}, the most common search colors are the
+ * dominant colors.
+ */
+public class PhotoColorsDataSource {
+
+    /**
+     * To use {@link #getDominantColors(Context, LocalPhoto, int, OnPhotoColorsArrivedListener)
+     * getDominantColors} you must send a listener, we call him on the main thread with the colors.
+     */
+    public interface OnPhotoColorsArrivedListener {
+
+        /**
+         * Called on the main thread with the dominant search colors of the photo.
+         * @param colors are the search colors, the most dominant first, empty if we failed to
+         *               read the photo.
+         */
+        void onColors(@NonNull List<PhotoColor> colors);
+    }
+
+
+    /** The minimum size of the decoded photo, when we have NO thumbnail */
+    private static final int DECODE_SIZE_PX = 128;
+
+
+    /** One background thread, decoding one photo at a time is enough */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** Handler of the main thread, we notify the listeners on the main thread */
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+
+    /** private constructor, static methods only */
+    private PhotoColorsDataSource() {}
+
+
+
+    /**
+     * Find the dominant search colors of the local photo in the background, and then notify the
+     * listener on the main thread.
+     * @param context any context, will not be retained.
+     * @param localPhoto is the local photo.
+     * @param max is the maximum number of the colors.
+     * @param listener is the listener that we notify with the colors.
+     */
+    public static void getDominantColors(@NonNull Context context,
+                                         @NonNull final LocalPhoto localPhoto, final int max,
+                                         @NonNull final OnPhotoColorsArrivedListener listener) {
+        final LocalThumbnailStore thumbnailStore = LocalThumbnailStore.getInstance(context);
+        service.submit(() -> {
+            List<PhotoColor> colors = colorsFromMetadata(localPhoto, max);
+            if (colors.isEmpty()) {
+                colors = colorsFromPixels(decodeSmall(thumbnailStore, localPhoto), max);
+            }
+            final List<PhotoColor> result = colors;
+            mainHandler.post(() -> listener.onColors(result));
+        });
+    }
+
+
+
+    /**
+     * Return the colors of the metadata of the photo, mapped to the search colors.
+     * @param localPhoto is the local photo.
+     * @param max is the maximum number of the colors.
+     * @return the search colors, without duplicates, empty if the photo has NO metadata.
+     */
+    private static List<PhotoColor> colorsFromMetadata(LocalPhoto localPhoto, int max) {
+        final LocalMetadataIndex metadataIndex = LocalMetadataIndex.peekInstance();
+        final LocalMetadataIndex.Metadata metadata =
+                metadataIndex != null ? metadataIndex.get(localPhoto.getPhotoId()) : null;
+        if (metadata == null) {
+            return Collections.emptyList();
+        }
+        /* The index keep the search colors, already without duplicates */
+        final List<PhotoColor> colors = new ArrayList<>(max);
+        for (PhotoColor color : metadata.colors) {
+            if (colors.size() < max) {
+                colors.add(color);
+            }
+        }
+        return colors;
+    }
+
+
+    /**
+     * Return the dominant search colors of the pixels of the bitmap, and recycle the bitmap.
+     * @param bitmap is the bitmap, may be {@code null}.
+     * @param max is the maximum number of the colors.
+     * @return the search colors, the most dominant first, empty if NO bitmap.
+     */
+    private static List<PhotoColor> colorsFromPixels(@Nullable Bitmap bitmap, int max) {
+        if (bitmap == null) {
+            return Collections.emptyList();
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+        final int[] dominant = ColorPalette.dominant(pixels, 0, pixels.length, max);
+        final List<PhotoColor> colors = new ArrayList<>(dominant.length);
+        for (int rgb : dominant) {
+            colors.add(new PhotoColor(rgb));
+        }
+        return colors;
+    }
+
+
+    /**
+     * Decode a small version of the local photo, the stored thumbnail if we have it, otherwise
+     * the file with the biggest sample size (power of 2) that still cover
+     * {@link #DECODE_SIZE_PX}, so we never decode the full resolution.
+     * @param thumbnailStore is the store of the thumbnails.
+     * @param localPhoto is the local photo.
+     * @return the decoded bitmap, or {@code null} if we failed to decode.
+     */
+    @Nullable
+    private static Bitmap decodeSmall(LocalThumbnailStore thumbnailStore, LocalPhoto localPhoto) {
+        final byte[] thumbnail = thumbnailStore.get(localPhoto.getPhotoId());
+        if (thumbnail != null) {
+            final Bitmap bitmap = BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        final int width = localPhoto.getWidth();
+        final int height = localPhoto.getHeight();
+        while (width / (options.inSampleSize * 2) >= DECODE_SIZE_PX &&
+                height / (options.inSampleSize * 2) >= DECODE_SIZE_PX) {
+            options.inSampleSize *= 2;
+        }
+        return BitmapFactory.decodeFile(localPhoto.getImageFile().getPath(), options);
+    }
+}
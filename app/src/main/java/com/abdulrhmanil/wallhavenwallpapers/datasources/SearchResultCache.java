@@ -0,0 +1,393 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A Singleton that cache the pages of the search results, so going back to a recent search
+ * show the pages that the user already scrolled through without the internet.
+ * The pages are keyed by the canonical {@link SearchQuery#getKey() key} of the query and the
+ * page number, so equivalent queries share the pages.
+ *
+ * Two tiers:
+ * 1 - Memory, LRU of the last {@link #MAX_MEMORY_PAGES} pages, every page is compact, only two
+ * arrays (the ids and the resolutions), NOT the thumb photos objects.
+ * 2 - Disk, one small file for every page in the cache folder of the application, so the pages
+ * survive restarts, the file format: [int magic][int version][UTF key][int page][long time]
+ * [int count] and then count times [UTF id][UTF resolution].
+ *
+ * The pages expire after {@link #TTL_MILLIS} (the results of the website change), in both tiers.
+ * Call {@link #get(SearchQuery, int) get} and {@link #put(SearchQuery, int, List) put} only in
+ * the background (the threads of the search pages), they may touch the disk, we serve the memory
+ * hits there too, the pages still delivered in the order of the requests.
+ */
+final public class SearchResultCache {
+
+
+    /** The time that a cached page is valid */
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /** The maximum number of the pages in the memory tier */
+    private static final int MAX_MEMORY_PAGES = 64;
+
+    /**
+     * The maximum number of the pages in the disk tier, we trim the oldest when we open it, and
+     * after every {@link #TRIM_EVERY_WRITES} writes
+     */
+    private static final int MAX_DISK_PAGES = 256;
+
+    /** The number of the written pages between two trims of the disk tier */
+    private static final int TRIM_EVERY_WRITES = 32;
+
+    /** The name of the folder of the pages in the cache folder of the application */
+    private static final String FOLDER_NAME = "search_pages";
+
+    /** The magic number in the head of the page file */
+    private static final int MAGIC = 0x57485352;
+
+    /** The version of the page file format */
+    private static final int FORMAT_VERSION = 1;
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the cache folder */
+    private static volatile SearchResultCache ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static SearchResultCache getInstance(@NonNull Context context) {
+        SearchResultCache instance = ourInstance;
+        if (instance == null) {
+            synchronized (SearchResultCache.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new SearchResultCache(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, the data sources that don't have
+     * a context use it.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static SearchResultCache peekInstance() {
+        return ourInstance;
+    }
+
+
+
+    /**
+     * One cached page, the ids and the resolutions of the thumb photos in the same order.
+     */
+    private static final class Page {
+
+        /** The ids of the photos */
+        final String[] ids;
+
+        /** The resolutions of the photos */
+        final String[] resolutions;
+
+        /** The time that we fetched the page from the website */
+        final long fetchedAt;
+
+
+        Page(String[] ids, String[] resolutions, long fetchedAt) {
+            this.ids = ids;
+            this.resolutions = resolutions;
+            this.fetchedAt = fetchedAt;
+        }
+
+
+        /** Check if the page is still valid in the gaven time */
+        boolean isFresh(long now) {
+            return now - fetchedAt < TTL_MILLIS && now >= fetchedAt;
+        }
+
+
+        /** Create new thumb photos from the page, the caller own the list */
+        List<ThumbPhoto> toThumbPhotos() {
+            final List<ThumbPhoto> photos = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                photos.add(new ThumbPhoto(ids[i], resolutions[i]));
+            }
+            return photos;
+        }
+    }
+
+
+
+    /**
+     * Write and trim the disk tier on one background thread, the pages fetched on many threads,
+     * but only this thread touch the files (and the temporary files) of the disk tier
+     */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** The folder of the disk tier */
+    private final File folder;
+
+    /** The pages written since the last trim, touched only on the {@link #service disk thread} */
+    private int writesSinceTrim;
+
+    /** The memory tier, LRU by the access order, guarded by this monitor */
+    private final LinkedHashMap<String, Page> memory =
+            new LinkedHashMap<String, Page>(MAX_MEMORY_PAGES * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+                    return size() > MAX_MEMORY_PAGES;
+                }
+            };
+
+
+
+    /**
+     * private constructor to init the singleton instance, and drop the expired pages of the disk
+     * tier in the background.
+     * @param context the application context.
+     */
+    private SearchResultCache(Context context) {
+        this.folder = new File(context.getCacheDir(), FOLDER_NAME);
+        service.submit(this::trimDisk);
+    }
+
+
+
+    /**
+     * Return the key of one page.
+     * @param query is the query of the search.
+     * @param pageNum is the number of the page.
+     * @return the key of the page.
+     */
+    private static String pageKey(SearchQuery query, int pageNum) {
+        return query.getKey() + "&page=" + pageNum;
+    }
+
+
+    /**
+     * Return the file of the page in the disk tier, the name is the hash of the key, the file
+     * hold the key too, so a collision is only a miss.
+     * @param key is the key of the page.
+     * @return the file of the page.
+     */
+    private File fileOf(String key) {
+        return new File(folder, Integer.toHexString(key.hashCode()) + ".page");
+    }
+
+
+
+    /**
+     * Return the page from the memory tier only, never touch the disk.
+     * @param key is the key of the page.
+     * @return the thumb photos of the page, or {@code null} if the page NOT in the memory, or
+     * expired.
+     */
+    @Nullable
+    private List<ThumbPhoto> getFromMemory(String key) {
+        final Page page;
+        synchronized (this) {
+            page = memory.get(key);
+            if (page != null && !page.isFresh(System.currentTimeMillis())) {
+                memory.remove(key);
+                return null;
+            }
+        }
+        return page != null ? page.toThumbPhotos() : null;
+    }
+
+
+    /**
+     * Return the page from the memory tier, or from the disk tier (and then keep it in the memory
+     * tier), call it in the background.
+     * @param query is the query of the search.
+     * @param pageNum is the number of the page.
+     * @return the thumb photos of the page, or {@code null} if the page NOT cached, or expired.
+     */
+    @Nullable
+    public List<ThumbPhoto> get(@NonNull SearchQuery query, int pageNum) {
+        final String key = pageKey(query, pageNum);
+        final List<ThumbPhoto> fromMemory = getFromMemory(key);
+        if (fromMemory != null) {
+            return fromMemory;
+        }
+        final Page page = readPage(key);
+        if (page == null) {
+            return null;
+        }
+        synchronized (this) {
+            memory.put(key, page);
+        }
+        return page.toThumbPhotos();
+    }
+
+
+    /**
+     * Cache the page in both tiers, call it in the background after we fetched the page, the
+     * page written to the disk tier on the {@link #service single thread} of the disk tier.
+     * Empty pages (NO results, or after the last page) cached too, they are valid results.
+     * @param query is the query of the search.
+     * @param pageNum is the number of the page.
+     * @param photos is the thumb photos of the page.
+     */
+    public void put(@NonNull SearchQuery query, int pageNum, @NonNull List<ThumbPhoto> photos) {
+        final String key = pageKey(query, pageNum);
+        final String[] ids = new String[photos.size()];
+        final String[] resolutions = new String[photos.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = photos.get(i).getPhotoId();
+            resolutions[i] = photos.get(i).getWallRes();
+        }
+        final Page page = new Page(ids, resolutions, System.currentTimeMillis());
+        synchronized (this) {
+            memory.put(key, page);
+        }
+        service.submit(() -> writePage(key, pageNum, page));
+    }
+
+
+
+    /**
+     * Read the page from the disk tier, delete it if it's expired or broken.
+     * @param key is the key of the page.
+     * @return the page, or {@code null} if NOT cached, or expired.
+     */
+    @Nullable
+    private Page readPage(String key) {
+        final File file = fileOf(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown page file " + file);
+            }
+            if (!key.equals(in.readUTF())) {
+                /* Other page with the same hash */
+                return null;
+            }
+            in.readInt();
+            final long fetchedAt = in.readLong();
+            final int count = in.readInt();
+            final String[] ids = new String[count];
+            final String[] resolutions = new String[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readUTF();
+                resolutions[i] = in.readUTF();
+            }
+            final Page page = new Page(ids, resolutions, fetchedAt);
+            if (page.isFresh(System.currentTimeMillis())) {
+                return page;
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            /* Broken file, delete it like expired */
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        return null;
+    }
+
+
+    /**
+     * Write the page to the disk tier, into a temporary file that we rename, so a crash never
+     * leave a half written page. Call it only on the {@link #service single thread} of the disk
+     * tier, two pages with the same hash share the temporary file. Every
+     * {@link #TRIM_EVERY_WRITES} writes we trim the disk tier too, so it NOT grow while the
+     * application run.
+     * @param key is the key of the page.
+     * @param pageNum is the number of the page.
+     * @param page is the page.
+     */
+    private void writePage(String key, int pageNum, Page page) {
+        if (++writesSinceTrim >= TRIM_EVERY_WRITES) {
+            writesSinceTrim = 0;
+            trimDisk();
+        }
+        if (!folder.exists() && !folder.mkdirs()) {
+            return;
+        }
+        final File file = fileOf(key);
+        final File tmp = new File(folder, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeInt(pageNum);
+            out.writeLong(page.fetchedAt);
+            out.writeInt(page.ids.length);
+            for (int i = 0; i < page.ids.length; i++) {
+                out.writeUTF(page.ids[i]);
+                out.writeUTF(page.resolutions[i]);
+            }
+        }
+        catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+
+    /**
+     * Delete the expired pages (by the file time, the time we wrote them), and the oldest pages
+     * above {@link #MAX_DISK_PAGES}.
+     */
+    private void trimDisk() {
+        final File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final long[] modified = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+        }
+        final long[] sorted = modified.clone();
+        Arrays.sort(sorted);
+        /* The pages older than this are above the limit */
+        final long oldestKept = files.length > MAX_DISK_PAGES
+                ? sorted[files.length - MAX_DISK_PAGES] : Long.MIN_VALUE;
+        for (int i = 0; i < files.length; i++) {
+            if (now - modified[i] >= TTL_MILLIS || modified[i] < oldestKept) {
+                //noinspection ResultOfMethodCallIgnored
+                files[i].delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.Snapshot;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.SortOrder;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A Singleton that keep the downloads folder under a quota that the user choose.
+ * When the total size of the local photos is bigger than the quota, we delete the least recently
+ * used photos (viewed in full screen or set as wallpaper, or saved if never used) until we are
+ * under the quota again. Pinned photos are never deleted.
+ *
+ * The total size is taken from the {@link Snapshot snapshot} of
+ * {@link LocalPhotosDataSource LocalPhotosDataSource}, we never walk the downloads folder, and the
+ * eviction remove all the deleted photos from the data source in one batch.
+ * The eviction run as background maintenance on one thread, see
+ * {@link PhotoCacheDataSource#submitMaintenance(Runnable) submitMaintenance}, so two evictions
+ * never run together, and the first task load the usage file, so every eviction order the
+ * photos by the last use that we read.
+ * The last use times and the pinned photos persisted in a small file in the private folder, the
+ * use times written {@link #SAVE_DELAY_MILLIS} after the first use (so many views cost one
+ * write), and at once when the application go to the background, see {@link #flush() flush}.
+ */
+final public class StorageQuotaManager {
+
+
+    /**
+     * The quotas the user can choose, in bytes, {@code 0} is unlimited, their titles are the
+     * string array {@code quota_titles} in the resources, in the same order
+     */
+    public static final long[] QUOTAS = {0L, 500L << 20, 1L << 30, 2L << 30, 5L << 30};
+
+    /** The name of the preferences file */
+    private static final String PREFS_NAME = "storage_quota";
+
+    /** The key of the quota in the preferences */
+    private static final String KEY_QUOTA_BYTES = "quotaBytes";
+
+    /** The name of the usage file in the private folder of the application */
+    private static final String USAGE_FILE_NAME = "photo_usage.dat";
+
+    /** The magic number in the head of the usage file */
+    private static final int MAGIC = 0x57485553;
+
+    /** The version of the usage file format */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The time we wait after a use before we write the usage file, the next uses join the write */
+    private static final long SAVE_DELAY_MILLIS = 10_000;
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the private folder */
+    private static volatile StorageQuotaManager ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static StorageQuotaManager getInstance(@NonNull Context context) {
+        StorageQuotaManager instance = ourInstance;
+        if (instance == null) {
+            synchronized (StorageQuotaManager.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new StorageQuotaManager(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /** A singleton that hold the local photos */
+    private final LocalPhotosDataSource localPhotosUtil = LocalPhotosDataSource.getInstance();
+
+    /** The preferences that hold the quota */
+    private final SharedPreferences preferences;
+
+    /** The usage file */
+    private final File usageFile;
+
+    /** The last use time of the local photos by their names (ids), guarded by this monitor */
+    private final Map<String, Long> lastUsed = new HashMap<>();
+
+    /** The names (ids) of the pinned photos, guarded by this monitor */
+    private final Set<String> pinned = new HashSet<>();
+
+    /** True if we have changes that NOT written to the usage file yet, guarded by this monitor */
+    private boolean dirty;
+
+    /** True if the eviction already queued and NOT started yet, guarded by this monitor */
+    private boolean evictionQueued;
+
+    /** True if the delayed save already scheduled and NOT queued yet, guarded by this monitor */
+    private boolean saveScheduled;
+
+    /** Handler to schedule the delayed save */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** The delayed save, queue the save on the maintenance thread */
+    private final Runnable scheduledSave = () -> {
+        synchronized (StorageQuotaManager.this) {
+            saveScheduled = false;
+        }
+        PhotoCacheDataSource.submitMaintenance(this::save);
+    };
+
+    /** The quota in bytes, {@code 0} is unlimited */
+    private volatile long quotaBytes;
+
+
+
+    /**
+     * private constructor to init the singleton instance, load the usage file in the background
+     * and then enforce the quota.
+     * @param context the application context.
+     */
+    private StorageQuotaManager(Context context) {
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.quotaBytes = preferences.getLong(KEY_QUOTA_BYTES, 0L);
+        this.usageFile = new File(context.getFilesDir(), USAGE_FILE_NAME);
+        localPhotosUtil.addOnLocalPhotosChangedListener(changeSet -> {
+            if (!changeSet.added.isEmpty()) {
+                enforceQuota();
+            }
+            if (!changeSet.removed.isEmpty()) {
+                synchronized (StorageQuotaManager.this) {
+                    for (LocalPhoto localPhoto : changeSet.removed) {
+                        lastUsed.remove(localPhoto.getPhotoId());
+                        pinned.remove(localPhoto.getPhotoId());
+                    }
+                    dirty = true;
+                }
+            }
+        });
+        PhotoCacheDataSource.submitMaintenance(() -> {
+            load();
+            enforceQuotaSync();
+        });
+    }
+
+
+
+    /** Read the usage file, if it's broken we keep what we read */
+    private void load() {
+        if (!usageFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(usageFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final int count = in.readInt();
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    final String photoId = in.readUTF();
+                    final long time = in.readLong();
+                    final boolean isPinned = in.readBoolean();
+                    if (!lastUsed.containsKey(photoId)) {
+                        lastUsed.put(photoId, time);
+                    }
+                    if (isPinned) {
+                        pinned.add(photoId);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            /* Broken file, the photos we didn't read will be considered as never used */
+        }
+    }
+
+
+
+    /** Write the usage to the usage file, if we have changes */
+    private void save() {
+        final Map<String, Long> usedCopy;
+        final Set<String> pinnedCopy;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            usedCopy = new HashMap<>(lastUsed);
+            pinnedCopy = new HashSet<>(pinned);
+        }
+        final Set<String> photoIds = new HashSet<>(usedCopy.keySet());
+        photoIds.addAll(pinnedCopy);
+        final File tmpFile = new File(usageFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(photoIds.size());
+            for (String photoId : photoIds) {
+                final Long time = usedCopy.get(photoId);
+                out.writeUTF(photoId);
+                out.writeLong(time == null ? 0L : time);
+                out.writeBoolean(pinnedCopy.contains(photoId));
+            }
+        }
+        catch (IOException e) {
+            return;
+        }
+        if (!tmpFile.renameTo(usageFile)) {
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+
+
+    /**
+     * Return the quota in bytes.
+     * @return the quota in bytes, {@code 0} is unlimited.
+     */
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+
+
+    /**
+     * Change the quota, persist it and enforce it in the background.
+     * @param quotaBytes is the new quota in bytes, {@code 0} is unlimited.
+     */
+    public void setQuotaBytes(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+        preferences.edit().putLong(KEY_QUOTA_BYTES, quotaBytes).apply();
+        enforceQuota();
+    }
+
+
+
+    /**
+     * Return the total size of the local photos, from the index of the local photos.
+     * @return the total size in bytes.
+     */
+    public long getUsedBytes() {
+        return localPhotosUtil.getSnapshot().getTotalBytes();
+    }
+
+
+
+    /**
+     * Mark that the user viewed the local photo now.
+     * @param photoId is the name (unique id) of the local photo.
+     */
+    public void markViewed(String photoId) {
+        markUsed(photoId);
+    }
+
+
+
+    /**
+     * Mark that the user set the local photo as wallpaper now.
+     * @param photoId is the name (unique id) of the local photo.
+     */
+    public void markSetAsWallpaper(String photoId) {
+        markUsed(photoId);
+    }
+
+
+
+    /**
+     * Save the use time of the local photo, we write it to the file {@link #SAVE_DELAY_MILLIS}
+     * later (or when the application go to the background), if NOT written before by the next
+     * maintenance.
+     * @param photoId is the name (unique id) of the local photo.
+     */
+    private synchronized void markUsed(String photoId) {
+        lastUsed.put(photoId, System.currentTimeMillis());
+        dirty = true;
+        if (!saveScheduled) {
+            saveScheduled = true;
+            mainHandler.postDelayed(scheduledSave, SAVE_DELAY_MILLIS);
+        }
+    }
+
+
+
+    /**
+     * Write the changes of the usage now (in the background), and NOT wait for the delayed save,
+     * call it when the application go to the background, the process may be killed there.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (saveScheduled) {
+                saveScheduled = false;
+                mainHandler.removeCallbacks(scheduledSave);
+            }
+            if (!dirty) {
+                return;
+            }
+        }
+        PhotoCacheDataSource.submitMaintenance(this::save);
+    }
+
+
+
+    /**
+     * Check if the local photo is pinned.
+     * @param photoId is the name (unique id) of the local photo.
+     * @return true if the photo is pinned, false otherwise.
+     */
+    public synchronized boolean isPinned(String photoId) {
+        return pinned.contains(photoId);
+    }
+
+
+
+    /**
+     * Pin or unpin the local photo, the pinned photos never deleted by the eviction.
+     * @param photoId is the name (unique id) of the local photo.
+     * @param pin true to pin the photo, false to unpin it.
+     */
+    public void setPinned(String photoId, boolean pin) {
+        synchronized (this) {
+            if (pin) {
+                pinned.add(photoId);
+            }
+            else {
+                pinned.remove(photoId);
+            }
+            dirty = true;
+        }
+        PhotoCacheDataSource.submitMaintenance(this::save);
+    }
+
+
+
+    /**
+     * Enforce the quota in the background, we call it after every new photo that added to
+     * {@link LocalPhotosDataSource LocalPhotosDataSource}.
+     * If the eviction already queued, we don't queue it again.
+     */
+    public void enforceQuota() {
+        synchronized (this) {
+            if (evictionQueued) {
+                return;
+            }
+            evictionQueued = true;
+        }
+        PhotoCacheDataSource.submitMaintenance(this::enforceQuotaSync);
+    }
+
+
+
+    /**
+     * Delete the least recently used, NOT pinned, local photos until the total size is under
+     * the quota, then remove all of them from the data source in one batch, and save the usage.
+     * We run only on the maintenance thread, after the usage file loaded, and we take the
+     * snapshot now, so it has NOT the photos that the last eviction removed.
+     */
+    private void enforceQuotaSync() {
+        synchronized (this) {
+            evictionQueued = false;
+        }
+        final long quota = quotaBytes;
+        final Snapshot snapshot = localPhotosUtil.getSnapshot();
+        long excess = snapshot.getTotalBytes() - quota;
+        if (quota > 0 && excess > 0) {
+            final List<LocalPhoto> candidates = new ArrayList<>(snapshot.size());
+            final Map<String, Long> usedCopy;
+            synchronized (this) {
+                for (LocalPhoto localPhoto : snapshot.asList(SortOrder.DateAdded)) {
+                    if (!pinned.contains(localPhoto.getPhotoId())) {
+                        candidates.add(localPhoto);
+                    }
+                }
+                usedCopy = new HashMap<>(lastUsed);
+            }
+            Collections.sort(candidates, (o1, o2) ->
+                    Long.compare(lastUseOf(o1, usedCopy), lastUseOf(o2, usedCopy)));
+            final List<String> evicted = new ArrayList<>();
+            for (LocalPhoto localPhoto : candidates) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (!localPhotosUtil.contains(localPhoto.getPhotoId())) {
+                    /* Deleted by the user after the snapshot, its size NOT counted anymore */
+                    excess -= localPhoto.getFileSize();
+                }
+                else if (localPhoto.getImageFile().delete()) {
+                    evicted.add(localPhoto.getPhotoId());
+                    excess -= localPhoto.getFileSize();
+                }
+            }
+            if (!evicted.isEmpty()) {
+                localPhotosUtil.removeAll(evicted);
+            }
+        }
+        save();
+    }
+
+
+
+    /**
+     * Return the last use time of the local photo, if never used we take the time it saved.
+     * @param localPhoto is the local photo.
+     * @param usedCopy is the last use times.
+     * @return the last use time of the local photo.
+     */
+    private static long lastUseOf(LocalPhoto localPhoto, Map<String, Long> usedCopy) {
+        final Long time = usedCopy.get(localPhoto.getPhotoId());
+        return time != null ? Math.max(time, localPhoto.getLastModified())
+                : localPhoto.getLastModified();
+    }
+}
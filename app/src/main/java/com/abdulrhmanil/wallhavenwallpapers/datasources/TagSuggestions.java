@@ -0,0 +1,255 @@
+package com.abdulrhmanil.wallhavenwallpapers.datasources;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.TagPrefixIndex;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.Tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A Singleton that harvest the tags of every full photo that we fetch, and give instant offline
+ * autocomplete of the searched text from them, the tags that we saw more are suggested first.
+ *
+ * The tags kept in a {@link TagPrefixIndex prefix index} (immutable, compact, front coded on the
+ * disk) with the number of the photos that we saw every tag in, as the weight. The new tags wait
+ * in a small pending map, and we merge them into a new index in the background every
+ * {@link #MERGE_THRESHOLD} tags, or when the application go to the background
+ * ({@link #flush() flush}), and then write the index to the private folder of the application.
+ * The {@link #suggest(String, int) suggest} is lock free on the index, and lock the pending map
+ * only, so call it on the main thread while the user typing.
+ */
+final public class TagSuggestions {
+
+
+    /** The name of the index file in the private folder of the application */
+    private static final String INDEX_FILE_NAME = "tag_index.dat";
+
+    /** The magic number in the head of the index file */
+    private static final int MAGIC = 0x57485447;
+
+    /** The version of the index file format */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The number of the pending tags that we merge them into the index */
+    private static final int MERGE_THRESHOLD = 256;
+
+
+    /** Load, merge and write the index on one background thread */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** Lazy initialization for the Singleton, we need a context to find the private folder */
+    private static volatile TagSuggestions ourInstance;
+
+
+    /**
+     * Public static method to get the Singleton instance, create it in the first call.
+     * @param context any context, will not be retained, we use only the application context.
+     * @return the Singleton instance.
+     */
+    public static TagSuggestions getInstance(@NonNull Context context) {
+        TagSuggestions instance = ourInstance;
+        if (instance == null) {
+            synchronized (TagSuggestions.class) {
+                instance = ourInstance;
+                if (instance == null) {
+                    instance = new TagSuggestions(context.getApplicationContext());
+                    ourInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+
+    /**
+     * Return the Singleton instance if it's already created, the data sources that don't have
+     * a context use it.
+     * @return the Singleton instance, or {@code null} if NOT created yet.
+     */
+    @Nullable
+    public static TagSuggestions peekInstance() {
+        return ourInstance;
+    }
+
+
+
+    /** The index file */
+    private final File indexFile;
+
+    /** The merged index, replaced (never changed) after every merge */
+    private volatile TagPrefixIndex index = new TagPrefixIndex();
+
+    /** The tags that NOT merged yet, and how many times we saw them, guarded by this monitor */
+    private Map<String, Integer> pending = new HashMap<>();
+
+    /** True if a merge already submitted and NOT started yet, guarded by this monitor */
+    private boolean mergeSubmitted;
+
+
+
+    /**
+     * private constructor to init the singleton instance, and load the index file in the
+     * background.
+     * @param context the application context.
+     */
+    private TagSuggestions(Context context) {
+        this.indexFile = new File(context.getFilesDir(), INDEX_FILE_NAME);
+        service.submit(this::load);
+    }
+
+
+
+    /** Read the index file, if it's broken we start a new index */
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            index = TagPrefixIndex.readFrom(in);
+        }
+        catch (IOException e) {
+            /* Broken file, we rewrite it in the next merge */
+        }
+    }
+
+
+    /**
+     * Merge the pending tags into a new index and write it, into a temporary file that we rename,
+     * so a crash never leave a half written index.
+     */
+    private void merge() {
+        final Map<String, Integer> batch;
+        synchronized (this) {
+            mergeSubmitted = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        final TagPrefixIndex merged = index.plus(batch);
+        index = merged;
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            merged.writeTo(out);
+        }
+        catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+    }
+
+
+    /** Submit a merge, if NOT already submitted, must be called while holding the monitor */
+    private void submitMerge() {
+        if (!mergeSubmitted) {
+            mergeSubmitted = true;
+            service.submit(this::merge);
+        }
+    }
+
+
+
+    /**
+     * Add the tags of a full photo that we fetched, every tag count once for the photo.
+     * We call it on the fetching thread, right after we parsed the tags.
+     * @param tags are the tags of the photo.
+     */
+    public void harvest(@NonNull List<Tag> tags) {
+        synchronized (this) {
+            for (Tag tag : tags) {
+                final String term = TagPrefixIndex.normalize(tag.getTagText());
+                if (term.isEmpty()) {
+                    continue;
+                }
+                final Integer count = pending.get(term);
+                pending.put(term, count == null ? 1 : count + 1);
+            }
+            if (pending.size() >= MERGE_THRESHOLD) {
+                submitMerge();
+            }
+        }
+    }
+
+
+    /** Merge and write the pending tags now, call it when the application go to the background */
+    public void flush() {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                submitMerge();
+            }
+        }
+    }
+
+
+
+    /**
+     * Return the top tags that start with the typed text, the tags that we saw more first.
+     * The pending tags (the last tags that we harvested, NOT merged yet) are added to the
+     * weights of the top tags of the index, and suggested too.
+     * @param typed is the typed text, NOT normalized.
+     * @param max is the maximum number of the tags.
+     * @return new list of the tags, normalized, empty if NO tag start with the text.
+     */
+    @NonNull
+    public List<String> suggest(@NonNull String typed, int max) {
+        final String prefix = TagPrefixIndex.normalize(typed);
+        final List<String> result = new ArrayList<>(max);
+        if (prefix.isEmpty() || max <= 0) {
+            return result;
+        }
+        final TagPrefixIndex snapshot = index;
+        final int[] positions = snapshot.topPositions(prefix, max);
+        final Map<String, Integer> weights = new HashMap<>();
+        for (int position : positions) {
+            weights.put(snapshot.term(position), snapshot.weight(position));
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                final String term = entry.getKey();
+                if (term.startsWith(prefix)) {
+                    final Integer weight = weights.get(term);
+                    weights.put(term, (weight != null ? weight : snapshot.weightOf(term))
+                            + entry.getValue());
+                }
+            }
+        }
+        result.addAll(weights.keySet());
+        Collections.sort(result, (a, b) -> {
+            final int compare = Integer.compare(weights.get(b), weights.get(a));
+            return compare != 0 ? compare : a.compareTo(b);
+        });
+        return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+    }
+}
@@ -3,6 +3,7 @@ package com.abdulrhmanil.wallhavenwallpapers.datasources;
 import android.support.annotation.NonNull;
 
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
 import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.home;
 
 import org.jsoup.Jsoup;
@@ -11,16 +12,25 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 
 /**
  * API that provide 3 asynchronous methods:
- * (important note : every method work in synchronize way so the call order is saved, you will get
- * the the thumb order as the call method order).
+ * (important note : the pages fetched concurrently, but every method deliver the results in the
+ * call order, so the call order is saved, you will get the the thumb order as the call method
+ * order, see {@link OrderedDelivery OrderedDelivery}).
  *
  * 1 - {@link #getToplistPhotos(int, OnThumbPhotoArrivedListener) getToplistPhotos}
  * that receive num page and listener as a parameters and then get the 24 thump photos with there
@@ -39,6 +49,11 @@ import java.util.concurrent.Executors;
  * details form Latest category from specified page and then call one of the listener methods
  * (onResult, onError, depends the situation) and run it on the caller thread - main thread.
  * So the main thread can fill the recycle view with random thumb photos in appropriate fragment.
+ *
+ * Every request is a {@link SearchQuery SearchQuery}, the home feeds are queries of the home
+ * pages ({@link SearchQuery#forHome(home) forHome}), and the search is a query of the searched
+ * text, so all the requests go to the same address of the website, built from the canonical
+ * query string ({@link SearchQuery#getKey() key}) and the page number.
  */
 public class ThumbPhotoDataSource {
 
@@ -59,53 +74,146 @@ public class ThumbPhotoDataSource {
     }
 
 
-    /** Template for the website we connect to him to get the thumb photos info's */
-    private static final String ADDRESS_TEMPLATE ="https://wallhaven.cc/%s?page=%s";
+    /** The query of the Latest feed, the newest photos first */
+    private static final SearchQuery LATEST_QUERY = SearchQuery.forHome(home.Latest);
 
+    /** The query of the TopList feed, the top photos of the last month */
+    private static final SearchQuery TOPLIST_QUERY = SearchQuery.forHome(home.TopList);
 
-    /** Template for the  search in the website we connect to him to get the searched thumb photos*/
-    private static final String SEARCH_TEMPLATE ="https://wallhaven.cc/search?q=%s&search_image=&page=%s";
+    /** The query of the Random feed */
+    private static final SearchQuery RANDOM_QUERY = SearchQuery.forHome(home.Random);
 
 
     /** The number of the thumb photos in on page as the website provide, correct for now. */
     private static int defaultSize=24;
 
 
-    /** Single thread that get the thumb photos from Latest category, work asynchronous with others */
-    private static ExecutorService serviceLatest= Executors.newSingleThreadExecutor();
+    /**
+     * The maximum number of the concurrent connections to the website, all the pages of all the
+     * tabs go to the same host, we stay under the number of the connections that the system keep
+     * alive for one host (5), so the connections reused and NOT opened again for every page.
+     */
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+
+    /**
+     * Threads that get the thumb photos of all the tabs, one thread for every connection, so the
+     * pages fetched concurrently (like the first pages of a tab) and never more than
+     * {@link #MAX_CONNECTIONS_PER_HOST} connections to the website.
+     */
+    private static final ExecutorService servicePages =
+            Executors.newFixedThreadPool(MAX_CONNECTIONS_PER_HOST);
+
+
+    /**
+     * Deliver the results of the requests of one tab in the order of the requests, even if they
+     * fetched concurrently and done in other order, a result that done early wait for the results
+     * of the requests before it, the first request delivered as soon as it's done.
+     * Use it only on the main thread (the caller thread of the API).
+     */
+    private static final class OrderedDelivery {
+
+        /** The ticket of the next request */
+        private int nextTicket;
+
+        /** The ticket of the next result that we deliver */
+        private int nextDelivered;
+
+        /** The results that done, and wait for the results before them */
+        private final Map<Integer, Runnable> waiting = new HashMap<>();
+
+
+        /** Return the ticket of a new request, the tickets are in the order of the requests */
+        int take() {
+            return nextTicket++;
+        }
+
+
+        /**
+         * Deliver the result of the request, and the waiting results after it, or keep it until
+         * the results before it delivered.
+         * @param ticket is the ticket of the request.
+         * @param delivery is the delivery of the result, the call of the listener.
+         */
+        void deliver(int ticket, Runnable delivery) {
+            waiting.put(ticket, delivery);
+            Runnable next;
+            while ((next = waiting.remove(nextDelivered)) != null) {
+                nextDelivered++;
+                next.run();
+            }
+        }
+    }
+
+
+    /** The order of the results of the Latest category */
+    private static final OrderedDelivery deliveryLatest = new OrderedDelivery();
 
 
-    /** Single thread that get the thumb photos from toplist category, work asynchronous with others */
-    private static ExecutorService serviceToplist= Executors.newSingleThreadExecutor();
+    /** The order of the results of the toplist category */
+    private static final OrderedDelivery deliveryToplist = new OrderedDelivery();
 
 
-    /** Single thread that get the thumb photos from random category, work asynchronous with others */
-    private static ExecutorService serviceRandom= Executors.newSingleThreadExecutor();
+    /** The order of the results of the random category */
+    private static final OrderedDelivery deliveryRandom = new OrderedDelivery();
+
+
+    /**
+     * The order of the results of the search, replaced by {@link #cancelSearches() cancelSearches},
+     * the requests of the old generation never delivered, so they must NOT block the new requests.
+     */
+    private static OrderedDelivery deliverySearch = new OrderedDelivery();
+
 
+    /** The timeout of the search connections in milliseconds, like the default of Jsoup */
+    private static final int SEARCH_TIMEOUT_MILLIS = 30_000;
 
-    /** Single thread that get the thumb photos from random category, work asynchronous with others */
-    private static ExecutorService serviceSearch= Executors.newSingleThreadExecutor();
 
+    /** Guard the generation and the connection of the search */
+    private static final Object searchLock = new Object();
 
 
     /**
-     * Method that connect to the internet {@link #ADDRESS_TEMPLATE link addresss} and get the info
-     * from the HTML file and parse it to create a list of {@link ThumbPhoto} objects, and return it.
-     * This method work in sync way, we call her in a number of background threads.
+     * The generation of the search requests, {@link #cancelSearches() cancelSearches} increase it,
+     * the requests of older generations are dropped, guarded by {@link #searchLock} for the
+     * writes, volatile for the reads on the main thread.
+     */
+    private static volatile int searchGeneration;
+
+
+    /** The connections of the running search requests, guarded by {@link #searchLock} */
+    private static final Set<HttpURLConnection> searchConnections = new HashSet<>();
+
+
+
+    /**
+     * Method that connect to the internet {@link SearchQuery#toAddress(int) address of the query}
+     * and get the info from the HTML file and parse it to create a list of {@link ThumbPhoto}
+     * objects, and return it.
+     * This method work in sync way, we call her in the threads of {@link #servicePages}.
      * @param pageNum is page number that you want to extract the thumb photos from her.
-     * @param homePage is the category that you want to extract the photos from her,
-     *                 we have 3 category (Latest, TopList, Random) in {@link home home enum}.
+     * @param query is the query of the photos, a home feed (Latest, TopList, Random) or a search.
      * @return a list (ArrayList) of {@link ThumbPhoto thumb photos} that contain the info of
      * the thumb photos.
      * @throws IOException if it's fail to connect to the internet.
      */
-    private static List<ThumbPhoto>  getThumbPhotosSync(int pageNum, home homePage)
+    private static List<ThumbPhoto>  getThumbPhotosSync(int pageNum, SearchQuery query)
             throws IOException {
+        checkOnline();
         // parse everything
-        final String address=String.format(ADDRESS_TEMPLATE,homePage.toString(),String.valueOf(pageNum));
-        final List<ThumbPhoto> photos=new ArrayList<ThumbPhoto>(defaultSize);
-        Document doc = Jsoup.connect(address).get();
+        final String address = query.toAddress(pageNum);
+        return parseThumbPhotos(Jsoup.connect(address).get());
+    }
 
+
+
+    /**
+     * Parse the HTML page of the thumb photos to a list of {@link ThumbPhoto} objects.
+     * @param doc is the HTML page.
+     * @return a list (ArrayList) of {@link ThumbPhoto thumb photos} in the page.
+     */
+    private static List<ThumbPhoto> parseThumbPhotos(Document doc) {
+        final List<ThumbPhoto> photos=new ArrayList<ThumbPhoto>(defaultSize);
         Elements elements = doc.select("figure");
         for (Element element : elements) {
             String photoId = element.attr("data-wallpaper-id");
@@ -121,15 +229,32 @@ public class ThumbPhotoDataSource {
 
 
 
+    /**
+     * Fail fast when the {@link ConnectivityMonitor monitor} know that we are offline, so we
+     * don't wait for the connection timeout. We only read the published state (NO system calls).
+     * @throws IOException if we are offline.
+     */
+    private static void checkOnline() throws IOException {
+        final ConnectivityMonitor monitor = ConnectivityMonitor.peekInstance();
+        if (monitor != null && !monitor.isConnected()) {
+            throw new IOException("You're offline. Check your connection");
+        }
+    }
+
+
+
     /**
      * Helping method to reuse code :
-     * Method that receive pageNum, listener, homePage, executorService as a parameters
-     * and then get the 24 thump photos. With there details form homePage category
-     * (it could be Latest, TopList or Random) from the specified pageNum,
-     * and run the task on the executorService (single thread), we must send the appropriate
-     * {@link ExecutorService single thread}.
+     * Method that receive pageNum, listener, query, delivery as a parameters
+     * and then get the 24 thump photos. With there details form the query
+     * (it could be Latest, TopList, Random or a search) from the specified pageNum,
+     * and run the task on {@link #servicePages}, concurrently with the other pages, and deliver
+     * the result in the order of the requests of the category, we must send the appropriate
+     * {@link OrderedDelivery delivery}.
      * After the task done (or fail) we call one of the listener methods.
      * (onResult, onError, depends the situation) and run it on the caller thread - main thread.
+     * We deliver the ticket on any failure (NOT only I/O, like a page that we failed to parse),
+     * otherwise the next pages of the category wait for it forever.
      *
      * @param pageNum is page number homePage photos category that you want to extract the thumb
      *                photos from it.
@@ -141,34 +266,32 @@ public class ThumbPhotoDataSource {
      *                 {@link OnThumbPhotoArrivedListener#onError(Exception)} method.
      *                 Notice those methods (onResult,onError) runs on the caller thread.
      *
-     * @param homePage is the category that we want to extract the thumb photos from it,
-     *                 (it could be Latest, TopList or Random).
+     * @param query is the query that we want to extract the thumb photos from it,
+     *              (it could be Latest, TopList, Random or a search).
      *
-     * @param executorService We have 3 final single threads, to optimize the GC, because we use
-     *                        them all the time. So executorService is the appropriate thread
-     *                        to accomplish the task. if you want to get thump photos from :
-     *                        Latest -> you must send serviceLatest thread {@link ExecutorService}
-     *                        TopList -> you must send serviceTopList thread {@link ExecutorService}
-     *                        Random -> you must send serviceRandom thread {@link ExecutorService}.
-     *                        In other words the executorService is the
-     *                        thread {@link ExecutorService} that must do the work in async way,
-     *                        and when done/fail will call one of the listener methods.
+     * @param delivery is the order of the results of the category, if you want to get thump
+     *                 photos from :
+     *                 Latest -> you must send deliveryLatest
+     *                 TopList -> you must send deliveryToplist
+     *                 Random -> you must send deliveryRandom.
+     *                 The results of the same category delivered in the order of the requests.
      *
      */
     private static void getPhotos(final int pageNum,
-                                  final home homePage,
+                                  final SearchQuery query,
                                   final OnThumbPhotoArrivedListener listener,
-                                  @NonNull final ExecutorService executorService) {
+                                  @NonNull final OrderedDelivery delivery) {
         final android.os.Handler main = new android.os.Handler();
-        executorService.submit(()->{
+        final int ticket = delivery.take();
+        servicePages.submit(()->{
             try {
-                List<ThumbPhoto> photos = getThumbPhotosSync(pageNum,homePage);
+                List<ThumbPhoto> photos = getThumbPhotosSync(pageNum,query);
                 /*code that runs on the main thread*/
-                main.post(()-> listener.onResult(photos));
+                main.post(()-> delivery.deliver(ticket, () -> listener.onResult(photos)));
             }
-            catch (IOException e) {
+            catch (Exception e) {
                 /*code that runs on the main thread*/
-                main.post(()-> listener.onError(e));
+                main.post(()-> delivery.deliver(ticket, () -> listener.onError(e)));
             }
         });
     }
@@ -191,7 +314,7 @@ public class ThumbPhotoDataSource {
      */
     public static void getLatestPhotos(final int pageNum,
                                        final OnThumbPhotoArrivedListener listener) {
-        getPhotos(pageNum, home.Latest, listener, serviceLatest);
+        getPhotos(pageNum, LATEST_QUERY, listener, deliveryLatest);
     }
 
 
@@ -212,7 +335,7 @@ public class ThumbPhotoDataSource {
      */
     public static void getToplistPhotos(final int pageNum,
                                         final OnThumbPhotoArrivedListener listener) {
-        getPhotos(pageNum, home.TopList, listener, serviceToplist);
+        getPhotos(pageNum, TOPLIST_QUERY, listener, deliveryToplist);
     }
 
 
@@ -233,7 +356,7 @@ public class ThumbPhotoDataSource {
      */
     public static void getRandomPhotos(int pageNum,
                                        final OnThumbPhotoArrivedListener listener) {
-        getPhotos(pageNum, home.Random, listener, serviceRandom);
+        getPhotos(pageNum, RANDOM_QUERY, listener, deliveryRandom);
     }
 
 
@@ -242,50 +365,82 @@ public class ThumbPhotoDataSource {
     /* Search Util : */
 
     /**
-     * Method that connect to the internet {@link #SEARCH_TEMPLATE link addresss} that contain the
-     * searched word in it as a url, and get the info
-     * from the HTML file and parse it to create a list of {@link ThumbPhoto} objects, and return it.
-     * This method work in sync way, we call her in background thread.
-     * @param pageNum is page number that you want to extract the searched thumb photos from her.
-     * @param searchedWord is the phrase you want to search or the searched word.
-     * @return a list (ArrayList) of {@link ThumbPhoto thumb photos} of the searched photos that
-     * contain the info of the thumb photos.
-     * @throws IOException if it's fail to connect to the internet.
+     * Cancel all the search requests that NOT done yet: the running requests disconnected (so the
+     * HTTP requests aborted, and their threads free right away), the waiting requests skipped,
+     * and the results of all of them dropped, NOT delivered to their listeners.
+     * Call it on the main thread before you request the first page of a new search.
      */
-    private static List<ThumbPhoto>  getSearchedThumbPhotosSync(int pageNum, String searchedWord)
-            throws IOException {
-        // parse everything
-        final String address = String.format(SEARCH_TEMPLATE,searchedWord,String.valueOf(pageNum));
-        final List<ThumbPhoto> photos=new ArrayList<ThumbPhoto>(defaultSize);
-        Document doc = Jsoup.connect(address).get();
+    public static void cancelSearches() {
+        final List<HttpURLConnection> connections;
+        synchronized (searchLock) {
+            searchGeneration++;
+            connections = new ArrayList<>(searchConnections);
+            searchConnections.clear();
+        }
+        deliverySearch = new OrderedDelivery();
+        for (HttpURLConnection connection : connections) {
+            connection.disconnect();
+        }
+    }
 
-        Elements elements = doc.select("figure");
-        for (Element element : elements) {
-            String photoId = element.attr("data-wallpaper-id");
-            Elements div = element.select("div");
-            //class="overlay-anchor wall-favs"
-            String wallRes = div.select("[class*=wall-res]").text();
 
-            ThumbPhoto photo= new ThumbPhoto(photoId,wallRes);
-            photos.add(photo);
+
+    /**
+     * Connect to the address of the search page and parse it, like {@link Jsoup#connect(String)}
+     * but we keep the connection, so {@link #cancelSearches() cancelSearches} can disconnect it.
+     * @param address is the address of the search page.
+     * @param generation is the generation of the request.
+     * @return a list (ArrayList) of {@link ThumbPhoto thumb photos} in the page.
+     * @throws IOException if it's fail to connect to the internet, or the request cancelled.
+     */
+    private static List<ThumbPhoto> getSearchedThumbPhotosSync(String address, int generation)
+            throws IOException {
+        checkOnline();
+        final HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+        connection.setConnectTimeout(SEARCH_TIMEOUT_MILLIS);
+        connection.setReadTimeout(SEARCH_TIMEOUT_MILLIS);
+        synchronized (searchLock) {
+            if (generation != searchGeneration) {
+                throw new InterruptedIOException("The search cancelled");
+            }
+            searchConnections.add(connection);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            /* The charset from the meta of the page, like Jsoup */
+            return parseThumbPhotos(Jsoup.parse(in, null, address));
+        }
+        finally {
+            synchronized (searchLock) {
+                searchConnections.remove(connection);
+            }
+            connection.disconnect();
         }
-        return photos;
     }
 
 
 
     /**
-     * Method that receive pageNum, searched phrase (word) and listener as a parameters
+     * Method that receive pageNum, search query and listener as a parameters
      * and then get the 24 thump photos of the searched photos from the specified pageNum.
-     * And run the task on the serviceSearch (single thread).
+     * And run the task on {@link #servicePages}, concurrently with the other pages, the results
+     * delivered in the order of the requests.
+     * The pages that we fetched in the last minutes are cached in the
+     * {@link SearchResultCache search cache}, we take them from there without the internet, unless
+     * useCache is false (like a swipe to refresh), then we fetch the page and replace the cached page.
+     * If the request cancelled by {@link #cancelSearches() cancelSearches} before it done, we drop
+     * the results (or the error), the listener NOT called.
+     * We deliver the ticket on any failure (NOT only I/O), so a broken page never block the next
+     * pages of the search.
      * After the task done (or fail) we call one of the listener methods.
      * (onResult, onError, depends the situation) and run it on the caller thread - main thread.
      *
      * @param pageNum is page number of the searched photos that you want to extract the thumb
      *                photos of the searched photos from it.
      *
-     * @param searchedWord is the phrase/word that the user enter to search photos, to show him
-     *                     related photos of his search.
+     * @param query is the query of the search, the text that the user enter to search photos
+     *              and the filters, to show him related photos of his search.
+     *
+     * @param useCache true to take the page from the cache if we have it, false to fetch it.
      *
      * @param listener is a listener that implement OnThumbPhotoArrivedListener Interface to notify
      *                 him when the the result is ready in :
@@ -296,18 +451,43 @@ public class ThumbPhotoDataSource {
      *
      */
     public static void getSearchedPhotos(final int pageNum,
-                                          final String searchedWord,
-                                          final OnThumbPhotoArrivedListener listener) {
+                                         @NonNull final SearchQuery query,
+                                         final boolean useCache,
+                                         final OnThumbPhotoArrivedListener listener) {
+        final SearchResultCache cache = SearchResultCache.peekInstance();
         final android.os.Handler main = new android.os.Handler();
-        serviceSearch.submit(()->{
+        final int generation = searchGeneration;
+        final OrderedDelivery delivery = deliverySearch;
+        final int ticket = delivery.take();
+        servicePages.submit(()->{
+            if (generation != searchGeneration) {
+                /* Superseded while waiting, NOT worth a request */
+                return;
+            }
             try {
-                List<ThumbPhoto> photos = getSearchedThumbPhotosSync(pageNum,searchedWord);
+                List<ThumbPhoto> photos = useCache && cache != null
+                        ? cache.get(query, pageNum) : null;
+                if (photos == null) {
+                    photos = getSearchedThumbPhotosSync(query.toAddress(pageNum), generation);
+                    if (cache != null) {
+                        cache.put(query, pageNum, photos);
+                    }
+                }
+                final List<ThumbPhoto> result = photos;
                 /*code that runs on the main thread*/
-                main.post(()-> listener.onResult(photos));
+                main.post(()-> delivery.deliver(ticket, () -> {
+                    if (generation == searchGeneration) {
+                        listener.onResult(result);
+                    }
+                }));
             }
-            catch (IOException e) {
+            catch (Exception e) {
                 /*code that runs on the main thread*/
-                main.post(()-> listener.onError(e));
+                main.post(()-> delivery.deliver(ticket, () -> {
+                    if (generation == searchGeneration) {
+                        listener.onError(e);
+                    }
+                }));
             }
         });
     }
@@ -0,0 +1,253 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * Burkhard-Keller tree, an index for a discrete metric space (like the hamming distance between
+ * hashes), that let us find all the elements in a distance of at most {@code d} from a query,
+ * without comparing the query with all the elements.
+ * Every node keep his children by their distance from him, and the triangle inequality let us
+ * visit only the children in the distances [dist - d, dist + d].
+ * The removing is lazy, we mark the node as deleted and keep it as a routing node, so the
+ * removing never change the structure of the tree. When the deleted nodes are more than the live
+ * ones, we rebuild the tree from the live elements, so the searches NOT walk mostly dead nodes.
+ * @param <E> is the type of the elements in the tree.
+ */
+public class BKTree<E> {
+
+
+    /**
+     * The distance function of the tree, must be a metric: non negative, symmetric, zero only for
+     * equal points, and satisfy the triangle inequality.
+     * @param <E> is the type of the elements.
+     */
+    public interface Metric<E> {
+
+        /**
+         * Return the distance between two elements.
+         * @param e1 is the first element.
+         * @param e2 is the second element.
+         * @return the distance between the elements, non negative value.
+         */
+        int distance(E e1, E e2);
+    }
+
+
+    /**
+     * Node in the tree, hold an element and his children indexed by their distance from him.
+     * @param <E> is the type of the elements in the tree.
+     */
+    private static final class Node<E> {
+        final E element;
+        boolean deleted;
+        /** The children by their distance, {@code null} where NO child, a list (NOT an array of
+         * a generic type) so it's type safe */
+        ArrayList<Node<E>> children;
+
+        Node(E element) {
+            this.element = element;
+        }
+
+        Node<E> child(int distance) {
+            return (children != null && distance < children.size()) ? children.get(distance) : null;
+        }
+
+        void setChild(int distance, Node<E> child) {
+            if (children == null) {
+                children = new ArrayList<>(distance + 1);
+            }
+            while (children.size() <= distance) {
+                children.add(null);
+            }
+            children.set(distance, child);
+        }
+    }
+
+
+    /** We never rebuild a tree with less deleted nodes than this value, it's cheap to keep them */
+    private static final int MIN_DELETED_TO_REBUILD = 64;
+
+
+    /** The distance function */
+    private final Metric<? super E> metric;
+
+
+    /** The root of the tree, or {@code null} if the tree is empty */
+    private Node<E> root;
+
+
+    /** The number of the live (NOT deleted) elements in the tree */
+    private int size;
+
+
+    /** The number of the deleted nodes that still in the tree */
+    private int deleted;
+
+
+
+    /**
+     * Constructor that create and init an empty tree.
+     * @param metric is the distance function of the tree.
+     */
+    public BKTree(Metric<? super E> metric) {
+        this.metric = metric;
+    }
+
+
+
+    /**
+     * Return the number of the elements in the tree.
+     * @return the number of the elements in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+
+
+    /**
+     * Add the element to the tree.
+     * @param element is the element you want to add.
+     * @return true if we add the element, false if it's already in the tree.
+     */
+    public boolean add(E element) {
+        if (root == null) {
+            root = new Node<>(element);
+            size++;
+            return true;
+        }
+        Node<E> node = root;
+        while (true) {
+            final int distance = metric.distance(node.element, element);
+            if (distance == 0 && node.element.equals(element)) {
+                if (node.deleted) {
+                    node.deleted = false;
+                    deleted--;
+                    size++;
+                    return true;
+                }
+                return false;
+            }
+            final Node<E> child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node<>(element));
+                size++;
+                return true;
+            }
+            node = child;
+        }
+    }
+
+
+
+    /**
+     * Remove the element from the tree (mark his node as deleted).
+     * @param element is the element you want to remove.
+     * @return true if we removed the element, false if it's NOT in the tree.
+     */
+    public boolean remove(E element) {
+        Node<E> node = root;
+        while (node != null) {
+            final int distance = metric.distance(node.element, element);
+            if (distance == 0 && node.element.equals(element)) {
+                if (node.deleted) {
+                    return false;
+                }
+                node.deleted = true;
+                size--;
+                deleted++;
+                if (deleted >= MIN_DELETED_TO_REBUILD && deleted > size) {
+                    rebuild();
+                }
+                return true;
+            }
+            node = node.child(distance);
+        }
+        return false;
+    }
+
+
+
+    /**
+     * Find all the elements in a distance of at most maxDistance from the query.
+     * @param query is the element you want to find his neighbours.
+     * @param maxDistance is the max distance from the query.
+     * @return list of all the elements in distance of at most maxDistance from the query,
+     * with NO order.
+     */
+    public List<E> search(E query, int maxDistance) {
+        final List<E> results = new ArrayList<>();
+        if (root == null) {
+            return results;
+        }
+        final Deque<Node<E>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final Node<E> node = stack.pop();
+            final int distance = metric.distance(node.element, query);
+            if (distance <= maxDistance && !node.deleted) {
+                results.add(node.element);
+            }
+            if (node.children != null) {
+                final int from = Math.max(0, distance - maxDistance);
+                final int to = Math.min(node.children.size() - 1, distance + maxDistance);
+                for (int i = from; i <= to; i++) {
+                    final Node<E> child = node.children.get(i);
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+
+
+    /**
+     * Return the number of the deleted nodes that still in the tree, as routing nodes.
+     * @return the number of the deleted nodes.
+     */
+    public int deletedCount() {
+        return deleted;
+    }
+
+
+
+    /**
+     * Build the tree again from the live elements, and drop all the deleted nodes.
+     * We add the elements in a random order, a sorted order make a deep tree.
+     */
+    private void rebuild() {
+        final List<E> live = new ArrayList<>(size);
+        final Deque<Node<E>> stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            final Node<E> node = stack.pop();
+            if (!node.deleted) {
+                live.add(node.element);
+            }
+            if (node.children != null) {
+                for (Node<E> child : node.children) {
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        Collections.shuffle(live);
+        root = null;
+        size = 0;
+        deleted = 0;
+        for (E element : live) {
+            add(element);
+        }
+    }
+}
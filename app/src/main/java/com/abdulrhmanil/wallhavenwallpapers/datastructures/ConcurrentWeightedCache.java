@@ -0,0 +1,659 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Cache with a max weight, safe to use from many threads without any external synchronization,
+ * we use it to cache the full photos, where a photo weigh his bytes in the memory, and it's
+ * general enough for any other cache (with weight 1 for every entry it's a cache with max size).
+ *
+ * The reads are lock-free: the entries live in a {@link ConcurrentHashMap ConcurrentHashMap},
+ * and a read only record the entry in a small lossy ring buffer, the buffer drained under the
+ * lock later, by the writes, or by a read that find the lock free. (If the buffer is full we
+ * overwrite the oldest records, the order of the entries is a hint, NOT a must).
+ *
+ * The eviction policy is W-TinyLFU: the new entries enter a small window (LRU, 1% of the weight),
+ * the entries that leave the window are candidates to enter the main space (segmented LRU,
+ * probation and protected, the protected is 80% of the main space, an entry is protected when
+ * we read it again while it's in the probation). The candidate enter the main space only if
+ * he used more times than the victim of the main space (the oldest in the probation), the times
+ * estimated by a count-min sketch that remember the keys that already evicted too.
+ * So a scan of keys that used once can't flush the popular keys, like it does in FIFO or LRU.
+ *
+ * The writes ({@link #put(Object, Object) put}, {@link #remove(Object) remove} and so on) take
+ * the lock, the listener of the evictions called after the lock released, on the thread of the
+ * write.
+ * @param <K> is the key that you want to enter in the cache, to search the value with later.
+ * @param <V> is the value of the key you want to save to search it later.
+ */
+public final class ConcurrentWeightedCache<K, V> {
+
+
+    /**
+     * Calculate the weight of an entry, for example the bytes of a photo in the memory.
+     * @param <K> is the key of the entry.
+     * @param <V> is the value of the entry.
+     */
+    public interface Weigher<K, V> {
+
+        /**
+         * Return the weight of the entry, called once when we put the entry.
+         * @param key is the key of the entry.
+         * @param value is the value of the entry.
+         * @return the weight of the entry, zero or more.
+         */
+        int weigh(K key, V value);
+    }
+
+
+    /**
+     * Listener of the entries that evicted because the cache is too heavy (NOT the entries that
+     * replaced or removed).
+     * @param <K> is the key of the entry.
+     * @param <V> is the value of the entry.
+     */
+    public interface EvictionListener<K, V> {
+
+        /**
+         * Called after the entry evicted, on the thread of the write that evicted it, without
+         * the lock of the cache, so you can use the cache here.
+         * @param key is the key of the evicted entry.
+         * @param value is the value of the evicted entry.
+         */
+        void onEviction(K key, V value);
+    }
+
+
+    /** The share of the window from the max weight, in percent */
+    private static final int WINDOW_PERCENT = 1;
+
+    /** The share of the protected segment from the main space, in percent */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** The size of the ring buffer of the reads, power of 2 */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    /** A read try to drain the read buffer every this number of reads, power of 2 */
+    private static final int DRAIN_INTERVAL = READ_BUFFER_SIZE / 2;
+
+
+    /** The queues of the policy, where the entry is */
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2, REMOVED = 3;
+
+
+    /**
+     * Entry of the cache, the key and the value never change (a put of the same key create a new
+     * entry), so a read can return the value without the lock. The links and the queue of the
+     * entry belong to the policy, touch them only under the lock.
+     */
+    private static final class Node<K, V> {
+
+        final K key;
+        final V value;
+        final int weight;
+
+        int queue = WINDOW;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+
+    /** Queue of entries in LRU order, the oldest is the head, intrusive doubly linked list */
+    private static final class AccessQueue<K, V> {
+
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            }
+            else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            }
+            else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            }
+            else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+
+
+    /** The entries of the cache, the reads touch only this map */
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+
+    /** The lock of the policy, every write and every drain of the reads take it */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The ring buffer of the reads that NOT applied to the policy yet */
+    private final AtomicReferenceArray<Node<K, V>> readBuffer =
+            new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+    /** The number of the reads that recorded in the read buffer, ever */
+    private final AtomicLong reads = new AtomicLong();
+
+    /** The number of the reads that the drain passed, guarded by {@link #lock} */
+    private long drained;
+
+    /** The estimate of the use times of the keys, guarded by {@link #lock} */
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+
+    /** The weights of the queues and of all the cache, guarded by {@link #lock} */
+    private long windowWeight, protectedWeight, totalWeight;
+
+    private final long maxWeight;
+    private final long maxWindowWeight;
+    private final long maxProtectedWeight;
+
+    private final Weigher<K, V> weigher;
+    private final EvictionListener<K, V> evictionListener;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong evictionWeight = new AtomicLong();
+
+
+
+    /**
+     * Constructor that create a cache with max number of entries, every entry weigh 1.
+     * @param maxSize is the max entries you can enter in the cache, before start evicting.
+     */
+    public ConcurrentWeightedCache(int maxSize) {
+        this(maxSize, null, null);
+    }
+
+
+    /**
+     * Constructor that create a cache with max weight.
+     * @param maxWeight is the max total weight of the entries, before start evicting.
+     * @param weigher is the weigher of the entries, null to weigh every entry 1.
+     * @param evictionListener is the listener of the evicted entries, may be null.
+     * @throws IllegalArgumentException if the max weight is negative.
+     */
+    public ConcurrentWeightedCache(long maxWeight, Weigher<K, V> weigher,
+                                   EvictionListener<K, V> evictionListener) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight must be zero or more : " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.maxWindowWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+        this.maxProtectedWeight = (maxWeight - maxWindowWeight) * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+    }
+
+
+
+    /**
+     * Return the value of the key, and record the read (hit or miss).
+     * @param key is the key of the value.
+     * @return the value of the key, or null if NOT in the cache.
+     */
+    public V get(K key) {
+        final Node<K, V> node = map.get(key);
+        if (node == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        recordRead(node);
+        return node.value;
+    }
+
+
+    /**
+     * Return true if the key in the cache, NOT a read, NOT recorded in the statistics, and NOT
+     * change the order of the entries.
+     * @param key is the key.
+     * @return true if the key in the cache.
+     */
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+
+    /**
+     * Put the value of the key in the cache, replace the old value of the key if any, and then
+     * evict entries until the cache is NOT too heavy. An entry that heavier than the max weight
+     * of all the cache never enter, it evicted right away.
+     * @param key is the key.
+     * @param value is the value.
+     * @return the old value of the key, or null if the key wasn't in the cache.
+     * @throws IllegalArgumentException if the weight of the entry is negative.
+     */
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("The key and the value must NOT be null");
+        }
+        final int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight must be zero or more : " + weight);
+        }
+        final Node<K, V> node = new Node<>(key, value, weight);
+        final List<Node<K, V>> evicted =
+                evictionListener == null ? null : new ArrayList<Node<K, V>>(2);
+        final Node<K, V> old;
+        lock.lock();
+        try {
+            drainReads();
+            if (weight > maxWeight) {
+                old = map.remove(key);
+                unlinkFromPolicy(old);
+                node.queue = REMOVED;
+                recordEviction(node, evicted);
+            }
+            else {
+                old = map.put(key, node);
+                unlinkFromPolicy(old);
+                sketch.ensureCapacity(map.size());
+                sketch.increment(key.hashCode());
+                window.addLast(node);
+                windowWeight += weight;
+                totalWeight += weight;
+                evict(evicted);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        notifyEvicted(evicted);
+        return old == null ? null : old.value;
+    }
+
+
+    /**
+     * Remove the key from the cache, NOT an eviction, the listener NOT called.
+     * @param key is the key.
+     * @return the value of the key, or null if the key wasn't in the cache.
+     */
+    public V remove(K key) {
+        lock.lock();
+        try {
+            final Node<K, V> node = map.remove(key);
+            unlinkFromPolicy(node);
+            return node == null ? null : node.value;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /** Remove all the entries from the cache, NOT evictions, the listener NOT called */
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                readBuffer.lazySet(i, null);
+            }
+            drained = reads.get();
+            for (Node<K, V> node : map.values()) {
+                node.queue = REMOVED;
+            }
+            map.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            totalWeight = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+
+    /** Return the number of the entries in the cache */
+    public int size() {
+        return map.size();
+    }
+
+
+    /** Return the total weight of the entries in the cache */
+    public long weight() {
+        lock.lock();
+        try {
+            return totalWeight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    /** Return the max total weight of the entries */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+
+    /** Return the number of the reads that found the key */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+
+    /** Return the number of the reads that NOT found the key */
+    public long missCount() {
+        return missCount.get();
+    }
+
+
+    /** Return the number of the entries that evicted because the cache was too heavy */
+    public long evictionCount() {
+        return evictionCount.get();
+    }
+
+
+    /** Return the total weight of the evicted entries */
+    public long evictionWeight() {
+        return evictionWeight.get();
+    }
+
+
+    /** Return the share of the reads that found the key, 1 if NO reads yet */
+    public double hitRate() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+
+
+    /** Record the read in the read buffer, and drain the buffer every {@link #DRAIN_INTERVAL} */
+    private void recordRead(Node<K, V> node) {
+        final long index = reads.getAndIncrement();
+        readBuffer.lazySet((int) index & (READ_BUFFER_SIZE - 1), node);
+        if ((index & (DRAIN_INTERVAL - 1)) == DRAIN_INTERVAL - 1 && lock.tryLock()) {
+            try {
+                drainReads();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Apply the recorded reads to the policy, only the slots that recorded since the last drain
+     * (at most all the buffer, the older records already overwritten), call it only under the
+     * lock. A slot that reserved but NOT written yet is skipped, we lose that read.
+     */
+    private void drainReads() {
+        final long end = reads.get();
+        for (long i = Math.max(drained, end - READ_BUFFER_SIZE); i < end; i++) {
+            final Node<K, V> node = readBuffer.getAndSet((int) i & (READ_BUFFER_SIZE - 1), null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+        drained = end;
+    }
+
+
+    /** Apply one read of the entry to the policy */
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == REMOVED) {
+            return;
+        }
+        sketch.increment(node.key.hashCode());
+        if (node.queue == WINDOW) {
+            window.unlink(node);
+            window.addLast(node);
+        }
+        else if (node.queue == PROBATION) {
+            probation.unlink(node);
+            protectedQueue.addLast(node);
+            node.queue = PROTECTED;
+            protectedWeight += node.weight;
+            /* The protected is full, the oldest protected entries go back to the probation */
+            while (protectedWeight > maxProtectedWeight && protectedQueue.head != node) {
+                final Node<K, V> demoted = protectedQueue.head;
+                protectedQueue.unlink(demoted);
+                probation.addLast(demoted);
+                demoted.queue = PROBATION;
+                protectedWeight -= demoted.weight;
+            }
+        }
+        else {
+            protectedQueue.unlink(node);
+            protectedQueue.addLast(node);
+        }
+    }
+
+
+    /** Remove the entry from his queue, the entry already removed from the map, null is allowed */
+    private void unlinkFromPolicy(Node<K, V> node) {
+        if (node == null || node.queue == REMOVED) {
+            return;
+        }
+        if (node.queue == WINDOW) {
+            window.unlink(node);
+            windowWeight -= node.weight;
+        }
+        else if (node.queue == PROBATION) {
+            probation.unlink(node);
+        }
+        else {
+            protectedQueue.unlink(node);
+            protectedWeight -= node.weight;
+        }
+        totalWeight -= node.weight;
+        node.queue = REMOVED;
+    }
+
+
+    /**
+     * Move the entries that overflow the window to the probation as candidates, and then evict
+     * until the cache is NOT too heavy, every eviction is a duel between the first candidate and
+     * the victim (the oldest in the probation), the one that used less times evicted.
+     * @param evicted is the list that we add the evicted entries to, null if NO listener.
+     */
+    private void evict(List<Node<K, V>> evicted) {
+        Node<K, V> candidate = null;
+        /* The newest entry stay in the window even if it's heavier than the window, so a heavy
+         * entry (like a photo) is NOT evicted before it has a chance to be read */
+        while (windowWeight > maxWindowWeight && window.head != window.tail) {
+            final Node<K, V> node = window.head;
+            window.unlink(node);
+            windowWeight -= node.weight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (totalWeight > maxWeight) {
+            Node<K, V> victim = probation.head;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                evictNode(victim, evicted);
+                continue;
+            }
+            if (candidate == null || candidate == victim) {
+                if (candidate == victim) {
+                    candidate = candidate.next;
+                }
+                evictNode(victim, evicted);
+                continue;
+            }
+            final Node<K, V> next = candidate.next;
+            if (sketch.frequency(candidate.key.hashCode())
+                    > sketch.frequency(victim.key.hashCode())) {
+                evictNode(victim, evicted);
+            }
+            else {
+                evictNode(candidate, evicted);
+                candidate = next;
+            }
+        }
+    }
+
+
+    /** Evict the entry from the policy and the map, and add it to the evicted list */
+    private void evictNode(Node<K, V> node, List<Node<K, V>> evicted) {
+        unlinkFromPolicy(node);
+        map.remove(node.key, node);
+        recordEviction(node, evicted);
+    }
+
+
+    /** Count the eviction, and keep the entry to notify the listener after the lock released */
+    private void recordEviction(Node<K, V> node, List<Node<K, V>> evicted) {
+        evictionCount.incrementAndGet();
+        evictionWeight.addAndGet(node.weight);
+        if (evicted != null) {
+            evicted.add(node);
+        }
+    }
+
+
+    /** Notify the listener with the evicted entries, call it without the lock */
+    private void notifyEvicted(List<Node<K, V>> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (Node<K, V> node : evicted) {
+            evictionListener.onEviction(node.key, node.value);
+        }
+    }
+
+
+
+    /**
+     * Count-min sketch with 4 bits counters, estimate how many times a key used lately, with a
+     * small fixed memory (a long for every 16 counters). When we count enough (10 times the
+     * number of the counters) we halve all the counters, so the old use times fade.
+     */
+    private static final class FrequencySketch {
+
+        /** The seeds of the 4 hash functions */
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        /** Mask of the lowest bit of every counter */
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        /** Mask of the counters after we shift them one bit to halve them */
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private long[] table = new long[0];
+        private int sampleSize;
+        private int size;
+
+
+        /** Grow the table so it has a counter for every entry, forget the old counts */
+        void ensureCapacity(int entries) {
+            final int length = Math.max(8, Integer.highestOneBit(Math.max(1, entries) - 1) << 1);
+            if (table.length >= length || length <= 0) {
+                return;
+            }
+            table = new long[length];
+            sampleSize = 10 * length;
+            size = 0;
+        }
+
+
+        /** Return the estimate of the use times of the key, 0 to 15 */
+        int frequency(int hashCode) {
+            final int hash = spread(hashCode);
+            final int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+
+        /** Add one use of the key, every counter stop at 15 */
+        void increment(int hashCode) {
+            final int hash = spread(hashCode);
+            final int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int offset = (start + i) << 2;
+                final long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size >= sampleSize) {
+                reset();
+            }
+        }
+
+
+        /** Halve all the counters */
+        private void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; i++) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size - (odd >>> 2)) >>> 1;
+        }
+
+
+        /** Return the index of the long of the hash function i */
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+
+        /** Mix the bits of the hash code, so close hash codes spread over the table */
+        private static int spread(int hashCode) {
+            int h = hashCode * 0x9e3779b9;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            return h ^ (h >>> 13);
+        }
+    }
+}
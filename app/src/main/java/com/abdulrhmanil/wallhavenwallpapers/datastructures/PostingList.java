@@ -0,0 +1,181 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Sorted set of primitive ints (documents ids), the posting list of one term in an inverted index,
+ * like all the photos that have the same tag, or the same color.
+ * The ids kept sorted in one int array, so the adding of increasing ids (the common case, every new
+ * document get a bigger id) is an append, and the intersection of a number of lists done without
+ * any hashing, see {@link #intersect(List) intersect}.
+ */
+public class PostingList {
+
+    /** The default capacity of the list */
+    private static final int DEF_CAPACITY = 8;
+
+
+    /** The ids, sorted and unique, only the first {@link #size} are valid */
+    private int[] ids;
+
+
+    /** The number of the ids in the list */
+    private int size;
+
+
+
+    /** Constructor that create and init an empty list. */
+    public PostingList() {
+        this.ids = new int[DEF_CAPACITY];
+        this.size = 0;
+    }
+
+
+
+    /**
+     * Return the number of the ids in the list.
+     * @return the number of the ids in the list.
+     */
+    public int size() {
+        return size;
+    }
+
+
+
+    /**
+     * Return the id in the gaven position, the ids sorted in increasing order.
+     * @param position is the position of the id.
+     * @return the id in the position.
+     */
+    public int get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position: " + position + ", size: " + size);
+        }
+        return ids[position];
+    }
+
+
+
+    /**
+     * Check if the list contain the id.
+     * @param id is the id you want to check.
+     * @return true if the list contain the id, false otherwise.
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+
+
+    /**
+     * Add the id to the list, if it's bigger than all the ids in the list we just append it.
+     * @param id is the id you want to add.
+     * @return true if we add the id, false if it's already in the list.
+     */
+    public boolean add(int id) {
+        int position;
+        if (size == 0 || ids[size - 1] < id) {
+            position = size;
+        }
+        else {
+            position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return false;
+            }
+            position = -(position + 1);
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        size++;
+        return true;
+    }
+
+
+
+    /**
+     * Remove the id from the list.
+     * @param id is the id you want to remove.
+     * @return true if we removed the id, false if it's NOT in the list.
+     */
+    public boolean remove(int id) {
+        final int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+
+
+    /**
+     * Intersect the gaven lists, and return the ids that exist in all of them.
+     * We start from the shortest list, and for every id of it we search the next lists with
+     * galloping (exponential then binary) search from the last position we reached, so the cost
+     * depends on the length of the shortest list and NOT on the length of the longest one.
+     * @param lists are the lists you want to intersect, NOT modified.
+     * @return sorted array of the ids that exist in all the lists, empty if the lists are empty.
+     */
+    public static int[] intersect(List<PostingList> lists) {
+        if (lists.isEmpty()) {
+            return new int[0];
+        }
+        final List<PostingList> bySize = new ArrayList<>(lists);
+        Collections.sort(bySize, (o1, o2) -> Integer.compare(o1.size, o2.size));
+        final PostingList shortest = bySize.get(0);
+        final int[] cursors = new int[bySize.size()];
+        final int[] result = new int[shortest.size];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            final int id = shortest.ids[i];
+            for (int j = 1; j < bySize.size(); j++) {
+                final PostingList list = bySize.get(j);
+                final int position = list.gallop(id, cursors[j]);
+                if (position >= list.size) {
+                    /* The list is exhausted, NO more common ids */
+                    break candidates;
+                }
+                cursors[j] = position;
+                if (list.ids[position] != id) {
+                    continue candidates;
+                }
+            }
+            result[count++] = id;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+
+
+    /**
+     * Find the first position (from the gaven position) of an id that is NOT smaller than the
+     * gaven id, we double the step until we pass the id, then binary search in the last step.
+     * @param id is the id you search.
+     * @param from is the position to start from.
+     * @return the first position of an id bigger or equal to the gaven id,
+     * or {@link #size} if all the ids smaller.
+     */
+    private int gallop(int id, int from) {
+        if (from >= size || ids[from] >= id) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < size && ids[low + step] < id) {
+            low += step;
+            step <<= 1;
+        }
+        final int high = Math.min(low + step, size);
+        final int position = Arrays.binarySearch(ids, low + 1, high, id);
+        return position >= 0 ? position : -(position + 1);
+    }
+}
@@ -0,0 +1,212 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Index of primitive ints that keep the positions (slots) of elements in a backing list,
+ * sorted according to a comparator, without moving or copying the elements themselves.
+ * So we can keep a number of indexes over the same list, one for each sort order,
+ * and switch between the orders instantly, without sorting again.
+ * The index maintained incrementally, insert and remove cost O(log n) comparisons
+ * plus one array copy, and we never sort the whole list except in {@link #rebuild(List)}.
+ * Notice: the comparator must be a total order (never return 0 for different elements),
+ * so the binary search can find the exact place of each element.
+ * @param <E> is the type of the elements in the backing list.
+ */
+public class SortedIndex<E> {
+
+    /** The default capacity of the index */
+    private static final int DEF_CAPACITY = 16;
+
+
+    /** The comparator that define the order of the index */
+    private final Comparator<? super E> comparator;
+
+
+    /** The slots (positions in the backing list) of the elements, sorted by the comparator */
+    private int[] slots;
+
+
+    /** The number of the slots in the index */
+    private int size;
+
+
+
+    /**
+     * Constructor that create and init an empty index.
+     * @param comparator is the comparator that define the order of the index,
+     *                   must be a total order.
+     */
+    public SortedIndex(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        this.slots = new int[DEF_CAPACITY];
+        this.size = 0;
+    }
+
+
+    /**
+     * Copy constructor that create an index with the same order and the same slots of other
+     * index, we use it to modify a copy of an index that may be read by other threads.
+     * @param other is the index you want to copy.
+     */
+    public SortedIndex(SortedIndex<E> other) {
+        this.comparator = other.comparator;
+        this.slots = Arrays.copyOf(other.slots, Math.max(DEF_CAPACITY, other.size + 1));
+        this.size = other.size;
+    }
+
+
+    /**
+     * Return the number of the elements in the index.
+     * @return the number of the elements in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Return the slot of the element in the backing list, that placed in the gaven position
+     * in the sort order of this index.
+     * @param position is the position in the sort order.
+     * @return the slot (index in the backing list) of the element.
+     */
+    public int get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position: " + position + ", size: " + size);
+        }
+        return slots[position];
+    }
+
+
+    /**
+     * Search the position of the element in the sort order, with binary search.
+     * @param element is the element you want to find.
+     * @param elements is the backing list.
+     * @return the position of the element if it's in the index, otherwise
+     * {@code (-(insertion point) - 1)} like {@link Arrays#binarySearch(int[], int)}.
+     */
+    public int positionOf(E element, List<E> elements) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = comparator.compare(elements.get(slots[mid]), element);
+            if (cmp < 0) {
+                low = mid + 1;
+            }
+            else if (cmp > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+
+    /**
+     * Insert the element that placed in the gaven slot in the backing list into the index.
+     * @param slot is the slot (index) of the new element in the backing list.
+     * @param elements is the backing list, must already contain the new element.
+     * @return the position of the new element in the sort order.
+     */
+    public int insert(int slot, List<E> elements) {
+        int position = positionOf(elements.get(slot), elements);
+        if (position < 0) {
+            position = -(position + 1);
+        }
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        System.arraycopy(slots, position, slots, position + 1, size - position);
+        slots[position] = slot;
+        size++;
+        return position;
+    }
+
+
+    /**
+     * Remove the element from the index, the element must still be in the backing list.
+     * @param element is the element you want to remove from the index.
+     * @param elements is the backing list.
+     * @return the position that the element had in the sort order, or a negative value if NOT
+     * found.
+     */
+    public int remove(E element, List<E> elements) {
+        final int position = positionOf(element, elements);
+        if (position >= 0) {
+            System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+            size--;
+        }
+        return position;
+    }
+
+
+    /**
+     * Change the slot of the element, use it when the element moved to another slot in
+     * the backing list, the sort order doesn't change.
+     * @param element is the element that moved, and still in his old slot in the backing list.
+     * @param elements is the backing list.
+     * @param newSlot is the new slot of the element in the backing list.
+     */
+    public void relocate(E element, List<E> elements, int newSlot) {
+        final int position = positionOf(element, elements);
+        if (position >= 0) {
+            slots[position] = newSlot;
+        }
+    }
+
+
+    /**
+     * Build the index from the scratch, we sort all the elements of the backing list,
+     * use it after load all the elements at once.
+     * @param elements is the backing list.
+     */
+    public void rebuild(List<E> elements) {
+        size = elements.size();
+        slots = new int[Math.max(DEF_CAPACITY, size)];
+        for (int i = 0; i < size; i++) {
+            slots[i] = i;
+        }
+        mergeSort(slots, new int[size], 0, size, elements);
+    }
+
+
+    /**
+     * Stable merge sort of the slots according to the elements order, so we can sort
+     * primitive ints with a comparator, without boxing them.
+     * @param src is the slots you want to sort.
+     * @param tmp is a temporary array with the same length.
+     * @param from is the first index to sort, inclusive.
+     * @param to is the last index to sort, exclusive.
+     * @param elements is the backing list.
+     */
+    private void mergeSort(int[] src, int[] tmp, int from, int to, List<E> elements) {
+        if (to - from < 2) {
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(src, tmp, from, mid, elements);
+        mergeSort(src, tmp, mid, to, elements);
+        if (comparator.compare(elements.get(src[mid - 1]), elements.get(src[mid])) <= 0) {
+            return;
+        }
+        System.arraycopy(src, from, tmp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid &&
+                    comparator.compare(elements.get(tmp[left]), elements.get(tmp[right])) <= 0)) {
+                src[i] = tmp[left++];
+            }
+            else {
+                src[i] = tmp[right++];
+            }
+        }
+    }
+}
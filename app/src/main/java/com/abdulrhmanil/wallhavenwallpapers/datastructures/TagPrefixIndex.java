@@ -0,0 +1,501 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * Immutable prefix index of terms (the texts of the tags) with frequency weights, answer the
+ * top-k terms that start with a prefix, the heaviest first, for the autocomplete.
+ *
+ * The terms kept normalized (see {@link #normalize(String) normalize}), encoded in UTF-8 and
+ * sorted by their bytes, all of them in one byte array, so the terms that start with a prefix are
+ * one continuous range, that we find with two binary searches. Over the weights we keep a
+ * tournament tree (the position of the heaviest term of every node, only the inner nodes, the
+ * leaves are the positions themselves), so the heaviest term of any range cost O(log n), and the
+ * top-k of a range cost O(k log n), without scanning the range, see {@link #top(String, int) top}.
+ * So a lookup take microseconds, and the memory is about the bytes of the terms plus 12 bytes
+ * for every term, NO object for every term.
+ *
+ * On the disk the terms are front coded (the length of the prefix shared with the previous term,
+ * and then only the rest of the bytes) with variable length ints, see
+ * {@link #writeTo(DataOutput) writeTo}.
+ * To add terms create a new index with {@link #plus(Map) plus}, it merge the sorted arrays in
+ * linear time, so add the new terms in batches.
+ */
+public class TagPrefixIndex {
+
+    /** The encoding of the terms */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The maximum length of a term in bytes, longer terms are NOT tags, we drop them */
+    private static final int MAX_TERM_BYTES = 255;
+
+
+    /** The bytes of all the terms, one after the other, in the sort order */
+    private final byte[] pool;
+
+
+    /** The offsets of the terms in the pool, the term i is [offsets[i], offsets[i + 1]) */
+    private final int[] offsets;
+
+
+    /** The weights (frequencies) of the terms */
+    private final int[] weights;
+
+
+    /**
+     * The tournament tree of the weights, the inner nodes only (1 to n - 1), every node hold the
+     * position of the heaviest term under it, the leaf of the position i is the node n + i.
+     */
+    private final int[] tree;
+
+
+    /** The number of the terms */
+    private final int size;
+
+
+
+    /** Constructor that create an empty index. */
+    public TagPrefixIndex() {
+        this(new byte[0], new int[1], new int[0], 0);
+    }
+
+
+    /**
+     * private constructor, take the arrays as is, they must be sorted and never changed.
+     */
+    private TagPrefixIndex(byte[] pool, int[] offsets, int[] weights, int size) {
+        this.pool = pool;
+        this.offsets = offsets;
+        this.weights = weights;
+        this.size = size;
+        this.tree = new int[Math.max(size, 1)];
+        buildTree();
+    }
+
+
+
+    /**
+     * Normalize the text of a tag to a term: trim, collapse the white spaces to one space, and
+     * lower case, like the searched text of {@code SearchQuery}.
+     * @param text is the text.
+     * @return the term, empty if NO text.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+
+
+    /**
+     * Return the number of the terms in the index.
+     * @return the number of the terms in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Return the term in the gaven position, the terms sorted by their UTF-8 bytes.
+     * @param position is the position of the term.
+     * @return the term.
+     */
+    public String term(int position) {
+        checkPosition(position);
+        return new String(pool, offsets[position], offsets[position + 1] - offsets[position], UTF_8);
+    }
+
+
+    /**
+     * Return the weight of the term in the gaven position.
+     * @param position is the position of the term.
+     * @return the weight of the term.
+     */
+    public int weight(int position) {
+        checkPosition(position);
+        return weights[position];
+    }
+
+
+    /**
+     * Return the weight of the term, 0 if NOT in the index.
+     * @param term is the term, normalized.
+     * @return the weight of the term.
+     */
+    public int weightOf(String term) {
+        final byte[] key = term.getBytes(UTF_8);
+        final int position = lowerBound(key, false);
+        if (position < size && compareTerm(position, key, false) == 0) {
+            return weights[position];
+        }
+        return 0;
+    }
+
+
+    /**
+     * Return the approximate memory of the index, the arrays only.
+     * @return the memory of the index in bytes.
+     */
+    public long memoryBytes() {
+        return pool.length + 4L * (offsets.length + weights.length + tree.length);
+    }
+
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position: " + position + ", size: " + size);
+        }
+    }
+
+
+
+    /**
+     * Return the top-k terms that start with the prefix, the heaviest first, and in the sort order
+     * for the same weight.
+     * @param prefix is the prefix, normalized, empty prefix match all the terms.
+     * @param k is the maximum number of the terms.
+     * @return new list of the terms, empty if NO term start with the prefix.
+     */
+    public List<String> top(String prefix, int k) {
+        final int[] positions = topPositions(prefix, k);
+        final List<String> terms = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            terms.add(term(position));
+        }
+        return terms;
+    }
+
+
+    /**
+     * Return the positions of the top-k terms that start with the prefix, the heaviest first.
+     * We keep a heap of ranges, every range with his heaviest term, pop the range of the
+     * heaviest term, take the term and push the two ranges around it, k times.
+     * @param prefix is the prefix, normalized.
+     * @param k is the maximum number of the terms.
+     * @return the positions of the terms.
+     */
+    public int[] topPositions(String prefix, int k) {
+        final byte[] key = prefix.getBytes(UTF_8);
+        final int from = lowerBound(key, false);
+        final int to = lowerBound(key, true);
+        if (k <= 0 || from >= to) {
+            return new int[0];
+        }
+        final int[] result = new int[Math.min(k, to - from)];
+        /* Every range is {from, to, heaviest} */
+        final PriorityQueue<int[]> ranges = new PriorityQueue<>(2 * result.length + 1,
+                (a, b) -> heavier(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[] {from, to, heaviest(from, to)});
+        int count = 0;
+        while (count < result.length) {
+            final int[] range = ranges.poll();
+            final int position = range[2];
+            result[count++] = position;
+            if (range[0] < position) {
+                ranges.add(new int[] {range[0], position, heaviest(range[0], position)});
+            }
+            if (position + 1 < range[1]) {
+                ranges.add(new int[] {position + 1, range[1], heaviest(position + 1, range[1])});
+            }
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Return a new index with the terms of this index and the gaven terms, the weights of the
+     * terms that already in the index are added.
+     * @param counts are the terms (normalized) and their weights to add.
+     * @return a new index, this index NOT changed.
+     */
+    public TagPrefixIndex plus(Map<String, Integer> counts) {
+        final List<byte[]> keys = new ArrayList<>(counts.size());
+        final List<Integer> keyWeights = new ArrayList<>(counts.size());
+        final List<String> terms = new ArrayList<>(counts.keySet());
+        Collections.sort(terms);
+        for (String term : terms) {
+            final byte[] key = term.getBytes(UTF_8);
+            final Integer weight = counts.get(term);
+            if (key.length == 0 || key.length > MAX_TERM_BYTES || weight == null || weight <= 0) {
+                continue;
+            }
+            keys.add(key);
+            keyWeights.add(weight);
+        }
+        /* The sort of String is by the UTF-16 chars, NOT always the order of the UTF-8 bytes */
+        final Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(keys.get(a), 0, keys.get(a).length, keys.get(b)));
+
+        int poolLength = pool.length;
+        for (byte[] key : keys) {
+            poolLength += key.length;
+        }
+        final byte[] newPool = new byte[poolLength];
+        final int[] newOffsets = new int[size + keys.size() + 1];
+        final int[] newWeights = new int[size + keys.size()];
+        int count = 0;
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < order.length) {
+            final int compare;
+            if (i == size) {
+                compare = 1;
+            }
+            else if (j == order.length) {
+                compare = -1;
+            }
+            else {
+                compare = compareBytes(pool, offsets[i], offsets[i + 1], keys.get(order[j]));
+            }
+            if (compare <= 0) {
+                final int termLength = offsets[i + 1] - offsets[i];
+                System.arraycopy(pool, offsets[i], newPool, length, termLength);
+                length += termLength;
+                newWeights[count] = weights[i];
+                if (compare == 0) {
+                    newWeights[count] = saturatedAdd(newWeights[count], keyWeights.get(order[j]));
+                    j++;
+                }
+                i++;
+            }
+            else {
+                final byte[] key = keys.get(order[j]);
+                System.arraycopy(key, 0, newPool, length, key.length);
+                length += key.length;
+                newWeights[count] = keyWeights.get(order[j]);
+                j++;
+            }
+            count++;
+            newOffsets[count] = length;
+        }
+        return new TagPrefixIndex(Arrays.copyOf(newPool, length), Arrays.copyOf(newOffsets, count + 1),
+                Arrays.copyOf(newWeights, count), count);
+    }
+
+
+
+    /**
+     * Write the index, the format: [varint size] and then for every term [varint shared]
+     * [varint suffix length][suffix bytes][varint weight], the shared is the length of the prefix
+     * that the term share with the previous term.
+     * @param out is the output.
+     * @throws IOException if it's fail to write.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeVarInt(out, size);
+        int previousStart = 0;
+        int previousLength = 0;
+        for (int i = 0; i < size; i++) {
+            final int start = offsets[i];
+            final int length = offsets[i + 1] - start;
+            int shared = 0;
+            final int max = Math.min(length, previousLength);
+            while (shared < max && pool[previousStart + shared] == pool[start + shared]) {
+                shared++;
+            }
+            writeVarInt(out, shared);
+            writeVarInt(out, length - shared);
+            out.write(pool, start + shared, length - shared);
+            writeVarInt(out, weights[i]);
+            previousStart = start;
+            previousLength = length;
+        }
+    }
+
+
+    /**
+     * Read an index that written by {@link #writeTo(DataOutput) writeTo}.
+     * @param in is the input.
+     * @return a new index.
+     * @throws IOException if it's fail to read, or the data is broken.
+     */
+    public static TagPrefixIndex readFrom(DataInput in) throws IOException {
+        final int size = readVarInt(in);
+        if (size < 0) {
+            throw new IOException("Broken index, size: " + size);
+        }
+        byte[] pool = new byte[Math.max(16, Math.min(size, 1 << 20) * 8)];
+        final int[] offsets = new int[size + 1];
+        final int[] weights = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            final int shared = readVarInt(in);
+            final int suffix = readVarInt(in);
+            final int previousLength = i > 0 ? offsets[i] - offsets[i - 1] : 0;
+            if (shared < 0 || shared > previousLength || suffix < 0
+                    || shared + suffix > MAX_TERM_BYTES) {
+                throw new IOException("Broken index, term: " + i);
+            }
+            if (length + shared + suffix > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, length + shared + suffix));
+            }
+            if (shared > 0) {
+                System.arraycopy(pool, offsets[i - 1], pool, length, shared);
+            }
+            in.readFully(pool, length + shared, suffix);
+            length += shared + suffix;
+            offsets[i + 1] = length;
+            weights[i] = readVarInt(in);
+        }
+        return new TagPrefixIndex(Arrays.copyOf(pool, length), offsets, weights, size);
+    }
+
+
+
+    /* The tournament tree : */
+
+    /** Build all the inner nodes, from the bottom */
+    private void buildTree() {
+        for (int node = size - 1; node >= 1; node--) {
+            tree[node] = heavier(nodeValue(2 * node), nodeValue(2 * node + 1));
+        }
+    }
+
+
+    /** Return the position of the heaviest term under the node */
+    private int nodeValue(int node) {
+        return node >= size ? node - size : tree[node];
+    }
+
+
+    /** Return the heavier of two positions, the first in the sort order for the same weight */
+    private int heavier(int a, int b) {
+        if (weights[a] != weights[b]) {
+            return weights[a] > weights[b] ? a : b;
+        }
+        return a < b ? a : b;
+    }
+
+
+    /**
+     * Return the position of the heaviest term in the range, climb the tree from the two ends.
+     * @param from is the first position, inclusive.
+     * @param to is the last position, exclusive, bigger than from.
+     * @return the position of the heaviest term.
+     */
+    private int heaviest(int from, int to) {
+        int best = from;
+        for (int left = from + size, right = to + size; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                best = heavier(best, nodeValue(left++));
+            }
+            if ((right & 1) == 1) {
+                best = heavier(best, nodeValue(--right));
+            }
+        }
+        return best;
+    }
+
+
+
+    /* The binary search : */
+
+    /**
+     * Return the first position that its term NOT before the key, or if {@code afterPrefix}, the
+     * first position that its term after all the terms that start with the key.
+     * @param key is the bytes of the key.
+     * @param afterPrefix true to skip the terms that start with the key.
+     * @return the position, size if NO such term.
+     */
+    private int lowerBound(byte[] key, boolean afterPrefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int compare = compareTerm(middle, key, true);
+            if (compare < 0 || (afterPrefix && compare == 0)) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Compare the term in the position to the key.
+     * @param position is the position of the term.
+     * @param key is the bytes of the key.
+     * @param asPrefix true to return 0 for every term that start with the key.
+     * @return negative if the term before the key, 0 if equal (or start with the key),
+     * positive if after.
+     */
+    private int compareTerm(int position, byte[] key, boolean asPrefix) {
+        final int start = offsets[position];
+        final int end = offsets[position + 1];
+        if (!asPrefix) {
+            return compareBytes(pool, start, end, key);
+        }
+        return compareBytes(pool, start, Math.min(end, start + key.length), key);
+    }
+
+
+    /**
+     * Compare bytes in an array to a key, unsigned (the order of UTF-8 is the order of the code
+     * points), the shorter first if one is a prefix of the other.
+     */
+    private static int compareBytes(byte[] array, int start, int end, byte[] key) {
+        final int length = end - start;
+        final int max = Math.min(length, key.length);
+        for (int i = 0; i < max; i++) {
+            final int compare = (array[start + i] & 0xff) - (key[i] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return length - key.length;
+    }
+
+
+    /** Add two weights, never overflow */
+    private static int saturatedAdd(int a, int b) {
+        final long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+
+
+
+    /* Variable length ints, 7 bits in every byte, the high bit mark that more bytes follow : */
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Broken variable length int");
+    }
+}
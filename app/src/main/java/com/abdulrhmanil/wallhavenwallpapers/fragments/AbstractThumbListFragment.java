@@ -14,9 +14,12 @@ import android.view.ViewGroup;
 import android.widget.Toast;
 
 import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.OnThumbPhotoArrivedListener;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbPhotosAdapter;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.SharedThumbViews;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ThumbPreloader;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnPressSelectedTap;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnReachEndList;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSelectPage;
@@ -24,7 +27,9 @@ import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSwipeDown;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Abstract class represent a fragment that manage a recycler view that contains bunch
@@ -43,6 +48,15 @@ public abstract class AbstractThumbListFragment extends Fragment
     abstract protected void loadPhotosOnCreate();
 
 
+    /**
+     * Request one page of the thumb photos from the website, every fragment request the
+     * pages of his own category, and give the photos to the listener.
+     * @param pageNum is the number of the page.
+     * @param listener is the listener that get the photos of the page.
+     */
+    abstract protected void getPage(int pageNum, OnThumbPhotoArrivedListener listener);
+
+
     /**
      * When override this method you should use {@link #initUI(View) initUI},
      * and send her as a parameter the inflated view from the specified xml resource,
@@ -59,8 +73,17 @@ public abstract class AbstractThumbListFragment extends Fragment
     /** The list of the thumb photos*/
     protected final List<ThumbPhoto> list = new ArrayList<>(DEF_SIZE);
 
-    /** The current page number we reach*/
-    protected static int pageNum = 1;
+    /** The ids of the photos in the list, the pages may repeat photos, but the ids must be unique*/
+    protected final Set<String> listIds = new HashSet<>(DEF_SIZE * 2);
+
+    /** The number of the pages that fill the first screen, we request them together */
+    protected static final int FIRST_SCREEN_PAGES = 2;
+
+    /** The current page number we reach, every tab has his own pages*/
+    protected int pageNum = 1;
+
+    /** The number of the next pages that we requested and NOT arrived yet */
+    private int nextPagesInFlight;
 
     /** Flag to determine if it's first time load the fragment*/
     protected boolean firstTimeLoaded = true;
@@ -71,6 +94,9 @@ public abstract class AbstractThumbListFragment extends Fragment
     /** Thumb photos adapter*/
     protected ThumbPhotosAdapter adapter;
 
+    /** Preload the thumbs of the next rows in the scroll direction*/
+    protected ThumbPreloader preloader;
+
     /** Grid layout manager*/
     protected GridLayoutManager layoutManager;
 
@@ -83,6 +109,9 @@ public abstract class AbstractThumbListFragment extends Fragment
     /** Swipe to refresh layout*/
     protected SwipeRefreshLayout swipeRefreshLayout;
 
+    /** A singleton that measure the frame times, we mark the pages arrivals and the flings*/
+    protected FrameStatsCollector frameStats;
+
 
     /** Default constructor, turn on the flag to retain fragment status, to prevent recreation*/
     public AbstractThumbListFragment() {
@@ -93,6 +122,7 @@ public abstract class AbstractThumbListFragment extends Fragment
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        frameStats = FrameStatsCollector.getInstance(getContext());
         //Start with loading the thumb photos, while rolling the refresh progress
         loadPhotosOnCreate();
     }
@@ -109,9 +139,15 @@ public abstract class AbstractThumbListFragment extends Fragment
         thumbRes = DisplayUtil.getThumbRes(context);
         final int spanCount = thumbRes.numOfCols;
         layoutManager = new GridLayoutManager(context, spanCount);
+        /* Give the views back to the shared pool when the view of the tab destroyed */
+        layoutManager.setRecycleChildrenOnDetach(true);
         adapter = new ThumbPhotosAdapter(context, list,this);
+        recyclerView.setRecycledViewPool(SharedThumbViews.of(context).getViewPool());
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        preloader = new ThumbPreloader(context, adapter, layoutManager, thumbRes);
+        preloader.attach(recyclerView);
+        frameStats.trackFlings(recyclerView);
         swipeRefreshLayout = view.findViewById(R.id.swipeRefreshLayout);
         swipeRefreshLayout.setOnRefreshListener(this::reLoadPhotos);
 
@@ -122,23 +158,44 @@ public abstract class AbstractThumbListFragment extends Fragment
     }
 
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (preloader != null) {
+            preloader.cancelAll();
+        }
+    }
+
+
     @Override
     public void onResume() {
         super.onResume();
-        adapter.notifyDataSetChanged();
+        adapter.notifyDownloadStateChanged();
         adapter.enableClick();
     }
 
 
     /**
      * When press a new tap, NOT selected one,
-     * notify that the data may changed and notify
-     * the recycler view to refresh his content.
+     * notify that the data may changed (photos downloaded or deleted in other tab)
+     * and refresh only the download buttons, the list itself NOT changed.
      */
     @Override
     public void notifyStatusChanges() {
         if (isSafe()) {
-            adapter.notifyDataSetChanged();
+            adapter.notifyDownloadStateChanged();
+        }
+    }
+
+
+    /**
+     * Clear the list of the thumb photos, and submit the empty list to the adapter.
+     */
+    protected void clearList() {
+        list.clear();
+        listIds.clear();
+        if (adapter != null) {
+            adapter.submitList(new ArrayList<>(list), null);
         }
     }
 
@@ -175,20 +232,22 @@ public abstract class AbstractThumbListFragment extends Fragment
      * Listener as field of anonymous inner class,
      * that hold the behavior of the fragment after
      * the thumb photos arrived from the internet.
-     * In this listener we add the photos to the recycler
-     * view and then we refresh the new add content.
+     * In this listener we add the photos (that NOT already in the list) to the list,
+     * and submit a copy of the list to the adapter, that refresh only the new content.
      */
     protected final OnThumbPhotoArrivedListener addNextListener = new OnThumbPhotoArrivedListener() {
 
         @Override
         public void onResult(@NonNull List<ThumbPhoto> photos) {
-            int positionStart = list.size()-1;
-            int itemCount = photos.size();
-            list.addAll(photos);
-            if (isSafe()) {
-                adapter.notifyItemRangeInserted(positionStart,itemCount);
+            for (ThumbPhoto photo : photos) {
+                if (listIds.add(photo.getPhotoId())) {
+                    list.add(photo);
+                }
+            }
+            if (adapter != null) {
+                frameStats.markEvent(FrameStatsCollector.CONTEXT_PAGE_ARRIVAL);
+                adapter.submitList(new ArrayList<>(list), null);
             }
-
         }
 
         @Override
@@ -206,17 +265,18 @@ public abstract class AbstractThumbListFragment extends Fragment
      * that hold the behavior of the fragment after
      * we reload all the thumb photos of the fragment.
      * In this listener firstly we clear the content of
-     * list then add the photos to the list and the recycler
-     * view and then we refresh the content.
+     * list then add the photos to the list, and submit it to the adapter,
+     * the difference computed in the background, so the photos that still
+     * in the list keep their images, and only the changes refreshed.
      */
     protected final OnThumbPhotoArrivedListener reLoadListener = new OnThumbPhotoArrivedListener() {
 
        @Override
        public void onResult(@NonNull List<ThumbPhoto> photos) {
            list.clear();
+           listIds.clear();
            addNextListener.onResult(photos);
            if (isSafe()) {
-               adapter.notifyDataSetChanged();
                AbstractThumbListFragment.this.swipeRefreshLayout.setRefreshing(false);
            }
        }
@@ -229,4 +289,122 @@ public abstract class AbstractThumbListFragment extends Fragment
            }
        }
    };
+
+
+    /**
+     * Listener as field of anonymous inner class,
+     * that hold the behavior of the fragment after we get the first page again (swipe to refresh),
+     * when we already have photos in the list.
+     * In this listener we don't clear the list, we prepend only the photos that NOT already in
+     * the list (the new photos in the head of the feed) and keep everything below, so the photos
+     * that we already show keep their thumbnails and the scroll position.
+     * If NO photo of the first page is in the list, the feed changed more than one page, so we
+     * replace the list with the first page and request the next page, like a full reload.
+     */
+    protected final OnThumbPhotoArrivedListener mergeListener = new OnThumbPhotoArrivedListener() {
+
+        @Override
+        public void onResult(@NonNull List<ThumbPhoto> photos) {
+            final List<ThumbPhoto> newPhotos = new ArrayList<>(photos.size());
+            for (ThumbPhoto photo : photos) {
+                if (listIds.add(photo.getPhotoId())) {
+                    newPhotos.add(photo);
+                }
+            }
+            if (!photos.isEmpty() && newPhotos.size() == photos.size()) {
+                /* NO overlap with the head of the list, reload from the first page */
+                resetPages();
+                pageNum++;
+                reLoadListener.onResult(photos);
+                addFirstScreenPages();
+                return;
+            }
+            if (!newPhotos.isEmpty()) {
+                list.addAll(0, newPhotos);
+                if (adapter != null) {
+                    frameStats.markEvent(FrameStatsCollector.CONTEXT_PAGE_ARRIVAL);
+                    adapter.submitList(new ArrayList<>(list), null);
+                }
+            }
+            if (isSafe()) {
+                AbstractThumbListFragment.this.swipeRefreshLayout.setRefreshing(false);
+            }
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+            reLoadListener.onError(e);
+        }
+    };
+
+
+    /**
+     * Request the next pages until we have the pages of the first screen, call it after you
+     * request the first page. All the pages fetched together, and arrive in the page order, so
+     * the first page shown as soon as it's ready, and NOT after the other pages.
+     */
+    protected void addFirstScreenPages() {
+        while (pageNum <= FIRST_SCREEN_PAGES) {
+            requestNextPage();
+        }
+    }
+
+
+    /**
+     * When reach the bottom of the list (the end of the list), request the next page of the
+     * thumb photos from the website, and add them to the list and refresh recycler view content.
+     * The adapter call it on every bind near the end of the list, so we request the next page
+     * only when NO next page in flight, otherwise a fast scroll request many pages together.
+     */
+    @Override
+    public void addNextPhotos() {
+        if (nextPagesInFlight == 0) {
+            requestNextPage();
+        }
+    }
+
+
+    /**
+     * Start the pages of the tab again from the first page, call it before you request the
+     * first page. The pages in flight of the old list NOT counted any more, so the new list
+     * NOT wait for them.
+     */
+    protected void resetPages() {
+        pageNum = 1;
+        nextPagesInFlight = 0;
+    }
+
+
+    /** Request the next page (with the current page number) and move to the page after it */
+    private void requestNextPage() {
+        nextPagesInFlight++;
+        getPage(pageNum, nextPageListener);
+        pageNum++;
+    }
+
+
+    /**
+     * Listener as field of anonymous inner class, that count the arrival of a next page
+     * (the photos or the error), and then add the photos like {@link #addNextListener}.
+     */
+    private final OnThumbPhotoArrivedListener nextPageListener = new OnThumbPhotoArrivedListener() {
+
+        @Override
+        public void onResult(@NonNull List<ThumbPhoto> photos) {
+            pageArrived();
+            addNextListener.onResult(photos);
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+            pageArrived();
+            addNextListener.onError(e);
+        }
+
+        private void pageArrived() {
+            if (nextPagesInFlight > 0) {
+                nextPagesInFlight--;
+            }
+        }
+    };
 }
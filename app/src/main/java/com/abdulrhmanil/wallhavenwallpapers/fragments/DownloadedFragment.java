@@ -1,28 +1,44 @@
 package com.abdulrhmanil.wallhavenwallpapers.fragments;
 
 import android.content.Context;
+import android.graphics.Color;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 
 import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
 import com.abdulrhmanil.wallhavenwallpapers.activities.MainActivity;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalMetadataIndex;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalMetadataIndex.Facet;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalMetadataIndex.Field;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.OnLocalPhotosChangedListener;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.OnReloadLocalPhotosListener;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.SortOrder;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.StorageQuotaManager;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.LocalPhotosAdapter;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbPhotosAdapter;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnPressLocalPhoto;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnPressSelectedTap;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSelectLocalPhotos;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSelectPage;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSwipeDown;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Responsible to show the local downloaded photos in a recycler view.
@@ -33,7 +49,8 @@ import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSwipeDown;
  */
 public class DownloadedFragment extends Fragment
         implements OnPressSelectedTap, OnSelectPage, OnSwipeDown,
-        OnPressLocalPhoto, ScrollZoomedPhotosFragment.OnScrollZoomedPhotosListener {
+        OnPressLocalPhoto, OnSelectLocalPhotos,
+        ScrollZoomedPhotosFragment.OnScrollZoomedPhotosListener {
 
 
     /** Singleton that hold the local photos list, and keep the list synchronized*/
@@ -57,6 +74,32 @@ public class DownloadedFragment extends Fragment
     /** Swipe to refresh layout*/
     protected SwipeRefreshLayout swipeRefreshLayout;
 
+    /** Button that show the sort orders dialog, and show the current sort order*/
+    protected Button btnSort;
+
+    /** Button that show the storage quotas dialog, and show the used storage and the quota*/
+    protected Button btnQuota;
+
+    /** Button that show the filter dialog, and show the number of the photos that pass the filter*/
+    protected Button btnFilter;
+
+    /** The header that hold the sort, filter, select and quota buttons*/
+    protected View headerLayout;
+
+    /** The header that shown in the selection mode, hold the delete, all and cancel buttons*/
+    protected View selectionHeaderLayout;
+
+    /** Button that delete all the selected photos, and show the number of the selected photos*/
+    protected Button btnDeleteSelected;
+
+    /** The tags, colors and categories that the shown photos must have, empty for NO filter*/
+    private final List<Facet> selectedFacets = new ArrayList<>();
+
+    /** The number of the last filter query, the results of the older queries are dropped*/
+    private int filterGeneration;
+
+    /** The max number of the tags we offer in the filter dialog, the most common first*/
+    private static final int MAX_FILTER_TAGS = 50;
 
     /** Default constructor, turn on the flag to retain fragment status, to prevent recreation*/
     public DownloadedFragment() {
@@ -76,6 +119,14 @@ public class DownloadedFragment extends Fragment
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        localPhotosUtil.addOnLocalPhotosChangedListener(onLocalPhotosChangedListener);
+    }
+
+
+    @Override
+    public void onDestroy() {
+        localPhotosUtil.removeOnLocalPhotosChangedListener(onLocalPhotosChangedListener);
+        super.onDestroy();
     }
 
 
@@ -102,11 +153,264 @@ public class DownloadedFragment extends Fragment
         thumbRes = DisplayUtil.getThumbRes(context);
         final int spanCount = thumbRes.numOfCols;
         layoutManager = new GridLayoutManager(context, spanCount);
-        adapter = new LocalPhotosAdapter(context, localPhotosUtil.getLocalPhotosList(),this);
+        adapter = new LocalPhotosAdapter(context, localPhotosUtil.getLocalPhotosList(),this,this);
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        FrameStatsCollector.getInstance(context).trackFlings(recyclerView);
         swipeRefreshLayout = view.findViewById(R.id.swipeRefreshLayout);
         swipeRefreshLayout.setOnRefreshListener(this::reLoadPhotos);
+        btnSort = view.findViewById(R.id.btnSortLocalPhotos);
+        btnSort.setOnClickListener(v -> showSortDialog());
+        updateSortButtonText();
+        btnFilter = view.findViewById(R.id.btnFilterLocalPhotos);
+        btnFilter.setOnClickListener(v -> showFilterDialog());
+        updateFilterButtonText();
+        btnQuota = view.findViewById(R.id.btnStorageQuota);
+        btnQuota.setOnClickListener(v -> showQuotaDialog());
+        updateQuotaButtonText();
+        headerLayout = view.findViewById(R.id.layoutLocalPhotosHeader);
+        selectionHeaderLayout = view.findViewById(R.id.layoutSelectionHeader);
+        btnDeleteSelected = view.findViewById(R.id.btnDeleteSelected);
+        btnDeleteSelected.setOnClickListener(v -> showDeleteSelectedDialog());
+        view.findViewById(R.id.btnSelectLocalPhotos).setOnClickListener(v -> setSelectionMode(true));
+        view.findViewById(R.id.btnSelectAll).setOnClickListener(v -> adapter.selectAll());
+        view.findViewById(R.id.btnCancelSelection).setOnClickListener(v -> setSelectionMode(false));
+        setSelectionMode(false);
+    }
+
+
+    /**
+     * Start or stop the selection mode, in the selection mode pressing a photo select it, and
+     * we show the selection header instead of the normal header.
+     * @param selectionMode true to start the selection mode, false to stop it.
+     */
+    private void setSelectionMode(boolean selectionMode) {
+        adapter.setSelectionMode(selectionMode);
+        headerLayout.setVisibility(selectionMode ? View.GONE : View.VISIBLE);
+        selectionHeaderLayout.setVisibility(selectionMode ? View.VISIBLE : View.GONE);
+    }
+
+
+    /**
+     * Show the number of the selected photos in the delete button, the adapter call it after
+     * every change in the selected photos.
+     * @param selectedCount is the number of the selected local photos.
+     */
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        btnDeleteSelected.setText(getString(R.string.delete) + " (" + selectedCount + ")");
+        btnDeleteSelected.setEnabled(selectedCount > 0);
+    }
+
+
+    /**
+     * Show the confirm delete dialog for all the selected photos, and if the user confirm, we
+     * delete all of them in one background batch, the data source publish one version for the
+     * whole batch, and the adapter notify only the removed ranges.
+     */
+    private void showDeleteSelectedDialog() {
+        final List<LocalPhoto> selected = adapter.getSelectedPhotos();
+        if (selected.isEmpty()) {
+            return;
+        }
+        final AlertDialog deleteDialog = new AlertDialog.Builder(context)
+                .setTitle("Delete " + selected.size()
+                        + (selected.size() == 1 ? " wallpaper ?" : " wallpapers ?"))
+                .setIcon(android.R.drawable.ic_delete)
+                .setPositiveButton(R.string.delete, (dialog, which) -> {
+                    adapter.deleteLocalPhotos(selected);
+                    setSelectionMode(false);
+                })
+                .setNegativeButton(R.string.cancel_deleting, (dialog, which) ->
+                        dialog.dismiss())
+                .create();
+        // don't change order - change color must be after show method
+        deleteDialog.show();
+        deleteDialog.getButton(AlertDialog.BUTTON_POSITIVE).setTextColor(Color.RED);
+        deleteDialog.getButton(AlertDialog.BUTTON_NEGATIVE).setTextColor(Color.BLACK);
+    }
+
+
+    /**
+     * Show a dialog with all the storage quotas we support, and when the user choose one of them,
+     * we save it and delete the least recently used photos in the background if we above it,
+     * see {@link StorageQuotaManager StorageQuotaManager}.
+     */
+    private void showQuotaDialog() {
+        final StorageQuotaManager quotaManager = StorageQuotaManager.getInstance(context);
+        int checkedItem = 0;
+        for (int i = 0; i < StorageQuotaManager.QUOTAS.length; i++) {
+            if (StorageQuotaManager.QUOTAS[i] == quotaManager.getQuotaBytes()) {
+                checkedItem = i;
+            }
+        }
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.storage_quota)
+                .setSingleChoiceItems(R.array.quota_titles, checkedItem,
+                        (dialog, which) -> {
+                            quotaManager.setQuotaBytes(StorageQuotaManager.QUOTAS[which]);
+                            updateQuotaButtonText();
+                            dialog.dismiss();
+                        })
+                .create()
+                .show();
+    }
+
+
+    /** Show the used storage and the quota in the quota button */
+    private void updateQuotaButtonText() {
+        final StorageQuotaManager quotaManager = StorageQuotaManager.getInstance(context);
+        final long quotaBytes = quotaManager.getQuotaBytes();
+        String text = getString(R.string.storage_quota) + ": "
+                + Formatter.formatShortFileSize(context, quotaManager.getUsedBytes());
+        if (quotaBytes > 0) {
+            text += " / " + Formatter.formatShortFileSize(context, quotaBytes);
+        }
+        btnQuota.setText(text);
+    }
+
+
+    /**
+     * Show a dialog with the categories, the colors and the most common tags of the local photos,
+     * from the {@link LocalMetadataIndex metadata index} (NO network), the user choose any
+     * number of them, and we show only the photos that have ALL of them.
+     */
+    private void showFilterDialog() {
+        final LocalMetadataIndex metadataIndex = LocalMetadataIndex.getInstance(context);
+        final List<Facet> facets = new ArrayList<>();
+        facets.addAll(metadataIndex.getFacets(Field.Category, Integer.MAX_VALUE));
+        facets.addAll(metadataIndex.getFacets(Field.Color, Integer.MAX_VALUE));
+        facets.addAll(metadataIndex.getFacets(Field.Tag, MAX_FILTER_TAGS));
+        final String[] titles = new String[facets.size()];
+        final boolean[] checkedItems = new boolean[facets.size()];
+        for (int i = 0; i < facets.size(); i++) {
+            final Facet facet = facets.get(i);
+            titles[i] = facet.field + ": " + facet.title + " (" + facet.count + ")";
+            for (Facet selected : selectedFacets) {
+                if (selected.field == facet.field && selected.key.equals(facet.key)) {
+                    checkedItems[i] = true;
+                }
+            }
+        }
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.filter)
+                .setMultiChoiceItems(titles, checkedItems,
+                        (dialog, which, isChecked) -> checkedItems[which] = isChecked)
+                .setPositiveButton(R.string.apply_filter, (dialog, which) -> {
+                    selectedFacets.clear();
+                    for (int i = 0; i < facets.size(); i++) {
+                        if (checkedItems[i]) {
+                            selectedFacets.add(facets.get(i));
+                        }
+                    }
+                    filterBy(selectedFacets);
+                })
+                .setNeutralButton(R.string.clear_filter, (dialog, which) -> {
+                    selectedFacets.clear();
+                    filterBy(selectedFacets);
+                })
+                .create()
+                .show();
+    }
+
+
+    /**
+     * Show only the local photos that have all the gaven tags, colors and categories, the
+     * metadata index intersect their posting lists, so the filtering is instant.
+     * @param facets are the values that the shown photos must have, empty to show all the photos.
+     */
+    public void filterBy(List<Facet> facets) {
+        updateFilter(facets, () -> adapter.swapSnapshot(localPhotosUtil.getSnapshot(),
+                localPhotosUtil.getSortOrder(), () -> {
+                    if (isSafe()) {
+                        recyclerView.scrollToPosition(0);
+                        updateFilterButtonText();
+                    }
+                }));
+    }
+
+
+    /**
+     * Query the metadata index in the background and set the result as the filter of the data
+     * source, then (on the main thread) run the gaven update of the UI. Only the result of the
+     * last query is used, the results of the older queries are dropped.
+     * @param facets are the values that the shown photos must have, empty for NO filter.
+     * @param onFilterUpdated is the update of the UI, run only if the fragment is still safe.
+     */
+    private void updateFilter(List<Facet> facets, final Runnable onFilterUpdated) {
+        final int generation = ++filterGeneration;
+        if (facets.isEmpty()) {
+            localPhotosUtil.setFilter(null);
+            if (isSafe()) {
+                onFilterUpdated.run();
+            }
+            return;
+        }
+        LocalMetadataIndex.getInstance(context).query(facets, photoIds -> {
+            if (generation != filterGeneration) {
+                return;
+            }
+            localPhotosUtil.setFilter(photoIds);
+            if (isSafe()) {
+                onFilterUpdated.run();
+            }
+        });
+    }
+
+
+    /** Show the number of the photos that pass the filter in the filter button */
+    private void updateFilterButtonText() {
+        if (selectedFacets.isEmpty()) {
+            btnFilter.setText(R.string.filter);
+        }
+        else {
+            btnFilter.setText(getString(R.string.filter) + " (" + adapter.getItemCount() + ")");
+        }
+    }
+
+
+    /**
+     * Show a dialog with all the sort orders we support, and when the user choose one of them,
+     * we apply the new order, see {@link #sortBy(SortOrder) sortBy}.
+     */
+    private void showSortDialog() {
+        final int checkedItem = localPhotosUtil.getSortOrder().ordinal();
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.sort_by)
+                .setSingleChoiceItems(R.array.sort_titles, checkedItem, (dialog, which) -> {
+                    sortBy(SortOrder.values()[which]);
+                    dialog.dismiss();
+                })
+                .create()
+                .show();
+    }
+
+
+    /**
+     * Change the sort order of the local photos, the data source keep an index for every order,
+     * so the switching is instant, we just refresh the content and back to top of the list.
+     * @param sortOrder is the new sort order.
+     */
+    public void sortBy(SortOrder sortOrder) {
+        if (localPhotosUtil.getSortOrder() != sortOrder) {
+            localPhotosUtil.setSortOrder(sortOrder);
+            updateSortButtonText();
+            if (isSafe()) {
+                adapter.swapSnapshot(localPhotosUtil.getSnapshot(), localPhotosUtil.getSortOrder(),
+                        () -> {
+                            if (isSafe()) {
+                                recyclerView.scrollToPosition(0);
+                            }
+                        });
+            }
+        }
+    }
+
+
+    /** Show the current sort order in the sort button */
+    private void updateSortButtonText() {
+        btnSort.setText(getString(R.string.sort_by) + ": " + getResources()
+                .getStringArray(R.array.sort_titles)[localPhotosUtil.getSortOrder().ordinal()]);
     }
 
 
@@ -133,7 +437,7 @@ public class DownloadedFragment extends Fragment
     @Override
     public void notifyStatusChanges() {
         if (isSafe()) {
-            adapter.notifyDataSetChanged();
+            adapter.swapSnapshot(localPhotosUtil.getSnapshot(), localPhotosUtil.getSortOrder());
         }
     }
 
@@ -144,7 +448,7 @@ public class DownloadedFragment extends Fragment
     @Override
     public void scrollBackToTop() {
         if (isSafe()) {
-            adapter.notifyDataSetChanged();
+            adapter.swapSnapshot(localPhotosUtil.getSnapshot(), localPhotosUtil.getSortOrder());
             if (localPhotosUtil.getLocalPhotosList().size() > 0 && recyclerView != null) {
                 recyclerView.smoothScrollToPosition(0);
             }
@@ -169,18 +473,42 @@ public class DownloadedFragment extends Fragment
      * Listener as field of anonymous inner class,
      * that hold the behavior of the fragment after
      * reload all the photos from the default downloads folder.
-     * In this listener we add the photos to the recycler view,
-     * notifyDataSetChanged() method. then stop and hide the
-     * refresh progress bar.
+     * In this listener we swap the recycler view to the new photos,
+     * then stop and hide the refresh progress bar.
      */
     OnReloadLocalPhotosListener afterLoadingListener = () -> {
         if (isSafe()) {
-            adapter.notifyDataSetChanged();
+            adapter.swapSnapshot(localPhotosUtil.getSnapshot(), localPhotosUtil.getSortOrder());
             DownloadedFragment.this.swipeRefreshLayout.setRefreshing(false);
         }
     };
 
 
+    /**
+     * Listener as field of anonymous inner class, that notified on the main thread after
+     * every new version of the local photos (downloading, deleting, reloading),
+     * so we swap the adapter to the new snapshot, without blocking on the data source.
+     */
+    OnLocalPhotosChangedListener onLocalPhotosChangedListener = changeSet -> {
+        if (isSafe()) {
+            adapter.applyChangeSet(changeSet, localPhotosUtil.getSortOrder());
+            updateFilterButtonText();
+            updateQuotaButtonText();
+            if (!selectedFacets.isEmpty()) {
+                /* The new photos may have the filter values, so we query again (in the
+                 * background), and show the photos of the new filter when the result arrive */
+                updateFilter(selectedFacets, () -> adapter.swapSnapshot(
+                        localPhotosUtil.getSnapshot(), localPhotosUtil.getSortOrder(),
+                        () -> {
+                            if (isSafe()) {
+                                updateFilterButtonText();
+                            }
+                        }));
+            }
+        }
+    };
+
+
 
     /*
     Implementation of OnPressLocalPhoto and OnScrollZoomedPhotosListener to
@@ -8,6 +8,7 @@ import android.view.ViewGroup;
 
 import com.abdulrhmanil.wallhavenwallpapers.R;
 
+import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.OnThumbPhotoArrivedListener;
 import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.getRandomPhotos;
 
 /**
@@ -33,15 +34,13 @@ public class RandomFragment extends AbstractThumbListFragment {
 
 
     /**
-     * When reach the bottom of the list (the end of the list),
-     * request the next thumb photos of "Random" category from
-     * the website. And add them to the list and refresh recycler
-     * view content.
+     * Request one page of the thumb photos of "Random" category from the website.
+     * @param pageNum is the number of the page.
+     * @param listener is the listener that get the photos of the page.
      */
     @Override
-    public void addNextPhotos() {
-        getRandomPhotos(pageNum,super.addNextListener);
-        pageNum++;
+    protected void getPage(int pageNum, OnThumbPhotoArrivedListener listener) {
+        getRandomPhotos(pageNum, listener);
     }
 
 
@@ -54,10 +53,10 @@ public class RandomFragment extends AbstractThumbListFragment {
      */
     @Override
     public void reLoadPhotos() {
-        pageNum = 1;
+        resetPages();
         getRandomPhotos(pageNum, super.reLoadListener);
         pageNum++;
-        addNextPhotos();
+        addFirstScreenPages();
     }
 
 
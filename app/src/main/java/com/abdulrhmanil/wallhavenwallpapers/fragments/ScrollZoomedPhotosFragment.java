@@ -11,8 +11,10 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.StorageQuotaManager;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ZoomedPhotosAdapter;
 import com.gw.swipeback.SwipeBackLayout;
 
@@ -99,6 +101,13 @@ public class ScrollZoomedPhotosFragment extends Fragment {
     protected int startPosition;
 
 
+    /**
+     * The position of the photo that the user see right now, we mark the photo as viewed
+     * when it's change, so the storage quota evict the least recently viewed photos first.
+     */
+    private int viewedPosition = RecyclerView.NO_POSITION;
+
+
     /**
      * A listener that listen to the position (index) of the current
      * showed photo in fullscreen mode, in other words it listen to
@@ -111,6 +120,14 @@ public class ScrollZoomedPhotosFragment extends Fragment {
     private OnScrollZoomedPhotosListener interactionListener;
 
 
+    /** A singleton that measure the frame times, the pager is a screen of his own */
+    private FrameStatsCollector frameStats;
+
+
+    /** The screen that the pager shown over it, we restore it when the pager paused */
+    private String previousScreen;
+
+
     /** Must default constructor*/
     public ScrollZoomedPhotosFragment(){}
 
@@ -137,6 +154,23 @@ public class ScrollZoomedPhotosFragment extends Fragment {
         if (getArguments() != null) {
             startPosition = getArguments().getInt(KEY_EXTRA_CURRENT_POSITION);
         }
+        frameStats = FrameStatsCollector.getInstance(getContext());
+    }
+
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        previousScreen = frameStats.setScreen(ScrollZoomedPhotosFragment.class.getSimpleName());
+    }
+
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (previousScreen != null) {
+            frameStats.setScreen(previousScreen);
+        }
     }
 
 
@@ -170,14 +204,25 @@ public class ScrollZoomedPhotosFragment extends Fragment {
         layoutManager = new LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false);
         adapter = new ZoomedPhotosAdapter(context);
 
-        recyclerView.setLayoutManager(layoutManager);
-        recyclerView.setAdapter(adapter);
+        adapter.attach(recyclerView, layoutManager);
         SnapHelper snapHelper = new PagerSnapHelper();
         snapHelper.attachToRecyclerView(recyclerView);
         recyclerView.addOnScrollListener(recyclerViewOnScrollListener);
+        frameStats.trackFlings(recyclerView);
         swipeBackLayout.setSwipeBackListener(onSwipeBackListener);
 
         recyclerView.scrollToPosition(startPosition);
+        adapter.prefetchNeighbors(startPosition, true);
+    }
+
+
+    /** Release the prefetched pages, they are NOT needed after the pager destroyed */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (adapter != null) {
+            adapter.releasePrefetches();
+        }
     }
 
 
@@ -241,6 +286,12 @@ public class ScrollZoomedPhotosFragment extends Fragment {
                     recyclerView.getLayoutManager()).findFirstCompletelyVisibleItemPosition();
             if (itemPosition != -1 ) {
                 notifyScrollPositionChanged(itemPosition);
+                if (itemPosition != viewedPosition) {
+                    adapter.prefetchNeighbors(itemPosition, itemPosition > viewedPosition);
+                    viewedPosition = itemPosition;
+                    StorageQuotaManager.getInstance(recyclerView.getContext())
+                            .markViewed(adapter.getLocalPhoto(itemPosition).getPhotoId());
+                }
             }
         }
     };
@@ -2,33 +2,76 @@ package com.abdulrhmanil.wallhavenwallpapers.fragments;
 
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.CardView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.CursorAdapter;
 import android.widget.SearchView;
+import android.widget.SimpleCursorAdapter;
 
 import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.TagSuggestions;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
 
 import java.util.List;
 
 import static android.widget.SearchView.OnQueryTextListener;
+import static android.widget.SearchView.OnSuggestionListener;
 import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.OnThumbPhotoArrivedListener;
 import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.getSearchedPhotos;
 
 
 public class SearchFragment extends AbstractThumbListFragment {
 
+    /** The time after the last typed letter that we search the typed text, in milliseconds */
+    private static final long DEBOUNCE_MILLIS = 400;
+
+    /** The minimum length of the typed text that we search while typing */
+    private static final int MIN_TYPED_LENGTH = 2;
+
+    /** The maximum number of the tags that we suggest while typing */
+    private static final int MAX_SUGGESTIONS = 8;
+
+    /** The column of the suggested tag in the cursor of the suggestions */
+    private static final String COLUMN_SUGGESTION = "suggestion";
+
     /** To search photos and show them*/
     SearchView searchView;
 
     /** To show No results message if there NO results after search*/
     CardView cardView;
 
+    /**
+     * The query of the applied search, the next pages use it, even if the user changed the text
+     * after the search and NOT applied it yet.
+     */
+    private SearchQuery query;
+
+    /** A query that we search as soon as the view created, see {@link #search(SearchQuery)} */
+    private SearchQuery pendingQuery;
+
+    /**
+     * True to take the pages from the search cache, we don't after swipe to refresh,
+     * the user want fresh results.
+     */
+    private boolean useCache = true;
+
+    /** Handler of the main thread, delay the search while the user typing */
+    private final Handler debounceHandler = new Handler();
+
+    /** Search the typed text, posted after the user stop typing */
+    private final Runnable typedSearch = () -> applySearch(false);
+
 
     /**
      * Load photos form the internet when create the fragment, every fragment provide
@@ -40,28 +83,52 @@ public class SearchFragment extends AbstractThumbListFragment {
 
 
     /**
-     * When reach the bottom of the list (the end of the list),
-     * request the next thumb photos from the website.
-     * And add them to the recycler view.
+     * Request one page of the thumb photos of the current search from the website.
+     * @param pageNum is the number of the page.
+     * @param listener is the listener that get the photos of the page.
      */
     @Override
-    public void addNextPhotos() {
-        final String word = searchView.getQuery().toString();
-        getSearchedPhotos(pageNum, word, super.addNextListener);
-        pageNum++;
+    protected void getPage(int pageNum, OnThumbPhotoArrivedListener listener) {
+        getSearchedPhotos(pageNum, currentQuery(), useCache, listener);
     }
 
 
     /**
-     * Just reload all the content to the list and to the recycler view.
+     * Just reload all the content to the list and to the recycler view,
+     * fetch fresh pages, NOT from the search cache (swipe to refresh).
      */
     @Override
     public void reLoadPhotos() {
-        pageNum = 1;
-        final String word = searchView.getQuery().toString();
-        getSearchedPhotos(pageNum, word, this.reLoadListener);
+        loadSearch(false);
+    }
+
+
+    /**
+     * Load the first pages of the search to the list and to the recycler view.
+     * @param fromCache true to take the pages from the search cache if we have them.
+     */
+    private void loadSearch(boolean fromCache) {
+        /* Abort the requests of the previous search, so the first page of this search start now,
+         * and drop their results, so they never reach the listeners */
+        ThumbPhotoDataSource.cancelSearches();
+        useCache = fromCache;
+        resetPages();
+        getSearchedPhotos(pageNum, currentQuery(), useCache, this.reLoadListener);
         pageNum++;
-        addNextPhotos();
+        addFirstScreenPages();
+    }
+
+
+    /**
+     * Return the query of the applied search, if NO search applied yet, the query of the text in
+     * the search bar.
+     * @return the query of the search.
+     */
+    private SearchQuery currentQuery() {
+        if (query == null) {
+            query = SearchQuery.search(searchView.getQuery().toString());
+        }
+        return query;
     }
 
 
@@ -83,7 +150,15 @@ public class SearchFragment extends AbstractThumbListFragment {
         swipeRefreshLayout.setRefreshing(false);
         searchView = view.findViewById(R.id.searchView);
         searchView.setOnQueryTextListener(searchListener);
+        /* The suggestions are the tags that we saw, from the tags index, with NO network */
+        searchView.setSuggestionsAdapter(new SimpleCursorAdapter(context,
+                android.R.layout.simple_list_item_1, null, new String[] {COLUMN_SUGGESTION},
+                new int[] {android.R.id.text1}, 0));
+        searchView.setOnSuggestionListener(suggestionListener);
         cardView = view.findViewById(R.id.noResults);
+        if (pendingQuery != null) {
+            showQuery(pendingQuery);
+        }
     }
 
 
@@ -95,7 +170,8 @@ public class SearchFragment extends AbstractThumbListFragment {
     private void showNoResultsCardIfNeeded(){
         if (isSafe()) {
             final String word = searchView.getQuery().toString();
-            if ((!word.equals("")) && list.size() == 0) {
+            final boolean searchedColor = query != null && query.getColor() != null;
+            if ((!word.equals("") || searchedColor) && list.size() == 0) {
                 cardView.setVisibility(View.VISIBLE);
             }
         }
@@ -133,6 +209,17 @@ public class SearchFragment extends AbstractThumbListFragment {
 
 
 
+    /** Don't search the typed text after the view destroyed, and close the suggestions */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        debounceHandler.removeCallbacks(typedSearch);
+        if (searchView != null) {
+            searchView.getSuggestionsAdapter().changeCursor(null);
+        }
+    }
+
+
     @Override
     public void onResume() {
         super.onResume();
@@ -162,32 +249,106 @@ public class SearchFragment extends AbstractThumbListFragment {
     }
 
 
+    /**
+     * Show the top tags that start with the typed text under the search bar, the lookup in the
+     * tags index take microseconds, so we do it on every typed letter, without the debounce.
+     * @param typed is the typed text.
+     */
+    private void showSuggestions(String typed) {
+        final MatrixCursor cursor =
+                new MatrixCursor(new String[] {BaseColumns._ID, COLUMN_SUGGESTION});
+        final String normalized = typed.trim();
+        if (!normalized.isEmpty()) {
+            int id = 0;
+            for (String tag : TagSuggestions.getInstance(context).suggest(typed, MAX_SUGGESTIONS)) {
+                /* The typed text itself is NOT a suggestion */
+                if (!tag.equalsIgnoreCase(normalized)) {
+                    cursor.addRow(new Object[] {id++, tag});
+                }
+            }
+        }
+        searchView.getSuggestionsAdapter().changeCursor(cursor);
+    }
+
+
     /**
      * Here we apply the searching, and get the results from the website,
      * and show them to user. Firstly clear the old results, load searched
      * photos from the website, while show the loading bar, and hide keyboard.
      * And when the results show up, we show them to user, and hide the loading bar
      * (in the listener).
+     * @param submitted true if the user pressed search, false if we search the typed text,
+     *                  then we keep the keyboard, and skip the search if it's the shown search.
+     */
+    private void applySearch(boolean submitted) {
+        debounceHandler.removeCallbacks(typedSearch);
+        final SearchQuery newQuery = SearchQuery.search(searchView.getQuery().toString());
+        if (!submitted && newQuery.equals(query)) {
+            /* Like a typed space, the same search is already shown (or loading) */
+            return;
+        }
+        startSearch(newQuery);
+        if (submitted) {
+            searchView.clearFocus();
+            hideKeyboard();
+        }
+    }
+
+
+    /**
+     * Search a query that NOT typed by the user, like the color of a photo, show the text of the
+     * query in the search bar, and search the query with all his dimensions.
+     * If the view NOT created yet, we search the query as soon as it's created.
+     * @param newQuery is the query to search.
      */
-    private void applySearch() {
+    public void search(@NonNull SearchQuery newQuery) {
+        if (searchView == null || !isSafe()) {
+            pendingQuery = newQuery;
+            return;
+        }
+        showQuery(newQuery);
+    }
+
+
+    /**
+     * Show the text of the query in the search bar, and search the query.
+     * @param newQuery is the query to search.
+     */
+    private void showQuery(SearchQuery newQuery) {
+        pendingQuery = null;
+        searchView.setQuery(newQuery.getText(), false);
+        /* Setting the text is like typing, but we search the whole query, NOT only the text */
+        debounceHandler.removeCallbacks(typedSearch);
+        searchView.getSuggestionsAdapter().changeCursor(null);
+        searchView.clearFocus();
+        startSearch(newQuery);
+    }
+
+
+    /**
+     * Clear the old results, and load the first pages of the query, while showing the loading
+     * bar, the results shown in the listener.
+     * @param newQuery is the query to search.
+     */
+    private void startSearch(SearchQuery newQuery) {
+        query = newQuery;
         hideNoResultsCard();
-        list.clear();
-        SearchFragment.this.adapter.notifyDataSetChanged();
+        clearList();
         swipeRefreshLayout.setRefreshing(true);
-        reLoadPhotos();
-        searchView.clearFocus();
-        hideKeyboard();
+        /* A recent search show the pages from the cache, without the internet */
+        loadSearch(true);
     }
 
 
     /**
      * The listener of interaction with {@link SearchView searchView},
-     * when press enter we apply searching and call applySearch method.
+     * when press enter we apply searching and call applySearch method,
+     * and while typing we apply searching when the user stop typing for a moment.
      */
     private final OnQueryTextListener searchListener = new OnQueryTextListener() {
         @Override
         public boolean onQueryTextSubmit(String query) {
-            applySearch();
+            applySearch(true);
             return true;
         }
 
@@ -195,6 +356,35 @@ public class SearchFragment extends AbstractThumbListFragment {
         public boolean onQueryTextChange(String newText) {
             hideNoResultsCardIfNeeded();
             //hideNoResultsCard();
+            showSuggestions(newText);
+            debounceHandler.removeCallbacks(typedSearch);
+            if (newText.trim().length() >= MIN_TYPED_LENGTH) {
+                debounceHandler.postDelayed(typedSearch, DEBOUNCE_MILLIS);
+            }
+            return true;
+        }
+    };
+
+
+    /**
+     * The listener of the suggestions of {@link SearchView searchView}, when the user select a
+     * suggested tag, we put it in the search bar and search it, like pressing enter.
+     */
+    private final OnSuggestionListener suggestionListener = new OnSuggestionListener() {
+        @Override
+        public boolean onSuggestionSelect(int position) {
+            return false;
+        }
+
+        @Override
+        public boolean onSuggestionClick(int position) {
+            final CursorAdapter suggestions = searchView.getSuggestionsAdapter();
+            final Cursor cursor = (Cursor) suggestions.getItem(position);
+            if (cursor == null) {
+                return false;
+            }
+            final String tag = cursor.getString(cursor.getColumnIndex(COLUMN_SUGGESTION));
+            searchView.setQuery(tag, true);
             return true;
         }
     };
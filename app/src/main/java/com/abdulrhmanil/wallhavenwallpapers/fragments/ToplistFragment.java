@@ -8,6 +8,7 @@ import android.view.ViewGroup;
 
 import com.abdulrhmanil.wallhavenwallpapers.R;
 
+import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.OnThumbPhotoArrivedListener;
 import static com.abdulrhmanil.wallhavenwallpapers.datasources.ThumbPhotoDataSource.getToplistPhotos;
 
 /**
@@ -33,31 +34,33 @@ public class ToplistFragment extends AbstractThumbListFragment {
 
 
     /**
-     * When reach the bottom of the list (the end of the list),
-     * request the next thumb photos of "Toplist" category from
-     * the website. And add them to the list and refresh recycler
-     * view content.
+     * Request one page of the thumb photos of "Toplist" category from the website.
+     * @param pageNum is the number of the page.
+     * @param listener is the listener that get the photos of the page.
      */
     @Override
-    public void addNextPhotos() {
-        getToplistPhotos(pageNum, super.addNextListener);
-        pageNum++;
+    protected void getPage(int pageNum, OnThumbPhotoArrivedListener listener) {
+        getToplistPhotos(pageNum, listener);
     }
 
 
     /**
-     * Reload the thumb photos from the website, then clear
-     * the content of the list and recycler view, reset the
-     * page number and stop the rolling of the refresh progress
-     * bar. Then load the new thumb photos into the list and
-     * recycler view. The loading from "Toplist" page.
+     * Reload the thumb photos from the website. When the list is empty, we reset the
+     * page number and load the pages of the first screen into the list and recycler view.
+     * Otherwise (swipe to refresh) we get only the first page, and prepend the new
+     * thumb photos to the list, everything below them kept as is, and then stop the
+     * rolling of the refresh progress bar. The loading from "Toplist" page.
      */
     @Override
     public void reLoadPhotos() {
-        pageNum = 1;
+        if (!list.isEmpty()) {
+            getToplistPhotos(1, super.mergeListener);
+            return;
+        }
+        resetPages();
         getToplistPhotos(pageNum, super.reLoadListener);
         pageNum++;
-        addNextPhotos();
+        addFirstScreenPages();
     }
 
 
@@ -16,23 +16,41 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.activities.MainActivity;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.ChangeSet;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.SortOrder;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.Snapshot;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalThumbnailStore;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.PhotoColorsDataSource;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.StorageQuotaManager;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ListDiffer;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnPressLocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnSelectLocalPhotos;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalThumbnail;
+import com.abdulrhmanil.wallhavenwallpapers.queriesconstants.SearchQuery;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.bumptech.glide.request.RequestOptions;
 
-import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static android.support.v4.content.FileProvider.getUriForFile;
 import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.AUTHORITY;
 
 
 /**
- * Recycler View Adapter that adapt our local photos in their full resolution
+ * Recycler View Adapter that adapt our local photos thumbnails (from the
+ * {@link LocalThumbnailStore thumbnails store}, never the full resolution files)
  * into the the {@link RecyclerView RecyclerView}. So we can show them to the user.
  * This adapter is for the {@link LocalPhoto local Photos} objects ...
  * The {@link LocalPhoto localPhoto} is an instance that hold a basis info for the local photos.
@@ -44,10 +62,30 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
     private static final RequestOptions REQUEST_OPTIONS = initRequestOptions();
 
 
+    /** Payload of the item changes that change only the selection, so we don't reload the image */
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+
+    /** The alpha of the image of a selected local photo */
+    private static final float SELECTED_ALPHA = 0.4f;
+
+
     /** A singleton that hold the local photo list. */
     private final LocalPhotosDataSource localPhotosUtil = LocalPhotosDataSource.getInstance();
 
 
+    /** A singleton that hold the small thumbnails of the local photos. */
+    private final LocalThumbnailStore thumbnailStore;
+
+
+    /** A singleton that keep the local photos under the storage quota. */
+    private final StorageQuotaManager quotaManager;
+
+
+    /** A singleton that measure the frame times, we mark the thumbnails decodes */
+    private final FrameStatsCollector frameStats;
+
+
     /** A context */
     private final Context context;
 
@@ -56,9 +94,30 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
     private final LayoutInflater inflater;
 
 
-    /** List that hold the {@link LocalPhoto local photos} objects,
-     * that hold a basis info for the local downloaded photos*/
-    private final List<LocalPhoto> localPhotosList;
+    /** Hold the list of the {@link LocalPhoto local photos} objects,
+     * that hold a basis info for the local downloaded photos.
+     * The list is a read only view of one {@link Snapshot snapshot}, we swap it after every
+     * change, and the differ dispatch only the minimal updates to the recycler view*/
+    private final ListDiffer<LocalPhoto> differ = new ListDiffer<>(this,
+            new ListDiffer.ItemCallback<LocalPhoto>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull LocalPhoto oldItem,
+                                               @NonNull LocalPhoto newItem) {
+                    return oldItem.getPhotoId().equals(newItem.getPhotoId());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull LocalPhoto oldItem,
+                                                  @NonNull LocalPhoto newItem) {
+                    return oldItem == newItem
+                            || (oldItem.getLastModified() == newItem.getLastModified()
+                            && oldItem.getFileSize() == newItem.getFileSize());
+                }
+            });
+
+
+    /** The version of the snapshot that we show, or {@code -1} if we don't know the version */
+    private int shownVersion = -1;
 
 
     /** Util object that calculate the image view width and height, and the num of images in on row*/
@@ -75,31 +134,57 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
     private final OnPressLocalPhoto onPressLocalPhoto;
 
 
+    /**
+     * Listener that we notify after every change in the selected photos, so the fragment can show
+     * the number of the selected photos. You must provide the implementation in the constructor.
+     */
+    private final OnSelectLocalPhotos onSelectLocalPhotos;
+
+
+    /** The names (ids) of the selected local photos, in the selection mode */
+    private final Set<String> selectedIds = new HashSet<>();
+
+
+    /** True if we are in the selection mode, pressing a photo select it instead of showing it */
+    private boolean selectionMode;
+
+
 
     /**
      * Constructor to create and init an instance of {@link LocalPhotosAdapter LocalPhotosAdapter};
      * @param context a context.
      * @param localPhotosList is a list that hold all the {@link LocalPhoto LocalPhoto} objects...
+     * @param onPressLocalPhoto is the listener that show the pressed photo in fullscreen mode.
+     * @param onSelectLocalPhotos is the listener that notified after every change in the
+     *                            selected photos.
      */
     public LocalPhotosAdapter(@NonNull Context context, @NonNull List<LocalPhoto> localPhotosList,
-                              @NonNull OnPressLocalPhoto onPressLocalPhoto) {
+                              @NonNull OnPressLocalPhoto onPressLocalPhoto,
+                              @NonNull OnSelectLocalPhotos onSelectLocalPhotos) {
         this.context = context;
         this.inflater = LayoutInflater.from(this.context);
-        this.localPhotosList = localPhotosList;
+        this.differ.setList(localPhotosList);
         this.thumbRes = DisplayUtil.getThumbRes(context);
         this.onPressLocalPhoto = onPressLocalPhoto;
+        this.onSelectLocalPhotos = onSelectLocalPhotos;
+        this.thumbnailStore = LocalThumbnailStore.getInstance(context);
+        this.quotaManager = StorageQuotaManager.getInstance(context);
+        this.frameStats = FrameStatsCollector.getInstance(context);
+        setHasStableIds(true);
     }
 
 
 
     /**
      * Create RequestOptions for Glide library, to show the default icons.
+     * The thumbnails already in the store on the disk, so we keep them only in the memory cache.
      * @return the default RequestOptions.
      */
     private static RequestOptions initRequestOptions() {
         return new RequestOptions()
                 .placeholder(R.drawable.ic_placeholder)
-                .error(R.drawable.ic_error);
+                .error(R.drawable.ic_error)
+                .diskCacheStrategy(DiskCacheStrategy.NONE);
     }
 
 
@@ -121,31 +206,299 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
     @Override
     public void onBindViewHolder(LocalPhotoViewHolder holder, int position) {
         /* Here we bind the view holder, and show the info in the UI*/
-        final LocalPhoto localPhoto = localPhotosList.get(position);
-        final int index = position;
-
-        Glide.with(context)
-                .setDefaultRequestOptions(REQUEST_OPTIONS)
-                .load(localPhoto.getImageFile())
-                .transition(DrawableTransitionOptions.withCrossFade())
-                .into(holder.imageDownloaded);
+        final LocalPhoto localPhoto = differ.getList().get(position);
 
         holder.localPhoto = localPhoto;
-        holder.btnDeleteLocalPhoto.setOnClickListener(v -> showDeleteDialog(localPhoto,index));
+        if (thumbnailStore.contains(localPhoto.getPhotoId())) {
+            loadThumbnail(holder, localPhoto);
+        }
+        else {
+            /* Never decode the full file here, show the placeholder until we have a thumbnail */
+            Glide.with(context).clear(holder.imageDownloaded);
+            holder.imageDownloaded.setImageResource(R.drawable.ic_placeholder);
+            thumbnailStore.generate(localPhoto, (photoId, generated) -> {
+                if (holder.localPhoto == localPhoto) {
+                    if (generated != null) {
+                        loadThumbnail(holder, localPhoto);
+                    }
+                    else {
+                        holder.imageDownloaded.setImageResource(R.drawable.ic_error);
+                    }
+                }
+            });
+        }
+
+        bindSelection(holder, localPhoto);
+        holder.btnDeleteLocalPhoto.setOnClickListener(v -> showDeleteDialog(localPhoto));
         holder.btnSetLocalPhoto.setOnClickListener(v -> setWallpaperIntent(localPhoto));
         holder.btnShareLocalPhoto.setOnClickListener(v -> shareIntent(localPhoto));
-        holder.imageDownloaded.setOnClickListener(v -> startScrollZoomedPhotosFragment(position));
+        holder.imageDownloaded.setOnClickListener(v -> {
+            if (selectionMode) {
+                toggleSelection(holder);
+            }
+            else {
+                startScrollZoomedPhotosFragment(holder.getAdapterPosition());
+            }
+        });
         holder.imageDownloaded.setOnLongClickListener(v -> showResDialog(localPhoto));
     }
 
 
+    @Override
+    public void onBindViewHolder(LocalPhotoViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_SELECTION)
+                && holder.localPhoto == differ.getList().get(position)) {
+            /* Only the selection changed, don't reload the image */
+            bindSelection(holder, holder.localPhoto);
+        }
+        else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+
+    /**
+     * Show the selection state of the local photo, in the selection mode we hide the buttons and
+     * fade the selected photos.
+     * @param holder is the view holder of the local photo.
+     * @param localPhoto is the local photo.
+     */
+    private void bindSelection(LocalPhotoViewHolder holder, LocalPhoto localPhoto) {
+        final boolean isSelected = selectionMode && selectedIds.contains(localPhoto.getPhotoId());
+        holder.imageDownloaded.setAlpha(isSelected ? SELECTED_ALPHA : 1f);
+        final int buttonsVisibility = selectionMode ? View.INVISIBLE : View.VISIBLE;
+        holder.btnDeleteLocalPhoto.setVisibility(buttonsVisibility);
+        holder.btnSetLocalPhoto.setVisibility(buttonsVisibility);
+        holder.btnShareLocalPhoto.setVisibility(buttonsVisibility);
+    }
+
+
+    /**
+     * Select the local photo of the holder, or unselect it if it's selected, and notify the
+     * listener with the new count.
+     * @param holder is the view holder of the pressed local photo.
+     */
+    private void toggleSelection(LocalPhotoViewHolder holder) {
+        final String photoId = holder.localPhoto.getPhotoId();
+        if (!selectedIds.remove(photoId)) {
+            selectedIds.add(photoId);
+        }
+        final int position = holder.getAdapterPosition();
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
+        onSelectLocalPhotos.onSelectionChanged(selectedIds.size());
+    }
+
+
+
+    /**
+     * Check if we are in the selection mode.
+     * @return true if we are in the selection mode, false otherwise.
+     */
+    public boolean isSelectionMode() {
+        return selectionMode;
+    }
+
+
+
+    /**
+     * Start or stop the selection mode, we clear the selected photos in both cases, and refresh
+     * only the selection state of the items (NO image reloading).
+     * @param selectionMode true to start the selection mode, false to stop it.
+     */
+    public void setSelectionMode(boolean selectionMode) {
+        this.selectionMode = selectionMode;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        onSelectLocalPhotos.onSelectionChanged(0);
+    }
+
+
+
+    /** Select all the local photos that we show */
+    public void selectAll() {
+        for (LocalPhoto localPhoto : differ.getList()) {
+            selectedIds.add(localPhoto.getPhotoId());
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        onSelectLocalPhotos.onSelectionChanged(selectedIds.size());
+    }
+
+
+
+    /**
+     * Return the selected local photos, in the order we show them.
+     * @return list of the selected local photos.
+     */
+    public List<LocalPhoto> getSelectedPhotos() {
+        final List<LocalPhoto> selected = new ArrayList<>(selectedIds.size());
+        for (LocalPhoto localPhoto : differ.getList()) {
+            if (selectedIds.contains(localPhoto.getPhotoId())) {
+                selected.add(localPhoto);
+            }
+        }
+        return selected;
+    }
+
+
+    /**
+     * Show the thumbnail of the local photo (from the {@link LocalThumbnailStore store}) in the
+     * holder image view. We load the {@link LocalThumbnail LocalThumbnail} of the photo and NOT
+     * the bytes, so binding the photo again hit the memory cache of Glide, and we apply the
+     * options to this request only (NOT to the request manager that all the screen share).
+     * @param holder is the view holder of the local photo.
+     * @param localPhoto is the local photo, must have a thumbnail in the store.
+     */
+    private void loadThumbnail(LocalPhotoViewHolder holder, LocalPhoto localPhoto) {
+        Glide.with(context)
+                .load(new LocalThumbnail(localPhoto.getPhotoId()))
+                .apply(REQUEST_OPTIONS)
+                .listener(frameStats.getDecodeListener())
+                .transition(DrawableTransitionOptions.withCrossFade())
+                .into(holder.imageDownloaded);
+    }
+
+
     /**
      * Get the count of the items in the RecyclerView and local photos list.
      * @return the count of items in the our local photos list and RecyclerView.
      */
     @Override
     public int getItemCount() {
-        return localPhotosList.size();
+        return differ.getList().size();
+    }
+
+
+
+    /**
+     * Return a stable id of the item, derived from the photo id, so the recycler view keep the view
+     * holder of a photo even when his position changed.
+     * @param position is the position of the item.
+     * @return the stable id of the item.
+     */
+    @Override
+    public long getItemId(int position) {
+        return ListDiffer.stableIdOf(differ.getList().get(position).getPhotoId());
+    }
+
+
+
+    /**
+     * Swap the list of the local photos with a view of the gaven {@link Snapshot snapshot},
+     * (only the photos that pass the filter of the data source, if we have filter).
+     * The difference computed in the background, and only the changed items are refreshed.
+     * @param snapshot is the snapshot you want to show.
+     * @param sortOrder is the sort order of the list we show.
+     */
+    public void swapSnapshot(@NonNull Snapshot snapshot, @NonNull SortOrder sortOrder) {
+        swapSnapshot(snapshot, sortOrder, null);
+    }
+
+
+
+    /**
+     * Swap the list of the local photos with a view of the gaven {@link Snapshot snapshot},
+     * (only the photos that pass the filter of the data source, if we have filter).
+     * The difference computed in the background, and only the changed items are refreshed.
+     * @param snapshot is the snapshot you want to show.
+     * @param sortOrder is the sort order of the list we show.
+     * @param onCommitted is a callback that we run after the recycler view show the new list,
+     *                    may be {@code null}.
+     */
+    public void swapSnapshot(@NonNull Snapshot snapshot, @NonNull SortOrder sortOrder,
+                             final Runnable onCommitted) {
+        final int version = snapshot.getVersion();
+        shownVersion = -1;
+        differ.submitList(localPhotosUtil.getLocalPhotosList(snapshot, sortOrder), () -> {
+            shownVersion = version;
+            if (onCommitted != null) {
+                onCommitted.run();
+            }
+        });
+    }
+
+
+
+    /**
+     * Swap to the new snapshot of the change set, when we show the old snapshot of the change
+     * and the change is a single photo that added, or any number of photos that removed (like a
+     * batch delete), we notify only their positions, so the recycler view animate the change and
+     * don't rebind all the visible items, otherwise we compute the difference in the background,
+     * see {@link #swapSnapshot(Snapshot, SortOrder) swapSnapshot}.
+     * @param changeSet is the change set that the data source published.
+     * @param sortOrder is the sort order of the list we show.
+     */
+    public void applyChangeSet(@NonNull ChangeSet changeSet, @NonNull SortOrder sortOrder) {
+        for (LocalPhoto localPhoto : changeSet.removed) {
+            selectedIds.remove(localPhoto.getPhotoId());
+        }
+        if (changeSet.oldSnapshot.getVersion() != shownVersion || differ.isPending()) {
+            swapSnapshot(changeSet.newSnapshot, sortOrder);
+            return;
+        }
+        final List<LocalPhoto> oldList = differ.getList();
+        final List<LocalPhoto> newList =
+                localPhotosUtil.getLocalPhotosList(changeSet.newSnapshot, sortOrder);
+        if (changeSet.added.size() == 1 && changeSet.removed.isEmpty()
+                && localPhotosUtil.getFilter() == null) {
+            final int position = changeSet.newSnapshot.positionOf(changeSet.added.get(0), sortOrder);
+            if (position >= 0) {
+                differ.setList(newList);
+                shownVersion = changeSet.newSnapshot.getVersion();
+                notifyItemInserted(position);
+                return;
+            }
+        }
+        else if (!changeSet.removed.isEmpty() && changeSet.added.isEmpty()
+                && notifyRemoved(oldList, newList, changeSet.removed)) {
+            shownVersion = changeSet.newSnapshot.getVersion();
+            return;
+        }
+        swapSnapshot(changeSet.newSnapshot, sortOrder);
+    }
+
+
+
+    /**
+     * Swap to the new list and notify the ranges of the removed photos, we find their positions
+     * in the old list we showed, and notify the consecutive positions as one range, from the end
+     * of the list to the start, so the positions we notify later are NOT shifted by the earlier
+     * notifications.
+     * @param oldList is the list we showed before the change.
+     * @param newList is the list we show after the change.
+     * @param removed is the photos that removed.
+     * @return true if we swapped the list and notified all the removed photos, false if the new
+     * list NOT match the old list without the removed photos, so you must diff the lists.
+     */
+    private boolean notifyRemoved(List<LocalPhoto> oldList, List<LocalPhoto> newList,
+                                  List<LocalPhoto> removed) {
+        final Set<String> removedIds = new HashSet<>(removed.size() * 2);
+        for (LocalPhoto localPhoto : removed) {
+            removedIds.add(localPhoto.getPhotoId());
+        }
+        int[] positions = new int[removed.size()];
+        int count = 0;
+        for (int i = 0; i < oldList.size() && count < positions.length; i++) {
+            if (removedIds.contains(oldList.get(i).getPhotoId())) {
+                positions[count++] = i;
+            }
+        }
+        if (oldList.size() - count != newList.size()) {
+            return false;
+        }
+        differ.setList(newList);
+        positions = Arrays.copyOf(positions, count);
+        int end = count - 1;
+        while (end >= 0) {
+            int start = end;
+            while (start > 0 && positions[start - 1] == positions[start] - 1) {
+                start--;
+            }
+            notifyItemRangeRemoved(positions[start], end - start + 1);
+            end = start - 1;
+        }
+        return true;
     }
 
 
@@ -160,6 +513,7 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
             Uri uri = getUriForFile(context, AUTHORITY, localPhoto.getImageFile());
             WallpaperManager wallpaperMgr = WallpaperManager.getInstance(context);
             context.startActivity(wallpaperMgr.getCropAndSetWallpaperIntent(uri));
+            quotaManager.markSetAsWallpaper(localPhoto.getPhotoId());
         }
         catch (IllegalArgumentException e) {
             Toast.makeText(context, e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -201,35 +555,59 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
 
 
     /**
-     * Show the resolution (width X height) of the {@link LocalPhoto LocalPhoto} object.
+     * Show the resolution (width X height) of the {@link LocalPhoto LocalPhoto} object,
+     * with a button to pin or unpin the photo, the pinned photos never deleted by the storage
+     * quota, see {@link StorageQuotaManager StorageQuotaManager}.
      * @param localPhoto is the local photo object, hold basis info of the local photo,
      *                   include the path of the local photo.
      * @return just ignore the returned value, used for the long click listener.
      */
     private boolean showResDialog(final LocalPhoto localPhoto) {
+        final boolean isPinned = quotaManager.isPinned(localPhoto.getPhotoId());
         final AlertDialog resDialog = new AlertDialog.Builder(context)
                 .setMessage(localPhoto.getWallRes())
+                .setNeutralButton(isPinned ? R.string.unpin : R.string.pin, (dialog, which) ->
+                        quotaManager.setPinned(localPhoto.getPhotoId(), !isPinned))
+                .setPositiveButton(R.string.search_color, (dialog, which) ->
+                        searchColor(localPhoto))
                 .create();
         resDialog.show();
         return true;
     }
 
 
+    /**
+     * Search the photos of the website with the dominant search color of the local photo,
+     * in the search tab.
+     * @param localPhoto is the local photo.
+     */
+    private void searchColor(final LocalPhoto localPhoto) {
+        PhotoColorsDataSource.getDominantColors(context, localPhoto, 1, colors -> {
+            if (colors.isEmpty()) {
+                Toast.makeText(context, "Can't read the colors of the photo",
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+            context.startActivity(MainActivity.newSearchIntent(context,
+                    SearchQuery.search(null).withColor(colors.get(0))));
+        });
+    }
+
+
 
     /**
      * Show the confirm delete dialog, and if choose to delete the the photo, and pressed delete
-     * button, then call {@link #deleteLocalPhoto(LocalPhoto, int) delete photo} method. to delete
+     * button, then call {@link #deleteLocalPhotos(List) delete photos} method. to delete
      * the photo from the storage, and remove it from the local photos list, so all the application
      * can be synchronized.
      * @param localPhoto is the local photo you want to delete and remove from the application.
-     * @param index the index of the local photo in the list ...
      */
-    private void showDeleteDialog(final LocalPhoto localPhoto, final int index) {
+    private void showDeleteDialog(final LocalPhoto localPhoto) {
         final AlertDialog deleteDialog = new AlertDialog.Builder(context)
                 .setTitle("Delete this wallpaper ?")
                 .setIcon(android.R.drawable.ic_delete)
                 .setPositiveButton(R.string.delete, (dialog, which) ->
-                        deleteLocalPhoto(localPhoto,index))
+                        deleteLocalPhotos(Collections.singletonList(localPhoto)))
                 .setNegativeButton(R.string.cancel_deleting, (dialog, which) ->
                         dialog.dismiss())
                 .create();
@@ -242,22 +620,21 @@ public class LocalPhotosAdapter extends RecyclerView.Adapter<LocalPhotosAdapter.
 
 
     /**
-     * Apply deleting photo:
-     * method that firstly remove the photo from the {@link #localPhotosList local photos list},
-     * so the application can be synchronized
-     * And then delete the local photo from the local storage.
-     * @param localPhoto is the local photo object you want to remove and delete.
-     * @param index is the index of the local photo you want to remove and delete.
+     * Apply deleting photos:
+     * method that delete the files of the local photos in the background, and then remove all of
+     * them from the {@link LocalPhotosDataSource data source} in one batch, so the application
+     * can be synchronized.
+     * We don't refresh the content here, the data source publish one new version and the fragment
+     * swap to it, see {@link #applyChangeSet(ChangeSet, SortOrder) applyChangeSet}.
+     * @param localPhotos is the local photos you want to remove and delete.
      */
-    private void deleteLocalPhoto(final LocalPhoto localPhoto, final int index) {
-        File imageFile = localPhoto.getImageFile();
-        boolean removeStatus = localPhotosUtil.remove(localPhoto, index);
-        removeStatus &= imageFile.delete();
-        if (!removeStatus) {
-            Toast.makeText(context, "Something wrong while remove the file",
-                    Toast.LENGTH_SHORT).show();
-        }
-        notifyDataSetChanged();
+    public void deleteLocalPhotos(final List<LocalPhoto> localPhotos) {
+        localPhotosUtil.deleteAll(localPhotos, (deletedCount, failedCount) -> {
+            if (failedCount > 0) {
+                Toast.makeText(context, "Something wrong while remove " + failedCount
+                        + (failedCount == 1 ? " file" : " files"), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
 
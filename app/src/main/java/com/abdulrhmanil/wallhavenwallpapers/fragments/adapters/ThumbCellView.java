@@ -0,0 +1,321 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.widget.ImageView;
+
+import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ThumbBinder;
+
+
+/**
+ * A flat cell of the thumbs grid, one view that draw the thumb image, the resolution label and the
+ * download state badge in one {@link #onDraw(Canvas) onDraw}, instead of the nested hierarchy
+ * (CardView - ConstraintLayout - ImageView, TextView, ImageButton) that measured and laid out on
+ * every bind.
+ * The image drawn by the {@link ImageView ImageView} in the top area (we keep a bottom padding for
+ * the label strip), so Glide load into this view like any image view.
+ * The size of the cell is exact (no measure passes of children), and the label is ellipsized and
+ * positioned only when the text or the size changed, NOT in every draw.
+ */
+public class ThumbCellView extends ImageView implements ThumbBinder.Cell {
+
+
+    /** The badge when the photo NOT downloaded, press it to download */
+    public static final int BADGE_DOWNLOAD = 0;
+
+    /** The badge when the photo is downloading now, animated */
+    public static final int BADGE_DOWNLOADING = 1;
+
+    /** The badge when the photo already downloaded */
+    public static final int BADGE_DOWNLOADED = 2;
+
+
+    /** The icons of the badges, by the badge */
+    private static final int[] BADGE_ICONS = {
+            R.drawable.ic_circle_download,
+            R.drawable.ic_circle_download_animated,
+            R.drawable.ic_circle_check
+    };
+
+
+    /** The height of the label strip under the image in dp */
+    private static final int STRIP_HEIGHT_DP = 48;
+
+    /** The margin of the label and the badge in dp */
+    private static final int MARGIN_DP = 8;
+
+    /** The size of the badge icon in dp */
+    private static final int BADGE_SIZE_DP = 24;
+
+    /** The size of the label text in sp */
+    private static final int TEXT_SIZE_SP = 18;
+
+    /** The color of the label text (secondary text) */
+    private static final int TEXT_COLOR = 0x8A000000;
+
+
+    /** The paint of the label */
+    private final TextPaint textPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /** The height of the label strip in pixels */
+    private final int stripHeight;
+
+    /** The margin of the label and the badge in pixels */
+    private final int margin;
+
+    /** The size of the badge icon in pixels */
+    private final int badgeSize;
+
+    /** The bounds of the badge icon */
+    private final Rect badgeBounds = new Rect();
+
+    /** The badge icons that we already loaded, by the badge */
+    private final Drawable[] badgeIcons = new Drawable[BADGE_ICONS.length];
+
+    /** The width of the image in pixels, 0 if NOT set */
+    private int imageWidth;
+
+    /** The height of the image in pixels, 0 if NOT set */
+    private int imageHeight;
+
+    /** The full label text */
+    private String label = "";
+
+    /** The label text that we draw, ellipsized to the available width */
+    private String drawnLabel = "";
+
+    /** The position of the label */
+    private float labelX, labelY;
+
+    /** The current badge, -1 if NOT set yet */
+    private int badge = -1;
+
+    /** The position of the last touch down, to know if the press was on the badge */
+    private float touchX, touchY;
+
+
+
+    /**
+     * Constructor to create the cell from the code.
+     * @param context a context.
+     */
+    public ThumbCellView(Context context) {
+        this(context, null);
+    }
+
+
+    /**
+     * Constructor to create the cell from XML.
+     * @param context a context.
+     * @param attrs the attributes from XML.
+     */
+    public ThumbCellView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        final float density = getResources().getDisplayMetrics().density;
+        this.stripHeight = (int) (STRIP_HEIGHT_DP * density);
+        this.margin = (int) (MARGIN_DP * density);
+        this.badgeSize = (int) (BADGE_SIZE_DP * density);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+        textPaint.setColor(TEXT_COLOR);
+        textPaint.setTypeface(Typeface.create("serif-monospace", Typeface.NORMAL));
+        setScaleType(ScaleType.FIT_CENTER);
+        setPadding(0, 0, 0, stripHeight);
+    }
+
+
+
+    /**
+     * Set the size of the image, the cell is the image and the label strip under it.
+     * @param width is the width of the image in pixels.
+     * @param height is the height of the image in pixels.
+     */
+    public void setImageSize(int width, int height) {
+        if (width != imageWidth || height != imageHeight) {
+            imageWidth = width;
+            imageHeight = height;
+            requestLayout();
+        }
+    }
+
+
+
+    /**
+     * Set the label (the resolution of the photo), we ellipsize and position the label only if
+     * it changed.
+     * @param text is the label.
+     */
+    @Override
+    public void setLabel(@NonNull String text) {
+        if (!text.equals(label)) {
+            label = text;
+            layoutLabel();
+            invalidate();
+        }
+    }
+
+
+
+    /**
+     * Set the badge of the download state, the downloading badge is animated.
+     * @param newBadge is one of {@link #BADGE_DOWNLOAD}, {@link #BADGE_DOWNLOADING},
+     *                 {@link #BADGE_DOWNLOADED}.
+     */
+    @Override
+    public void setBadge(int newBadge) {
+        if (newBadge == badge) {
+            return;
+        }
+        stopBadgeAnimation();
+        badge = newBadge;
+        final Drawable icon = badgeIcon(newBadge);
+        icon.setBounds(badgeBounds);
+        if (icon instanceof Animatable) {
+            ((Animatable) icon).start();
+        }
+        invalidate();
+    }
+
+
+
+    /**
+     * Check if the last press of the cell was on the badge (with a margin around it).
+     * @return true if the last press was on the badge, false if it was on the image.
+     */
+    public boolean isBadgePressed() {
+        return touchY >= imageHeight
+                && touchX >= badgeBounds.left - margin
+                && touchX <= badgeBounds.right + margin;
+    }
+
+
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (imageWidth > 0 && imageHeight > 0) {
+            /* Exact size, we don't have children to measure */
+            setMeasuredDimension(imageWidth, imageHeight + stripHeight);
+        }
+        else {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        final int top = h - stripHeight + (stripHeight - badgeSize) / 2;
+        final int right = w - margin;
+        badgeBounds.set(right - badgeSize, top, right, top + badgeSize);
+        if (badge >= 0) {
+            badgeIcon(badge).setBounds(badgeBounds);
+        }
+        layoutLabel();
+    }
+
+
+
+    /**
+     * Ellipsize the label to the width between the start of the cell and the badge,
+     * and compute the position of the label, in the vertical center of the strip.
+     */
+    private void layoutLabel() {
+        final int width = getWidth();
+        if (width == 0) {
+            return;
+        }
+        final float available = width - badgeSize - 3 * margin;
+        drawnLabel = TextUtils.ellipsize(label, textPaint, Math.max(0, available),
+                TextUtils.TruncateAt.END).toString();
+        labelX = margin;
+        labelY = getHeight() - stripHeight / 2f - (textPaint.descent() + textPaint.ascent()) / 2f;
+    }
+
+
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        /* The image, in the area above the strip */
+        super.onDraw(canvas);
+        canvas.drawText(drawnLabel, labelX, labelY, textPaint);
+        if (badge >= 0) {
+            badgeIcon(badge).draw(canvas);
+        }
+    }
+
+
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            touchX = event.getX();
+            touchY = event.getY();
+        }
+        return super.onTouchEvent(event);
+    }
+
+
+
+    @Override
+    protected boolean verifyDrawable(@NonNull Drawable who) {
+        return (badge >= 0 && who == badgeIcons[badge]) || super.verifyDrawable(who);
+    }
+
+
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (badge >= 0 && badgeIcons[badge] instanceof Animatable) {
+            ((Animatable) badgeIcons[badge]).start();
+        }
+    }
+
+
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stopBadgeAnimation();
+        super.onDetachedFromWindow();
+    }
+
+
+
+    /**
+     * Return the icon of the badge, load it in the first time.
+     * @param forBadge is the badge.
+     * @return the icon of the badge.
+     */
+    private Drawable badgeIcon(int forBadge) {
+        Drawable icon = badgeIcons[forBadge];
+        if (icon == null) {
+            icon = getContext().getDrawable(BADGE_ICONS[forBadge]).mutate();
+            icon.setCallback(this);
+            badgeIcons[forBadge] = icon;
+        }
+        return icon;
+    }
+
+
+
+    /** Stop the animation of the current badge, if it's animated */
+    private void stopBadgeAnimation() {
+        if (badge >= 0 && badgeIcons[badge] instanceof Animatable) {
+            ((Animatable) badgeIcons[badge]).stop();
+        }
+    }
+}
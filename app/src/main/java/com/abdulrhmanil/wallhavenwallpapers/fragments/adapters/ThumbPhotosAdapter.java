@@ -2,33 +2,35 @@ package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.drawable.Animatable;
-import android.graphics.drawable.Drawable;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageButton;
-import android.widget.ImageView;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
 import com.abdulrhmanil.wallhavenwallpapers.activities.ShowPhotoActivity;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.ConnectivityMonitor;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.InlineDownloader;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.InlineDownloader.OnFinishDownloadingListener;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ListDiffer;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.SharedThumbViews;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ThumbBinder;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.ThumbPreloader;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.interactions.OnReachEndList;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.bumptech.glide.request.RequestOptions;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.abdulrhmanil.wallhavenwallpapers.GlobalConstant.DEFAULT_PATH;
@@ -47,23 +49,19 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
 
     /**
      * A static nested class that represent an item in the {@link RecyclerView RecyclerView}.
-     * In our case: the card that hold the image, resolution, and the download button.
+     * In our case: one flat {@link ThumbCellView cell} that draw the image, the resolution,
+     * and the download badge.
      */
     static class ThumbPhotoViewHolder extends RecyclerView.ViewHolder {
         /* Fields to show and update the view : */
-        ImageView imageThumb;
-        TextView txtRes;
-        ImageButton btnDownloadInline;
-        View v;
+        ThumbCellView cell;
         Context context;
+        /* The adapter that bound the holder last, the tabs share the holders (one pool) */
+        ThumbPhotosAdapter boundAdapter;
 
         public ThumbPhotoViewHolder(View itemView) {
             super(itemView);
-            this.v = itemView;
-            imageThumb = itemView.findViewById(R.id.imageThumb);
-            txtRes = itemView.findViewById(R.id.txtRes);
-            btnDownloadInline = itemView.findViewById(R.id.btnDownloadInline);
-            btnDownloadInline.setTag(this);
+            cell = (ThumbCellView) itemView;
             context = itemView.getContext();
         }
     }
@@ -77,6 +75,15 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     private static final RequestOptions REQUEST_OPTIONS = initRequestOptions();
 
 
+    /** The cross fade transition of the thumbs, shared by all the binds */
+    private static final DrawableTransitionOptions CROSS_FADE =
+            DrawableTransitionOptions.withCrossFade();
+
+
+    /** Payload of the item changes that change only the download state, NO image reloading */
+    private static final Object PAYLOAD_DOWNLOAD_STATE = new Object();
+
+
     /** A static variable that represent if we showed NO connection alter */
     private static boolean showedNoConnectionAlter = false;
 
@@ -85,6 +92,14 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     private final LocalPhotosDataSource localPhotosUtil = getInstance();
 
 
+    /** A singleton that follow the connectivity state, we read it on every bind */
+    private final ConnectivityMonitor connectivityMonitor;
+
+
+    /** A singleton that measure the frame times, we mark the thumbs decodes */
+    private final FrameStatsCollector frameStats;
+
+
     /** A context */
     private final Context context;
 
@@ -93,8 +108,24 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     private final LayoutInflater inflater;
 
 
-    /** List that hold the {@link ThumbPhoto thump photos} objects*/
-    private final List<ThumbPhoto> photos;
+    /**
+     * Hold the list of the {@link ThumbPhoto thump photos} objects that we show, we swap it with
+     * {@link #submitList(List, Runnable) submitList}, and the differ dispatch the minimal updates.
+     */
+    private final ListDiffer<ThumbPhoto> differ = new ListDiffer<>(this,
+            new ListDiffer.ItemCallback<ThumbPhoto>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull ThumbPhoto oldItem,
+                                               @NonNull ThumbPhoto newItem) {
+                    return oldItem.getPhotoId().equals(newItem.getPhotoId());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull ThumbPhoto oldItem,
+                                                  @NonNull ThumbPhoto newItem) {
+                    return oldItem.getWallRes().equals(newItem.getWallRes());
+                }
+            });
 
 
     /** Is allowed click on a image view and start new {@link ShowPhotoActivity ShowPhotoActivity} */
@@ -105,15 +136,41 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     private final DisplayUtil.ThumbRes thumbRes;
 
 
+    /**
+     * The request options of the thumbs, with the exact size of the image view and explicit
+     * transformation, the {@link ThumbPreloader preloader} use the same options, so the
+     * preloaded thumbs hit the memory cache on bind.
+     * The thumbs are opaque JPEG, so we decode them to RGB_565 (half the memory of ARGB_8888),
+     * and downsample them in the decoding straight to the size of the image view.
+     */
+    private final RequestOptions thumbOptions;
+
+
+    /**
+     * The work of the bind on our side (the photo, the link, the label and the badge), with the
+     * variant of the thumbs that chosen by the pixels width of the image view.
+     */
+    private final ThumbBinder binder;
+
+
     /** Functional interface to interact (call method) when reach the RecyclerView bottom */
     private final OnReachEndList onReachEndList;
 
 
+    /**
+     * Request the next thumb photos, when we reach the end of the list while we are offline,
+     * we queue it in the {@link ConnectivityMonitor monitor} (only once), and it run when we
+     * are back online.
+     */
+    private final Runnable loadNextPhotos;
+
+
 
     /**
      * Constructor to create and init an instance of {@link ThumbPhotosAdapter ThumbPhotosAdapter};
      * @param context a context.
-     * @param photos is a list of the thumb photos objects.
+     * @param photos is a list of the thumb photos objects, we copy it, to change the list later
+     *               use {@link #submitList(List, Runnable) submitList}.
      * @param onReachEndList a functional interface to interact when reach the list bottom.
      */
     public ThumbPhotosAdapter(@NonNull final Context context,
@@ -121,9 +178,52 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
                               @NonNull final OnReachEndList onReachEndList) {
         this.context = context;
         this.inflater = LayoutInflater.from(this.context);
-        this.photos = photos;
+        this.differ.setList(new ArrayList<>(photos));
         this.thumbRes = DisplayUtil.getThumbRes(context);
+        this.thumbOptions = REQUEST_OPTIONS.clone()
+                .override(thumbRes.widthPx, thumbRes.heightPx)
+                .downsample(DownsampleStrategy.FIT_CENTER)
+                .format(DecodeFormat.PREFER_RGB_565)
+                .fitCenter();
+        this.binder = new ThumbBinder(new ThumbBinder.DownloadState() {
+            @Override
+            public boolean isDownloaded(String photoId) {
+                return ThumbPhotosAdapter.this.isDownloaded(photoId);
+            }
+
+            @Override
+            public boolean isDownloadingNow(String photoId) {
+                return ThumbPhotosAdapter.this.isDownloadingNow(photoId);
+            }
+        }, ThumbPhoto.Variant.forWidth(thumbRes.widthPx));
         this.onReachEndList = onReachEndList;
+        this.loadNextPhotos = onReachEndList::addNextPhotos;
+        this.connectivityMonitor = ConnectivityMonitor.getInstance(context);
+        this.frameStats = FrameStatsCollector.getInstance(context);
+        setHasStableIds(true);
+    }
+
+
+
+    /**
+     * Swap the list of the thumb photos, the difference computed in the background, and only the
+     * inserted, removed and changed items are refreshed, so the shown photos NOT loaded again.
+     * @param photos is the new list, must NOT be modified later.
+     * @param onCommitted is a callback that we run after the recycler view show the new list,
+     *                    may be {@code null}.
+     */
+    public void submitList(@NonNull final List<ThumbPhoto> photos, final Runnable onCommitted) {
+        differ.submitList(photos, onCommitted);
+    }
+
+
+
+    /**
+     * Refresh the download button of all the items (a photo may be downloaded or deleted in
+     * other tab), we refresh only the button, the images NOT loaded again.
+     */
+    public void notifyDownloadStateChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_DOWNLOAD_STATE);
     }
 
 
@@ -158,12 +258,28 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     public ThumbPhotoViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         /* Here we create the holder view */
 
-        /* Take an xml and convert it to a view object.*/
-        View view = inflater.inflate(R.layout.thumb_photo_item, parent, false);
+        /* Take an xml and convert it to a view object, pre-inflated in the background if we can.*/
+        View view = SharedThumbViews.of(context)
+                .takeView(inflater, R.layout.thumb_photo_item, parent);
         /* Create a view holder and return it the caller of the method. */
-        ThumbPhotoViewHolder holder = new ThumbPhotoViewHolder(view);
-        holder.imageThumb.getLayoutParams().width = thumbRes.widthPx;
-        holder.imageThumb.getLayoutParams().height = thumbRes.heightPx;
+        final ThumbPhotoViewHolder holder = new ThumbPhotoViewHolder(view);
+        holder.cell.setImageSize(thumbRes.widthPx, thumbRes.heightPx);
+        /* The listener set once, and read the bound position and the adapter that bound the
+         * holder (other tab may reuse the holder), so the bind allocate nothing.
+         * A press on the badge download the photo, a press on the image show it */
+        holder.cell.setOnClickListener(v -> {
+            final int position = holder.getAdapterPosition();
+            final ThumbPhotosAdapter adapter = holder.boundAdapter;
+            if (position == RecyclerView.NO_POSITION || adapter == null) {
+                return;
+            }
+            if (holder.cell.isBadgePressed()) {
+                adapter.downloadPhotoInline(holder, adapter.getItem(position), position);
+            }
+            else {
+                adapter.startShowPhotoActivity(adapter.getItem(position));
+            }
+        });
         return holder;
     }
 
@@ -172,30 +288,70 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
     @Override
     public void onBindViewHolder(final ThumbPhotoViewHolder holder, int position) {
         /* Here we bind the view holder, and show the info in the UI*/
-        if (isOnline()) {
-            /*Position: index of the current movie */
-            if ((position + DEF_PHOTOS_AMOUNT) >= getItemCount()) {
-                onReachEndList.addNextPhotos();
+        /*Position: index of the current movie */
+        if ((position + DEF_PHOTOS_AMOUNT) >= getItemCount()) {
+            /* Called on every bind near the end, the fragment keep only one next page in flight */
+            if (!connectivityMonitor.runWhenOnline(loadNextPhotos)) {
+                alterNoConnectionOnlyOnce();
             }
         }
-        else {
+        else if (!connectivityMonitor.isConnected()) {
             alterNoConnectionOnlyOnce();
         }
 
 
-        final ThumbPhoto thumbPhoto = photos.get(position);
+        holder.boundAdapter = this;
+        final ThumbPhoto thumbPhoto = binder.bind(differ.getList(), position, holder.cell);
 
         Glide.with(context)
-                .setDefaultRequestOptions(REQUEST_OPTIONS)
-                .load(thumbPhoto.getThumbPhotoLink())
-                .transition(DrawableTransitionOptions.withCrossFade())
-                .into(holder.imageThumb);
-
-        holder.txtRes.setText(thumbPhoto.getWallRes());
-        holder.imageThumb.setOnClickListener(v -> startShowPhotoActivity(thumbPhoto));
-        updateDownloadButtonIcon(holder, thumbPhoto);
-        holder.btnDownloadInline.setOnClickListener(v ->
-                downloadPhotoInline(holder, thumbPhoto, position));
+                .load(getThumbLink(thumbPhoto))
+                .apply(thumbOptions)
+                .listener(frameStats.getDecodeListener())
+                .transition(CROSS_FADE)
+                .into(holder.cell);
+    }
+
+
+
+    @Override
+    public void onBindViewHolder(final ThumbPhotoViewHolder holder, int position,
+                                 List<Object> payloads) {
+        if (!payloads.isEmpty() && allDownloadStatePayloads(payloads)) {
+            /* Only the download state changed, don't reload the image */
+            updateDownloadButtonIcon(holder, differ.getList().get(position));
+        }
+        else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+
+
+    /**
+     * Check if all the payloads are download state payloads.
+     * @param payloads is the payloads of the item change.
+     * @return true if all the payloads are download state payloads.
+     */
+    private static boolean allDownloadStatePayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_DOWNLOAD_STATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+    /**
+     * Return a stable id of the item, derived from the photo id, so the recycler view keep the view
+     * holder of a photo even when his position changed.
+     * @param position is the position of the item.
+     * @return the stable id of the item.
+     */
+    @Override
+    public long getItemId(int position) {
+        return ThumbBinder.itemIdOf(differ.getList(), position);
     }
 
 
@@ -206,7 +362,41 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
      */
     @Override
     public int getItemCount() {
-        return photos.size();
+        return differ.getList().size();
+    }
+
+
+
+    /**
+     * Return the thumb photo in the gaven position of the list that we show.
+     * @param position is the position of the thumb photo.
+     * @return the thumb photo in the position.
+     */
+    public ThumbPhoto getItem(int position) {
+        return differ.getList().get(position);
+    }
+
+
+
+    /**
+     * Return the link of the thumb variant that we load, depends on the size of the image view,
+     * so tablets get the large variant, and small phones download and hold less.
+     * @param thumbPhoto is the thumb photo.
+     * @return the link of the thumb that we load.
+     */
+    public String getThumbLink(ThumbPhoto thumbPhoto) {
+        return binder.thumbLinkOf(thumbPhoto);
+    }
+
+
+
+    /**
+     * Return the request options that we load the thumbs with them, use them to preload thumbs
+     * that hit the memory cache on bind.
+     * @return the request options of the thumbs.
+     */
+    public RequestOptions getThumbOptions() {
+        return thumbOptions;
     }
 
 
@@ -221,7 +411,7 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
             disableClick();
             Intent intent = new Intent(context, ShowPhotoActivity.class);
             intent.putExtra(KEY_EXTRA_PHOTO_ID, thumbPhoto.getPhotoId());
-            intent.putExtra(KEY_EXTRA_THUMB_PHOTO_LINK, thumbPhoto.getThumbPhotoLink());
+            intent.putExtra(KEY_EXTRA_THUMB_PHOTO_LINK, getThumbLink(thumbPhoto));
             context.startActivity(intent);
         }
     }
@@ -229,28 +419,16 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
 
 
     /**
-     * Update the icon of the download button, while recycle the list,
-     * animate the button if download the photo right now.
-     * @param holder is the view holder, that hold the button, so you can update the button.
+     * Update the download badge of the cell, while recycle the list,
+     * the badge is animated if download the photo right now.
+     * The cell change (and redraw) the badge only if it changed.
+     * @param holder is the view holder, that hold the cell, so you can update the badge.
      * @param thumbPhoto is the thumb photo object that contain photo Id.
      */
     private void updateDownloadButtonIcon(final ThumbPhotoViewHolder holder,
                                           final ThumbPhoto thumbPhoto) {
 
-        final String photoId = thumbPhoto.getPhotoId();
-        if (!isDownloaded(photoId)) {
-            holder.btnDownloadInline.setImageResource(R.drawable.ic_circle_download);
-            if (isDownloadingNow(photoId)) {
-                holder.btnDownloadInline.setImageResource(R.drawable.ic_circle_download_animated);
-                final Drawable drawable = holder.btnDownloadInline.getDrawable();
-                if (drawable instanceof Animatable) {
-                    ((Animatable) drawable).start();
-                }
-            }
-        }
-        else {
-            holder.btnDownloadInline.setImageResource(R.drawable.ic_circle_check);
-        }
+        binder.bindBadge(thumbPhoto, holder.cell);
     }
 
 
@@ -313,20 +491,6 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
 
 
 
-    /**
-     * Return {@code True} if there are internet connection or we are connecting now,
-     * {@code False} otherwise. In other words check if there are internet connection.
-     * @return true if connected to internet, false otherwise.
-     */
-    private boolean isOnline() {
-        final ConnectivityManager cm =
-                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        final NetworkInfo netInfo = cm != null ? cm.getActiveNetworkInfo() : null;
-        return netInfo != null && netInfo.isConnectedOrConnecting();
-    }
-
-
-
     /**
      * Method that show alter dialog on the UI,
      * that there NO internet connection to notify the user.
@@ -359,9 +523,10 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
      */
     @Override
     public void notifyItemDownloaded(String photoId, int position) {
-        if (position < photos.size()) {
+        final List<ThumbPhoto> photos = differ.getList();
+        if (position >= 0 && position < photos.size()) {
             if (photos.get(position).getPhotoId().equals(photoId)) {
-                notifyItemChanged(position);
+                notifyItemChanged(position, PAYLOAD_DOWNLOAD_STATE);
             }
             else {
                 notifyUnexpected();
@@ -374,9 +539,9 @@ public class ThumbPhotosAdapter extends RecyclerView.Adapter<ThumbPhotosAdapter.
 
 
 
-    /** Refresh the whole recycler view if unexpected event happened */
+    /** Refresh the download buttons of the whole recycler view if unexpected event happened */
     @Override
     public void notifyUnexpected() {
-        notifyDataSetChanged();
+        notifyDownloadStateChanged();
     }
 }
\ No newline at end of file
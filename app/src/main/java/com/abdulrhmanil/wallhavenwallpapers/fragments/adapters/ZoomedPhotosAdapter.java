@@ -1,25 +1,70 @@
 package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
+import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.abdulrhmanil.wallhavenwallpapers.FrameStatsCollector;
 import com.abdulrhmanil.wallhavenwallpapers.R;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalThumbnailStore;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalPhoto;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalThumbnail;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.transition.Transition;
 import com.github.chrisbanes.photoview.PhotoView;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource.getInstance;
 
+/**
+ * Recycler View Adapter that show the local photos in fullscreen mode (one page for every photo).
+ * Every page decoded at the screen resolution (NOT the full resolution of the file, a 8K wallpaper
+ * is 132 MB as a bitmap), and we prefetch the immediate neighbors of the shown page, so the next
+ * page is decoded before it slides into view.
+ * The pixel memory that the pager hold is capped, we hold at most {@link #MAX_HELD_PAGES} pages
+ * (and less on devices with small heap), the pages that go offscreen released eagerly
+ * (the recycler view must NOT cache detached pages, see {@link #attach(RecyclerView) attach}).
+ * The prefetched pages held by our own {@link PageTarget targets} until we release them, NOT by
+ * Glide's preload targets that release the page as soon as it's decoded.
+ */
 public class ZoomedPhotosAdapter extends RecyclerView.Adapter<ZoomedPhotosAdapter.ZoomedPhotoViewHolder> {
 
 
+    /** The maximum number of the decoded pages that we hold, the shown page and his neighbors */
+    private static final int MAX_HELD_PAGES = 3;
+
+
+    /** The part of the heap that the pager allowed to hold, as a divider of the max memory */
+    private static final int HEAP_DIVIDER = 4;
+
+
+    /** The bytes of one pixel in the decoded bitmap (ARGB_8888) */
+    private static final int BYTES_PER_PIXEL = 4;
+
+
+    /** The request options of the thumbnails, they already on the disk (in the store) */
+    private static final RequestOptions THUMBNAIL_OPTIONS =
+            new RequestOptions().diskCacheStrategy(DiskCacheStrategy.NONE);
+
+
     /**
      * A static nested class that represent an item in the {@link RecyclerView RecyclerView}.
      * In our case: the card that hold the image view (PhotoView) that show the local photo,
@@ -52,6 +97,33 @@ public class ZoomedPhotosAdapter extends RecyclerView.Adapter<ZoomedPhotosAdapte
     private final List<LocalPhoto> photos = getInstance().getLocalPhotosList();
 
 
+    /** A singleton that hold the small thumbnails of the local photos. */
+    private final LocalThumbnailStore thumbnailStore;
+
+
+    /** A singleton that measure the frame times, we mark the pages decodes */
+    private final FrameStatsCollector frameStats;
+
+
+    /** The request manager that we prefetch the neighbors with it */
+    private final RequestManager requestManager;
+
+
+    /**
+     * The request options of the pages, decode to the screen resolution, without transformation,
+     * the bind and the prefetch use the same options, so the prefetched page hit the memory cache.
+     */
+    private final RequestOptions pageOptions;
+
+
+    /** The number of the neighbors that we allowed to prefetch, in the memory budget (0 - 2) */
+    private final int maxPrefetches;
+
+
+    /** The running (or done) prefetches of the neighbors, by the photo id */
+    private final Map<String, PageTarget> prefetches = new HashMap<>();
+
+
     /**
      * Constructor to create and init an instance of {@link LocalPhotosAdapter ZoomedPhotosAdapter};
      * @param context a context.
@@ -59,6 +131,37 @@ public class ZoomedPhotosAdapter extends RecyclerView.Adapter<ZoomedPhotosAdapte
     public ZoomedPhotosAdapter(@NonNull final Context context) {
         this.context = context;
         this.inflater = LayoutInflater.from(this.context);
+        this.thumbnailStore = LocalThumbnailStore.getInstance(context);
+        this.frameStats = FrameStatsCollector.getInstance(context);
+        this.requestManager = Glide.with(context);
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        final int screenSize = Math.max(metrics.widthPixels, metrics.heightPixels);
+        this.pageOptions = new RequestOptions()
+                .override(screenSize, screenSize)
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .dontTransform();
+        final long pageBytes = (long) screenSize * screenSize * BYTES_PER_PIXEL;
+        final long budgetBytes = Math.min(MAX_HELD_PAGES * pageBytes,
+                Runtime.getRuntime().maxMemory() / HEAP_DIVIDER);
+        this.maxPrefetches = (int) Math.max(0, Math.min(MAX_HELD_PAGES - 1,
+                budgetBytes / pageBytes - 1));
+    }
+
+
+
+    /**
+     * Attach the adapter to the recycler view of the pager, we disable the cache of the detached
+     * pages and the item prefetch of the layout manager, so the offscreen pages recycled (and
+     * released) at once, and only our prefetch (that is in the memory budget) decode pages ahead.
+     * @param recyclerView is the recycler view of the pager.
+     * @param layoutManager is the layout manager of the recycler view.
+     */
+    public void attach(@NonNull RecyclerView recyclerView,
+                       @NonNull RecyclerView.LayoutManager layoutManager) {
+        layoutManager.setItemPrefetchEnabled(false);
+        recyclerView.setItemViewCacheSize(0);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(this);
     }
 
 
@@ -76,14 +179,96 @@ public class ZoomedPhotosAdapter extends RecyclerView.Adapter<ZoomedPhotosAdapte
 
     @Override
     public void onBindViewHolder(ZoomedPhotoViewHolder holder, int position) {
-        /* Here we bind the view holder, and show the photo in screen mode to the UI*/
-        Glide.with(holder.photoView)
-                .load(photos.get(position).getImageFile().toString())
+        /* Here we bind the view holder, and show the photo in screen mode to the UI,
+         * we show the thumbnail (if we have it) until the full photo decoded */
+        final LocalPhoto localPhoto = photos.get(position);
+        RequestBuilder<Drawable> request = Glide.with(holder.photoView)
+                .load(localPhoto.getImageFile().toString())
+                .apply(pageOptions);
+        if (thumbnailStore.contains(localPhoto.getPhotoId())) {
+            /* The thumbnail model (NOT the bytes), so the decoded thumbnail hit the memory cache */
+            request = request.thumbnail(Glide.with(holder.photoView)
+                    .load(new LocalThumbnail(localPhoto.getPhotoId()))
+                    .apply(THUMBNAIL_OPTIONS));
+        }
+        request.listener(frameStats.getDecodeListener())
                 .transition(DrawableTransitionOptions.withCrossFade())
                 .into(holder.photoView);
     }
 
 
+    /**
+     * Release the decoded page of the offscreen view eagerly, so the pager NOT hold it until the
+     * view bound again.
+     * @param holder is the recycled view holder.
+     */
+    @Override
+    public void onViewRecycled(ZoomedPhotoViewHolder holder) {
+        Glide.with(holder.photoView).clear(holder.photoView);
+    }
+
+
+
+    /**
+     * Prefetch the immediate neighbors of the shown page (in the memory budget), the neighbor in
+     * the scroll direction first, and release the prefetches that are NOT neighbors anymore.
+     * @param position is the position of the shown page.
+     * @param forward true if the user scroll forward (to the next photos).
+     */
+    public void prefetchNeighbors(int position, boolean forward) {
+        final Set<String> neighbors = new HashSet<>(4);
+        final int first = forward ? position + 1 : position - 1;
+        final int second = forward ? position - 1 : position + 1;
+        for (int neighbor : new int[]{first, second}) {
+            if (neighbors.size() < maxPrefetches && neighbor >= 0 && neighbor < photos.size()) {
+                neighbors.add(photos.get(neighbor).getPhotoId());
+            }
+        }
+        final Iterator<Map.Entry<String, PageTarget>> iterator = prefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, PageTarget> entry = iterator.next();
+            if (!neighbors.contains(entry.getKey())) {
+                requestManager.clear(entry.getValue());
+                iterator.remove();
+            }
+        }
+        for (int neighbor : new int[]{first, second}) {
+            if (neighbor < 0 || neighbor >= photos.size()) {
+                continue;
+            }
+            final LocalPhoto localPhoto = photos.get(neighbor);
+            if (neighbors.contains(localPhoto.getPhotoId())
+                    && !prefetches.containsKey(localPhoto.getPhotoId())) {
+                prefetches.put(localPhoto.getPhotoId(), requestManager
+                        .load(localPhoto.getImageFile().toString())
+                        .apply(pageOptions)
+                        .into(new PageTarget()));
+            }
+        }
+    }
+
+
+
+    /** Release all the prefetched pages, call it when the pager destroyed */
+    public void releasePrefetches() {
+        for (PageTarget target : prefetches.values()) {
+            requestManager.clear(target);
+        }
+        prefetches.clear();
+    }
+
+
+
+    /**
+     * Return the local photo in the gaven position.
+     * @param position is the position of the local photo.
+     * @return the local photo in the position.
+     */
+    public LocalPhoto getLocalPhoto(int position) {
+        return photos.get(position);
+    }
+
+
     /**
      * Get the count of the items in the RecyclerView and local photos list.
      * @return the count of items in the our local photos list and RecyclerView.
@@ -93,4 +278,19 @@ public class ZoomedPhotosAdapter extends RecyclerView.Adapter<ZoomedPhotosAdapte
         return photos.size();
     }
 
+
+
+    /**
+     * Target that hold a prefetched page, the decoded page stay in use (and NOT evicted) until we
+     * clear the target with the request manager, so the pages that we hold are exactly the
+     * prefetches in the map, at most the max prefetches of the adapter.
+     */
+    private static final class PageTarget extends SimpleTarget<Drawable> {
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource,
+                                    Transition<? super Drawable> transition) {
+            /* Nothing to show, we only hold the page until it's bound or released */
+        }
+    }
 }
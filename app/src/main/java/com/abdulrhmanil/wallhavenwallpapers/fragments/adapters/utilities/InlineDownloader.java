@@ -4,14 +4,17 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import android.widget.Toast;
 
+import com.abdulrhmanil.wallhavenwallpapers.DuplicateDialog;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex.Duplicate;
 import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalPhotosDataSource;
+import com.abdulrhmanil.wallhavenwallpapers.datastructures.ConcurrentWeightedCache;
 import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbPhotosAdapter;
 import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoCache;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
@@ -63,8 +66,9 @@ final public class InlineDownloader
     }
 
 
-    /** The map that hold all the cached photo (OptimizedMap) */
-    final private static Map<String, PhotoCache> fullPhotosCaching = getFullPhotosCaching();
+    /** The cache that hold all the cached photo (ConcurrentWeightedCache) */
+    final private static ConcurrentWeightedCache<String, PhotoCache> fullPhotosCaching =
+            getFullPhotosCaching();
 
 
     /** A singleton that hold the downloaded photos names. */
@@ -131,9 +135,9 @@ final public class InlineDownloader
     /** Method that start the downloading process */
     public void startInlineDownloading() {
         inDownloadingProgress.add(photoId);
-        if (fullPhotosCaching.containsKey(photoId)) {
-            final PhotoCache photoCache = fullPhotosCaching.get(photoId);
-            saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, this);
+        final PhotoCache photoCache = fullPhotosCaching.get(photoId);
+        if (photoCache != null) {
+            saveIfNotDuplicate(photoCache);
         }
         else {
             getPhotoCache(photoId, DEFAULT_PATH, context, this);
@@ -148,12 +152,51 @@ final public class InlineDownloader
      */
     @Override
     public void onResult(@NonNull PhotoCache photoCache) {
-        saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, this);
+        saveIfNotDuplicate(photoCache);
         fullPhotosCaching.put(photoCache.getPhotoId(), photoCache);
     }
 
 
 
+    /**
+     * Save the image file, unless we already have a local photo that look the same, then we ask
+     * the user if he want to skip the saving or save anyway.
+     * @param photoCache is an instance that hold the photo info include bitmap.
+     */
+    private void saveIfNotDuplicate(final PhotoCache photoCache) {
+        if (photoCache.fileExists()) {
+            saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, this);
+            return;
+        }
+        DuplicatesIndex.getInstance(context).findDuplicates(photoCache, context, duplicates -> {
+            if (duplicates.isEmpty()) {
+                saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, this);
+            }
+            else {
+                showDuplicateDialog(photoCache, duplicates.get(0));
+            }
+        });
+    }
+
+
+
+    /**
+     * Show a dialog that tell the user that we already have a local photo that look the same as
+     * this photo, and let him choose to skip the saving or save anyway.
+     * @param photoCache is an instance that hold the photo info include bitmap.
+     * @param duplicate is the most similar local photo.
+     */
+    private void showDuplicateDialog(final PhotoCache photoCache, final Duplicate duplicate) {
+        if (!DuplicateDialog.show(context, duplicate,
+                () -> saveImageFile(photoCache, DEFAULT_PATH, MAX_QUALITY, this),
+                this::notifyAfterDownloadingProgress)) {
+            /* The screen is gone, skip the saving */
+            notifyAfterDownloadingProgress();
+        }
+    }
+
+
+
     /**
      * When fail to cache the photo, and an exception is thrown from any reason.
      * we just notify the user (UI message).
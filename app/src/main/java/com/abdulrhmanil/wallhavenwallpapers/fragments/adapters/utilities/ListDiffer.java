@@ -0,0 +1,234 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * It's a kind of util class, we use it in the adapters to swap their lists without
+ * {@code notifyDataSetChanged}, that throw away all the bindings and reload all the images.
+ * We compute the difference between the list we show and the new list with
+ * {@link DiffUtil DiffUtil} on a background thread, and then on the main thread we swap the list
+ * and dispatch only the minimal updates (inserted, removed, changed ranges) to the adapter.
+ * So the items that already shown keep their view holders and their images.
+ *
+ * Every submit get a generation number, when a new list submitted before the difference of the
+ * older one is ready, we drop the older result, so the adapter always see the last list, and every
+ * difference we dispatch is computed against the exact list the adapter show.
+ * All the methods must be called on the main thread.
+ * @param <T> is the type of the items in the list.
+ */
+final public class ListDiffer<T> {
+
+
+    /**
+     * Who want to use this util class, must provide an {@link ItemCallback ItemCallback},
+     * so we can know if two items are the same item, and if his content changed.
+     * @param <T> is the type of the items in the list.
+     */
+    public interface ItemCallback<T> {
+
+        /**
+         * Check if the two items represent the same item (the same photo id).
+         * @param oldItem is the item in the old list.
+         * @param newItem is the item in the new list.
+         * @return true if the items represent the same item.
+         */
+        boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem);
+
+        /**
+         * Check if the same item have the same content, so we don't need to bind it again.
+         * @param oldItem is the item in the old list.
+         * @param newItem is the item in the new list.
+         * @return true if the content of the items is the same.
+         */
+        boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem);
+    }
+
+
+    /** Single thread that compute the differences of all the adapters */
+    private static final ExecutorService service = Executors.newSingleThreadExecutor();
+
+
+    /** Handler of the main thread, we swap the lists on the main thread */
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+
+    /** The adapter that we dispatch the updates to him */
+    private final RecyclerView.Adapter<?> adapter;
+
+
+    /** The callback that compare the items */
+    private final ItemCallback<T> itemCallback;
+
+
+    /** The list that the adapter show now, never modified */
+    private List<T> list = Collections.emptyList();
+
+
+    /** The generation of the last submitted list */
+    private int generation;
+
+
+    /** The generation of the list that the adapter show */
+    private int committedGeneration;
+
+
+
+    /**
+     * A constructor to create and init instance of {@link ListDiffer ListDiffer}.
+     * @param adapter is the adapter that we dispatch the updates to him.
+     * @param itemCallback is the callback that compare the items.
+     */
+    public ListDiffer(@NonNull RecyclerView.Adapter<?> adapter,
+                      @NonNull ItemCallback<T> itemCallback) {
+        this.adapter = adapter;
+        this.itemCallback = itemCallback;
+    }
+
+
+
+    /**
+     * Return the list that the adapter show now, use it in the adapter to bind the items.
+     * @return the list that the adapter show now.
+     */
+    public List<T> getList() {
+        return list;
+    }
+
+
+
+    /**
+     * Check if we submitted a list that the adapter NOT show yet.
+     * @return true if a difference is computed now in the background.
+     */
+    public boolean isPending() {
+        return generation != committedGeneration;
+    }
+
+
+
+    /**
+     * Swap the list immediately, with NO difference and NO notifications, cancel the pending
+     * difference if there one. The caller must notify the adapter by himself.
+     * @param newList is the new list, must NOT be modified later.
+     */
+    public void setList(@NonNull List<T> newList) {
+        generation++;
+        committedGeneration = generation;
+        list = newList;
+    }
+
+
+
+    /**
+     * Submit a new list, compute the difference in the background, and then swap the list and
+     * dispatch the updates to the adapter.
+     * @param newList is the new list, must NOT be modified later.
+     */
+    public void submitList(@NonNull List<T> newList) {
+        submitList(newList, null);
+    }
+
+
+
+    /**
+     * Submit a new list, compute the difference in the background, and then swap the list and
+     * dispatch the updates to the adapter, and run the callback.
+     * If the lists are the same list, or one of them is empty, we don't need the background.
+     * @param newList is the new list, must NOT be modified later.
+     * @param onCommitted is the callback that we run on the main thread after the adapter show
+     *                    the new list, may be {@code null}.
+     */
+    public void submitList(@NonNull final List<T> newList, @Nullable final Runnable onCommitted) {
+        final int submitGeneration = ++generation;
+        final List<T> oldList = list;
+        if (oldList == newList) {
+            committedGeneration = submitGeneration;
+            runCallback(onCommitted);
+            return;
+        }
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            committedGeneration = submitGeneration;
+            list = newList;
+            if (!oldList.isEmpty()) {
+                adapter.notifyItemRangeRemoved(0, oldList.size());
+            }
+            else if (!newList.isEmpty()) {
+                adapter.notifyItemRangeInserted(0, newList.size());
+            }
+            runCallback(onCommitted);
+            return;
+        }
+        service.submit(() -> {
+            final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldList.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newList.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return itemCallback.areItemsTheSame(oldList.get(oldItemPosition),
+                            newList.get(newItemPosition));
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    return itemCallback.areContentsTheSame(oldList.get(oldItemPosition),
+                            newList.get(newItemPosition));
+                }
+            }, false);
+            mainHandler.post(() -> {
+                if (submitGeneration != generation) {
+                    /* A newer list submitted, his difference will be dispatched */
+                    return;
+                }
+                committedGeneration = submitGeneration;
+                list = newList;
+                result.dispatchUpdatesTo(adapter);
+                runCallback(onCommitted);
+            });
+        });
+    }
+
+
+
+    /**
+     * Run the callback if it's NOT null.
+     * @param callback is the callback.
+     */
+    private static void runCallback(@Nullable Runnable callback) {
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+
+
+    /**
+     * Return a stable id (for {@link RecyclerView.Adapter#getItemId(int) getItemId}) derived from
+     * the photo id. The photo ids are short base 36 strings (like "94x38z"), so we just parse them,
+     * and for any other id we use 64 bits FNV-1a hash of the id, see
+     * {@link ThumbBinder#stableIdOf(String) ThumbBinder.stableIdOf}.
+     * @param photoId is the name (unique id) of the photo.
+     * @return the stable id of the photo.
+     */
+    public static long stableIdOf(@NonNull String photoId) {
+        return ThumbBinder.stableIdOf(photoId);
+    }
+}
@@ -0,0 +1,145 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.abdulrhmanil.wallhavenwallpapers.datasources.LocalThumbnailStore;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.LocalThumbnail;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Glide model loader of the {@link LocalThumbnail local thumbnails}, it read the thumbnail bytes
+ * from the {@link LocalThumbnailStore thumbnails store} in the background threads of Glide, and
+ * give them to the decoders of Glide.
+ * The cache key is the local thumbnail (the photo name), NOT the bytes, so a thumbnail that
+ * decoded once come from the memory cache of Glide when we bind the photo again.
+ * The thumbnails already on the disk (in the store), so load them with
+ * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#NONE DiskCacheStrategy.NONE}.
+ */
+final public class LocalThumbnailLoader implements ModelLoader<LocalThumbnail, ByteBuffer> {
+
+
+    /** True after we registered the loader in Glide */
+    private static volatile boolean registered;
+
+
+    /**
+     * Register the loader in Glide, so Glide can load {@link LocalThumbnail LocalThumbnail}
+     * models, call it before the first thumbnail loaded, calling it again do nothing.
+     * @param context any context, will not be retained, we use only the application context.
+     */
+    public static void register(@NonNull Context context) {
+        if (registered) {
+            return;
+        }
+        synchronized (LocalThumbnailLoader.class) {
+            if (registered) {
+                return;
+            }
+            final LocalThumbnailStore thumbnailStore = LocalThumbnailStore.getInstance(context);
+            Glide.get(context).getRegistry().prepend(LocalThumbnail.class, ByteBuffer.class,
+                    new ModelLoaderFactory<LocalThumbnail, ByteBuffer>() {
+                        @Override
+                        public ModelLoader<LocalThumbnail, ByteBuffer> build(
+                                MultiModelLoaderFactory multiFactory) {
+                            return new LocalThumbnailLoader(thumbnailStore);
+                        }
+
+                        @Override
+                        public void teardown() {
+                            /* Nothing to release */
+                        }
+                    });
+            registered = true;
+        }
+    }
+
+
+    /** The store that hold the thumbnails */
+    private final LocalThumbnailStore thumbnailStore;
+
+
+    /**
+     * private constructor, the loader created only by the factory that we register.
+     * @param thumbnailStore is the store that hold the thumbnails.
+     */
+    private LocalThumbnailLoader(LocalThumbnailStore thumbnailStore) {
+        this.thumbnailStore = thumbnailStore;
+    }
+
+
+    @Override
+    public LoadData<ByteBuffer> buildLoadData(@NonNull LocalThumbnail model, int width,
+                                              int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new Fetcher(thumbnailStore, model));
+    }
+
+
+    @Override
+    public boolean handles(@NonNull LocalThumbnail model) {
+        return true;
+    }
+
+
+
+    /** Read the thumbnail bytes of one local thumbnail from the store */
+    private static final class Fetcher implements DataFetcher<ByteBuffer> {
+
+        /** The store that hold the thumbnails */
+        private final LocalThumbnailStore thumbnailStore;
+
+        /** The local thumbnail that we read */
+        private final LocalThumbnail model;
+
+        Fetcher(LocalThumbnailStore thumbnailStore, LocalThumbnail model) {
+            this.thumbnailStore = thumbnailStore;
+            this.model = model;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority,
+                             @NonNull DataCallback<? super ByteBuffer> callback) {
+            final byte[] thumbnail = thumbnailStore.get(model.getPhotoId());
+            if (thumbnail != null) {
+                callback.onDataReady(ByteBuffer.wrap(thumbnail));
+            }
+            else {
+                callback.onLoadFailed(new FileNotFoundException("NO thumbnail for " + model));
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            /* Nothing to close, the bytes are a copy */
+        }
+
+        @Override
+        public void cancel() {
+            /* The read is too short to cancel */
+        }
+
+        @NonNull
+        @Override
+        public Class<ByteBuffer> getDataClass() {
+            return ByteBuffer.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * It's a kind of util class, that hold the views of the thumb photos that all the thumbs tabs
+ * (Toplist, Latest, Random and Search) share, so every tab NOT inflate his own set of
+ * CardView - ConstraintLayout hierarchies when it first shows:
+ * 1 - One {@link RecyclerView.RecycledViewPool RecycledViewPool} for all the recycler views of the
+ * thumbs, the views that one tab recycle, the other tabs reuse.
+ * 2 - Views that we pre-inflate in the background at startup (a screenful), with
+ * {@link AsyncLayoutInflater AsyncLayoutInflater}, the adapters take them in
+ * {@code onCreateViewHolder} before they inflate a new view.
+ *
+ * The views belong to one activity, so we keep the shared views of the last activity only,
+ * call {@link #release(Context) release} when the activity destroyed.
+ * All the methods must be called on the main thread.
+ */
+final public class SharedThumbViews {
+
+
+    /** The shared views of the current activity, accessed only on the main thread */
+    private static SharedThumbViews current;
+
+
+    /**
+     * Return the shared views of the gaven activity, create them in the first call.
+     * @param context is the context of the activity that show the thumbs.
+     * @return the shared views of the activity.
+     */
+    @NonNull
+    public static SharedThumbViews of(@NonNull Context context) {
+        if (current == null || current.context != context) {
+            current = new SharedThumbViews(context);
+        }
+        return current;
+    }
+
+
+    /**
+     * Drop the shared views of the gaven activity, so we don't leak the views of a destroyed
+     * activity.
+     * @param context is the context of the destroyed activity.
+     */
+    public static void release(@NonNull Context context) {
+        if (current != null && current.context == context) {
+            current.preInflatedViews.clear();
+            current.viewPool.clear();
+            current = null;
+        }
+    }
+
+
+    /** The context of the activity, the views inflated with it */
+    private final Context context;
+
+    /** The pool of the view holders that all the recycler views of the thumbs share */
+    private final RecyclerView.RecycledViewPool viewPool = new RecyclerView.RecycledViewPool();
+
+    /** The views that we inflated in the background and NOT taken yet */
+    private final ArrayDeque<View> preInflatedViews = new ArrayDeque<>();
+
+    /** The size of a screenful of thumbs (the visible thumbs and one more row) */
+    private final int screenful;
+
+
+
+    /**
+     * private constructor to create the shared views of one activity.
+     * @param context is the context of the activity.
+     */
+    private SharedThumbViews(Context context) {
+        this.context = context;
+        final DisplayUtil.ThumbRes thumbRes = DisplayUtil.getThumbRes(context);
+        final int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        final int rows = screenHeight / Math.max(1, thumbRes.heightPx) + 2;
+        this.screenful = rows * thumbRes.numOfCols;
+        /* Every tab may recycle a screenful when his views destroyed */
+        this.viewPool.setMaxRecycledViews(0, screenful * 2);
+    }
+
+
+
+    /**
+     * Return the pool that all the recycler views of the thumbs share.
+     * @return the shared pool.
+     */
+    @NonNull
+    public RecyclerView.RecycledViewPool getViewPool() {
+        return viewPool;
+    }
+
+
+
+    /**
+     * Inflate a screenful of thumb views in the background, so the first tab that shows
+     * don't inflate them on the main thread.
+     * @param layoutRes is the layout of the thumb item.
+     */
+    public void preInflate(@LayoutRes int layoutRes) {
+        /* A parent only to generate the layout params from the XML, never shown */
+        final RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new GridLayoutManager(context, 1));
+        preInflateNext(new AsyncLayoutInflater(context), layoutRes, parent, screenful);
+    }
+
+
+
+    /**
+     * Inflate one view in the background, and when it's ready inflate the next one, we chain the
+     * requests because the queue of the {@link AsyncLayoutInflater AsyncLayoutInflater} is small,
+     * and a full queue block the main thread.
+     * @param inflater is the background inflater.
+     * @param layoutRes is the layout of the thumb item.
+     * @param parent is the parent that generate the layout params.
+     * @param remaining is the number of the views that remaining to inflate.
+     */
+    private void preInflateNext(final AsyncLayoutInflater inflater, @LayoutRes final int layoutRes,
+                                final ViewGroup parent, final int remaining) {
+        if (remaining <= 0) {
+            return;
+        }
+        inflater.inflate(layoutRes, parent, (view, resid, viewParent) -> {
+            if (current == SharedThumbViews.this) {
+                preInflatedViews.add(view);
+                preInflateNext(inflater, layoutRes, parent, remaining - 1);
+            }
+        });
+    }
+
+
+
+    /**
+     * Return a view that we inflated in the background if we have one, otherwise inflate a new
+     * view now.
+     * @param inflater is the inflater of the adapter.
+     * @param layoutRes is the layout of the thumb item.
+     * @param parent is the recycler view that will show the view.
+     * @return the view of the thumb item, NOT attached to the parent.
+     */
+    @NonNull
+    public View takeView(@NonNull LayoutInflater inflater, @LayoutRes int layoutRes,
+                         @NonNull ViewGroup parent) {
+        final View view = preInflatedViews.poll();
+        return view != null ? view : inflater.inflate(layoutRes, parent, false);
+    }
+}
@@ -0,0 +1,177 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbCellView;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+
+import java.util.List;
+
+
+/**
+ * The work of the {@link com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbPhotosAdapter
+ * thumb photos adapter} on our side for every bind, in plain Java (NO views and NO Android), so
+ * the unit tests measure exactly the bind path: the photo of the position, his stable id, the link
+ * of the thumb, the label and the download badge.
+ * In steady state scrolling (the same photos bound again and again) it must allocate nothing.
+ */
+final public class ThumbBinder {
+
+
+    /** The download state of the photos, the adapter read it from the local photos and downloader */
+    public interface DownloadState {
+
+        /**
+         * Check if the photo already downloaded (it's a local photo).
+         * @param photoId is the name (unique id) of the photo.
+         * @return true if the photo downloaded, false otherwise.
+         */
+        boolean isDownloaded(String photoId);
+
+        /**
+         * Check if the photo is downloading right now.
+         * @param photoId is the name (unique id) of the photo.
+         * @return true if the photo is downloading now, false otherwise.
+         */
+        boolean isDownloadingNow(String photoId);
+    }
+
+
+    /** The cell that show the thumb, the label and the badge, see {@link ThumbCellView} */
+    public interface Cell {
+
+        /**
+         * Set the label (the resolution of the photo).
+         * @param text is the label.
+         */
+        void setLabel(String text);
+
+        /**
+         * Set the badge of the download state.
+         * @param newBadge is one of the badges of {@link ThumbCellView ThumbCellView}.
+         */
+        void setBadge(int newBadge);
+    }
+
+
+    /** The download state of the photos */
+    private final DownloadState downloadState;
+
+
+    /** The variant of the thumbs that we load */
+    private final ThumbPhoto.Variant variant;
+
+
+    /**
+     * Constructor to create and init the binder of the thumbs.
+     * @param downloadState is the download state of the photos.
+     * @param variant is the variant of the thumbs that we load.
+     */
+    public ThumbBinder(DownloadState downloadState, ThumbPhoto.Variant variant) {
+        this.downloadState = downloadState;
+        this.variant = variant;
+    }
+
+
+    /**
+     * Bind the photo in the gaven position to the cell, set the label and the badge. The caller
+     * load the thumb of the returned photo with the {@link #thumbLinkOf(ThumbPhoto) link}.
+     * @param photos is the list of the photos that we show.
+     * @param position is the position of the bound photo.
+     * @param cell is the cell of the position.
+     * @return the bound photo.
+     */
+    public ThumbPhoto bind(List<ThumbPhoto> photos, int position, Cell cell) {
+        final ThumbPhoto photo = photos.get(position);
+        cell.setLabel(photo.getWallRes());
+        bindBadge(photo, cell);
+        return photo;
+    }
+
+
+    /**
+     * Set the badge of the download state of the photo, the cell redraw only if it changed.
+     * @param photo is the bound photo.
+     * @param cell is the cell of the photo.
+     */
+    public void bindBadge(ThumbPhoto photo, Cell cell) {
+        cell.setBadge(badgeOf(photo.getPhotoId()));
+    }
+
+
+    /**
+     * Return the badge of the download state of the photo.
+     * @param photoId is the name (unique id) of the photo.
+     * @return one of the badges of {@link ThumbCellView ThumbCellView}.
+     */
+    public int badgeOf(String photoId) {
+        if (downloadState.isDownloaded(photoId)) {
+            return ThumbCellView.BADGE_DOWNLOADED;
+        }
+        if (downloadState.isDownloadingNow(photoId)) {
+            return ThumbCellView.BADGE_DOWNLOADING;
+        }
+        return ThumbCellView.BADGE_DOWNLOAD;
+    }
+
+
+    /**
+     * Return the link of the thumb that we load, the link built once for every photo.
+     * @param photo is the thumb photo.
+     * @return the link of the thumb variant.
+     */
+    public String thumbLinkOf(ThumbPhoto photo) {
+        return photo.getThumbPhotoLink(variant);
+    }
+
+
+    /**
+     * Return the stable id of the photo in the gaven position.
+     * @param photos is the list of the photos that we show.
+     * @param position is the position of the photo.
+     * @return the stable id of the photo.
+     */
+    public static long itemIdOf(List<ThumbPhoto> photos, int position) {
+        return stableIdOf(photos.get(position).getPhotoId());
+    }
+
+
+    /**
+     * Return a stable id (for the getItemId of the adapters) derived from the photo id. The photo
+     * ids are short base 36 strings (like "94x38z"), so we just parse them, and for any other id
+     * we use 64 bits FNV-1a hash of the id. Only lower case digits and letters parsed, so two
+     * different ids (like "abc" and "AbC", or "1" and "+1") never get the same parsed id.
+     * @param photoId is the name (unique id) of the photo.
+     * @return the stable id of the photo.
+     */
+    public static long stableIdOf(String photoId) {
+        if (isShortBase36(photoId)) {
+            /* At most 12 digits, never overflow */
+            return Long.parseLong(photoId, Character.MAX_RADIX);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < photoId.length(); i++) {
+            hash ^= photoId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Check if the id is 1 - 12 characters of {@code [0-9a-z]} only, NOT like
+     * {@link Long#parseLong(String, int) parseLong} that accept a sign and upper case letters.
+     * @param photoId is the name (unique id) of the photo.
+     * @return true if we can parse the id as is, false otherwise.
+     */
+    private static boolean isShortBase36(String photoId) {
+        if (photoId.isEmpty() || photoId.length() > 12) {
+            return false;
+        }
+        for (int i = 0; i < photoId.length(); i++) {
+            final char c = photoId.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,205 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.abdulrhmanil.wallhavenwallpapers.DisplayUtil;
+import com.abdulrhmanil.wallhavenwallpapers.datasources.ConnectivityMonitor;
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbPhotosAdapter;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * It's a kind of util class, we attach it to the recycler view of the thumb photos, it's
+ * responsible to load the thumbs of the next rows (in the scroll direction) before they bound,
+ * so fast flings NOT show rows of placeholders.
+ * We preload with exactly the request options (and the {@link DisplayUtil.ThumbRes ThumbRes} size)
+ * of the {@link ThumbPhotosAdapter adapter}, so the preloaded thumbs hit the memory cache on bind.
+ *
+ * The preload distance is {@link #MIN_ROWS} rows, and grow with the fling velocity up to
+ * {@link #MAX_ROWS} rows, we cancel (clear) the preloads that scroll out of the range.
+ * We don't preload while we are offline, and preload only the minimum on metered networks.
+ */
+final public class ThumbPreloader extends RecyclerView.OnScrollListener {
+
+
+    /** The minimum number of the rows that we preload */
+    private static final int MIN_ROWS = 2;
+
+    /** The maximum number of the rows that we preload, on fast flings */
+    private static final int MAX_ROWS = 10;
+
+    /** The time in seconds that we look ahead on fling, the velocity * time is the distance */
+    private static final float LOOK_AHEAD_SECONDS = 0.5f;
+
+
+    /** The request manager that we preload with it, the same one of the adapter */
+    private final RequestManager requestManager;
+
+    /** The adapter of the thumb photos */
+    private final ThumbPhotosAdapter adapter;
+
+    /** The layout manager of the recycler view */
+    private final GridLayoutManager layoutManager;
+
+    /** The size of the thumbs, and the number of the thumbs in one row */
+    private final DisplayUtil.ThumbRes thumbRes;
+
+    /** A singleton that follow the connectivity state */
+    private final ConnectivityMonitor connectivityMonitor;
+
+    /** The running (or done) preloads, by the photo id */
+    private final Map<String, Target<Drawable>> preloads = new HashMap<>();
+
+    /**
+     * The photo ids of the range that we preload now, we clear and fill it again on every scroll,
+     * so the scrolling NOT allocate a new set
+     */
+    private final Set<String> inRange = new HashSet<>();
+
+    /** The number of the rows that we preload now, depends on the fling velocity */
+    private int rows = MIN_ROWS;
+
+
+
+    /**
+     * A constructor to create and init instance of {@link ThumbPreloader ThumbPreloader}.
+     * @param context is the context of the adapter.
+     * @param adapter is the adapter of the thumb photos.
+     * @param layoutManager is the layout manager of the recycler view.
+     * @param thumbRes is the size of the thumbs, and the number of the thumbs in one row.
+     */
+    public ThumbPreloader(@NonNull Context context,
+                          @NonNull ThumbPhotosAdapter adapter,
+                          @NonNull GridLayoutManager layoutManager,
+                          @NonNull DisplayUtil.ThumbRes thumbRes) {
+        this.requestManager = Glide.with(context);
+        this.adapter = adapter;
+        this.layoutManager = layoutManager;
+        this.thumbRes = thumbRes;
+        this.connectivityMonitor = ConnectivityMonitor.getInstance(context);
+    }
+
+
+
+    /**
+     * Attach the preloader to the recycler view, we listen to the scrolls, and to the flings
+     * to know the velocity (we never consume the fling).
+     * @param recyclerView is the recycler view of the thumb photos.
+     */
+    public void attach(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(this);
+        recyclerView.setOnFlingListener(new RecyclerView.OnFlingListener() {
+            @Override
+            public boolean onFling(int velocityX, int velocityY) {
+                onFlingVelocity(velocityY);
+                return false;
+            }
+        });
+    }
+
+
+
+    /**
+     * Grow the preload distance with the fling velocity.
+     * @param velocityY is the fling velocity in pixels per second.
+     */
+    private void onFlingVelocity(int velocityY) {
+        final float distancePx = Math.abs(velocityY) * LOOK_AHEAD_SECONDS;
+        final int flingRows = (int) (distancePx / Math.max(1, thumbRes.heightPx));
+        rows = Math.max(MIN_ROWS, Math.min(MAX_ROWS, flingRows));
+    }
+
+
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            rows = MIN_ROWS;
+        }
+    }
+
+
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        if (!connectivityMonitor.isConnected()) {
+            cancelAll();
+            return;
+        }
+        final int preloadRows = connectivityMonitor.isMetered() ? MIN_ROWS : rows;
+        final int count = preloadRows * thumbRes.numOfCols;
+        final int start;
+        final int end;
+        if (dy > 0) {
+            start = layoutManager.findLastVisibleItemPosition() + 1;
+            end = Math.min(adapter.getItemCount(), start + count);
+        }
+        else {
+            end = layoutManager.findFirstVisibleItemPosition();
+            start = Math.max(0, end - count);
+        }
+        if (start < 0 || end <= start) {
+            return;
+        }
+        preloadRange(start, end);
+    }
+
+
+
+    /**
+     * Preload the thumbs of the gaven range, and cancel the preloads out of the range.
+     * @param start is the first position of the range.
+     * @param end is the position after the last position of the range.
+     */
+    private void preloadRange(int start, int end) {
+        inRange.clear();
+        for (int position = start; position < end; position++) {
+            final ThumbPhoto thumbPhoto = adapter.getItem(position);
+            final String photoId = thumbPhoto.getPhotoId();
+            inRange.add(photoId);
+            if (!preloads.containsKey(photoId)) {
+                preloads.put(photoId, requestManager
+                        .load(adapter.getThumbLink(thumbPhoto))
+                        .apply(adapter.getThumbOptions())
+                        .preload(thumbRes.widthPx, thumbRes.heightPx));
+            }
+        }
+        final Iterator<Map.Entry<String, Target<Drawable>>> iterator =
+                preloads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Target<Drawable>> entry = iterator.next();
+            if (!inRange.contains(entry.getKey())) {
+                /* Cancel if still loading, otherwise release it to the memory cache */
+                requestManager.clear(entry.getValue());
+                iterator.remove();
+            }
+        }
+        inRange.clear();
+    }
+
+
+
+    /** Cancel all the preloads, call it when the recycler view destroyed */
+    public void cancelAll() {
+        for (Target<Drawable> target : preloads.values()) {
+            requestManager.clear(target);
+        }
+        preloads.clear();
+    }
+}
@@ -0,0 +1,20 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.interactions;
+
+
+/**
+ * We defined a number of interaction with the UI:
+ * Functional interface that determine response to one interaction with the UI interface.
+ * This interface is responsible on selecting local photos (in the selection mode of the
+ * downloads tab), the response for that interact is show the number of the selected photos,
+ * so the user can delete all of them in one batch.
+ */
+@FunctionalInterface
+public interface OnSelectLocalPhotos {
+
+
+    /**
+     * Called after every change in the selected local photos.
+     * @param selectedCount is the number of the selected local photos.
+     */
+    void onSelectionChanged(int selectedCount);
+}
@@ -0,0 +1,255 @@
+package com.abdulrhmanil.wallhavenwallpapers.photostructures;
+
+import java.util.Arrays;
+
+
+/**
+ * The palette of the search colors that the website support (29 colors), and a precomputed
+ * lookup table that map any RGB color to the nearest color of the palette, in the perceptual
+ * (CIE Lab) space, so the colors that look close are mapped together, NOT the close numbers.
+ *
+ * The table has a cell for every RGB color with 6 bits for every channel (262144 cells, one byte
+ * for every cell, the index in the palette, 256 KB), every cell hold the nearest palette color of
+ * the center of the cell. So the mapping of a pixel is a few shifts and masks and one array read,
+ * with NO floating point math, and we can map all the pixels of a photo to find his dominant
+ * colors, see {@link #dominant(int[], int, int, int) dominant}.
+ * The table built in the first mapping (NOT when the class loaded), do the first mapping in the
+ * background, the palette methods ({@link #indexOf(int) indexOf} and so on) never build it.
+ * The colors are packed ints, 0xRRGGBB, the alpha (if any) is ignored.
+ */
+public final class ColorPalette {
+
+    /** The search colors of the website, packed 0xRRGGBB, in the order of the website */
+    private static final int[] COLORS = {
+            0x660000, 0x990000, 0xcc0000, 0xcc3333, 0xea4c88, 0x993399,
+            0x663399, 0x333399, 0x0066cc, 0x0099cc, 0x66cccc, 0x77cc33,
+            0x669900, 0x336600, 0x666600, 0x999900, 0xcccc33, 0xffff00,
+            0xffcc33, 0xff9900, 0xff6600, 0xcc6633, 0x996633, 0x663300,
+            0x000000, 0x999999, 0xcccccc, 0xffffff, 0x424153
+    };
+
+    /** The bits of every channel in the index of the lookup table */
+    private static final int BITS = 6;
+
+    /** The shift from 8 bits channel to the bits of the table */
+    private static final int SHIFT = 8 - BITS;
+
+    /** The mask of one channel in the index of the table */
+    private static final int MASK = (1 << BITS) - 1;
+
+
+    /** The linear values of the sRGB channels, without the gamma */
+    private static final double[] LINEAR = new double[256];
+
+    /** The Lab values of the palette colors, {L, a, b} for every color */
+    private static final float[][] PALETTE_LAB = new float[COLORS.length][];
+
+
+    static {
+        for (int channel = 0; channel < LINEAR.length; channel++) {
+            final double c = channel / 255.0;
+            LINEAR[channel] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+        for (int i = 0; i < COLORS.length; i++) {
+            PALETTE_LAB[i] = toLab(COLORS[i]);
+        }
+    }
+
+
+    /** Holder of the lookup table, so the table built in the first use, NOT with the class */
+    private static final class Table {
+
+        /** The lookup table, the index of the nearest palette color for every cell */
+        static final byte[] CELLS = buildTable();
+    }
+
+
+    /** private constructor, static methods only */
+    private ColorPalette() {}
+
+
+
+    /**
+     * Return the number of the colors in the palette.
+     * @return the number of the colors in the palette.
+     */
+    public static int size() {
+        return COLORS.length;
+    }
+
+
+    /**
+     * Return the color of the palette in the gaven index.
+     * @param index is the index of the color in the palette.
+     * @return the color, packed 0xRRGGBB.
+     */
+    public static int color(int index) {
+        return COLORS[index];
+    }
+
+
+    /**
+     * Return the index of the color in the palette.
+     * @param rgb is the color, packed 0xRRGGBB.
+     * @return the index of the color in the palette, or -1 if NOT a palette color.
+     */
+    public static int indexOf(int rgb) {
+        rgb &= 0xffffff;
+        for (int i = 0; i < COLORS.length; i++) {
+            if (COLORS[i] == rgb) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Return the index of the nearest palette color, from the lookup table.
+     * @param rgb is the color, packed 0xRRGGBB (or 0xAARRGGBB, the alpha is ignored).
+     * @return the index of the nearest palette color.
+     */
+    public static int nearestIndex(int rgb) {
+        return Table.CELLS[cellOf(rgb)];
+    }
+
+
+    /**
+     * Return the nearest palette color, from the lookup table.
+     * @param rgb is the color, packed 0xRRGGBB (or 0xAARRGGBB, the alpha is ignored).
+     * @return the nearest palette color, packed 0xRRGGBB.
+     */
+    public static int nearest(int rgb) {
+        return COLORS[Table.CELLS[cellOf(rgb)]];
+    }
+
+
+    /**
+     * Return the index of the nearest palette color, computed exactly in the Lab space, without
+     * the lookup table, slow, we use it to build the table.
+     * @param rgb is the color, packed 0xRRGGBB.
+     * @return the index of the nearest palette color.
+     */
+    public static int nearestIndexExact(int rgb) {
+        return nearestIndexOfLab(toLab(rgb));
+    }
+
+
+
+    /**
+     * Count the pixels of every palette color, every pixel counted in his nearest palette color.
+     * @param pixels are the pixels, packed 0xAARRGGBB (like {@code Bitmap.getPixels}).
+     * @param from is the first pixel, inclusive.
+     * @param to is the last pixel, exclusive.
+     * @param counts is the counts of the palette colors, we add to it, the size must be at least
+     *               the {@link #size() size} of the palette.
+     */
+    public static void histogram(int[] pixels, int from, int to, int[] counts) {
+        final byte[] table = Table.CELLS;
+        for (int i = from; i < to; i++) {
+            counts[table[cellOf(pixels[i])]]++;
+        }
+    }
+
+
+    /**
+     * Return the dominant palette colors of the pixels, the palette colors with the most pixels.
+     * @param pixels are the pixels, packed 0xAARRGGBB (like {@code Bitmap.getPixels}).
+     * @param from is the first pixel, inclusive.
+     * @param to is the last pixel, exclusive.
+     * @param max is the maximum number of the colors.
+     * @return the palette colors, packed 0xRRGGBB, the most common first, only the colors that
+     * have pixels.
+     */
+    public static int[] dominant(int[] pixels, int from, int to, int max) {
+        final int[] counts = new int[COLORS.length];
+        histogram(pixels, from, to, counts);
+        final int[] result = new int[Math.min(max, COLORS.length)];
+        int size = 0;
+        while (size < result.length) {
+            int best = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && (best == -1 || counts[i] > counts[best])) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            result[size++] = COLORS[best];
+            counts[best] = 0;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+
+
+    /** Return the cell of the color in the lookup table */
+    private static int cellOf(int rgb) {
+        return ((rgb >> (16 + SHIFT)) & MASK) << (2 * BITS)
+                | ((rgb >> (8 + SHIFT)) & MASK) << BITS
+                | ((rgb >> SHIFT) & MASK);
+    }
+
+
+    /** Build the lookup table, with the nearest palette color of the center of every cell */
+    private static byte[] buildTable() {
+        final byte[] table = new byte[1 << (3 * BITS)];
+        final int half = 1 << (SHIFT - 1);
+        for (int cell = 0; cell < table.length; cell++) {
+            final int r = ((cell >> (2 * BITS)) << SHIFT) + half;
+            final int g = (((cell >> BITS) & MASK) << SHIFT) + half;
+            final int b = ((cell & MASK) << SHIFT) + half;
+            table[cell] = (byte) nearestIndexExact(r << 16 | g << 8 | b);
+        }
+        /* The palette colors map to themselves, even if the center of their cell doesn't */
+        for (int i = 0; i < COLORS.length; i++) {
+            table[cellOf(COLORS[i])] = (byte) i;
+        }
+        return table;
+    }
+
+
+    /** Return the index of the palette color with the smallest (squared) Lab distance */
+    private static int nearestIndexOfLab(float[] lab) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int i = 0; i < PALETTE_LAB.length; i++) {
+            final float dl = lab[0] - PALETTE_LAB[i][0];
+            final float da = lab[1] - PALETTE_LAB[i][1];
+            final float db = lab[2] - PALETTE_LAB[i][2];
+            final float distance = dl * dl + da * da + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Convert sRGB color to CIE Lab (D65 white).
+     * @param rgb is the color, packed 0xRRGGBB.
+     * @return the {L, a, b} of the color.
+     */
+    static float[] toLab(int rgb) {
+        final double r = LINEAR[(rgb >> 16) & 0xff];
+        final double g = LINEAR[(rgb >> 8) & 0xff];
+        final double b = LINEAR[rgb & 0xff];
+        final double x = (0.4124 * r + 0.3576 * g + 0.1805 * b) / 0.95047;
+        final double y = (0.2126 * r + 0.7152 * g + 0.0722 * b);
+        final double z = (0.0193 * r + 0.1192 * g + 0.9505 * b) / 1.08883;
+        final double fx = labCurve(x);
+        final double fy = labCurve(y);
+        final double fz = labCurve(z);
+        return new float[] {
+                (float) (116 * fy - 16), (float) (500 * (fx - fy)), (float) (200 * (fy - fz))};
+    }
+
+
+    /** The curve of the Lab space */
+    private static double labCurve(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+}
@@ -13,6 +13,10 @@ import java.io.File;
  * 2 - File instance that hold path of the file.
  * 3 - the width of the photo.
  * 4 - the height of the photo.
+ * 5 - the last modified time of the file (the added date).
+ * 6 - the size of the file in bytes.
+ * We read the file attributes once in the constructor, so sorting and comparing local photos
+ * never touch the storage again.
  * We use this class to show the local (downloaded) photos to the user in the UI,
  * and provide him a some functionally like: deleting, sharing, set as wallpaper, sorting...
  */
@@ -33,6 +37,12 @@ public class LocalPhoto implements Comparable<LocalPhoto> {
     /** The dimension of the local photo as a {@code String} */
     private final String wallRes;
 
+    /** The last modified time of the image file, we consider it as the added date */
+    private final long lastModified;
+
+    /** The size of the image file in bytes */
+    private final long fileSize;
+
 
     /**
      * Constructor to create and init an instance of {@link LocalPhoto LocalPhoto}, to represent
@@ -47,6 +57,8 @@ public class LocalPhoto implements Comparable<LocalPhoto> {
         this.width = options.outWidth;
         this.height = options.outHeight;
         this.wallRes = String.valueOf(width) + " x " + String.valueOf(height);
+        this.lastModified = imageFile.lastModified();
+        this.fileSize = imageFile.length();
     }
 
 
@@ -110,6 +122,35 @@ public class LocalPhoto implements Comparable<LocalPhoto> {
     }
 
 
+    /**
+     * Return the last modified time of the image file, captured once when we created the object.
+     * We consider it as the date that the photo added to the downloads folder.
+     * @return the last modified time of the image file in milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+
+    /**
+     * Return the size of the image file in bytes, captured once when we created the object.
+     * @return the size of the image file in bytes.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+
+    /**
+     * Return the aspect ratio (width / height) of the local photo,
+     * or {@code 0} if we failed to read the dimensions of the photo.
+     * @return the aspect ratio of the local photo.
+     */
+    public float getAspectRatio() {
+        return height > 0 ? ((float) width / height) : 0f;
+    }
+
+
     /**
      * We provide sorting for the local photos, and the natural order is according to
      * the natural order of the letters "a-z".
@@ -0,0 +1,57 @@
+package com.abdulrhmanil.wallhavenwallpapers.photostructures;
+
+import android.support.annotation.NonNull;
+
+
+/**
+ * Class that represent the thumbnail of a local (downloaded) photo in the thumbnails store,
+ * we give it to Glide as the model instead of the thumbnail bytes, because two thumbnails of the
+ * same photo are equal (the equality is by the photo name), so when we bind the photo again
+ * Glide find the decoded thumbnail in his memory cache.
+ * Glide read the bytes from the store in his background threads, see
+ * {@link com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities.LocalThumbnailLoader
+ * LocalThumbnailLoader}.
+ */
+public final class LocalThumbnail {
+
+    /** The name of the photo (unique id) */
+    private final String photoId;
+
+
+    /**
+     * Constructor to create and init the thumbnail of a local photo.
+     * @param photoId is the name (unique id) of the local photo.
+     */
+    public LocalThumbnail(@NonNull String photoId) {
+        this.photoId = photoId;
+    }
+
+
+    /**
+     * Return the name (unique id) of the local photo.
+     * @return the name (unique id) of the local photo.
+     */
+    public String getPhotoId() {
+        return photoId;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocalThumbnail)) return false;
+        return photoId.equals(((LocalThumbnail) o).photoId);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return photoId.hashCode();
+    }
+
+
+    @Override
+    public String toString() {
+        return "LocalThumbnail{" + photoId + "}";
+    }
+}
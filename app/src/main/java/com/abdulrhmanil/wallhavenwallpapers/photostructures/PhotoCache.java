@@ -30,6 +30,12 @@ public class PhotoCache {
     /** File instance to check in runtime if the photo is saved in the default downloads folder*/
     private final File file;
 
+    /**
+     * The content hash of the downloaded bytes of the photo, {@code 0} until we compute it, we
+     * compute it lazily, only when we check the photo before we save it
+     */
+    private volatile long contentHash;
+
 
     /**
      * Constructor to create and init an instance of {@link PhotoCache PhotoCache}, that hold
@@ -50,6 +56,16 @@ public class PhotoCache {
     }
 
 
+    /**
+     * Return the details of the photo (NOT the image), like the disk tier of the full photos
+     * keep them.
+     * @return the {@link FullPhoto FullPhoto} instance that hold the details of the photo.
+     */
+    public FullPhoto getFullPhoto() {
+        return fullPhoto;
+    }
+
+
     /**
      * Delegate method :
      * Return the height of the photo.
@@ -286,6 +302,46 @@ public class PhotoCache {
     }
 
 
+    /**
+     * Return the number of the bytes that the cached photo hold in the memory (the pixels), we use
+     * it as the weight of the photo in the cache of the full photos.
+     * @return the bytes of the cached photo in the memory.
+     */
+    public int getByteCount() {
+        if (drawableCache instanceof BitmapDrawable) {
+            final Bitmap bitmap = ((BitmapDrawable) drawableCache).getBitmap();
+            if (bitmap != null) {
+                return bitmap.getAllocationByteCount();
+            }
+        }
+        /* NOT a bitmap, estimate 4 bytes for every pixel */
+        return Math.max(0, drawableCache.getIntrinsicWidth())
+                * Math.max(0, drawableCache.getIntrinsicHeight()) * 4;
+    }
+
+
+    /**
+     * Return the content hash of the bytes that we downloaded (NOT of the file we save, we
+     * compress it again), see {@link
+     * com.abdulrhmanil.wallhavenwallpapers.datasources.DuplicatesIndex DuplicatesIndex}.
+     * @return the content hash, or {@code 0} if NOT computed yet (or NOT known), see {@link
+     * com.abdulrhmanil.wallhavenwallpapers.datasources.PhotoCacheDataSource#getContentHashSync
+     * getContentHashSync}.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+
+    /**
+     * Set the content hash of the bytes that we downloaded, after we computed it lazily.
+     * @param contentHash is the content hash, {@code 0} if NOT known.
+     */
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+
     /**
      * Return the {@code File} of the cached photo (the file of the image, that saved in the storage)
      *  to use it for the content provider.
@@ -1,50 +1,49 @@
 package com.abdulrhmanil.wallhavenwallpapers.photostructures;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Locale;
 
 
 /**
  * Class that represent the dominates colors in the photos.
  * We use it to provide searching photos with colors.
  * so we also hold the dominates colors in the photo.
+ * The color kept as a packed int (0xRRGGBB), parsed once from the page of the photo, so the UI
+ * never parse it again, and the search colors we support are the {@link ColorPalette palette}.
  */
 public class PhotoColor {
 
-    /** The count of the colors we support in our application*/
-    private static final int colorsAmount=29;
-
-    /** The set of the colors we support in our application*/
-    private static final Set<String> colorsSet=new HashSet<>(colorsAmount);
-
     /** Template of the link contain all photos that contain the current dominate color*/
     protected static final String colorLink="https://alpha.wallhaven.cc/search?colors=%s";
 
-    /** The value of the color in hex*/
-    private final String color;
+    /** The value of the color, packed 0xRRGGBB*/
+    private final int rgb;
 
 
-    static {
-        //init and add supported dominates colors
-        addColorsToSet();
+    /**
+     * Constructor to create and init an instance of a dominate color
+     * @param color is the value of the color in hex, like #660000
+     * @throws IllegalArgumentException if the color is NOT a hex color.
+     */
+    public PhotoColor(String color) {
+        this(parseColor(color));
     }
 
 
     /**
      * Constructor to create and init an instance of a dominate color
-     * @param color is the value of the color
+     * @param rgb is the value of the color, packed 0xRRGGBB (the alpha is ignored).
      */
-    public PhotoColor(String color) {
-        this.color = color;
+    public PhotoColor(int rgb) {
+        this.rgb = rgb & 0xffffff;
     }
 
 
     /**
      * Return the color value in hex.
-     * @return the holor value in hex.
+     * @return the color value in hex, like #660000.
      */
     public String getColor() {
-        return color;
+        return "#" + getColorNumber();
     }
 
 
@@ -53,7 +52,43 @@ public class PhotoColor {
      * @return the color number without "#"
      */
     public String getColorNumber() {
-        return color.substring(1);
+        return String.format(Locale.US, "%06x", rgb);
+    }
+
+
+    /**
+     * Return the color value, packed 0xRRGGBB.
+     * @return the color value, packed 0xRRGGBB.
+     */
+    public int getRgb() {
+        return rgb;
+    }
+
+
+    /**
+     * Return the opaque color value, packed 0xAARRGGBB, like the colors of the views.
+     * @return the opaque color value.
+     */
+    public int getArgb() {
+        return 0xff000000 | rgb;
+    }
+
+
+    /**
+     * Check if the color is one of the search colors we support.
+     * @return true if the color is one of the search colors.
+     */
+    public boolean isSupported() {
+        return ColorPalette.indexOf(rgb) != -1;
+    }
+
+
+    /**
+     * Return the nearest search color we support, in the perceptual (Lab) space.
+     * @return the nearest search color, this color if it's supported.
+     */
+    public PhotoColor toPalette() {
+        return isSupported() ? this : new PhotoColor(ColorPalette.nearest(rgb));
     }
 
 
@@ -86,44 +121,29 @@ public class PhotoColor {
 
 
     /**
-     * Fill the colors set of the colors we support in our application,
-     * for now we support only 29 color, could be change later.
+     * Parse hex color, with or without "#", like #660000.
+     * @param color is the color in hex.
+     * @return the color, packed 0xRRGGBB.
+     * @throws IllegalArgumentException if the color is NOT a hex color.
      */
-    private static void addColorsToSet() {
-        /* The search colors we support in our application : */
-        colorsSet.add("#660000");
-        colorsSet.add("#990000");
-        colorsSet.add("#cc0000");
-        colorsSet.add("#cc3333");
-        colorsSet.add("#ea4c88");
-        colorsSet.add("#993399");
-        //
-        colorsSet.add("#663399");
-        colorsSet.add("#333399");
-        colorsSet.add("#0066cc");
-        colorsSet.add("#0099cc");
-        colorsSet.add("#66cccc");
-        colorsSet.add("#77cc33");
-        //
-        colorsSet.add("#669900");
-        colorsSet.add("#336600");
-        colorsSet.add("#666600");
-        colorsSet.add("#999900");
-        colorsSet.add("#cccc33");
-        colorsSet.add("#ffff00");
-        //
-        colorsSet.add("#ffcc33");
-        colorsSet.add("#ff9900");
-        colorsSet.add("#ff6600");
-        colorsSet.add("#cc6633");
-        colorsSet.add("#996633");
-        colorsSet.add("#663300");
-        //
-        colorsSet.add("#000000");
-        colorsSet.add("#999999");
-        colorsSet.add("#cccccc");
-        colorsSet.add("#ffffff");
-        colorsSet.add("#424153");
+    public static int parseColor(String color) {
+        final String trimmed = color.trim();
+        final String number = trimmed.startsWith("#") ? trimmed.substring(1) : trimmed;
+        if (number.length() != 6) {
+            throw new IllegalArgumentException("Unknown color: " + color);
+        }
+        return Integer.parseInt(number, 16);
     }
-}
 
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof PhotoColor && rgb == ((PhotoColor) o).rgb);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return rgb;
+    }
+}
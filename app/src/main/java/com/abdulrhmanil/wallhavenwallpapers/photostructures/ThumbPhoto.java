@@ -7,15 +7,57 @@ package com.abdulrhmanil.wallhavenwallpapers.photostructures;
  */
 public class ThumbPhoto {
 
+
+    /**
+     * The variants of the thumb photo that the website provide, every variant have his own folder
+     * in the link and his own size. Choose the variant by the pixels size of the cell that show
+     * the thumb, see {@link Variant#forWidth(int) forWidth}.
+     */
+    public enum Variant {
+        Small("small", 300, 200),
+        Large("lg", 600, 400);
+
+        /** The name of the folder of the variant in the link */
+        private final String folder;
+
+        /** The width of the variant in pixels */
+        public final int widthPx;
+
+        /** The height of the variant in pixels */
+        public final int heightPx;
+
+        Variant(String folder, int widthPx, int heightPx) {
+            this.folder = folder;
+            this.widthPx = widthPx;
+            this.heightPx = heightPx;
+        }
+
+        /**
+         * Return the smallest variant that is sharp in the gaven width, we allow a small upscale
+         * (a quarter) before we choose a bigger variant, because the bigger variant cost 4 times
+         * the bytes and the memory.
+         * @param targetWidthPx is the width of the cell that show the thumb in pixels.
+         * @return the variant that you should load.
+         */
+        public static Variant forWidth(int targetWidthPx) {
+            return targetWidthPx <= Small.widthPx + Small.widthPx / 4 ? Small : Large;
+        }
+    }
+
+
     /** Template for the thumb photo link, the template is the same for all thumb photos */
     private final static String THUMB_PHOTO_LINK =
-            "https://th.wallhaven.cc/small/%s/%s.jpg";
+            "https://th.wallhaven.cc/%s/%s/%s.jpg";
 
 
     /** Template for the full info of the photo, the template is the same for all photos*/
     private final static String INFO_LINK = "https://wallhaven.cc/w/%s";
 
 
+    /** The number of the variants, {@code values()} copy the array on every call */
+    private final static int VARIANTS_COUNT = Variant.values().length;
+
+
     /** The name as well the Id of the photo (unique for each photo) */
     private final String photoId;
 
@@ -24,6 +66,14 @@ public class ThumbPhoto {
     private final String wallRes;
 
 
+    /**
+     * The links of the variants, by the ordinal of the variant, we build every link once
+     * (the first time we ask it), so the bind of the thumb NOT format the link on every scroll.
+     * The links are immutable strings, so a race in the building just build the same link twice.
+     */
+    private final String[] thumbLinks = new String[VARIANTS_COUNT];
+
+
     /**
      * Constructor to create and init an instance of {@link ThumbPhoto ThumbPhoto} class.
      * @param photoId is the name and Id of the photos.
@@ -46,11 +96,26 @@ public class ThumbPhoto {
 
 
     /**
-     * Get the link of the thumb photo.
+     * Get the link of the thumb photo, the small variant.
      * @return the link of the thumb photo.
      */
     public String getThumbPhotoLink() {
-        return String.format(THUMB_PHOTO_LINK,photoId.substring(0,2),photoId);
+        return getThumbPhotoLink(Variant.Small);
+    }
+
+
+    /**
+     * Get the link of the gaven variant of the thumb photo.
+     * @param variant is the variant of the thumb photo, see {@link Variant#forWidth(int) forWidth}.
+     * @return the link of the variant of the thumb photo.
+     */
+    public String getThumbPhotoLink(Variant variant) {
+        String link = thumbLinks[variant.ordinal()];
+        if (link == null) {
+            link = String.format(THUMB_PHOTO_LINK, variant.folder, photoId.substring(0,2), photoId);
+            thumbLinks[variant.ordinal()] = link;
+        }
+        return link;
     }
 
 
@@ -0,0 +1,389 @@
+package com.abdulrhmanil.wallhavenwallpapers.queriesconstants;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.PhotoColor;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+
+
+/**
+ * Immutable object that represent one query of photos in the website, it compose all the
+ * dimensions of the query: the searched text, the {@link category categories}, the
+ * {@link purity purities}, the {@link sorting sorting}, the {@link order order}, the
+ * {@link topRange top range} (only when sorting by toplist) and the {@link PhotoColor color}.
+ * The home feeds (Latest, TopList and Random) are queries too, see {@link #forHome(home) forHome}.
+ *
+ * Every query has a canonical {@link #getKey() key}, the query string of the query normalized:
+ * the parameters in a fixed (alphabetic) order, the values as the website spell them, the text
+ * trimmed with single spaces and in lower case, and the parameters that have NO effect dropped
+ * (like the top range when NOT sorting by toplist). So equivalent queries have the same key, use it to cache the pages of the
+ * results and to drop duplicate requests, {@link #equals(Object) equals} compare the keys.
+ * To change a dimension use the {@code with} methods, they return a new query.
+ */
+public final class SearchQuery {
+
+
+    /** The search address of the website, the canonical query and the page appended to it */
+    private static final String SEARCH_ADDRESS = "https://wallhaven.cc/search?";
+
+    /** The encoding of the searched text in the address */
+    private static final String ENCODING = "UTF-8";
+
+    /** The top range of the website when NOT specified */
+    private static final topRange DEFAULT_TOP_RANGE = topRange.LastMonth;
+
+
+    /** The searched text normalized, empty if NO text (like the home feeds) */
+    private final String text;
+
+    /** The categories of the photos, never empty */
+    private final EnumSet<category> categories;
+
+    /** The purities of the photos, never empty */
+    private final EnumSet<purity> purities;
+
+    /** The sorting of the results */
+    private final sorting sortingMethod;
+
+    /** The order of the results */
+    private final order resultsOrder;
+
+    /** The top range, {@code null} if the sorting is NOT toplist */
+    private final topRange range;
+
+    /** The searched color, one of the search colors of the website, {@code null} if NO color */
+    private final PhotoColor color;
+
+    /** The canonical query string, computed once */
+    private final String key;
+
+
+
+    /**
+     * private constructor, use the factory methods and the {@code with} methods.
+     */
+    private SearchQuery(String text, EnumSet<category> categories, EnumSet<purity> purities,
+                        sorting sortingMethod, order resultsOrder, topRange range,
+                        PhotoColor color) {
+        if (categories.isEmpty() || purities.isEmpty()) {
+            throw new IllegalArgumentException("The query need at least one category and purity");
+        }
+        this.text = normalizeText(text);
+        this.categories = EnumSet.copyOf(categories);
+        this.purities = EnumSet.copyOf(purities);
+        this.sortingMethod = sortingMethod;
+        this.resultsOrder = resultsOrder;
+        this.range = sortingMethod == sorting.Toplist
+                ? (range != null ? range : DEFAULT_TOP_RANGE) : null;
+        this.color = color != null ? color.toPalette() : null;
+        this.key = buildKey();
+    }
+
+
+
+    /**
+     * Create a query that search the gaven text, in all the categories, safe for work photos,
+     * sorted by the relevance.
+     * @param text is the searched text, the user input.
+     * @return a new query.
+     */
+    @NonNull
+    public static SearchQuery search(@Nullable String text) {
+        return new SearchQuery(text, EnumSet.allOf(category.class), EnumSet.of(purity.SFW),
+                sorting.Relevance, order.Desc, null, null);
+    }
+
+
+    /**
+     * Create the query of the home feed, like the website home pages:
+     * Latest - sorted by the date added, TopList - sorted by toplist of the last month,
+     * Random - in random order.
+     * @param homePage is the home feed.
+     * @return a new query.
+     */
+    @NonNull
+    public static SearchQuery forHome(@NonNull home homePage) {
+        final sorting homeSorting;
+        switch (homePage) {
+            case TopList:
+                homeSorting = sorting.Toplist;
+                break;
+            case Random:
+                homeSorting = sorting.Random;
+                break;
+            default:
+                homeSorting = sorting.DateAdded;
+                break;
+        }
+        return new SearchQuery(null, EnumSet.allOf(category.class), EnumSet.of(purity.SFW),
+                homeSorting, order.Desc, null, null);
+    }
+
+
+    /**
+     * Parse a query string (like the {@link #getKey() key} of a query, or the query of an address
+     * of the website), the parameters in any order and any case, the unknown parameters and
+     * values are ignored, and the missing dimensions take the default of
+     * {@link #search(String) search}.
+     * @param queryString is the query string, without the '?'.
+     * @return a new query.
+     */
+    @NonNull
+    public static SearchQuery fromQueryString(@NonNull String queryString) {
+        String text = null;
+        EnumSet<category> categories = EnumSet.allOf(category.class);
+        EnumSet<purity> purities = EnumSet.of(purity.SFW);
+        sorting querySorting = sorting.Relevance;
+        order queryOrder = order.Desc;
+        topRange queryTopRange = null;
+        PhotoColor queryColor = null;
+        for (String parameter : queryString.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            final String name = parameter.substring(0, equals).trim().toLowerCase(Locale.US);
+            final String value = parameter.substring(equals + 1).trim();
+            switch (name) {
+                case "q":
+                    text = decode(value);
+                    break;
+                case "categories":
+                    final EnumSet<category> parsedCategories = category.fromOption(value);
+                    if (!parsedCategories.isEmpty()) {
+                        categories = parsedCategories;
+                    }
+                    break;
+                case "purity":
+                    final EnumSet<purity> parsedPurities = purity.fromOption(value);
+                    if (!parsedPurities.isEmpty()) {
+                        purities = parsedPurities;
+                    }
+                    break;
+                case "sorting":
+                    final sorting parsedSorting = sorting.fromQuery(value);
+                    if (parsedSorting != null) {
+                        querySorting = parsedSorting;
+                    }
+                    break;
+                case "order":
+                    final order parsedOrder = order.fromQuery(value);
+                    if (parsedOrder != null) {
+                        queryOrder = parsedOrder;
+                    }
+                    break;
+                case "toprange":
+                    queryTopRange = topRange.fromQuery(value);
+                    break;
+                case "colors":
+                    try {
+                        queryColor = new PhotoColor(value);
+                    }
+                    catch (IllegalArgumentException e) {
+                        /* Unknown color, ignored */
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new SearchQuery(text, categories, purities, querySorting, queryOrder, queryTopRange,
+                queryColor);
+    }
+
+
+
+    /* The with methods, every one return a new query : */
+
+    @NonNull
+    public SearchQuery withText(@Nullable String newText) {
+        return new SearchQuery(newText, categories, purities, sortingMethod, resultsOrder, range,
+                color);
+    }
+
+    @NonNull
+    public SearchQuery withCategories(@NonNull category... newCategories) {
+        final EnumSet<category> set = EnumSet.noneOf(category.class);
+        Collections.addAll(set, newCategories);
+        return new SearchQuery(text, set, purities, sortingMethod, resultsOrder, range, color);
+    }
+
+    @NonNull
+    public SearchQuery withPurities(@NonNull purity... newPurities) {
+        final EnumSet<purity> set = EnumSet.noneOf(purity.class);
+        Collections.addAll(set, newPurities);
+        return new SearchQuery(text, categories, set, sortingMethod, resultsOrder, range, color);
+    }
+
+    @NonNull
+    public SearchQuery withSorting(@NonNull sorting newSorting) {
+        return new SearchQuery(text, categories, purities, newSorting, resultsOrder, range, color);
+    }
+
+    @NonNull
+    public SearchQuery withOrder(@NonNull order newOrder) {
+        return new SearchQuery(text, categories, purities, sortingMethod, newOrder, range, color);
+    }
+
+    /** The color mapped to the nearest search color of the website, {@code null} for NO color */
+    @NonNull
+    public SearchQuery withColor(@Nullable PhotoColor newColor) {
+        return new SearchQuery(text, categories, purities, sortingMethod, resultsOrder, range,
+                newColor);
+    }
+
+    /** The top range has effect only when the sorting is toplist */
+    @NonNull
+    public SearchQuery withTopRange(@NonNull topRange newTopRange) {
+        return new SearchQuery(text, categories, purities, sortingMethod, resultsOrder, newTopRange,
+                color);
+    }
+
+
+
+    /* Getters : */
+
+    @NonNull
+    public String getText() {
+        return text;
+    }
+
+    @NonNull
+    public EnumSet<category> getCategories() {
+        return EnumSet.copyOf(categories);
+    }
+
+    @NonNull
+    public EnumSet<purity> getPurities() {
+        return EnumSet.copyOf(purities);
+    }
+
+    @NonNull
+    public sorting getSorting() {
+        return sortingMethod;
+    }
+
+    @NonNull
+    public order getOrder() {
+        return resultsOrder;
+    }
+
+    @Nullable
+    public topRange getTopRange() {
+        return range;
+    }
+
+    @Nullable
+    public PhotoColor getColor() {
+        return color;
+    }
+
+
+    /**
+     * Return the canonical query string of the query, equivalent queries have the same key,
+     * use it as a key of the cached pages and to drop duplicate requests.
+     * @return the canonical query string, without the page.
+     */
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+
+    /**
+     * Return the address of one page of the results in the website.
+     * @param pageNum is the number of the page, starts from 1.
+     * @return the address of the page.
+     */
+    @NonNull
+    public String toAddress(int pageNum) {
+        return SEARCH_ADDRESS + key + "&page=" + pageNum;
+    }
+
+
+
+    /**
+     * Build the canonical query string, the parameters in alphabetic order.
+     * @return the canonical query string.
+     */
+    private String buildKey() {
+        final StringBuilder builder = new StringBuilder(96);
+        builder.append(category.asQuery(categories.toArray(new category[0])));
+        if (color != null) {
+            builder.append('&').append(color.asQuery());
+        }
+        builder.append('&').append(resultsOrder.asQuery());
+        builder.append('&').append(purity.asQuery(purities.toArray(new purity[0])));
+        if (!text.isEmpty()) {
+            builder.append("&q=").append(encode(text));
+        }
+        builder.append('&').append(sortingMethod.asQuery());
+        if (range != null) {
+            builder.append('&').append(range.asQuery());
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Normalize the searched text: trim, collapse the white spaces to one space, and lower case,
+     * the search of the website is NOT case sensitive.
+     * @param text is the text, may be {@code null}.
+     * @return the normalized text, empty if NO text.
+     */
+    private static String normalizeText(@Nullable String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+    }
+
+
+    /** Encode the text to the address */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, ENCODING);
+        }
+        catch (UnsupportedEncodingException e) {
+            /* UTF-8 always supported */
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /** Decode the text from the address */
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, ENCODING);
+        }
+        catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof SearchQuery && key.equals(((SearchQuery) o).key));
+    }
+
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
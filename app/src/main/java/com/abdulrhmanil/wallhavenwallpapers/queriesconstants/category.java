@@ -1,5 +1,7 @@
 package com.abdulrhmanil.wallhavenwallpapers.queriesconstants;
 
+import java.util.EnumSet;
+
 /**
  * Created by Abdulrhmanil on 04/03/2018.
  * NOT final, will add docs later
@@ -7,9 +9,9 @@ package com.abdulrhmanil.wallhavenwallpapers.queriesconstants;
 
 public enum category {
 
-    General(100), // 100 is General option
-    Anime(010), // 010 is Anime option
-    People(001); //001 is People option
+    General(0b100), // 100 is General option
+    Anime(0b010), // 010 is Anime option
+    People(0b001); //001 is People option
 
 
     private final int option;
@@ -19,15 +21,9 @@ public enum category {
     }
 
 
+    /* The options are bits, the query is the 3 bits as digits (General, Anime, People) */
     private static String categoryOptionToString(int option) {
-        if (option >=0 && option <10)
-            return "00"+String.valueOf(option);
-
-        else if (option >=10 && option <100)
-            return "0"+ String.valueOf(option);
-
-        else
-            return String.valueOf(option);
+        return "" + ((option >> 2) & 1) + ((option >> 1) & 1) + (option & 1);
     }
 
 
@@ -55,4 +51,23 @@ public enum category {
         return "categories="+combine(categories);
     }
 
+
+    /**
+     * Parse the combined option of the query (like "110") to the categories.
+     * @param option is the combined option, 3 digits of 0 or 1.
+     * @return the categories in the option, empty if the option is NOT valid.
+     */
+    public static EnumSet<category> fromOption(String option) {
+        final EnumSet<category> categories = EnumSet.noneOf(category.class);
+        if (option != null && option.matches("[01]{3}")) {
+            final int bits = Integer.parseInt(option, 2);
+            for (category category : values()) {
+                if ((bits & category.option) != 0) {
+                    categories.add(category);
+                }
+            }
+        }
+        return categories;
+    }
+
 }
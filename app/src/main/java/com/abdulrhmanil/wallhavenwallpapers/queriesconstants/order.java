@@ -22,4 +22,19 @@ public enum order {
     public static String asQuery(order order) {
         return "order="+order;
     }
+
+
+    /**
+     * Return the order of the value in the query, ignoring the case.
+     * @param value is the value in the query, like "desc".
+     * @return the order, or {@code null} if NO order has this value.
+     */
+    public static order fromQuery(String value) {
+        for (order order : values()) {
+            if (order.order.equalsIgnoreCase(value)) {
+                return order;
+            }
+        }
+        return null;
+    }
 }
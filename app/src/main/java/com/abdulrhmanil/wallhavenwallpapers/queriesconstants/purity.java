@@ -1,13 +1,15 @@
 package com.abdulrhmanil.wallhavenwallpapers.queriesconstants;
 
+import java.util.EnumSet;
+
 /**
  * Created by Abdulrhmanil on 04/03/2018.
  * NOT final, will add docs later
  */
 
 public enum purity {
-    SFW(100), // 100 is SFW option
-    Sketchy(010); // 010 is Sketchy option
+    SFW(0b100), // 100 is SFW option
+    Sketchy(0b010); // 010 is Sketchy option
 
     private final int option;
     purity(int option) {
@@ -15,15 +17,9 @@ public enum purity {
     }
 
 
+    /* The options are bits, the query is the 3 bits as digits (SFW, Sketchy, NSFW) */
     private static String purityOptionToString(int option) {
-        if (option >=0 && option <10)
-            return "00"+String.valueOf(option);
-
-        else if (option >=10 && option <100)
-            return "0"+ String.valueOf(option);
-
-        else
-            return String.valueOf(option);
+        return "" + ((option >> 2) & 1) + ((option >> 1) & 1) + (option & 1);
     }
     public String toString() {
         return purityOptionToString(this.option);
@@ -46,4 +42,23 @@ public enum purity {
         return "purity="+combine(purities);
     }
 
+
+    /**
+     * Parse the combined option of the query (like "110") to the purities.
+     * @param option is the combined option, 3 digits of 0 or 1.
+     * @return the purities in the option, empty if the option is NOT valid.
+     */
+    public static EnumSet<purity> fromOption(String option) {
+        final EnumSet<purity> purities = EnumSet.noneOf(purity.class);
+        if (option != null && option.matches("[01]{3}")) {
+            final int bits = Integer.parseInt(option, 2);
+            for (purity purity : values()) {
+                if ((bits & purity.option) != 0) {
+                    purities.add(purity);
+                }
+            }
+        }
+        return purities;
+    }
+
 }
@@ -32,4 +32,19 @@ public enum sorting {
     public static String asQuery(sorting methodology) {
         return "sorting="+methodology;
     }
+
+
+    /**
+     * Return the sorting of the value in the query, ignoring the case.
+     * @param value is the value in the query, like "toplist".
+     * @return the sorting, or {@code null} if NO sorting has this value.
+     */
+    public static sorting fromQuery(String value) {
+        for (sorting methodology : values()) {
+            if (methodology.sortingMethodology.equalsIgnoreCase(value)) {
+                return methodology;
+            }
+        }
+        return null;
+    }
 }
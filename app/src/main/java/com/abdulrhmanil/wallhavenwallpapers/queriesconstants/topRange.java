@@ -34,4 +34,18 @@ public enum topRange {
         return "topRange="+range;
     }
 
+
+    /**
+     * Return the topRange of the value in the query, ignoring the case.
+     * @param value is the value in the query, like "1M".
+     * @return the topRange, or {@code null} if NO topRange has this value.
+     */
+    public static topRange fromQuery(String value) {
+        for (topRange range : values()) {
+            if (range.range.equalsIgnoreCase(value)) {
+                return range;
+            }
+        }
+        return null;
+    }
 }
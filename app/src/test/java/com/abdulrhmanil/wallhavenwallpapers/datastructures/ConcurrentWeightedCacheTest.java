@@ -0,0 +1,233 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The weighted cache: the weights and the evictions, the listener and the statistics, the hit
+ * rate against the FIFO of {@link OptimizedMap OptimizedMap} on skewed keys, and the safety under
+ * many threads. The throughput against the synchronized OptimizedMap is measured on the device by
+ * the instrumented {@code WeightedCacheBenchmark}, NOT here.
+ */
+public class ConcurrentWeightedCacheTest {
+
+    /** The number of the distinct keys of the skewed traces */
+    private static final int KEYS = 10_000;
+
+    /** The number of the entries that the caches of the skewed traces hold */
+    private static final int CACHE_SIZE = 200;
+
+    /** The skew of the Zipf distribution of the keys */
+    private static final double ZIPF_SKEW = 0.9;
+
+    /** The number of the threads in the concurrent tests */
+    private static final int THREADS = 8;
+
+
+    @Test
+    public void evictsByWeightAndNotifies() {
+        final List<String> evicted = new ArrayList<>();
+        final ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<>(
+                100, (key, value) -> value.length(), (key, value) -> evicted.add(key));
+        cache.put("a", repeat(40));
+        cache.put("b", repeat(40));
+        assertEquals(80, cache.weight());
+        cache.put("c", repeat(40));
+        assertTrue(cache.weight() <= 100);
+        assertEquals(2, cache.size());
+        assertEquals(1, evicted.size());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(40, cache.evictionWeight());
+        /* The newest entry stay, even if it's heavier than the window */
+        assertTrue(cache.containsKey("c"));
+
+        /* An entry heavier than all the cache never enter, and replace the old value */
+        cache.put("c", repeat(101));
+        assertFalse("The heavy entry entered", cache.containsKey("c"));
+        assertEquals(2, evicted.size());
+        assertEquals(40, cache.weight());
+
+        /* Replace and remove are NOT evictions */
+        final String remaining = cache.containsKey("a") ? "a" : "b";
+        cache.put(remaining, repeat(10));
+        assertEquals(10, cache.weight());
+        assertEquals(repeat(10), cache.remove(remaining));
+        assertEquals(0, cache.weight());
+        assertEquals(2, evicted.size());
+    }
+
+
+    @Test
+    public void countsHitsAndMisses() {
+        final ConcurrentWeightedCache<Integer, Integer> cache = new ConcurrentWeightedCache<>(10);
+        assertEquals(1.0, cache.hitRate(), 0);
+        cache.put(1, 1);
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertNull(cache.get(2));
+        assertTrue(cache.containsKey(1));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(2.0 / 3, cache.hitRate(), 1e-9);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertNull(cache.get(1));
+    }
+
+
+    @Test
+    public void beatsFifoOnSkewedKeys() {
+        final int[] trace = zipfTrace(new Random(49), 500_000);
+        /* A scan of keys that used once in the middle of the trace, the popular keys must stay */
+        final int[] scanned = new int[trace.length + KEYS];
+        System.arraycopy(trace, 0, scanned, 0, trace.length / 2);
+        for (int i = 0; i < KEYS; i++) {
+            scanned[trace.length / 2 + i] = KEYS + i;
+        }
+        System.arraycopy(trace, trace.length / 2, scanned, trace.length / 2 + KEYS,
+                trace.length - trace.length / 2);
+
+        final double fifo = fifoHitRate(scanned);
+        final double weighted = weightedHitRate(scanned);
+        assertTrue("Hit rate " + weighted + " against FIFO " + fifo, weighted > fifo + 0.05);
+    }
+
+
+    @Test
+    public void staysWithinWeightUnderManyThreads() throws InterruptedException {
+        final AtomicLong evictedWeight = new AtomicLong();
+        final ConcurrentWeightedCache<Integer, Integer> cache = new ConcurrentWeightedCache<>(
+                1_000, (key, value) -> value, (key, value) -> evictedWeight.addAndGet(value));
+        final AtomicBoolean failed = new AtomicBoolean();
+        final long[] putWeight = new long[THREADS];
+        runThreads(thread -> {
+            final Random random = new Random(thread);
+            for (int i = 0; i < 200_000; i++) {
+                final Integer key = random.nextInt(2_000);
+                if (random.nextInt(4) == 0) {
+                    final int weight = 1 + random.nextInt(20);
+                    final Integer old = cache.put(key, weight);
+                    /* Count only the new weight, the replaced weight NOT evicted */
+                    putWeight[thread] += weight - (old == null ? 0 : old);
+                }
+                else {
+                    final Integer value = cache.get(key);
+                    if (value != null && (value < 1 || value > 20)) {
+                        failed.set(true);
+                    }
+                }
+            }
+        });
+        assertFalse("Read a broken value", failed.get());
+        assertTrue("Weight " + cache.weight(), cache.weight() <= cache.maxWeight());
+        long totalPut = 0;
+        for (long weight : putWeight) {
+            totalPut += weight;
+        }
+        /* Every weight that we put is in the cache or evicted */
+        assertEquals(totalPut, cache.weight() + evictedWeight.get());
+        assertEquals(evictedWeight.get(), cache.evictionWeight());
+    }
+
+
+    /** The work of one thread in the concurrent tests */
+    private interface ThreadWork {
+
+        void run(int thread);
+    }
+
+
+    /** Run the work on {@link #THREADS} threads that start together, and wait for them */
+    private static void runThreads(final ThreadWork work) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                work.run(thread);
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+
+    /** Return the hit rate of the trace on the OptimizedMap, put on every miss */
+    private static double fifoHitRate(int[] trace) {
+        final OptimizedMap<Integer, Integer> map = new OptimizedMap<>(CACHE_SIZE);
+        int hits = 0;
+        for (int key : trace) {
+            if (map.get(key) != null) {
+                hits++;
+            }
+            else {
+                map.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+
+    /** Return the hit rate of the trace on the weighted cache, put on every miss */
+    private static double weightedHitRate(int[] trace) {
+        final ConcurrentWeightedCache<Integer, Integer> cache =
+                new ConcurrentWeightedCache<>(CACHE_SIZE);
+        for (int key : trace) {
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+        return cache.hitRate();
+    }
+
+
+    /** Return keys from 0 to {@link #KEYS} with Zipf distribution, the small keys are popular */
+    private static int[] zipfTrace(Random random, int length) {
+        final double[] cumulative = new double[KEYS];
+        double sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_SKEW);
+            cumulative[i] = sum;
+        }
+        final int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            /* Shuffle the popular keys over the hash codes */
+            trace[i] = (int) ((Math.min(index, KEYS - 1) * 0x9e3779b1L) & 0x7fffffff);
+        }
+        return trace;
+    }
+
+
+    /** Return a string of the length */
+    private static String repeat(int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+}
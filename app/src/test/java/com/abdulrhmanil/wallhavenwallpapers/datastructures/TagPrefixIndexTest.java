@@ -0,0 +1,175 @@
+package com.abdulrhmanil.wallhavenwallpapers.datastructures;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The prefix index of the tags: the top-k of a prefix like sorting all the matching tags by
+ * their weights, the weights added when we merge, the disk format, and the budgets of the memory
+ * and the file for hundreds of thousands of tags. The time of the lookups measured on a device,
+ * in the instrumented {@code TagPrefixIndexBenchmark}.
+ */
+public class TagPrefixIndexTest {
+
+    /** The number of the tags in the budgets test */
+    private static final int MANY_TAGS = 300_000;
+
+    /** The allowed size of the file of the tags */
+    private static final long MAX_FILE_BYTES = 4L * 1024 * 1024;
+
+    /** The allowed memory of the index of the tags */
+    private static final long MAX_MEMORY_BYTES = 8L * 1024 * 1024;
+
+
+    @Test
+    public void topIsTheHeaviestMatchingTags() {
+        final Random random = new Random(46);
+        final Map<String, Integer> counts = randomTags(random, 5_000);
+        final TagPrefixIndex index = new TagPrefixIndex().plus(counts);
+        assertEquals(counts.size(), index.size());
+        for (String prefix : new String[] {"a", "b", "ca", "zz", "q", "abc", "nothing-like-this"}) {
+            assertEquals(prefix, bruteForceTop(counts, prefix, 10), index.top(prefix, 10));
+        }
+        assertEquals(bruteForceTop(counts, "", 25), index.top("", 25));
+    }
+
+
+    @Test
+    public void plusAddsTheWeights() {
+        final Map<String, Integer> first = new HashMap<>();
+        first.put("anime", 3);
+        first.put("animals", 5);
+        first.put("nature", 1);
+        final Map<String, Integer> second = new HashMap<>();
+        second.put("anime", 4);
+        second.put("ani", 1);
+        final TagPrefixIndex index = new TagPrefixIndex().plus(first).plus(second);
+        assertEquals(4, index.size());
+        assertEquals(7, index.weightOf("anime"));
+        assertEquals(0, index.weightOf("anim"));
+        assertEquals(Arrays.asList("anime", "animals", "ani"), index.top("ani", 5));
+        assertEquals(Collections.singletonList("anime"), index.top("ani", 1));
+        assertEquals(Collections.emptyList(), index.top("b", 5));
+    }
+
+
+    @Test
+    public void sortedByTheBytesNotTheChars() {
+        final Map<String, Integer> counts = new HashMap<>();
+        /* An emoji (surrogate pair) is before U+FF01 in UTF-16, but after it in UTF-8 */
+        counts.put("x😀", 1);
+        counts.put("x！", 1);
+        counts.put("xé", 1);
+        counts.put("xa", 1);
+        final TagPrefixIndex index = new TagPrefixIndex().plus(counts);
+        for (String term : counts.keySet()) {
+            assertEquals(term, 1, index.weightOf(term));
+            assertEquals(Collections.singletonList(term), index.top(term, 3));
+        }
+        assertEquals(4, index.top("x", 10).size());
+    }
+
+
+    @Test
+    public void writeAndReadKeepTheIndex() throws IOException {
+        final TagPrefixIndex index = new TagPrefixIndex().plus(randomTags(new Random(7), 2_000));
+        final TagPrefixIndex read = readBack(index);
+        assertEquals(index.size(), read.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.term(i), read.term(i));
+            assertEquals(index.weight(i), read.weight(i));
+        }
+        assertEquals(index.top("m", 10), read.top("m", 10));
+        assertEquals(0, readBack(new TagPrefixIndex()).size());
+    }
+
+
+    @Test
+    public void manyTagsStayCompact() throws IOException {
+        final Random random = new Random(300);
+        final TagPrefixIndex index = new TagPrefixIndex().plus(randomTags(random, MANY_TAGS));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        assertTrue("File of " + bytes.size() + " bytes", bytes.size() <= MAX_FILE_BYTES);
+        assertTrue("Memory of " + index.memoryBytes() + " bytes",
+                index.memoryBytes() <= MAX_MEMORY_BYTES);
+
+        final String[] prefixes = new String[1_000];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = randomWord(random, 1 + random.nextInt(3));
+        }
+        int found = 0;
+        for (String prefix : prefixes) {
+            found += index.topPositions(prefix, 8).length;
+        }
+        assertTrue(found > 0);
+    }
+
+
+
+    /** Return random tags, one to three words, with random weights */
+    private static Map<String, Integer> randomTags(Random random, int count) {
+        final Map<String, Integer> counts = new HashMap<>();
+        while (counts.size() < count) {
+            final StringBuilder tag = new StringBuilder(randomWord(random, 3 + random.nextInt(6)));
+            final int words = random.nextInt(3);
+            for (int i = 0; i < words; i++) {
+                tag.append(' ').append(randomWord(random, 3 + random.nextInt(6)));
+            }
+            counts.put(tag.toString(), 1 + random.nextInt(1_000));
+        }
+        return counts;
+    }
+
+
+    /** Return a random word of lower case letters */
+    private static String randomWord(Random random, int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+
+    /** Return the top-k by sorting all the matching tags, the heaviest first, then by the text */
+    private static List<String> bruteForceTop(final Map<String, Integer> counts, String prefix,
+                                              int k) {
+        final List<String> matching = new ArrayList<>();
+        for (String tag : counts.keySet()) {
+            if (tag.startsWith(prefix)) {
+                matching.add(tag);
+            }
+        }
+        Collections.sort(matching, (a, b) -> {
+            final int compare = Integer.compare(counts.get(b), counts.get(a));
+            return compare != 0 ? compare : a.compareTo(b);
+        });
+        return matching.subList(0, Math.min(k, matching.size()));
+    }
+
+
+    /** Write the index and read it back */
+    private static TagPrefixIndex readBack(TagPrefixIndex index) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        return TagPrefixIndex.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
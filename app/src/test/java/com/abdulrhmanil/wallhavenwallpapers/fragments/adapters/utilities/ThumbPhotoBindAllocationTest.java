@@ -0,0 +1,202 @@
+package com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.utilities;
+
+import com.abdulrhmanil.wallhavenwallpapers.fragments.adapters.ThumbCellView;
+import com.abdulrhmanil.wallhavenwallpapers.photostructures.ThumbPhoto;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation budget of the bind path of the thumb photos, the work that the adapter do on our side
+ * for every bind ({@link ThumbBinder ThumbBinder}: the photo of the position, the stable id, the
+ * link of the thumb, the label and the download badge), in steady state scrolling (the same
+ * photos bound again and again) must allocate nothing.
+ * We measure the allocated bytes of the test thread with the {@code ThreadMXBean} of the JVM.
+ */
+public class ThumbPhotoBindAllocationTest {
+
+    /** The number of the photos in the list, like 4 pages */
+    private static final int PHOTOS = 96;
+
+    /** The number of the binds that we measure */
+    private static final int BINDS = 200_000;
+
+    /** The allowed allocated bytes per bind, on our side */
+    private static final long BUDGET_BYTES_PER_BIND = 0;
+
+    /** The allowed allocated bytes of the measuring itself (boxing of the result and so on) */
+    private static final long MEASURE_SLACK_BYTES = 4096;
+
+
+    /** Sink to prevent the JIT from dropping the work */
+    private static int sink;
+
+
+    @Test
+    public void thumbLinkIsBuiltOnce() {
+        final ThumbPhoto photo = new ThumbPhoto("94x38z", "1920 x 1080");
+        final String small = photo.getThumbPhotoLink(ThumbPhoto.Variant.Small);
+        assertEquals("https://th.wallhaven.cc/small/94/94x38z.jpg", small);
+        assertEquals("https://th.wallhaven.cc/lg/94/94x38z.jpg",
+                photo.getThumbPhotoLink(ThumbPhoto.Variant.Large));
+        assertSame(small, photo.getThumbPhotoLink(ThumbPhoto.Variant.Small));
+        assertSame(small, photo.getThumbPhotoLink());
+    }
+
+
+    @Test
+    public void stableIdParsesOnlyLowerCaseBase36() {
+        assertEquals(Long.parseLong("94x38z", Character.MAX_RADIX),
+                ThumbBinder.stableIdOf("94x38z"));
+        assertEquals(1L, ThumbBinder.stableIdOf("1"));
+        /* parseLong accept a sign and upper case, they must NOT collide with the real ids */
+        assertNotEquals(-1L, ThumbBinder.stableIdOf("-1"));
+        assertNotEquals(1L, ThumbBinder.stableIdOf("+1"));
+        assertNotEquals(ThumbBinder.stableIdOf("abc"), ThumbBinder.stableIdOf("AbC"));
+        assertNotEquals(ThumbBinder.stableIdOf("-1"), ThumbBinder.stableIdOf("+1"));
+        assertEquals(ThumbBinder.stableIdOf("AbC"), ThumbBinder.stableIdOf("AbC"));
+    }
+
+
+    @Test
+    public void badgeFollowsTheDownloadState() {
+        final FakeDownloadState state = new FakeDownloadState();
+        final ThumbBinder binder = new ThumbBinder(state, ThumbPhoto.Variant.Small);
+        final List<ThumbPhoto> photos = new ArrayList<>();
+        photos.add(new ThumbPhoto("94x38z", "1920 x 1080"));
+        final FakeCell cell = new FakeCell();
+
+        assertSame(photos.get(0), binder.bind(photos, 0, cell));
+        assertEquals("1920 x 1080", cell.label);
+        assertEquals(ThumbCellView.BADGE_DOWNLOAD, cell.badge);
+        state.downloading.add("94x38z");
+        binder.bindBadge(photos.get(0), cell);
+        assertEquals(ThumbCellView.BADGE_DOWNLOADING, cell.badge);
+        state.downloaded.add("94x38z");
+        binder.bindBadge(photos.get(0), cell);
+        assertEquals(ThumbCellView.BADGE_DOWNLOADED, cell.badge);
+        assertEquals(Long.parseLong("94x38z", Character.MAX_RADIX),
+                ThumbBinder.itemIdOf(photos, 0));
+    }
+
+
+    @Test
+    public void steadyStateBindAllocatesNothing() {
+        final com.sun.management.ThreadMXBean threadBean = threadBean();
+        Assume.assumeTrue(threadBean != null);
+
+        final List<ThumbPhoto> photos = new ArrayList<>(PHOTOS);
+        for (int i = 0; i < PHOTOS; i++) {
+            photos.add(new ThumbPhoto(Integer.toString(1_000_000 + i, Character.MAX_RADIX),
+                    "1920 x 1080"));
+        }
+        /* Some photos downloaded and some downloading, so the bind take all the badge branches */
+        final FakeDownloadState state = new FakeDownloadState();
+        for (int i = 0; i < PHOTOS; i += 3) {
+            state.downloaded.add(photos.get(i).getPhotoId());
+            state.downloading.add(photos.get(i + 1).getPhotoId());
+        }
+        final ThumbBinder binder = new ThumbBinder(state, ThumbPhoto.Variant.forWidth(700));
+        final FakeCell cell = new FakeCell();
+        /* Warm up, the first bind of every photo build his link */
+        bind(binder, photos, cell, BINDS);
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        bind(binder, photos, cell, BINDS);
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("Allocated " + allocated + " bytes in " + BINDS + " binds",
+                allocated <= BUDGET_BYTES_PER_BIND * BINDS + MEASURE_SLACK_BYTES);
+    }
+
+
+    /**
+     * Do the work of the bind on our side, like the adapter do: the stable id, the bind of the
+     * cell and the link of the thumb that Glide load.
+     * @param binder is the binder of the adapter.
+     * @param photos are the photos of the list.
+     * @param cell is the cell that we bind.
+     * @param binds is the number of the binds.
+     */
+    private static void bind(ThumbBinder binder, List<ThumbPhoto> photos, FakeCell cell,
+                             int binds) {
+        long hash = 0;
+        for (int i = 0; i < binds; i++) {
+            final int position = i % photos.size();
+            hash += ThumbBinder.itemIdOf(photos, position);
+            final ThumbPhoto photo = binder.bind(photos, position, cell);
+            hash += binder.thumbLinkOf(photo).length();
+            hash += cell.badge + cell.label.length();
+        }
+        sink += (int) hash;
+    }
+
+
+
+    /** The download state of the photos, in sets */
+    private static final class FakeDownloadState implements ThumbBinder.DownloadState {
+
+        final Set<String> downloaded = new HashSet<>();
+
+        final Set<String> downloading = new HashSet<>();
+
+        @Override
+        public boolean isDownloaded(String photoId) {
+            return downloaded.contains(photoId);
+        }
+
+        @Override
+        public boolean isDownloadingNow(String photoId) {
+            return downloading.contains(photoId);
+        }
+    }
+
+
+    /** A cell that only keep the label and the badge */
+    private static final class FakeCell implements ThumbBinder.Cell {
+
+        String label;
+
+        int badge = -1;
+
+        @Override
+        public void setLabel(String text) {
+            label = text;
+        }
+
+        @Override
+        public void setBadge(int newBadge) {
+            badge = newBadge;
+        }
+    }
+
+
+    /**
+     * Return the thread bean of the JVM if it can measure the allocated bytes.
+     * @return the thread bean, or {@code null} if NOT supported.
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+}
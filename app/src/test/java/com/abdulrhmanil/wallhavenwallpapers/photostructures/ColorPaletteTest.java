@@ -0,0 +1,102 @@
+package com.abdulrhmanil.wallhavenwallpapers.photostructures;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The lookup table of the search colors: the palette colors map to themselves, the table agree
+ * with the exact nearest color in the Lab space (and when it doesn't, the color of the table is
+ * almost as near), and the colors parsed once to packed ints. The throughput of the table over
+ * millions of pixels is measured on the device by the instrumented {@code ColorPaletteBenchmark}.
+ */
+public class ColorPaletteTest {
+
+    /** The number of the random colors that we compare to the exact mapping */
+    private static final int SAMPLES = 200_000;
+
+    /** The minimum share of the colors that the table map exactly */
+    private static final double MIN_AGREEMENT = 0.97;
+
+    /** The allowed extra Lab distance (Delta E) of the table color over the exact color */
+    private static final double MAX_EXTRA_DELTA_E = 4.5;
+
+
+    @Test
+    public void paletteColorsMapToThemselves() {
+        assertEquals(29, ColorPalette.size());
+        for (int i = 0; i < ColorPalette.size(); i++) {
+            final int color = ColorPalette.color(i);
+            assertEquals(i, ColorPalette.nearestIndex(color));
+            assertEquals(i, ColorPalette.nearestIndexExact(color));
+            assertEquals(color, ColorPalette.nearest(0xff000000 | color));
+        }
+    }
+
+
+    @Test
+    public void tableAgreesWithTheExactMapping() {
+        final Random random = new Random(47);
+        int agree = 0;
+        double worstExtra = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            final int rgb = random.nextInt(0x1000000);
+            final int fromTable = ColorPalette.nearestIndex(rgb);
+            final int exact = ColorPalette.nearestIndexExact(rgb);
+            if (fromTable == exact) {
+                agree++;
+            }
+            else {
+                final float[] lab = ColorPalette.toLab(rgb);
+                final double extra =
+                        distance(lab, ColorPalette.toLab(ColorPalette.color(fromTable)))
+                        - distance(lab, ColorPalette.toLab(ColorPalette.color(exact)));
+                worstExtra = Math.max(worstExtra, extra);
+            }
+        }
+        assertTrue("Agreement " + agree + " / " + SAMPLES, agree >= MIN_AGREEMENT * SAMPLES);
+        assertTrue("Extra Delta E " + worstExtra, worstExtra <= MAX_EXTRA_DELTA_E);
+    }
+
+
+    @Test
+    public void dominantColorsByPixels() {
+        final int[] pixels = new int[100];
+        for (int i = 0; i < pixels.length; i++) {
+            /* 60 near white, 30 near dark red, 10 pure black */
+            pixels[i] = i < 60 ? 0xfffefefe : i < 90 ? 0xff650102 : 0xff000000;
+        }
+        final int[] dominant = ColorPalette.dominant(pixels, 0, pixels.length, 5);
+        assertEquals(3, dominant.length);
+        assertEquals(0xffffff, dominant[0]);
+        assertEquals(0x660000, dominant[1]);
+        assertEquals(0x000000, dominant[2]);
+        assertEquals(1, ColorPalette.dominant(pixels, 0, pixels.length, 1).length);
+        assertEquals(0, ColorPalette.dominant(pixels, 0, 0, 5).length);
+    }
+
+
+    @Test
+    public void photoColorParsedOnce() {
+        final PhotoColor color = new PhotoColor("#0099cc");
+        assertEquals(0x0099cc, color.getRgb());
+        assertEquals(0xff0099cc, color.getArgb());
+        assertEquals("#0099cc", color.getColor());
+        assertEquals("colors=0099cc", color.asQuery());
+        assertTrue(color.isSupported());
+        assertEquals(color, new PhotoColor(0x0099cc));
+        assertEquals(new PhotoColor(0xffffff), new PhotoColor("#fdfdfd").toPalette());
+    }
+
+
+    /** Return the Lab distance (Delta E 76) of two colors */
+    private static double distance(float[] a, float[] b) {
+        final double dl = a[0] - b[0];
+        final double da = a[1] - b[1];
+        final double db = a[2] - b[2];
+        return Math.sqrt(dl * dl + da * da + db * db);
+    }
+}